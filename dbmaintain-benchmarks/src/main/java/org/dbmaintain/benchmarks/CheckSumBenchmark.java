@@ -0,0 +1,83 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.ScriptContentHandle;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.dbmaintain.util.FileUtils.getUrl;
+
+/**
+ * Measures the time needed to calculate the check sum of a script file for the different kinds of content handles.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckSumBenchmark {
+
+    @Param({"url", "mapped", "spooled"})
+    public String contentHandle;
+
+    @Param({"100", "10000"})
+    public int nrOfStatements;
+
+    @Param({"false", "true"})
+    public boolean ignoreCarriageReturns;
+
+    private File scriptFile;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        scriptFile = File.createTempFile("dbmaintain-benchmark", ".sql");
+        writeStringToFile(scriptFile, SyntheticScripts.createScriptContent("oracle", nrOfStatements), SyntheticScripts.ENCODING);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scriptFile.delete();
+    }
+
+
+    @Benchmark
+    public String getCheckSum() {
+        // the check sum is cached by the handle, so a new handle is needed for every invocation
+        return createScriptContentHandle().getCheckSum();
+    }
+
+
+    private ScriptContentHandle createScriptContentHandle() {
+        if ("mapped".equals(contentHandle)) {
+            return new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, SyntheticScripts.ENCODING, ignoreCarriageReturns);
+        }
+        ScriptContentHandle urlScriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(getUrl(scriptFile), SyntheticScripts.ENCODING, ignoreCarriageReturns);
+        if ("spooled".equals(contentHandle)) {
+            return new ScriptContentHandle.SpooledScriptContentHandle(urlScriptContentHandle);
+        }
+        return urlScriptContentHandle;
+    }
+}
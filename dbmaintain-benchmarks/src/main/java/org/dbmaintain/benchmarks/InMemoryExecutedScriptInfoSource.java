@@ -0,0 +1,76 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Executed script info source that keeps the executed scripts in memory, so that the benchmarks of the analyzer
+ * are not influenced by a database.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class InMemoryExecutedScriptInfoSource implements ExecutedScriptInfoSource {
+
+    private Set<ExecutedScript> executedScripts;
+
+
+    public InMemoryExecutedScriptInfoSource(Set<ExecutedScript> executedScripts) {
+        this.executedScripts = new HashSet<ExecutedScript>(executedScripts);
+    }
+
+
+    public void registerExecutedScript(ExecutedScript executedScript) {
+        executedScripts.add(executedScript);
+    }
+
+    public void updateExecutedScript(ExecutedScript executedScript) {
+        executedScripts.add(executedScript);
+    }
+
+    public void clearAllExecutedScripts() {
+        executedScripts.clear();
+    }
+
+    public Set<ExecutedScript> getExecutedScripts() {
+        return executedScripts;
+    }
+
+    public void deleteExecutedScript(ExecutedScript executedScript) {
+        executedScripts.remove(executedScript);
+    }
+
+    public void renameExecutedScript(ExecutedScript executedScript, Script renamedToScript) {
+    }
+
+    public void deleteAllExecutedPostprocessingScripts() {
+    }
+
+    public void markErrorScriptsAsSuccessful() {
+    }
+
+    public void removeErrorScripts() {
+    }
+
+    public void resetCachedState() {
+    }
+}
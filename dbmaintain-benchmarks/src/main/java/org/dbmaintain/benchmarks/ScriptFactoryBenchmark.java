@@ -0,0 +1,69 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.ScriptContentHandle;
+import org.dbmaintain.script.ScriptFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to create script instances, i.e. to extract indexes, target databases and qualifiers
+ * out of the script file names.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptFactoryBenchmark {
+
+    @Param({"1000"})
+    public int nrOfScripts;
+
+    private ScriptFactory scriptFactory;
+    private List<String> fileNames;
+
+
+    @Setup
+    public void setUp() {
+        scriptFactory = SyntheticScripts.createScriptFactory();
+        fileNames = SyntheticScripts.createScriptFileNames(nrOfScripts);
+    }
+
+
+    @Benchmark
+    public void createScriptWithoutContent(Blackhole blackhole) {
+        for (String fileName : fileNames) {
+            blackhole.consume(scriptFactory.createScriptWithoutContent(fileName, 0L, "checksum"));
+        }
+    }
+
+    @Benchmark
+    public void createScriptWithContent(Blackhole blackhole) {
+        for (String fileName : fileNames) {
+            ScriptContentHandle scriptContentHandle = new ScriptContentHandle.StringScriptContentHandle("content", SyntheticScripts.ENCODING, false);
+            blackhole.consume(scriptFactory.createScriptWithContent(fileName, 0L, scriptContentHandle));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.parser.ScriptParser;
+import org.dbmaintain.script.parser.ScriptParserFactory;
+import org.dbmaintain.script.parser.impl.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time needed to parse all statements out of a script for each of the script parser dialects.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptParserBenchmark {
+
+    @Param({"hsqldb", "oracle", "postgresql", "mysql", "db2", "informix"})
+    public String databaseDialect;
+
+    @Param({"10", "1000"})
+    public int nrOfStatements;
+
+    @Param({"false", "true"})
+    public boolean scriptParameters;
+
+    private ScriptParserFactory scriptParserFactory;
+    private String scriptContent;
+
+
+    @Setup
+    public void setUp() {
+        Properties parameters = null;
+        if (scriptParameters) {
+            parameters = new Properties();
+            parameters.setProperty("schema", "my_schema");
+        }
+        scriptParserFactory = createScriptParserFactory(databaseDialect, parameters);
+        scriptContent = SyntheticScripts.createScriptContent(databaseDialect, nrOfStatements);
+    }
+
+
+    @Benchmark
+    public void parseScript(Blackhole blackhole) {
+        ScriptParser scriptParser = scriptParserFactory.createScriptParser(new StringReader(scriptContent));
+        String statement;
+        while ((statement = scriptParser.getNextStatement()) != null) {
+            blackhole.consume(statement);
+        }
+    }
+
+
+    private ScriptParserFactory createScriptParserFactory(String databaseDialect, Properties scriptParameters) {
+        if ("oracle".equals(databaseDialect)) {
+            return new OracleScriptParserFactory(false, scriptParameters);
+        }
+        if ("postgresql".equals(databaseDialect)) {
+            return new PostgreSqlScriptParserFactory(false, scriptParameters);
+        }
+        if ("mysql".equals(databaseDialect)) {
+            return new MySqlScriptParserFactory(false, scriptParameters);
+        }
+        if ("db2".equals(databaseDialect)) {
+            return new Db2ScriptParserFactory(false, scriptParameters);
+        }
+        if ("informix".equals(databaseDialect)) {
+            return new InformixScriptParserFactory(false, scriptParameters);
+        }
+        return new DefaultScriptParserFactory(false, scriptParameters);
+    }
+}
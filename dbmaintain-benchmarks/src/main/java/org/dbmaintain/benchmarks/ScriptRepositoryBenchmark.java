@@ -0,0 +1,77 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.script.qualifier.QualifierEvaluator;
+import org.dbmaintain.script.qualifier.impl.IncludeExcludeQualifierEvaluator;
+import org.dbmaintain.script.repository.ScriptLocation;
+import org.dbmaintain.script.repository.ScriptRepository;
+import org.dbmaintain.script.repository.impl.FileSystemScriptLocation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.dbmaintain.benchmarks.SyntheticScripts.*;
+
+/**
+ * Measures the time needed to scan a script location on the file system and build the script repository.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptRepositoryBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nrOfScripts;
+
+    private File scriptRepositoryDir;
+    private QualifierEvaluator qualifierEvaluator;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        scriptRepositoryDir = createScriptRepositoryDir(nrOfScripts, 5);
+        Set<Qualifier> noQualifiers = Collections.emptySet();
+        qualifierEvaluator = new IncludeExcludeQualifierEvaluator(noQualifiers, noQualifiers, noQualifiers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteDirectory(scriptRepositoryDir);
+    }
+
+
+    @Benchmark
+    public ScriptRepository createScriptRepository() {
+        ScriptLocation scriptLocation = new FileSystemScriptLocation(scriptRepositoryDir, ENCODING, POSTPROCESSING_DIR_NAME,
+                new HashSet<Qualifier>(), Collections.singleton(new Qualifier("patch")), SCRIPT_INDEX_REGEXP, QUALIFIER_REGEXP,
+                TARGET_DATABASE_REGEXP, Collections.singleton("sql"), null, false);
+        return new ScriptRepository(Collections.singleton(scriptLocation), qualifierEvaluator);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.analyzer.ScriptUpdates;
+import org.dbmaintain.script.analyzer.ScriptUpdatesAnalyzer;
+import org.dbmaintain.script.qualifier.Qualifier;
+import org.dbmaintain.script.qualifier.QualifierEvaluator;
+import org.dbmaintain.script.repository.ScriptLocation;
+import org.dbmaintain.script.repository.ScriptRepository;
+import org.dbmaintain.script.repository.impl.ArchiveScriptLocation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.dbmaintain.benchmarks.SyntheticScripts.*;
+
+/**
+ * Measures the time needed to compare the scripts in a repository with the executed scripts of a database that is
+ * up to date, except for the 10 most recent scripts.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScriptUpdatesAnalyzerBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nrOfScripts;
+
+    private ScriptRepository scriptRepository;
+    private Set<ExecutedScript> executedScripts;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SortedSet<Script> scripts = createScripts(createScriptFactory(), nrOfScripts);
+        ScriptLocation scriptLocation = new ArchiveScriptLocation(scripts, ENCODING, POSTPROCESSING_DIR_NAME, null,
+                Collections.singleton(new Qualifier("patch")), SCRIPT_INDEX_REGEXP, QUALIFIER_REGEXP, TARGET_DATABASE_REGEXP,
+                null, null, false);
+        scriptRepository = new ScriptRepository(Collections.singleton(scriptLocation), new QualifierEvaluator() {
+            public boolean evaluate(Set<Qualifier> qualifiers) {
+                return true;
+            }
+        });
+        executedScripts = createExecutedScripts(scripts, 10);
+    }
+
+
+    @Benchmark
+    public ScriptUpdates calculateScriptUpdates() {
+        // the analyzer keeps state, so a new one is needed for every invocation
+        InMemoryExecutedScriptInfoSource executedScriptInfoSource = new InMemoryExecutedScriptInfoSource(executedScripts);
+        return new ScriptUpdatesAnalyzer(scriptRepository, executedScriptInfoSource, true, false, false).calculateScriptUpdates();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.benchmarks;
+
+import org.dbmaintain.script.ExecutedScript;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.qualifier.Qualifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+
+/**
+ * Generators for synthetic scripts and script repositories that are used as input for the benchmarks.
+ * <p/>
+ * A generated repository consists of folders of 100 indexed scripts each (every tenth script is a patch script),
+ * a folder with repeatable scripts and a postprocessing folder. This resembles the layout of a typical project
+ * that has been maintained for a number of releases.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SyntheticScripts {
+
+    public static final String SCRIPT_INDEX_REGEXP = "^([0-9]+)(?:_|$)";
+    public static final String TARGET_DATABASE_REGEXP = "(?:\\G|_)@([a-zA-Z0-9]+)(?:_|$)";
+    public static final String QUALIFIER_REGEXP = "(?:\\G|_)#([a-zA-Z0-9]+)(?:_|$)";
+    public static final String POSTPROCESSING_DIR_NAME = "postprocessing";
+    public static final String ENCODING = "ISO-8859-1";
+
+    /* Nr of indexed scripts per folder */
+    private static final int SCRIPTS_PER_FOLDER = 100;
+
+
+    /**
+     * Creates the content of a script with the given number of statements. The statements contain the constructs the
+     * parser has to deal with: comments, quoted literals containing separators and, for dialects that support them,
+     * stored procedure blocks.
+     *
+     * @param databaseDialect The dialect, not null
+     * @param nrOfStatements  The nr of statements
+     * @return The content, not null
+     */
+    public static String createScriptContent(String databaseDialect, int nrOfStatements) {
+        boolean storedProcedures = !"hsqldb".equals(databaseDialect) && !"h2".equals(databaseDialect) && !"derby".equals(databaseDialect);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < nrOfStatements; i++) {
+            switch (i % 5) {
+                case 0:
+                    content.append("-- table ").append(i).append('\n');
+                    content.append("create table table").append(i).append(" (\n");
+                    content.append("    id integer not null primary key, -- the key\n");
+                    content.append("    name varchar(100),\n");
+                    content.append("    description varchar(1000)\n");
+                    content.append(");\n");
+                    break;
+                case 1:
+                    content.append("insert into table").append(i - 1).append(" (id, name, description) values (")
+                            .append(i).append(", 'name; with '' separator', 'a \"quoted\" description');\n");
+                    break;
+                case 2:
+                    content.append("/* block comment; with a separator\n   over multiple lines */\n");
+                    content.append("update table").append(i - 2).append(" set name = 'updated' where id = ").append(i).append(";\n");
+                    break;
+                case 3:
+                    if (storedProcedures) {
+                        content.append("create function function").append(i).append(" return integer\n");
+                        content.append("begin\n");
+                        content.append("    update table").append(i - 3).append(" set name = 'x';\n");
+                        content.append("    return 1;\n");
+                        content.append("end;\n");
+                        content.append("/\n");
+                    } else {
+                        content.append("create index index").append(i).append(" on table").append(i - 3).append(" (name);\n");
+                    }
+                    break;
+                default:
+                    content.append("delete from table").append(i - 4).append(" where name like '%;%';\n");
+            }
+        }
+        return content.toString();
+    }
+
+
+    /**
+     * @param nrOfScripts The total nr of scripts
+     * @return The relative file names of the scripts of a synthetic repository, not null
+     */
+    public static List<String> createScriptFileNames(int nrOfScripts) {
+        List<String> fileNames = new ArrayList<String>(nrOfScripts);
+        int nrOfRepeatableScripts = Math.max(1, nrOfScripts / 20);
+        int nrOfPostProcessingScripts = Math.max(1, nrOfScripts / 100);
+        int nrOfIndexedScripts = nrOfScripts - nrOfRepeatableScripts - nrOfPostProcessingScripts;
+
+        for (int i = 0; i < nrOfIndexedScripts; i++) {
+            int folderIndex = i / SCRIPTS_PER_FOLDER + 1;
+            int scriptIndex = i % SCRIPTS_PER_FOLDER + 1;
+            String qualifier = i % 10 == 9 ? "#patch_" : "";
+            fileNames.add(String.format("%04d_release/%03d_%sscript%d.sql", folderIndex, scriptIndex, qualifier, i));
+        }
+        for (int i = 0; i < nrOfRepeatableScripts; i++) {
+            fileNames.add("repeatable/view" + i + ".sql");
+        }
+        for (int i = 0; i < nrOfPostProcessingScripts; i++) {
+            fileNames.add(POSTPROCESSING_DIR_NAME + "/" + String.format("%02d_post%d.sql", i + 1, i));
+        }
+        return fileNames;
+    }
+
+    /**
+     * Writes a synthetic repository with the given nr of scripts to a new temporary directory.
+     *
+     * @param nrOfScripts              The total nr of scripts
+     * @param nrOfStatementsPerScript  The nr of statements in each script
+     * @return The root directory of the repository, not null
+     */
+    public static File createScriptRepositoryDir(int nrOfScripts, int nrOfStatementsPerScript) throws IOException {
+        File rootDir = File.createTempFile("dbmaintain-benchmark", "");
+        rootDir.delete();
+        rootDir.mkdirs();
+        String content = createScriptContent("oracle", nrOfStatementsPerScript);
+        for (String fileName : createScriptFileNames(nrOfScripts)) {
+            writeStringToFile(new File(rootDir, fileName), content, ENCODING);
+        }
+        return rootDir;
+    }
+
+    /**
+     * Creates the scripts of a synthetic repository without writing them to disk.
+     *
+     * @param scriptFactory The factory for the scripts, not null
+     * @param nrOfScripts   The total nr of scripts
+     * @return The scripts, not null
+     */
+    public static SortedSet<Script> createScripts(ScriptFactory scriptFactory, int nrOfScripts) {
+        SortedSet<Script> scripts = new TreeSet<Script>();
+        for (String fileName : createScriptFileNames(nrOfScripts)) {
+            scripts.add(scriptFactory.createScriptWithoutContent(fileName, 0L, checkSum(fileName)));
+        }
+        return scripts;
+    }
+
+    /**
+     * Creates the executed scripts of a database that is up to date except for the given nr of most recent scripts.
+     *
+     * @param scripts             The scripts of the repository, not null
+     * @param nrOfScriptsToUpdate The nr of scripts that were not executed yet
+     * @return The executed scripts, not null
+     */
+    public static Set<ExecutedScript> createExecutedScripts(SortedSet<Script> scripts, int nrOfScriptsToUpdate) {
+        Set<ExecutedScript> executedScripts = new HashSet<ExecutedScript>();
+        int nrOfExecutedScripts = scripts.size() - nrOfScriptsToUpdate;
+        Date executedAt = new Date();
+        for (Script script : scripts) {
+            if (executedScripts.size() >= nrOfExecutedScripts) {
+                break;
+            }
+            executedScripts.add(new ExecutedScript(script, executedAt, true));
+        }
+        return executedScripts;
+    }
+
+
+    public static ScriptFactory createScriptFactory() {
+        return new ScriptFactory(SCRIPT_INDEX_REGEXP, TARGET_DATABASE_REGEXP, QUALIFIER_REGEXP, new HashSet<Qualifier>(),
+                Collections.singleton(new Qualifier("patch")), POSTPROCESSING_DIR_NAME, null);
+    }
+
+    private static String checkSum(String fileName) {
+        return Integer.toHexString(fileName.hashCode());
+    }
+}
@@ -47,6 +47,9 @@ public class DbMaintainerFactory extends FactoryWithDatabase<DbMaintainer> {
         boolean updateSequencesEnabled = PropertyUtils.getBoolean(PROPERTY_UPDATE_SEQUENCES, getConfiguration());
         boolean ignoreDeletions = PropertyUtils.getBoolean(PROPERTY_IGNORE_DELETIONS, false, getConfiguration());
         long maxNrOfCharsWhenLoggingScriptContent = PropertyUtils.getLong(PROPERTY_MAX_NR_CHARS_WHEN_LOGGING_SCRIPT_CONTENT, getConfiguration());
+        boolean parallelTargetDatabases = PropertyUtils.getBoolean(PROPERTY_PARALLEL_TARGET_DATABASES_ENABLED, false, getConfiguration());
+        int repeatableScriptsThreadCount = PropertyUtils.getInt(PROPERTY_PARALLEL_REPEATABLE_SCRIPTS_THREAD_COUNT, 1, getConfiguration());
+        int incrementalScriptsThreadCount = PropertyUtils.getInt(PROPERTY_PARALLEL_INCREMENTAL_SCRIPTS_THREAD_COUNT, 1, getConfiguration());
         ScriptIndexes baseLineRevision = factoryWithDatabaseContext.getBaselineRevision();
 
         MainFactory mainFactory = factoryWithDatabaseContext.getMainFactory();
@@ -61,7 +64,8 @@ public class DbMaintainerFactory extends FactoryWithDatabase<DbMaintainer> {
 
         return new DefaultDbMaintainer(scriptRunner, scriptRepository, executedScriptInfoSource, fromScratchEnabled, useScriptFileLastModificationDates,
                 allowOutOfSequenceExecutionOfPatchScripts, cleanDbEnabled, disableConstraintsEnabled, updateSequencesEnabled, dbClearer, dbCleaner,
-                constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, getSqlHandler(), maxNrOfCharsWhenLoggingScriptContent, baseLineRevision, ignoreDeletions);
+                constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, getSqlHandler(), maxNrOfCharsWhenLoggingScriptContent, baseLineRevision, ignoreDeletions,
+                getDatabases(), parallelTargetDatabases, repeatableScriptsThreadCount, incrementalScriptsThreadCount);
     }
 
 
@@ -17,6 +17,8 @@ package org.dbmaintain;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
@@ -33,11 +35,18 @@ import org.dbmaintain.structure.clear.DBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.ParallelTaskExecutor;
 
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static java.lang.System.currentTimeMillis;
+import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_DELETED;
 import static org.dbmaintain.script.analyzer.ScriptUpdateType.REPEATABLE_SCRIPT_UPDATED;
 
@@ -57,6 +66,9 @@ public class DefaultDbMaintainer implements DbMaintainer {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultDbMaintainer.class);
 
+    /* Pattern for the header comment lines in which a repeatable script declares the scripts it depends on, e.g. -- dependsOn: a.sql, b.sql */
+    protected static final Pattern DEPENDS_ON_PATTERN = Pattern.compile("^\\s*--\\s*dependsOn\\s*:(.*)$", Pattern.CASE_INSENSITIVE);
+
     /* Provider of the current version of the database, and means to increment it */
     protected ExecutedScriptInfoSource executedScriptInfoSource;
     protected ScriptRepository scriptRepository;
@@ -98,6 +110,14 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected long maxNrOfCharsWhenLoggingScriptContent;
     /* The baseline revision. If set, all scripts with a lower revision will be ignored */
     protected ScriptIndexes baseLineRevision;
+    /* The configured databases, used to determine the target database of the scripts */
+    protected Databases databases;
+    /* If true, the scripts of different target databases are executed concurrently, each database on its own connection */
+    protected boolean parallelTargetDatabases;
+    /* The max nr of repeatable scripts of a target database that are executed concurrently, 1 to execute them one by one */
+    protected int repeatableScriptsThreadCount;
+    /* The max nr of parallel incremental scripts of a folder that are executed concurrently, 1 to execute them one by one */
+    protected int incrementalScriptsThreadCount;
 
     private boolean ignoreDeletions;
 
@@ -131,6 +151,50 @@ public class DefaultDbMaintainer implements DbMaintainer {
                                boolean fromScratchEnabled, boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts,
                                boolean cleanDb, boolean disableConstraints, boolean updateSequences, DBClearer dbClearer, DBCleaner dbCleaner, ConstraintsDisabler constraintsDisabler,
                                SequenceUpdater sequenceUpdater, ScriptUpdatesFormatter scriptUpdatesFormatter, SQLHandler sqlHandler, long maxNrOfCharsWhenLoggingScriptContent, ScriptIndexes baseLineRevision, boolean ignoreDeletions) {
+        this(scriptRunner, scriptRepository, executedScriptInfoSource, fromScratchEnabled, useScriptFileLastModificationDates, allowOutOfSequenceExecutionOfPatchScripts,
+                cleanDb, disableConstraints, updateSequences, dbClearer, dbCleaner, constraintsDisabler, sequenceUpdater, scriptUpdatesFormatter, sqlHandler,
+                maxNrOfCharsWhenLoggingScriptContent, baseLineRevision, ignoreDeletions, null, false, 1, 1);
+    }
+
+
+    /**
+     * Creates a new instance
+     *
+     * @param scriptRunner             runner that executes the database scripts
+     * @param scriptRepository         provides access to all database scripts
+     * @param executedScriptInfoSource provides information about which scripts were already executed on the database
+     * @param fromScratchEnabled       if true, the database will be cleared and recreated from scratch if needed
+     * @param useScriptFileLastModificationDates
+     *                                 if true, the dbmaintainer decides that a script hasn't changed if the
+     *                                 last modification date is identical to the one of the last update, without looking at the contents of the script
+     * @param allowOutOfSequenceExecutionOfPatchScripts
+     *                                 if true, patch scripts can be executed out-of-sequence
+     * @param cleanDb                  if true, the data from all tables is removed before performing any updates
+     * @param disableConstraints       if true, all foreign key and not null constraints are automatically disabled
+     *                                 or removed after each update
+     * @param updateSequences          if true, the value of all sequences is set to a minimal value after each update
+     * @param dbClearer                helper object that clears the database, i.e. drop all database objects
+     * @param dbCleaner                helper object that cleans the database, i.e. remove the data from all tables
+     * @param constraintsDisabler      helper object that disables or removes all foreign key or not null constraints
+     * @param sequenceUpdater          helper object that updates all sequences to a minimal value
+     * @param scriptUpdatesFormatter   helper object that formats the script updates in a well-readable format for the user
+     * @param sqlHandler               helper object that performs sql statements on the database
+     * @param maxNrOfCharsWhenLoggingScriptContent
+     *                                 The maximum length of a script that is logged in an exception, 0 to not log any script content
+     * @param baseLineRevision         The baseline revision. If set, all scripts with a lower revision will be ignored
+     * @param ignoreDeletions          if true, deleted scripts are ignored
+     * @param databases                the configured databases, only needed when parallelTargetDatabases is true
+     * @param parallelTargetDatabases  if true, the scripts of different target databases are executed concurrently
+     * @param repeatableScriptsThreadCount
+     *                                 the max nr of independent repeatable scripts of a target database that are executed concurrently
+     * @param incrementalScriptsThreadCount
+     *                                 the max nr of incremental scripts with the parallel qualifier that are executed concurrently
+     */
+    public DefaultDbMaintainer(ScriptRunner scriptRunner, ScriptRepository scriptRepository, ExecutedScriptInfoSource executedScriptInfoSource,
+                               boolean fromScratchEnabled, boolean useScriptFileLastModificationDates, boolean allowOutOfSequenceExecutionOfPatchScripts,
+                               boolean cleanDb, boolean disableConstraints, boolean updateSequences, DBClearer dbClearer, DBCleaner dbCleaner, ConstraintsDisabler constraintsDisabler,
+                               SequenceUpdater sequenceUpdater, ScriptUpdatesFormatter scriptUpdatesFormatter, SQLHandler sqlHandler, long maxNrOfCharsWhenLoggingScriptContent, ScriptIndexes baseLineRevision, boolean ignoreDeletions,
+                               Databases databases, boolean parallelTargetDatabases, int repeatableScriptsThreadCount, int incrementalScriptsThreadCount) {
 
         this.scriptRunner = scriptRunner;
         this.scriptRepository = scriptRepository;
@@ -150,6 +214,10 @@ public class DefaultDbMaintainer implements DbMaintainer {
         this.maxNrOfCharsWhenLoggingScriptContent = maxNrOfCharsWhenLoggingScriptContent;
         this.baseLineRevision = baseLineRevision;
         this.ignoreDeletions = ignoreDeletions;
+        this.databases = databases;
+        this.parallelTargetDatabases = parallelTargetDatabases;
+        this.repeatableScriptsThreadCount = repeatableScriptsThreadCount;
+        this.incrementalScriptsThreadCount = incrementalScriptsThreadCount;
     }
 
 
@@ -381,14 +449,20 @@ public class DefaultDbMaintainer implements DbMaintainer {
      * @param scriptUpdates the script updates to be executed
      */
     protected void executeScriptUpdates(SortedSet<ScriptUpdate> scriptUpdates) {
+        final Map<Script, ScriptUpdate> scriptUpdatesPerScript = new LinkedHashMap<>();
+        for (ScriptUpdate scriptUpdate : scriptUpdates) {
+            scriptUpdatesPerScript.put(scriptUpdate.getScript(), scriptUpdate);
+        }
         scriptRunner.initialize();
         try {
-            for (ScriptUpdate scriptUpdate : scriptUpdates) {
-                long startTimeMs = currentTimeMillis();
-                executeScript(scriptUpdate.getScript());
-                long durationMs = currentTimeMillis() - startTimeMs;
-                logger.info("Executed " + scriptUpdatesFormatter.formatScriptUpdate(scriptUpdate) + " (" + durationMs + " ms)");
-            }
+            executeScripts(new ArrayList<>(scriptUpdatesPerScript.keySet()), new ParallelTaskExecutor.Task<Script>() {
+                public void execute(Script script) {
+                    long startTimeMs = currentTimeMillis();
+                    executeScript(script);
+                    long durationMs = currentTimeMillis() - startTimeMs;
+                    logger.info("Executed " + scriptUpdatesFormatter.formatScriptUpdate(scriptUpdatesPerScript.get(script)) + " (" + durationMs + " ms)");
+                }
+            });
         } finally {
             scriptRunner.close();
         }
@@ -406,13 +480,272 @@ public class DefaultDbMaintainer implements DbMaintainer {
     protected void executeScripts(SortedSet<Script> scripts) {
         scriptRunner.initialize();
         try {
+            executeScripts(new ArrayList<>(scripts), new ParallelTaskExecutor.Task<Script>() {
+                public void execute(Script script) {
+                    logger.info("Executing script " + script.getFileName());
+                    executeScript(script);
+                }
+            });
+        } finally {
+            scriptRunner.close();
+        }
+    }
+
+
+    /**
+     * Executes the given scripts in the given order. If parallel execution of target databases is enabled, the scripts
+     * are partitioned per target database. Each partition is then executed on its own thread (and therefore on its own
+     * connection), preserving the order of the scripts within the partition. If parallel execution of repeatable
+     * or incremental scripts is enabled, independent scripts of a partition are also executed concurrently, see
+     * {@link #addTargetDatabaseDependencies}. The thread counts apply per partition: each target database executes at
+     * most that nr of scripts concurrently, so that one target database cannot take the threads of the others.
+     * <p/>
+     * If a script fails, no other scripts are started. The scripts that are executing at that time are allowed to
+     * finish, so that their execution is registered correctly, after which the error of the failed script is thrown.
+     * <p/>
+     * The worker threads only exist during this call, so each script leases the connections it needs and releases
+     * them when it is done, see {@link #createConnectionLeasingTask}.
+     *
+     * @param scripts    the scripts to be executed on the database, in the order of execution
+     * @param scriptTask the task that executes a single script, not null
+     */
+    protected void executeScripts(List<Script> scripts, ParallelTaskExecutor.Task<Script> scriptTask) {
+        Map<String, List<Script>> scriptsPerTargetDatabase = getScriptsPerTargetDatabase(scripts);
+        int nrOfThreadsPerTargetDatabase = Math.max(1, Math.max(repeatableScriptsThreadCount, incrementalScriptsThreadCount));
+        int nrOfThreads = scriptsPerTargetDatabase.size() * nrOfThreadsPerTargetDatabase;
+        if (nrOfThreads <= 1) {
             for (Script script : scripts) {
-                logger.info("Executing script " + script.getFileName());
-                executeScript(script);
+                scriptTask.execute(script);
+            }
+            return;
+        }
+        if (scriptsPerTargetDatabase.size() > 1) {
+            logger.info("Executing the scripts of target databases " + scriptsPerTargetDatabase.keySet() + " in parallel.");
+        }
+        Map<String, Script> scriptsByFileName = new HashMap<>();
+        for (Script script : scripts) {
+            scriptsByFileName.put(script.getFileName().replace('\\', '/'), script);
+        }
+        Map<Script, Set<Script>> dependencies = new HashMap<>();
+        Map<Script, String> targetDatabaseNames = new HashMap<>();
+        for (Map.Entry<String, List<Script>> entry : scriptsPerTargetDatabase.entrySet()) {
+            addTargetDatabaseDependencies(entry.getValue(), scriptsByFileName, dependencies);
+            for (Script script : entry.getValue()) {
+                targetDatabaseNames.put(script, entry.getKey());
             }
+        }
+        new ParallelTaskExecutor(nrOfThreads, nrOfThreadsPerTargetDatabase, "dbmaintain-script").execute(scripts, dependencies, targetDatabaseNames, createConnectionLeasingTask(scriptTask));
+    }
+
+
+    /**
+     * Wraps the given task so that, while a script is executed, the worker thread leases a connection to the target
+     * database of the script and to the default database, on which the execution of the script is registered. The
+     * connections are released when the script is done. Otherwise the connections would stay cached for the worker
+     * thread until all connections are closed, and a pooling data source would run out of connections.
+     *
+     * @param scriptTask the task that executes a single script, not null
+     * @return the task that leases the connections around the given task, not null
+     */
+    protected ParallelTaskExecutor.Task<Script> createConnectionLeasingTask(final ParallelTaskExecutor.Task<Script> scriptTask) {
+        if (databases == null || sqlHandler == null) {
+            return scriptTask;
+        }
+        return new ParallelTaskExecutor.Task<Script>() {
+            public void execute(Script script) {
+                List<DataSource> dataSources = new ArrayList<>();
+                dataSources.add(databases.getDefaultDatabase().getDataSource());
+                Database targetDatabase = databases.getDatabase(getTargetDatabaseName(script));
+                if (targetDatabase != null && !dataSources.contains(targetDatabase.getDataSource())) {
+                    dataSources.add(targetDatabase.getDataSource());
+                }
+                List<DataSource> leasedDataSources = new ArrayList<>();
+                try {
+                    for (DataSource dataSource : dataSources) {
+                        sqlHandler.leaseConnection(dataSource);
+                        leasedDataSources.add(dataSource);
+                    }
+                    scriptTask.execute(script);
+                } finally {
+                    for (DataSource dataSource : leasedDataSources) {
+                        sqlHandler.releaseConnection(dataSource);
+                    }
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Determines the scripts on which each of the given scripts of a target database depends. Scripts are executed
+     * in order, except for groups of consecutive scripts that can be executed concurrently (see {@link #getParallelGroup}).
+     * The scripts of such a group only depend on the scripts that precede the group. Within the group, a repeatable
+     * script also depends on:
+     * <ul>
+     * <li>if the script has a header comment like <code>-- dependsOn: a.sql, views/b.sql</code>, the listed scripts.
+     * File names without a path are first looked up in the folder of the script. An empty list means that the
+     * script does not depend on any other repeatable script.</li>
+     * <li>otherwise the preceding repeatable script in the same folder, i.e. the repeatable scripts of a folder are
+     * executed one by one.</li>
+     * </ul>
+     * Incremental scripts of a group do not depend on each other. A script that is not part of a group depends on all
+     * the scripts that precede it.
+     *
+     * @param targetDatabaseScripts the scripts of the target database in the order of execution, not null
+     * @param scriptsByFileName     all scripts that will be executed, per file name, not null
+     * @param dependencies          the map to which the dependencies of each script are added, not null
+     */
+    protected void addTargetDatabaseDependencies(List<Script> targetDatabaseScripts, Map<String, Script> scriptsByFileName, Map<Script, Set<Script>> dependencies) {
+        Set<Script> precedingScripts = new HashSet<>();
+        String currentGroup = null;
+        List<Script> groupScripts = new ArrayList<>();
+        Map<String, Script> previousRepeatableScriptPerFolder = new HashMap<>();
+
+        for (Script script : targetDatabaseScripts) {
+            String group = getParallelGroup(script);
+            if (group == null || !group.equals(currentGroup)) {
+                if (!groupScripts.isEmpty()) {
+                    precedingScripts = new HashSet<>(groupScripts);
+                    groupScripts.clear();
+                    previousRepeatableScriptPerFolder.clear();
+                }
+                currentGroup = group;
+            }
+            Set<Script> scriptDependencies = new HashSet<>(precedingScripts);
+            dependencies.put(script, scriptDependencies);
+            if (group == null) {
+                precedingScripts = Collections.singleton(script);
+                continue;
+            }
+            groupScripts.add(script);
+            if (script.isRepeatable()) {
+                String folder = getFolder(script);
+                Set<String> declaredDependencies = getDeclaredDependencies(script);
+                if (declaredDependencies == null) {
+                    Script previousRepeatableScriptOfFolder = previousRepeatableScriptPerFolder.get(folder);
+                    if (previousRepeatableScriptOfFolder != null) {
+                        scriptDependencies.add(previousRepeatableScriptOfFolder);
+                    }
+                } else {
+                    for (String declaredDependency : declaredDependencies) {
+                        Script dependency = scriptsByFileName.get(folder + declaredDependency);
+                        if (dependency == null) {
+                            dependency = scriptsByFileName.get(declaredDependency);
+                        }
+                        if (dependency == null) {
+                            logger.debug("Dependency " + declaredDependency + " of script " + script.getFileName() + " is not executed during this update.");
+                        } else {
+                            scriptDependencies.add(dependency);
+                        }
+                    }
+                }
+                previousRepeatableScriptPerFolder.put(folder, script);
+            }
+        }
+    }
+
+
+    /**
+     * Consecutive scripts with the same group can be executed concurrently. These are repeatable scripts when parallel
+     * execution of repeatable scripts is enabled, and incremental scripts with the parallel qualifier that are
+     * located in the same folder when parallel execution of incremental scripts is enabled.
+     *
+     * @param script the script, not null
+     * @return the group of scripts the script can be executed concurrently with, null if the script must be executed on its own
+     */
+    protected String getParallelGroup(Script script) {
+        if (repeatableScriptsThreadCount > 1 && script.isRepeatable()) {
+            return "repeatable";
+        }
+        if (incrementalScriptsThreadCount > 1 && script.isIncremental() && script.isParallelScript()) {
+            return "incremental:" + getFolder(script);
+        }
+        return null;
+    }
+
+
+    /**
+     * @param script the script, not null
+     * @return the folder of the script including the trailing slash, empty if the script is not located in a folder
+     */
+    protected String getFolder(Script script) {
+        String fileName = script.getFileName().replace('\\', '/');
+        return fileName.substring(0, fileName.lastIndexOf('/') + 1);
+    }
+
+
+    /**
+     * Reads the dependencies that are declared in the header comment of the script, e.g. <code>-- dependsOn: a.sql, b.sql</code>.
+     * The header comment consists of all comment and blank lines at the start of the script. The dependencies can be
+     * spread over multiple dependsOn lines.
+     *
+     * @param script the script, not null
+     * @return the file names of the declared dependencies, null if the script does not declare its dependencies
+     */
+    protected Set<String> getDeclaredDependencies(Script script) {
+        Set<String> declaredDependencies = null;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(script.getScriptContentHandle().openScriptContentReader());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.length() > 0 && !trimmedLine.startsWith("--")) {
+                    break;
+                }
+                Matcher matcher = DEPENDS_ON_PATTERN.matcher(trimmedLine);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                if (declaredDependencies == null) {
+                    declaredDependencies = new LinkedHashSet<>();
+                }
+                for (String declaredDependency : matcher.group(1).split(",")) {
+                    if (declaredDependency.trim().length() > 0) {
+                        declaredDependencies.add(declaredDependency.trim().replace('\\', '/'));
+                    }
+                }
+            }
+            return declaredDependencies;
+
+        } catch (IOException e) {
+            throw new DbMaintainException("Unable to read the header of script " + script.getFileName(), e);
         } finally {
-            scriptRunner.close();
+            closeQuietly(reader);
+        }
+    }
+
+
+    /**
+     * @param scripts the scripts, not null
+     * @return the scripts per name of the target database, in the given order. If parallel execution of target
+     *         databases is disabled, all scripts are returned as a single partition
+     */
+    protected Map<String, List<Script>> getScriptsPerTargetDatabase(List<Script> scripts) {
+        Map<String, List<Script>> scriptsPerTargetDatabase = new LinkedHashMap<>();
+        for (Script script : scripts) {
+            String targetDatabaseName = parallelTargetDatabases ? getTargetDatabaseName(script) : null;
+            List<Script> targetDatabaseScripts = scriptsPerTargetDatabase.get(targetDatabaseName);
+            if (targetDatabaseScripts == null) {
+                targetDatabaseScripts = new ArrayList<>();
+                scriptsPerTargetDatabase.put(targetDatabaseName, targetDatabaseScripts);
+            }
+            targetDatabaseScripts.add(script);
+        }
+        return scriptsPerTargetDatabase;
+    }
+
+
+    /**
+     * @param script the script, not null
+     * @return the name of the database on which the script is executed, not null
+     */
+    protected String getTargetDatabaseName(Script script) {
+        String targetDatabaseName = script.getTargetDatabaseName();
+        if (targetDatabaseName == null) {
+            return databases.getDefaultDatabase().getDatabaseName();
         }
+        return targetDatabaseName;
     }
 
 
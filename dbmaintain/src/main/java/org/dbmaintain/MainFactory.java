@@ -23,9 +23,11 @@ import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.database.impl.DefaultDatabaseConnectionManager;
 import org.dbmaintain.database.impl.DefaultSQLHandler;
 import org.dbmaintain.datasource.DataSourceFactory;
+import org.dbmaintain.datasource.impl.PoolingDataSourceFactory;
 import org.dbmaintain.datasource.impl.SimpleDataSourceFactory;
 import org.dbmaintain.script.archive.ScriptArchiveCreator;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
+import org.dbmaintain.script.repository.ScriptRepository;
 import org.dbmaintain.script.runner.ScriptRunner;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.clear.DBClearer;
@@ -38,6 +40,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import static org.dbmaintain.config.ConfigUtils.getFactoryClass;
+import static org.dbmaintain.config.DbMaintainProperties.*;
 import static org.dbmaintain.util.ReflectionUtils.createInstanceOfType;
 
 /**
@@ -49,8 +52,12 @@ public class MainFactory {
     protected Properties configuration;
     protected SQLHandler sqlHandler;
     protected DatabaseConnectionManager databaseConnectionManager;
+    /* The factory for the data sources that are not provided by the user, null if not created yet */
+    protected DataSourceFactory dataSourceFactory;
     protected Map<String, DataSource> dataSourcesPerDatabaseName;
     protected Databases databases;
+    /* Scripts that were already loaded, null if the scripts have to be loaded from the configured script locations */
+    protected ScriptRepository preloadedScriptRepository;
 
     protected FactoryContext factoryContext;
     protected FactoryWithDatabaseContext factoryWithDatabaseContext;
@@ -60,6 +67,18 @@ public class MainFactory {
         this(configuration, new HashMap<String, DataSource>());
     }
 
+    /**
+     * Creates a factory that uses the given scripts instead of loading them from the configured script locations.
+     * This way multiple factories, e.g. one per tenant database, can share the same scripts.
+     *
+     * @param configuration             The configuration, not null
+     * @param preloadedScriptRepository The scripts that were already loaded, not null
+     */
+    public MainFactory(Properties configuration, ScriptRepository preloadedScriptRepository) {
+        this(configuration);
+        this.preloadedScriptRepository = preloadedScriptRepository;
+    }
+
     public MainFactory(Properties configuration, DatabaseConnectionManager databaseConnectionManager) {
         this.configuration = configuration;
         this.sqlHandler = databaseConnectionManager.getSqlHandler();
@@ -143,6 +162,13 @@ public class MainFactory {
     }
 
 
+    /**
+     * @return The scripts that were already loaded, null if the scripts have to be loaded from the configured script locations
+     */
+    public ScriptRepository getPreloadedScriptRepository() {
+        return preloadedScriptRepository;
+    }
+
     public Databases getDatabases() {
         if (databases == null) {
             DatabaseConnectionManager databaseConnectionManager = getDatabaseConnectionManager();
@@ -154,12 +180,39 @@ public class MainFactory {
 
     protected DatabaseConnectionManager getDatabaseConnectionManager() {
         if (databaseConnectionManager == null) {
-            DataSourceFactory dataSourceFactory = new SimpleDataSourceFactory();
+            dataSourceFactory = createDataSourceFactory();
             databaseConnectionManager = new DefaultDatabaseConnectionManager(configuration, sqlHandler, dataSourceFactory, dataSourcesPerDatabaseName);
         }
         return databaseConnectionManager;
     }
 
+    /**
+     * Creates a factory for pooling data sources if connection pooling is enabled. Otherwise a factory for simple
+     * data sources that open a new connection each time is returned.
+     *
+     * @return The data source factory, not null
+     */
+    protected DataSourceFactory createDataSourceFactory() {
+        if (!PropertyUtils.getBoolean(PROPERTY_DATASOURCE_POOL_ENABLED, false, configuration)) {
+            return new SimpleDataSourceFactory();
+        }
+        int maxPoolSize = PropertyUtils.getInt(PROPERTY_DATASOURCE_POOL_MAX_SIZE, configuration);
+        int validationTimeoutSeconds = PropertyUtils.getInt(PROPERTY_DATASOURCE_POOL_VALIDATION_TIMEOUT, configuration);
+        long maxWaitMillis = PropertyUtils.getLong(PROPERTY_DATASOURCE_POOL_MAX_WAIT, configuration);
+        return new PoolingDataSourceFactory(maxPoolSize, validationTimeoutSeconds, maxWaitMillis);
+    }
+
+    /**
+     * Closes all connections that were opened by this factory. Should be called when the task is finished. Data
+     * sources that were provided by the user are not closed.
+     */
+    public void close() {
+        sqlHandler.closeAllConnections();
+        if (dataSourceFactory instanceof PoolingDataSourceFactory) {
+            ((PoolingDataSourceFactory) dataSourceFactory).closeDataSources();
+        }
+    }
+
     protected SQLHandler createSqlHandler() {
         return new DefaultSQLHandler();
     }
@@ -0,0 +1,172 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.config.FactoryContext;
+import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.script.Script;
+import org.dbmaintain.script.repository.ScriptRepository;
+import org.dbmaintain.util.ParallelTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.lang.System.currentTimeMillis;
+import static org.dbmaintain.config.DbMaintainProperties.*;
+
+/**
+ * Updates the databases of a number of tenants that share the same scripts. The scripts are loaded only once and the
+ * databases are then updated concurrently, with at most a configured number of tenants at a time.
+ * <p/>
+ * Every tenant has its own configuration, consisting of the common configuration overridden with the properties that
+ * are prefixed with dbMaintainer.tenant.&lt;tenant name&gt;., e.g. dbMaintainer.tenant.customerA.database.url. Each
+ * tenant therefore gets its own databases, connections and executed scripts table. Properties that determine the
+ * scripts themselves (e.g. the script locations and qualifiers) are taken from the common configuration.
+ * <p/>
+ * A failing tenant does not stop the update of the other tenants: the outcome of all tenants is collected in a
+ * {@link MultiTenantUpdateReport}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiTenantDbMaintainer {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(MultiTenantDbMaintainer.class);
+
+    /* The common configuration */
+    protected Properties configuration;
+    /* The configuration per tenant name */
+    protected Map<String, Properties> tenantConfigurations;
+    /* The max nr of tenants that are updated concurrently */
+    protected int nrOfThreads;
+
+
+    /**
+     * Creates an instance for the tenants that are configured in the given configuration.
+     *
+     * @param configuration The common configuration, not null
+     */
+    public MultiTenantDbMaintainer(Properties configuration) {
+        this(configuration, getTenantConfigurations(configuration), PropertyUtils.getInt(PROPERTY_TENANTS_THREAD_COUNT, 4, configuration));
+    }
+
+    /**
+     * @param configuration        The common configuration, not null
+     * @param tenantConfigurations The complete configuration per tenant name, not null
+     * @param nrOfThreads          The max nr of tenants that are updated concurrently
+     */
+    public MultiTenantDbMaintainer(Properties configuration, Map<String, Properties> tenantConfigurations, int nrOfThreads) {
+        this.configuration = configuration;
+        this.tenantConfigurations = tenantConfigurations;
+        this.nrOfThreads = nrOfThreads;
+    }
+
+
+    /**
+     * Brings the databases of all tenants to the latest version, see {@link DbMaintainer#updateDatabase}.
+     *
+     * @param dryRun if true, no updates have to be performed on the databases
+     * @return the outcome of the update of each tenant, not null
+     */
+    public MultiTenantUpdateReport updateDatabases(final boolean dryRun) {
+        final ScriptRepository scriptRepository = createScriptRepository();
+        final MultiTenantUpdateReport report = new MultiTenantUpdateReport(new ArrayList<>(tenantConfigurations.keySet()));
+
+        logger.info("Updating the databases of tenants " + tenantConfigurations.keySet() + ".");
+        new ParallelTaskExecutor(nrOfThreads, "dbmaintain-tenant").execute(new ArrayList<>(tenantConfigurations.keySet()), null, new ParallelTaskExecutor.Task<String>() {
+            public void execute(String tenantName) {
+                report.addTenantResult(updateDatabase(tenantName, scriptRepository, dryRun));
+            }
+        });
+        logger.info(report);
+        return report;
+    }
+
+
+    /**
+     * Updates the database of a single tenant.
+     *
+     * @param tenantName       The name of the tenant, not null
+     * @param scriptRepository The scripts, not null
+     * @param dryRun           if true, no updates have to be performed on the database
+     * @return the outcome of the update, not null
+     */
+    protected MultiTenantUpdateReport.TenantResult updateDatabase(String tenantName, ScriptRepository scriptRepository, boolean dryRun) {
+        long startTimeMs = currentTimeMillis();
+        MainFactory mainFactory = null;
+        try {
+            mainFactory = createMainFactory(tenantConfigurations.get(tenantName), scriptRepository);
+            boolean updated = mainFactory.createDbMaintainer().updateDatabase(dryRun);
+            return new MultiTenantUpdateReport.TenantResult(tenantName, updated, null, currentTimeMillis() - startTimeMs);
+
+        } catch (Throwable t) {
+            logger.error("Unable to update the database of tenant " + tenantName + ".", t);
+            return new MultiTenantUpdateReport.TenantResult(tenantName, false, t, currentTimeMillis() - startTimeMs);
+
+        } finally {
+            if (mainFactory != null) {
+                mainFactory.close();
+            }
+        }
+    }
+
+
+    /**
+     * Loads the scripts. The check sums of all scripts are calculated up front, so that the scripts can safely be
+     * shared by the threads that update the tenants.
+     *
+     * @return The scripts, not null
+     */
+    protected ScriptRepository createScriptRepository() {
+        ScriptRepository scriptRepository = new FactoryContext(configuration, null).createScriptRepository();
+        for (Script script : scriptRepository.getAllScripts()) {
+            script.getCheckSum();
+        }
+        return scriptRepository;
+    }
+
+    protected MainFactory createMainFactory(Properties tenantConfiguration, ScriptRepository scriptRepository) {
+        return new MainFactory(tenantConfiguration, scriptRepository);
+    }
+
+
+    /**
+     * @param configuration The common configuration, not null
+     * @return The configuration per tenant name, in the configured order, not null
+     */
+    public static Map<String, Properties> getTenantConfigurations(Properties configuration) {
+        Map<String, Properties> tenantConfigurations = new LinkedHashMap<>();
+        for (String tenantName : PropertyUtils.getStringList(PROPERTY_TENANT_NAMES, configuration, true)) {
+            String prefix = PROPERTY_TENANT_PREFIX + tenantName + ".";
+            Properties tenantConfiguration = new Properties();
+            for (String propertyName : configuration.stringPropertyNames()) {
+                tenantConfiguration.setProperty(propertyName, configuration.getProperty(propertyName));
+            }
+            for (String propertyName : configuration.stringPropertyNames()) {
+                if (propertyName.startsWith(prefix)) {
+                    tenantConfiguration.setProperty(propertyName.substring(prefix.length()), configuration.getProperty(propertyName));
+                }
+            }
+            tenantConfigurations.put(tenantName, tenantConfiguration);
+        }
+        return tenantConfigurations;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import java.util.*;
+
+/**
+ * The outcome of updating the databases of a number of tenants, see {@link MultiTenantDbMaintainer}.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiTenantUpdateReport {
+
+    /* The results per tenant name, in the order of the tenants */
+    private Map<String, TenantResult> tenantResults = new LinkedHashMap<>();
+
+
+    /**
+     * @param tenantNames The names of the tenants in the order in which they are reported, not null
+     */
+    public MultiTenantUpdateReport(List<String> tenantNames) {
+        for (String tenantName : tenantNames) {
+            tenantResults.put(tenantName, null);
+        }
+    }
+
+
+    /**
+     * Registers the result of the update of the database of a tenant.
+     *
+     * @param tenantResult The result, not null
+     */
+    public synchronized void addTenantResult(TenantResult tenantResult) {
+        tenantResults.put(tenantResult.getTenantName(), tenantResult);
+    }
+
+    /**
+     * @return The results of the tenants whose database update was performed, in the order of the tenants, not null
+     */
+    public synchronized List<TenantResult> getTenantResults() {
+        List<TenantResult> result = new ArrayList<>();
+        for (TenantResult tenantResult : tenantResults.values()) {
+            if (tenantResult != null) {
+                result.add(tenantResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The results of the tenants whose database update failed, not null
+     */
+    public List<TenantResult> getFailedTenantResults() {
+        List<TenantResult> failedTenantResults = new ArrayList<>();
+        for (TenantResult tenantResult : getTenantResults()) {
+            if (tenantResult.isFailed()) {
+                failedTenantResults.add(tenantResult);
+            }
+        }
+        return failedTenantResults;
+    }
+
+    /**
+     * @return True if the update of the database of at least one tenant failed
+     */
+    public boolean hasFailures() {
+        return !getFailedTenantResults().isEmpty();
+    }
+
+    /**
+     * @return A summary of the results with one line per tenant, not null
+     */
+    @Override
+    public String toString() {
+        List<TenantResult> results = getTenantResults();
+        int nrOfFailures = getFailedTenantResults().size();
+        StringBuilder report = new StringBuilder();
+        report.append("Updated the databases of ").append(results.size()).append(" tenant(s), ").append(nrOfFailures).append(" failure(s):\n");
+        for (TenantResult tenantResult : results) {
+            report.append("  ").append(tenantResult).append('\n');
+        }
+        return report.toString();
+    }
+
+
+    /**
+     * The result of the update of the database of a single tenant.
+     */
+    public static class TenantResult {
+
+        private String tenantName;
+        /* True if scripts were executed on the database */
+        private boolean updated;
+        /* The error that occurred during the update, null if the update was successful */
+        private Throwable error;
+        /* The duration of the update */
+        private long durationMs;
+
+
+        public TenantResult(String tenantName, boolean updated, Throwable error, long durationMs) {
+            this.tenantName = tenantName;
+            this.updated = updated;
+            this.error = error;
+            this.durationMs = durationMs;
+        }
+
+
+        public String getTenantName() {
+            return tenantName;
+        }
+
+        public boolean isUpdated() {
+            return updated;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            String state;
+            if (error != null) {
+                state = "FAILED: " + error.getMessage();
+            } else if (updated) {
+                state = "updated";
+            } else {
+                state = "up to date";
+            }
+            return tenantName + ": " + state + " (" + durationMs + " ms)";
+        }
+    }
+}
@@ -90,6 +90,27 @@ public class DbMaintainProperties {
      */
     public static final String PROPERTY_IDENTIFIER_QUOTE_STRING = "database.identifierQuoteString";
 
+    /**
+     * Property indicating if the connections to the databases should be pooled
+     */
+    public static final String PROPERTY_DATASOURCE_POOL_ENABLED = "dataSource.pool.enabled";
+
+    /**
+     * Property for the max nr of pooled connections per database that the worker threads can use at the same time.
+     * One additional connection is reserved for the thread that runs the task.
+     */
+    public static final String PROPERTY_DATASOURCE_POOL_MAX_SIZE = "dataSource.pool.maxSize";
+
+    /**
+     * Property for the nr of seconds to wait for the validation of a pooled connection
+     */
+    public static final String PROPERTY_DATASOURCE_POOL_VALIDATION_TIMEOUT = "dataSource.pool.validationTimeout";
+
+    /**
+     * Property for the nr of milliseconds to wait for a pooled connection when all connections are in use
+     */
+    public static final String PROPERTY_DATASOURCE_POOL_MAX_WAIT = "dataSource.pool.maxWait";
+
     /**
      * Property indicating if deleting all data from all tables before updating is enabled
      */
@@ -120,6 +141,26 @@ public class DbMaintainProperties {
      */
     public static final String PROPERTY_LOWEST_ACCEPTABLE_SEQUENCE_VALUE = "sequenceUpdater.lowestAcceptableSequenceValue";
 
+    /**
+     * Property indicating if the constraints should be disabled by a single block of code executed on the database server, if supported
+     */
+    public static final String PROPERTY_SERVER_SIDE_CONSTRAINT_DISABLING = "constraintsDisabler.serverSide";
+
+    /**
+     * Property for the max nr of threads that disable constraints concurrently
+     */
+    public static final String PROPERTY_CONSTRAINTS_DISABLER_THREAD_COUNT = "constraintsDisabler.threadCount";
+
+    /**
+     * Property indicating if the disabled constraints should be recorded so that they can be enabled again
+     */
+    public static final String PROPERTY_RECORD_DISABLED_CONSTRAINTS = "constraintsDisabler.recordDisabledConstraints";
+
+    /**
+     * Property for the name of the table in which the disabled constraints are recorded
+     */
+    public static final String PROPERTY_DISABLED_CONSTRAINTS_TABLE_NAME = "constraintsDisabler.disabledConstraintsTableName";
+
     /**
      * The key of the property that specifies of which schemas nothing should be dropped
      */
@@ -189,6 +230,16 @@ public class DbMaintainProperties {
      * Property key for the tables that should not be cleaned
      */
     public static final String PROPERTY_PRESERVE_DATA_TABLES = "dbMaintainer.preserveDataOnly.tables";
+
+    /**
+     * Property indicating if the tables should be truncated instead of deleting all records when cleaning, if supported
+     */
+    public static final String PROPERTY_TRUNCATE_TABLES_WHEN_CLEANING = "dbCleaner.truncate";
+
+    /**
+     * Property for the max nr of threads that delete the records of tables concurrently when cleaning
+     */
+    public static final String PROPERTY_DB_CLEANER_THREAD_COUNT = "dbCleaner.threadCount";
     
     /**
     * Property key for the tables that should be dropped in addition
@@ -246,6 +297,11 @@ public class DbMaintainProperties {
     */
     public static final String PROPERTY_PURGE_TYPES = "dbMaintainer.purge.types";    
 
+    /**
+     * Property indicating if a schema without items to preserve should be cleared at once instead of item by item, if supported
+     */
+    public static final String PROPERTY_CLEAR_SCHEMAS_AT_ONCE = "dbClearer.clearSchemasAtOnce";
+
     /* The key of the property that specifies the database table in which the DB version is stored */
     public static final String PROPERTY_EXECUTED_SCRIPTS_TABLE_NAME = "dbMaintainer.executedScriptsTableName";
 
@@ -327,6 +383,48 @@ public class DbMaintainProperties {
 
     public static final String PROPERTY_SCRIPT_PARAMETER_FILE = "dbMaintainer.scriptParameterFile";
 
+    /**
+     * Property for the directory in which the statements of parsed scripts are cached, empty to disable the cache
+     */
+    public static final String PROPERTY_PARSED_SCRIPT_CACHE_DIRECTORY = "dbMaintainer.script.parsedScriptCache.directory";
+
+    /**
+     * Property for the max nr of consecutive DML statements the JDBC script runner sends to the database in one batch,
+     * 0 to disable batching
+     */
+    public static final String PROPERTY_JDBC_BATCH_SIZE = "dbMaintainer.jdbcScriptRunner.batchSize";
+
+    /**
+     * Property that indicates whether the scripts of different target databases can be executed concurrently
+     */
+    public static final String PROPERTY_PARALLEL_TARGET_DATABASES_ENABLED = "dbMaintainer.parallelExecution.targetDatabases.enabled";
+
+    /**
+     * Property for the max nr of independent repeatable scripts that are executed concurrently, 1 to execute them one by one
+     */
+    public static final String PROPERTY_PARALLEL_REPEATABLE_SCRIPTS_THREAD_COUNT = "dbMaintainer.parallelExecution.repeatableScripts.threadCount";
+
+    /**
+     * Property for the max nr of incremental scripts with the parallel qualifier that are executed concurrently, 1 to execute them one by one
+     */
+    public static final String PROPERTY_PARALLEL_INCREMENTAL_SCRIPTS_THREAD_COUNT = "dbMaintainer.parallelExecution.incrementalScripts.threadCount";
+
+    /**
+     * Property for the names of the tenants whose databases are updated by the multi-tenant db maintainer
+     */
+    public static final String PROPERTY_TENANT_NAMES = "dbMaintainer.tenants.names";
+
+    /**
+     * Property for the max nr of tenant databases that are updated concurrently
+     */
+    public static final String PROPERTY_TENANTS_THREAD_COUNT = "dbMaintainer.tenants.threadCount";
+
+    /**
+     * Prefix of the properties that override the common configuration for a tenant: this prefix followed by the
+     * name of the tenant and a dot, e.g. dbMaintainer.tenant.customerA.database.url
+     */
+    public static final String PROPERTY_TENANT_PREFIX = "dbMaintainer.tenant.";
+
     public static final String PROPERTY_IGNORE_DELETIONS = "dbMaintainer.ignoreDeletions";
 
     public static final String PROPERTY_SQL_PLUS_PRE_SCRIPT_FILE_PATH = "dbMaintainer.sqlPlusScriptRunner.preScriptFilePath";
@@ -69,6 +69,9 @@ public class FactoryContext {
     }
 
     public ScriptRepository createScriptRepository() {
+        if (mainFactory != null && mainFactory.getPreloadedScriptRepository() != null) {
+            return mainFactory.getPreloadedScriptRepository();
+        }
         Set<String> scriptLocationIndicators = new HashSet<>(getStringList(PROPERTY_SCRIPT_LOCATIONS, configuration));
         if (scriptLocationIndicators.isEmpty()) {
             throw new DbMaintainException("Unable to find scripts. No script locations specified.");
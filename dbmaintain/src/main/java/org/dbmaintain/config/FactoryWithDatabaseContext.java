@@ -19,10 +19,13 @@ import org.dbmaintain.MainFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.script.parser.ParsedScriptCache;
 import org.dbmaintain.script.parser.ScriptParserFactory;
+import org.dbmaintain.script.parser.impl.FileSystemParsedScriptCache;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 import org.dbmaintain.structure.model.DbItemType;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -30,6 +33,7 @@ import java.util.*;
 
 import static org.dbmaintain.config.ConfigUtils.getConfiguredClass;
 import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.dbmaintain.config.PropertyUtils.getBoolean;
 import static org.dbmaintain.config.PropertyUtils.getString;
 import static org.dbmaintain.config.PropertyUtils.getStringList;
 import static org.dbmaintain.structure.model.DbItemIdentifier.*;
@@ -59,6 +63,24 @@ public class FactoryWithDatabaseContext extends FactoryContext {
         return getItemIdentifier(TABLE, defaultDatabase.getDefaultSchemaName(), executedScriptsTableName, defaultDatabase, true);
     }
 
+    /**
+     * @return The tables in which the disabled constraints are recorded, one in the default schema of each database,
+     *         empty if the disabled constraints are not recorded, not null
+     */
+    public Set<DbItemIdentifier> getDisabledConstraintsTables() {
+        Set<DbItemIdentifier> result = new HashSet<DbItemIdentifier>();
+        if (!getBoolean(PROPERTY_RECORD_DISABLED_CONSTRAINTS, false, getConfiguration())) {
+            return result;
+        }
+        String disabledConstraintsTableName = getString(PROPERTY_DISABLED_CONSTRAINTS_TABLE_NAME, getConfiguration());
+        for (Database database : databases.getDatabases()) {
+            if (database != null) {
+                result.add(getItemIdentifier(TABLE, database.getDefaultSchemaName(), disabledConstraintsTableName, database, true));
+            }
+        }
+        return result;
+    }
+
     /**
      * @param propertyPreserveSchemas The preserve property name, not null
      * @return The configured set of schemas to preserve, not null
@@ -104,6 +126,18 @@ public class FactoryWithDatabaseContext extends FactoryContext {
         return databaseDialectScriptParserClassMap;
     }
 
+    /**
+     * @return The cache for parsed scripts, null if no cache directory is configured
+     */
+    public ParsedScriptCache createParsedScriptCache() {
+        String cacheDirectory = getString(PROPERTY_PARSED_SCRIPT_CACHE_DIRECTORY, null, getConfiguration());
+        if (cacheDirectory == null) {
+            return null;
+        }
+        boolean backSlashEscapingEnabled = PropertyUtils.getBoolean(PROPERTY_BACKSLASH_ESCAPING_ENABLED, getConfiguration());
+        return new FileSystemParsedScriptCache(new File(cacheDirectory), backSlashEscapingEnabled, getScriptParameters());
+    }
+
     protected Properties getScriptParameters() {
         String scriptParameterFile = PropertyUtils.getString(PROPERTY_SCRIPT_PARAMETER_FILE, null, getConfiguration());
         try {
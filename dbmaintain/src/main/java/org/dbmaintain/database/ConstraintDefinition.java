@@ -0,0 +1,89 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+/**
+ * Everything that is needed to enable a constraint again after it was disabled or dropped by the constraints disabler.
+ * For databases that can disable constraints (e.g. Oracle) the name of the constraint is enough. For databases in which
+ * constraints are dropped (e.g. PostgreSql), the definition of the constraint is kept so that it can be re-created.
+ * For not null constraints, the constraint name is the name of the column.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ConstraintDefinition {
+
+    /**
+     * The kinds of constraints. Constraints are enabled in the order of this enum: foreign keys last, since they can
+     * only be enabled once the unique constraints they refer to are enabled.
+     */
+    public enum Type {
+        UNIQUE, CHECK, NOT_NULL, FOREIGN_KEY
+    }
+
+    /* The schema of the table, not null */
+    private String schemaName;
+    /* The table of the constraint, not null */
+    private String tableName;
+    /* The name of the constraint or the column for not null constraints, not null */
+    private String constraintName;
+    /* The kind of constraint, not null */
+    private Type type;
+    /* The definition of the constraint, null if not needed to enable the constraint */
+    private String definition;
+
+
+    /**
+     * @param schemaName     The schema of the table, not null
+     * @param tableName      The table of the constraint, not null
+     * @param constraintName The name of the constraint or the column for not null constraints, not null
+     * @param type           The kind of constraint, not null
+     * @param definition     The definition of the constraint, null if not needed to enable the constraint
+     */
+    public ConstraintDefinition(String schemaName, String tableName, String constraintName, Type type, String definition) {
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.constraintName = constraintName;
+        this.type = type;
+        this.definition = definition;
+    }
+
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getConstraintName() {
+        return constraintName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    @Override
+    public String toString() {
+        return schemaName + "." + tableName + "." + constraintName;
+    }
+}
@@ -18,8 +18,9 @@ package org.dbmaintain.database;
 import static org.dbmaintain.structure.model.DbItemType.SCHEMA;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +44,9 @@ abstract public class Database {
     protected Set<String> schemaNames;
     protected IdentifierProcessor identifierProcessor;
 
+    /* The cached schema catalogs per schema name, null if nothing was cached yet */
+    private Map<String, SchemaCatalog> schemaCatalogs;
+
     protected Database(DatabaseConnection databaseConnection, IdentifierProcessor identifierProcessor) {
         this.databaseConnection = databaseConnection;
         this.identifierProcessor = identifierProcessor;
@@ -52,7 +56,12 @@ abstract public class Database {
             this.schemaNames.add(toCorrectCaseIdentifier(schemaName));
         }
         if (supportsSetDatabaseDefaultSchema()) {
-            setDatabaseDefaultSchema();
+            // also set the default schema on the connections of other threads, e.g. workers that execute scripts concurrently
+            getSQLHandler().registerConnectionInitializer(getDataSource(), new SQLHandler.ConnectionInitializer() {
+                public void initialize() {
+                    setDatabaseDefaultSchema();
+                }
+            });
         }
     }
 
@@ -105,6 +114,37 @@ abstract public class Database {
         return schemaNames;
     }
 
+    /**
+     * Gets a snapshot of the items of the given schema. The snapshot is cached until the metadata cache is
+     * invalidated: this happens when items are dropped using {@link #drop} and when DDL statements are executed by
+     * the script runner. Code that changes the structure of the database in some other way should call
+     * {@link #invalidateMetadataCache} afterwards.
+     *
+     * @param schemaName The schema, not null
+     * @return The snapshot, not null
+     */
+    final public synchronized SchemaCatalog getSchemaCatalog(String schemaName) {
+        if (schemaCatalogs == null) {
+            schemaCatalogs = new HashMap<String, SchemaCatalog>();
+        }
+        SchemaCatalog schemaCatalog = schemaCatalogs.get(schemaName);
+        if (schemaCatalog == null) {
+            schemaCatalog = new SchemaCatalog(this, schemaName);
+            schemaCatalogs.put(schemaName, schemaCatalog);
+        }
+        return schemaCatalog;
+    }
+
+    /**
+     * Discards the cached schema catalogs, so that the metadata is queried again the next time it is needed.
+     * Snapshots that were already handed out are not changed.
+     */
+    final public synchronized void invalidateMetadataCache() {
+        if (schemaCatalogs != null) {
+            schemaCatalogs.clear();
+        }
+    }
+
     /**
      * Returns the names of all tables in the default schema.
      *
@@ -127,15 +167,58 @@ abstract public class Database {
      * 
      * For example: If TabA has a Parent TabB and TabA is parent of TabC the returned order would be TabB, TabA, TabC
      * 
-     * Warning: Cycles like TabA refers to TabB which refers to TabA are not guaranteed to be handled correctly or to be detected
+     * Tables that are part of a cycle, like TabA refers to TabB which refers to TabA, are kept together, see {@link TableDependencyGraph}
      * 
      * @param schemaName The schema, not null
      * @return The names of all tables in the database - sorted
      */
     public List<String> getTableNamesSortedAccordingToConstraints(String schemaName) {
-    	return new ArrayList<String>(getTableNames(schemaName));
+    	return new ArrayList<String>(getTableDependencyGraph(schemaName).getSortedTableNames());
+    }
+
+    /**
+     * Returns the graph of the foreign key constraints between the tables of the given schema. Next to the sorted
+     * table names, the graph also contains the levels of tables that can be handled concurrently and the cycles.
+     *
+     * @param schemaName The schema, not null
+     * @return The graph, not null
+     */
+    public TableDependencyGraph getTableDependencyGraph(String schemaName) {
+        return new TableDependencyGraph(getTableNames(schemaName), getTableChildParentRelations(schemaName));
+    }
+
+    /**
+     * Returns the parent tables of each table: the tables that have to come before the table when sorting the tables
+     * according to the foreign key constraints. By default there are no relations: override this for databases that
+     * can retrieve the foreign keys.
+     *
+     * @param schemaName The schema, not null
+     * @return The parent table names per child table name, not null
+     */
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return new HashMap<String, Set<String>>();
     }
 
+    /**
+     * Loads the child parent relations using a single query. Each record of the query should contain the name of the
+     * child table followed by the name of a parent table.
+     *
+     * @param sql        The query, not null
+     * @param parameters The parameters of the query, not null
+     * @return The parent table names per child table name, not null
+     */
+    protected Map<String, Set<String>> getTableChildParentRelations(String sql, List<?> parameters) {
+        Map<String, Set<String>> childParentRelations = new HashMap<String, Set<String>>();
+        for (String[] record : getSQLHandler().getRecords(sql, parameters, getDataSource())) {
+            Set<String> parents = childParentRelations.get(record[0]);
+            if (parents == null) {
+                parents = new HashSet<String>();
+                childParentRelations.put(record[0], parents);
+            }
+            parents.add(record[1]);
+        }
+        return childParentRelations;
+    }
     
     /**
      * Sorts the given tables according to parent child relations passed as 2nd parameter.
@@ -144,29 +227,7 @@ abstract public class Database {
      * @return The passed tables sorted
      */
     public static List<String> sortAccordingToConstraints(List<String> tableNames, final Map<String, Set<String>> childParentRelations) {
-    	// Using Collections.sort doesn't work since the sort order isn't associative
-    	for (int i = 0; i < tableNames.size(); i++) {
-    		for (int j = i + 1; j < tableNames.size(); j++) {
-        		if (compareTables(tableNames.get(i), tableNames.get(j), childParentRelations) > 0) {
-        			Collections.swap(tableNames, i, j);
-        		}
-        	}	
-    	}
-    	return tableNames;
-    }
-    
-    private static int compareTables(String t1, String t2, Map<String, Set<String>> childParentRelations) {
-		if (childParentRelations.containsKey(t1) 
-				&& childParentRelations.get(t1).contains(t2)) {
-			return 1;
-		}
-		else if (childParentRelations.containsKey(t2) 
-				&& childParentRelations.get(t2).contains(t1)) {
-			return -1;
-		}
-		else {
-			return 0;
-		}
+    	return new ArrayList<String>(new TableDependencyGraph(tableNames, childParentRelations).getSortedTableNames());
     }
 
     /**
@@ -706,6 +767,15 @@ abstract public class Database {
     * @param itemName Name of the item which shall be dropped, not null
     */
     final public void drop(DbItemType type, String schemaName, String itemName) {
+    	try {
+    	    doDrop(type, schemaName, itemName);
+    	} finally {
+    	    // also invalidated when the drop failed, it could have been partially performed
+    	    invalidateMetadataCache();
+    	}
+    }
+
+    private void doDrop(DbItemType type, String schemaName, String itemName) {
     	switch (type) {
     		case DATABASE_LINK:
     			dropDatabaseLink(schemaName, itemName);
@@ -777,6 +847,294 @@ abstract public class Database {
      */
     public abstract void disableValueConstraints(String schemaName);
 
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on all table in the given schema using a single
+     * block of code that is executed on the database server. The constraints are looked up and disabled by the server
+     * itself in one round trip, instead of returning all constraints to the client and sending a statement for each of
+     * them. Only available if {@link #supportsServerSideConstraintDisabling()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of disabled constraints
+     */
+    public int disableReferentialConstraintsServerSide(String schemaName) {
+        throw new UnsupportedOperationException("Server-side disabling of constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on all tables in the given schema using a single block of code
+     * that is executed on the database server, see {@link #disableReferentialConstraintsServerSide(String)}.
+     * Only available if {@link #supportsServerSideConstraintDisabling()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of disabled constraints
+     */
+    public int disableValueConstraintsServerSide(String schemaName) {
+        throw new UnsupportedOperationException("Server-side disabling of constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Returns the definitions of the referential constraints that {@link #disableReferentialConstraints(String)}
+     * would disable. This is used to record the constraints so that they can be enabled again later on.
+     * Only available if {@link #supportsConstraintEnabling()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The constraints, not null
+     */
+    public List<ConstraintDefinition> getReferentialConstraintDefinitions(String schemaName) {
+        throw new UnsupportedOperationException("Enabling constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Returns the definitions of the value constraints that {@link #disableValueConstraints(String)} would disable.
+     * This is used to record the constraints so that they can be enabled again later on.
+     * Only available if {@link #supportsConstraintEnabling()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The constraints, not null
+     */
+    public List<ConstraintDefinition> getValueConstraintDefinitions(String schemaName) {
+        throw new UnsupportedOperationException("Enabling constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Enables the given constraint again without checking the existing data. This is fast since no data needs to be
+     * read. Constraints that do not support this are checked immediately. Use {@link #validateConstraint} afterwards
+     * to check the existing data. Only available if {@link #supportsConstraintEnabling()} returns true.
+     *
+     * @param constraint The constraint, not null
+     */
+    public void enableConstraintWithoutValidation(ConstraintDefinition constraint) {
+        throw new UnsupportedOperationException("Enabling constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Checks the existing data for a constraint that was enabled using {@link #enableConstraintWithoutValidation}.
+     * Nothing is done if the constraint was already checked when it was enabled.
+     * Only available if {@link #supportsConstraintEnabling()} returns true.
+     *
+     * @param constraint The constraint, not null
+     */
+    public void validateConstraint(ConstraintDefinition constraint) {
+        throw new UnsupportedOperationException("Enabling constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Checks whether the given constraint is enabled, e.g. because it was already enabled again by an earlier attempt
+     * that failed halfway. Only available if {@link #supportsConstraintEnabling()} returns true.
+     *
+     * @param constraint The constraint, not null
+     * @return True if the constraint exists and is enabled
+     */
+    public boolean isConstraintEnabled(ConstraintDefinition constraint) {
+        throw new UnsupportedOperationException("Enabling constraints not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Removes all data from the given tables using truncate instead of delete statements. Truncating does not log
+     * the individual records, which makes it a lot faster for large tables. Foreign keys between the given tables are
+     * taken care of, but an exception is raised if one of the tables is referenced by a table that is not truncated.
+     * When an exception is raised, some of the tables may already be truncated.
+     * Only available if {@link #supportsTruncate()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables to truncate, not null
+     */
+    public void truncateTables(String schemaName, List<String> tableNames) {
+        throw new UnsupportedOperationException("Truncating tables not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Drops all items of the given schema at once, e.g. by dropping the schema itself and creating it again. The schema
+     * keeps its owner and the privileges that were granted on it. This is a lot faster than dropping the items one by
+     * one, but also drops items of types that are not handled by DbMaintain.
+     * Only available if {@link #supportsClearSchema} returns true for the schema.
+     *
+     * @param schemaName The schema, not null
+     */
+    public void clearSchema(String schemaName) {
+        throw new UnsupportedOperationException("Clearing a schema at once not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Returns the dependencies between the items of the given schema, e.g. the tables a view selects from, as known by
+     * the catalog of the database. Dependencies on items of other schemas are not returned.
+     * Only available if {@link #supportsItemDependencies()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    public List<ItemDependency> getItemDependencies(String schemaName) {
+        throw new UnsupportedOperationException("Retrieving item dependencies not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Loads the item dependencies using a single query. Each record of the query should contain the name and the type
+     * of the dependent item followed by the name and the type of the item it depends on. The types should be names of
+     * {@link DbItemType} values. Records with other types, e.g. null, are skipped, as are items that depend on themselves.
+     *
+     * @param sql        The query, not null
+     * @param parameters The parameters of the query, not null
+     * @return The dependencies, not null
+     */
+    protected List<ItemDependency> getItemDependencies(String sql, List<?> parameters) {
+        List<ItemDependency> itemDependencies = new ArrayList<ItemDependency>();
+        for (String[] record : getSQLHandler().getRecords(sql, parameters, getDataSource())) {
+            DbItemType type = toDbItemType(record[1]);
+            DbItemType referencedType = toDbItemType(record[3]);
+            if (type == null || referencedType == null || (type == referencedType && record[0].equals(record[2]))) {
+                continue;
+            }
+            itemDependencies.add(new ItemDependency(type, record[0], referencedType, record[2]));
+        }
+        return itemDependencies;
+    }
+
+    /**
+     * Retrieves the names of the items of a number of types of the given schema at once. This is used by
+     * {@link SchemaCatalog} to load the item names of a schema using a single catalog query instead of a query per
+     * item type. The items of the types that are not returned are retrieved using {@link #getDbItemsOfType}.
+     * Only available if {@link #supportsDbItemsPerType()} returns true.
+     *
+     * @param schemaName The schema, not null
+     * @return The names of the items per type, an entry for every type the query covers, not null
+     */
+    public Map<DbItemType, Set<String>> getDbItemsPerType(String schemaName) {
+        throw new UnsupportedOperationException("Retrieving the items of all types at once not supported for " + getSupportedDatabaseDialect());
+    }
+
+    /**
+     * Loads the names of the items of the given types using a single query. Each record of the query should contain
+     * the type of the item, as the name of a {@link DbItemType} value, followed by the name of the item. Records with
+     * other types are skipped.
+     *
+     * @param sql        The query, not null
+     * @param parameters The parameters of the query, not null
+     * @param types      The types that are covered by the query, not null
+     * @return The names of the items per type, an entry for every given type, not null
+     */
+    protected Map<DbItemType, Set<String>> getDbItemsPerType(String sql, List<?> parameters, DbItemType... types) {
+        Map<DbItemType, Set<String>> itemsPerType = new HashMap<DbItemType, Set<String>>();
+        for (DbItemType type : types) {
+            itemsPerType.put(type, new HashSet<String>());
+        }
+        for (String[] record : getSQLHandler().getRecords(sql, parameters, getDataSource())) {
+            Set<String> items = itemsPerType.get(toDbItemType(record[0]));
+            if (items != null) {
+                items.add(record[1]);
+            }
+        }
+        return itemsPerType;
+    }
+
+    private DbItemType toDbItemType(String typeName) {
+        if (typeName == null) {
+            return null;
+        }
+        for (DbItemType type : DbItemType.values()) {
+            if (type.name().equals(typeName.trim())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that none of the given tables is referenced by a foreign key of a table that is not part of the given tables.
+     * Each reference should contain the name of the referenced table, followed by the schema and the name of the
+     * referring table.
+     *
+     * @param schemaName The schema of the tables, not null
+     * @param tableNames The tables, not null
+     * @param references The foreign key references to the tables of the schema, not null
+     * @throws DatabaseException If one of the tables is referenced by another table
+     */
+    protected void assertNotReferencedByOtherTables(String schemaName, List<String> tableNames, List<String[]> references) {
+        Set<String> tableNameSet = new HashSet<String>(tableNames);
+        for (String[] reference : references) {
+            if (!tableNameSet.contains(reference[0])) {
+                continue;
+            }
+            if (!schemaName.equals(reference[1]) || !tableNameSet.contains(reference[2])) {
+                throw new DatabaseException("Unable to truncate table " + qualified(schemaName, reference[0]) + ". It is referenced by table " + qualified(reference[1], reference[2]) + ".");
+            }
+        }
+    }
+
+    /**
+     * Returns the statements that {@link #disableValueConstraints(String)} executes, grouped per table. Value
+     * constraints only affect the table they are defined on, so the statements of different tables can be executed
+     * independently, e.g. by different connections. The statements of one table should be executed in the given order.
+     *
+     * @param schemaName The schema, not null
+     * @return The statements per table name, null if the statements cannot be determined up front for this database
+     */
+    public Map<String, List<String>> getDisableValueConstraintsStatements(String schemaName) {
+        return null;
+    }
+
+    /**
+     * Executes one alter table statement per table, containing all given clauses for that table separated by commas.
+     * This way, all constraints of a table can be dropped in a single statement instead of one statement per
+     * constraint. The tables are altered in the order of the given map.
+     *
+     * @param schemaName              The schema, not null
+     * @param alterTableClausesPerTable The clauses per table name, e.g. 'drop constraint x', not null
+     */
+    protected void executeAlterTableClauses(String schemaName, Map<String, List<String>> alterTableClausesPerTable) {
+        executeStatementsPerTable(createAlterTableStatements(schemaName, alterTableClausesPerTable));
+    }
+
+    /**
+     * Creates one alter table statement per table, containing all given clauses for that table separated by commas.
+     *
+     * @param schemaName              The schema, not null
+     * @param alterTableClausesPerTable The clauses per table name, e.g. 'drop constraint x', not null
+     * @return The statement per table name, in the order of the given map, not null
+     */
+    protected Map<String, List<String>> createAlterTableStatements(String schemaName, Map<String, List<String>> alterTableClausesPerTable) {
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : alterTableClausesPerTable.entrySet()) {
+            StringBuilder sql = new StringBuilder("alter table ").append(qualified(schemaName, entry.getKey())).append(' ');
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(entry.getValue().get(i));
+            }
+            addPerTable(entry.getKey(), sql.toString(), statementsPerTable);
+        }
+        return statementsPerTable;
+    }
+
+    /**
+     * Executes the given statements table by table, in the order of the given map.
+     *
+     * @param statementsPerTable The statements per table name, not null
+     */
+    protected void executeStatementsPerTable(Map<String, List<String>> statementsPerTable) {
+        for (List<String> statements : statementsPerTable.values()) {
+            for (String statement : statements) {
+                getSQLHandler().execute(statement, getDataSource());
+            }
+        }
+    }
+
+    /**
+     * Adds the given value (e.g. an alter table clause or statement) to the values of the given table.
+     *
+     * @param tableName      The table, not null
+     * @param value          The value, not null
+     * @param valuesPerTable The values per table name, not null
+     */
+    protected void addPerTable(String tableName, String value, Map<String, List<String>> valuesPerTable) {
+        List<String> values = valuesPerTable.get(tableName);
+        if (values == null) {
+            values = new ArrayList<String>();
+            valuesPerTable.put(tableName, values);
+        }
+        values.add(value);
+    }
+
 
     /**
      * Returns the value of the sequence with the given name from the default schema.
@@ -1158,4 +1516,62 @@ abstract public class Database {
         return false;
     }
 
+    /**
+     * Indicates whether the underlying DBMS supports disabling all constraints of a schema using a single block of code
+     * that is executed on the database server (e.g. a PL/SQL anonymous block).
+     *
+     * @return True if server-side disabling of constraints is supported, false otherwise
+     */
+    public boolean supportsServerSideConstraintDisabling() {
+        return false;
+    }
+
+    /**
+     * Indicates whether constraints that were disabled can be enabled again, see {@link #enableConstraintWithoutValidation}.
+     *
+     * @return True if enabling constraints is supported, false otherwise
+     */
+    public boolean supportsConstraintEnabling() {
+        return false;
+    }
+
+    /**
+     * Indicates whether all items of the given schema can be dropped at once, see {@link #clearSchema}. Some databases
+     * do not allow to drop every schema, e.g. the PUBLIC schema.
+     *
+     * @param schemaName The schema, not null
+     * @return True if clearing the schema at once is supported, false otherwise
+     */
+    public boolean supportsClearSchema(String schemaName) {
+        return false;
+    }
+
+    /**
+     * Indicates whether the dependencies between items can be retrieved, see {@link #getItemDependencies}.
+     *
+     * @return True if retrieving item dependencies is supported, false otherwise
+     */
+    public boolean supportsItemDependencies() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the names of the items of a number of types can be retrieved at once, see
+     * {@link #getDbItemsPerType}.
+     *
+     * @return True if retrieving the items per type at once is supported, false otherwise
+     */
+    public boolean supportsDbItemsPerType() {
+        return false;
+    }
+
+    /**
+     * Indicates whether tables can be cleaned using {@link #truncateTables}.
+     *
+     * @return True if truncating tables is supported, false otherwise
+     */
+    public boolean supportsTruncate() {
+        return false;
+    }
+
 }
@@ -18,6 +18,7 @@ package org.dbmaintain.database;
 import org.dbmaintain.util.DbMaintainException;
 
 import javax.sql.DataSource;
+import java.util.List;
 import java.util.Set;
 
 public interface SQLHandler {
@@ -30,6 +31,16 @@ public interface SQLHandler {
      */
     void execute(String sql, DataSource dataSource);
 
+    /**
+     * Executes the given statements as a single JDBC batch. The statements should not return results. If one of the
+     * statements fails, the thrown exception identifies the failing statement, as if the statements were executed
+     * one by one using {@link #execute}.
+     *
+     * @param sqlStatements The sql statements, not null
+     * @param dataSource    The dataSource, not null
+     */
+    void executeBatch(List<String> sqlStatements, DataSource dataSource);
+
     /**
      * Executes the given statement and commits the changes to the database
      *
@@ -39,6 +50,16 @@ public interface SQLHandler {
      */
     int executeUpdateAndCommit(String sql, DataSource dataSource);
 
+    /**
+     * Executes the given parameterized statement once for each of the given lists of parameter values as a single
+     * JDBC batch and commits the changes to the database.
+     *
+     * @param sql             The sql string, with a ? for each parameter
+     * @param parameterValues The values for the parameters of the statement, one list per execution, not null
+     * @param dataSource      The dataSource, not null
+     */
+    void executeBatchAndCommit(String sql, List<? extends List<?>> parameterValues, DataSource dataSource);
+
     /**
      * Returns the long extracted from the result of the given query. If no value is found, a {@link DbMaintainException}
      * is thrown.
@@ -78,6 +99,64 @@ public interface SQLHandler {
     boolean exists(String sql, DataSource dataSource);
 
 
+    /**
+     * Returns the long extracted from the result of the given parameterized query. If no value is found, a
+     * {@link DbMaintainException} is thrown. The prepared statement is cached and reused for the same sql on the same
+     * connection.
+     *
+     * @param sql        The sql string for retrieving the items, with a ? for each parameter
+     * @param parameters The values for the parameters of the query, not null
+     * @param dataSource The dataSource, not null
+     * @return The long item value
+     */
+    long getItemAsLong(String sql, List<?> parameters, DataSource dataSource);
+
+    /**
+     * Returns the value extracted from the result of the given parameterized query. If no value is found, a
+     * {@link DbMaintainException} is thrown. The prepared statement is cached and reused for the same sql on the same
+     * connection.
+     *
+     * @param sql        The sql string for retrieving the items, with a ? for each parameter
+     * @param parameters The values for the parameters of the query, not null
+     * @param dataSource The dataSource, not null
+     * @return The string item value
+     */
+    String getItemAsString(String sql, List<?> parameters, DataSource dataSource);
+
+    /**
+     * Returns the items extracted from the result of the given parameterized query. The prepared statement is cached
+     * and reused for the same sql on the same connection.
+     *
+     * @param sql        The sql string for retrieving the items, with a ? for each parameter
+     * @param parameters The values for the parameters of the query, not null
+     * @param dataSource The dataSource, not null
+     * @return The items, not null
+     */
+    Set<String> getItemsAsStringSet(String sql, List<?> parameters, DataSource dataSource);
+
+    /**
+     * Returns true if the parameterized query returned a record. The prepared statement is cached and reused for the
+     * same sql on the same connection.
+     *
+     * @param sql        The sql string for checking the existence, with a ? for each parameter
+     * @param parameters The values for the parameters of the query, not null
+     * @param dataSource The dataSource, not null
+     * @return True if a record was returned
+     */
+    boolean exists(String sql, List<?> parameters, DataSource dataSource);
+
+    /**
+     * Returns the values of all columns of the records returned by the given parameterized query. The prepared
+     * statement is cached and reused for the same sql on the same connection.
+     *
+     * @param sql        The sql string for retrieving the records, with a ? for each parameter
+     * @param parameters The values for the parameters of the query, not null
+     * @param dataSource The dataSource, not null
+     * @return The column values per record, in the order of the result set, not null
+     */
+    List<String[]> getRecords(String sql, List<?> parameters, DataSource dataSource);
+
+
     /**
      * Starts a transaction by turning of auto commit.
      * Make sure to call endTransaction at the end of the transaction
@@ -102,6 +181,50 @@ public interface SQLHandler {
      */
     void endTransactionAndRollback(DataSource dataSource);
 
+    /**
+     * Executes the given work in a transaction on the connection of the current thread. The transaction is committed
+     * when the work completes and rolled back when it throws an exception. If the current thread is already executing
+     * work in a transaction for the same data source, the work joins that transaction: it is then committed or rolled
+     * back by the outermost transaction.
+     *
+     * @param dataSource The data source, not null
+     * @param work       The work to execute, not null
+     * @return The result of the work
+     */
+    <T> T executeInTransaction(DataSource dataSource, TransactionalWork<T> work);
+
+
+    /**
+     * Leases a connection to the given data source to the current thread. All statements that the current thread
+     * executes on the data source use this connection until the lease is released. Leases can be nested: the
+     * connection is only released when every lease was released.
+     * <p/>
+     * Use this when statements are executed by worker threads: it gives each worker its own connection and makes
+     * sure the connection is closed, or returned to the pool, when the worker is done.
+     *
+     * @param dataSource The data source, not null
+     */
+    void leaseConnection(DataSource dataSource);
+
+    /**
+     * Releases a lease that was taken by the current thread using {@link #leaseConnection}. When the last lease is
+     * released, the connection is closed. Changes that were not committed are rolled back.
+     *
+     * @param dataSource The data source, not null
+     */
+    void releaseConnection(DataSource dataSource);
+
+    /**
+     * Registers the initialization of the connections to the given data source, e.g. setting the default schema.
+     * The initializer is executed on the connection of the current thread right away, and on every connection to
+     * the data source that is created afterwards, e.g. the connections leased by worker threads. Statements that the
+     * initializer executes through this SQLHandler use the connection that is initialized.
+     *
+     * @param dataSource            The data source, not null
+     * @param connectionInitializer The initializer, not null
+     */
+    void registerConnectionInitializer(DataSource dataSource, ConnectionInitializer connectionInitializer);
+
 
     /**
      * Closes all connections that were created and cached by this SQLHandler. This method must always be invoked before
@@ -109,4 +232,27 @@ public interface SQLHandler {
      */
     void closeAllConnections();
 
+
+    /**
+     * Work that is executed in a transaction, see {@link SQLHandler#executeInTransaction}
+     */
+    interface TransactionalWork<T> {
+
+        /**
+         * @return The result of the work
+         */
+        T execute();
+    }
+
+    /**
+     * Initialization of a new connection, see {@link SQLHandler#registerConnectionInitializer}
+     */
+    interface ConnectionInitializer {
+
+        /**
+         * Initializes the connection of the current thread.
+         */
+        void initialize();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.dbmaintain.structure.model.DbItemType;
+
+import java.util.*;
+
+import static java.util.Collections.unmodifiableSet;
+import static org.dbmaintain.structure.model.DbItemType.SCHEMA;
+
+/**
+ * Snapshot of the database items of a schema. The names of the items are queried the first time they are needed and
+ * are then kept for the lifetime of the snapshot. This way, an operation that looks at the items of a schema a number
+ * of times, e.g. to check the items to preserve and then drop the other items, only queries the database catalog once.
+ * For the databases that support it, the names of the items of most types are loaded using a single catalog query,
+ * the other types are queried once per item type.
+ * <p/>
+ * The snapshot is not updated when items are created or dropped: get a new snapshot using
+ * {@link Database#getSchemaCatalog} when the schema was changed.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SchemaCatalog {
+
+    /* The database of the schema, not null */
+    private Database database;
+    /* The name of the schema, not null */
+    private String schemaName;
+
+    /* The names of the items per type that were already loaded */
+    private Map<DbItemType, Set<String>> itemNamesPerType = new EnumMap<>(DbItemType.class);
+    /* True if the names of the items that the database can return in one query were loaded */
+    private boolean itemNamesPerTypeLoaded;
+    /* The names of the columns per table that were already loaded */
+    private Map<String, Set<String>> columnNamesPerTable = new HashMap<>();
+    /* The names of the identity columns per table that were already loaded */
+    private Map<String, Set<String>> identityColumnNamesPerTable = new HashMap<>();
+    /* The graph of the foreign key constraints between the tables, null if not loaded yet */
+    private TableDependencyGraph tableDependencyGraph;
+
+
+    /**
+     * @param database   The database of the schema, not null
+     * @param schemaName The name of the schema, not null
+     */
+    public SchemaCatalog(Database database, String schemaName) {
+        this.database = database;
+        this.schemaName = schemaName;
+    }
+
+
+    public Database getDatabase() {
+        return database;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+
+    /**
+     * Gets the names of the items of the given type in the schema. An empty set is returned if the database does not
+     * support items of the given type.
+     *
+     * @param type The type of the items, not SCHEMA
+     * @return The names of the items, not null
+     */
+    public synchronized Set<String> getItemNames(DbItemType type) {
+        if (type == SCHEMA) {
+            throw new IllegalArgumentException(type + " is not a valid argument for getItemNames");
+        }
+        if (!itemNamesPerTypeLoaded) {
+            loadItemNamesPerType();
+        }
+        Set<String> itemNames = itemNamesPerType.get(type);
+        if (itemNames == null) {
+            if (database.supports(type)) {
+                itemNames = unmodifiableSet(new HashSet<>(database.getDbItemsOfType(type, schemaName)));
+            } else {
+                itemNames = Collections.emptySet();
+            }
+            itemNamesPerType.put(type, itemNames);
+        }
+        return itemNames;
+    }
+
+    /**
+     * Loads the names of the items of all types that the database can return using a single query.
+     */
+    protected void loadItemNamesPerType() {
+        itemNamesPerTypeLoaded = true;
+        if (!database.supportsDbItemsPerType()) {
+            return;
+        }
+        for (Map.Entry<DbItemType, Set<String>> entry : database.getDbItemsPerType(schemaName).entrySet()) {
+            if (database.supports(entry.getKey())) {
+                itemNamesPerType.put(entry.getKey(), unmodifiableSet(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * @param type     The type of the item, not SCHEMA
+     * @param itemName The name of the item as stored in the database, not null
+     * @return True if the schema contains an item of the given type with the given name
+     */
+    public boolean containsItem(DbItemType type, String itemName) {
+        return getItemNames(type).contains(itemName);
+    }
+
+    /**
+     * @return The names of the tables in the schema, not null
+     */
+    public Set<String> getTableNames() {
+        return getItemNames(DbItemType.TABLE);
+    }
+
+    /**
+     * @return The names of the tables sorted according to the foreign key constraints: parent tables come before
+     *         their child tables, not null
+     */
+    public List<String> getTableNamesSortedAccordingToConstraints() {
+        return getTableDependencyGraph().getSortedTableNames();
+    }
+
+    /**
+     * @return The graph of the foreign key constraints between the tables in the schema, not null
+     */
+    public synchronized TableDependencyGraph getTableDependencyGraph() {
+        if (tableDependencyGraph == null) {
+            tableDependencyGraph = new TableDependencyGraph(getTableNames(), database.getTableChildParentRelations(schemaName));
+        }
+        return tableDependencyGraph;
+    }
+
+    /**
+     * Gets the names of the columns of the given table.
+     *
+     * @param tableName The table, not null
+     * @return The names of the columns, empty if the table does not exist, not null
+     */
+    public synchronized Set<String> getColumnNames(String tableName) {
+        Set<String> columnNames = columnNamesPerTable.get(tableName);
+        if (columnNames == null) {
+            columnNames = unmodifiableSet(new HashSet<>(database.getColumnNames(schemaName, tableName)));
+            columnNamesPerTable.put(tableName, columnNames);
+        }
+        return columnNames;
+    }
+
+    /**
+     * Gets the names of the identity columns of the given table. An empty set is returned if the database does not
+     * support identity columns.
+     *
+     * @param tableName The table, not null
+     * @return The names of the identity columns, not null
+     */
+    public synchronized Set<String> getIdentityColumnNames(String tableName) {
+        Set<String> identityColumnNames = identityColumnNamesPerTable.get(tableName);
+        if (identityColumnNames == null) {
+            if (database.supportsIdentityColumns()) {
+                identityColumnNames = unmodifiableSet(new HashSet<>(database.getIdentityColumnNames(schemaName, tableName)));
+            } else {
+                identityColumnNames = Collections.emptySet();
+            }
+            identityColumnNamesPerTable.put(tableName, identityColumnNames);
+        }
+        return identityColumnNames;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import java.util.*;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Graph of the dependencies between the tables of a schema, e.g. because of foreign keys. The graph determines in which
+ * order the tables can be handled so that a table always comes after the tables it depends on.
+ * <p/>
+ * The tables are sorted topologically using Kahn's algorithm. Tables that depend on each other, directly or through
+ * other tables (a cycle), can never be ordered correctly: these are detected using Tarjan's algorithm for strongly
+ * connected components and are kept together as a group. The group is then sorted as if it were a single table.
+ * <p/>
+ * The sorted tables are also split in levels: the tables of a level only depend on tables of earlier levels. Tables of
+ * the same level do not depend on each other and can therefore be handled concurrently.
+ * <p/>
+ * Both algorithms are linear in the number of tables and dependencies. If there is a choice, tables are kept in the
+ * order in which they were given.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class TableDependencyGraph {
+
+    /* The names of the tables in the order in which they were given */
+    private List<String> tableNames;
+    /* The tables sorted so that each table comes after the tables it depends on */
+    private List<String> sortedTableNames = new ArrayList<String>();
+    /* The sorted tables split in levels */
+    private List<List<String>> levels = new ArrayList<List<String>>();
+    /* The groups of tables that depend on each other */
+    private List<List<String>> cycles = new ArrayList<List<String>>();
+
+
+    /**
+     * Creates the graph. Dependencies on tables that are not part of the given table names are ignored.
+     *
+     * @param tableNames   The names of the tables, not null
+     * @param dependencies The names of the tables that have to come before a table, per table name, not null
+     */
+    public TableDependencyGraph(Collection<String> tableNames, Map<String, Set<String>> dependencies) {
+        this.tableNames = new ArrayList<String>(new LinkedHashSet<String>(tableNames));
+        sort(dependencies);
+    }
+
+
+    /**
+     * @return The table names sorted so that a table comes after all the tables it depends on, except for tables that
+     *         are part of the same cycle, not null
+     */
+    public List<String> getSortedTableNames() {
+        return unmodifiableList(sortedTableNames);
+    }
+
+    /**
+     * @return The sorted table names split in levels: the tables of a level only depend on tables of earlier levels
+     *         (or on tables of the same cycle), not null
+     */
+    public List<List<String>> getLevels() {
+        return unmodifiableList(levels);
+    }
+
+    /**
+     * @return The groups of tables that depend on each other, also a table that depends on itself, empty if there are no cycles, not null
+     */
+    public List<List<String>> getCycles() {
+        return unmodifiableList(cycles);
+    }
+
+    /**
+     * @return True if some of the tables depend on each other
+     */
+    public boolean hasCycles() {
+        return !cycles.isEmpty();
+    }
+
+
+    protected void sort(Map<String, Set<String>> dependencies) {
+        int nrOfTables = tableNames.size();
+        Map<String, Integer> tableIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < nrOfTables; i++) {
+            tableIndexes.put(tableNames.get(i), i);
+        }
+
+        // successors: the tables that have to come after each table
+        List<List<Integer>> successors = new ArrayList<List<Integer>>(nrOfTables);
+        for (int i = 0; i < nrOfTables; i++) {
+            successors.add(new ArrayList<Integer>());
+        }
+        boolean[] selfDependent = new boolean[nrOfTables];
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            Integer tableIndex = tableIndexes.get(entry.getKey());
+            if (tableIndex == null) {
+                continue;
+            }
+            for (String dependency : entry.getValue()) {
+                Integer dependencyIndex = tableIndexes.get(dependency);
+                if (dependencyIndex == null) {
+                    continue;
+                }
+                if (dependencyIndex.equals(tableIndex)) {
+                    selfDependent[tableIndex] = true;
+                } else {
+                    successors.get(dependencyIndex).add(tableIndex);
+                }
+            }
+        }
+
+        int[] componentOfTable = new int[nrOfTables];
+        int nrOfComponents = findStronglyConnectedComponents(successors, componentOfTable);
+
+        // the members of each component, in the order of the given tables
+        List<List<Integer>> componentMembers = new ArrayList<List<Integer>>(nrOfComponents);
+        for (int i = 0; i < nrOfComponents; i++) {
+            componentMembers.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < nrOfTables; i++) {
+            componentMembers.get(componentOfTable[i]).add(i);
+        }
+
+        // the dependencies between the components
+        List<List<Integer>> componentSuccessors = new ArrayList<List<Integer>>(nrOfComponents);
+        for (int i = 0; i < nrOfComponents; i++) {
+            componentSuccessors.add(new ArrayList<Integer>());
+        }
+        int[] nrOfPendingDependencies = new int[nrOfComponents];
+        for (int i = 0; i < nrOfTables; i++) {
+            for (Integer successor : successors.get(i)) {
+                if (componentOfTable[i] != componentOfTable[successor]) {
+                    componentSuccessors.get(componentOfTable[i]).add(componentOfTable[successor]);
+                    nrOfPendingDependencies[componentOfTable[successor]]++;
+                }
+            }
+        }
+
+        // Kahn's algorithm on the components, one level at a time
+        Comparator<Integer> componentOrder = createComponentOrder(componentMembers);
+        List<Integer> levelComponents = new ArrayList<Integer>();
+        for (int i = 0; i < nrOfComponents; i++) {
+            if (nrOfPendingDependencies[i] == 0) {
+                levelComponents.add(i);
+            }
+        }
+        while (!levelComponents.isEmpty()) {
+            Collections.sort(levelComponents, componentOrder);
+            List<String> level = new ArrayList<String>();
+            List<Integer> nextLevelComponents = new ArrayList<Integer>();
+            for (Integer component : levelComponents) {
+                List<String> members = new ArrayList<String>();
+                for (Integer member : componentMembers.get(component)) {
+                    members.add(tableNames.get(member));
+                }
+                if (members.size() > 1 || selfDependent[componentMembers.get(component).get(0)]) {
+                    cycles.add(unmodifiableList(members));
+                }
+                level.addAll(members);
+
+                for (Integer successor : componentSuccessors.get(component)) {
+                    if (--nrOfPendingDependencies[successor] == 0) {
+                        nextLevelComponents.add(successor);
+                    }
+                }
+            }
+            sortedTableNames.addAll(level);
+            levels.add(unmodifiableList(level));
+            levelComponents = nextLevelComponents;
+        }
+    }
+
+    /**
+     * Tarjan's algorithm, implemented without recursion so that long chains of dependencies cannot cause a stack overflow.
+     *
+     * @param successors       The tables that have to come after each table, not null
+     * @param componentOfTable Filled in with the component of each table, not null
+     * @return The number of components
+     */
+    protected int findStronglyConnectedComponents(List<List<Integer>> successors, int[] componentOfTable) {
+        int nrOfTables = successors.size();
+        int[] index = new int[nrOfTables];
+        int[] lowLink = new int[nrOfTables];
+        int[] nextSuccessorPosition = new int[nrOfTables];
+        boolean[] onStack = new boolean[nrOfTables];
+        Arrays.fill(index, -1);
+
+        Deque<Integer> stack = new ArrayDeque<Integer>();
+        Deque<Integer> callStack = new ArrayDeque<Integer>();
+        int nextIndex = 0;
+        int nrOfComponents = 0;
+        for (int root = 0; root < nrOfTables; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            index[root] = lowLink[root] = nextIndex++;
+            stack.push(root);
+            onStack[root] = true;
+            callStack.push(root);
+
+            while (!callStack.isEmpty()) {
+                int table = callStack.peek();
+                List<Integer> tableSuccessors = successors.get(table);
+                if (nextSuccessorPosition[table] < tableSuccessors.size()) {
+                    int successor = tableSuccessors.get(nextSuccessorPosition[table]++);
+                    if (index[successor] == -1) {
+                        index[successor] = lowLink[successor] = nextIndex++;
+                        stack.push(successor);
+                        onStack[successor] = true;
+                        callStack.push(successor);
+                    } else if (onStack[successor]) {
+                        lowLink[table] = Math.min(lowLink[table], index[successor]);
+                    }
+                    continue;
+                }
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int caller = callStack.peek();
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[table]);
+                }
+                if (lowLink[table] == index[table]) {
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        componentOfTable[member] = nrOfComponents;
+                    } while (member != table);
+                    nrOfComponents++;
+                }
+            }
+        }
+        return nrOfComponents;
+    }
+
+    /**
+     * Orders the components according to the first of their members, so that the given order of the tables is kept if possible.
+     */
+    protected Comparator<Integer> createComponentOrder(final List<List<Integer>> componentMembers) {
+        return new Comparator<Integer>() {
+            public int compare(Integer component1, Integer component2) {
+                return componentMembers.get(component1).get(0).compareTo(componentMembers.get(component2).get(0));
+            }
+        };
+    }
+}
@@ -17,11 +17,21 @@ package org.dbmaintain.database.impl;
 
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
 import org.dbmaintain.database.SQLHandler;
 
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for an IBM DB2 database
  *
@@ -55,7 +65,65 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = '" + schemaName + "' and TYPE = 'T'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = ? and TYPE = 'T'", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select REFTABNAME, TABNAME from SYSCAT.REFERENCES " +
+                "where TABSCHEMA = ? and REFTABSCHEMA = ? and DELETERULE in ('A', 'R')", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Drops the schema with all its items using the ADMIN_DROP_SCHEMA procedure and creates it again with the same owner,
+     * after which the privileges that were granted on the schema are granted again.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        SQLHandler sqlHandler = getSQLHandler();
+        String owner = sqlHandler.getItemAsString("select OWNER from SYSCAT.SCHEMATA where SCHEMANAME = ?", asList(schemaName), getDataSource());
+        List<String[]> privileges = sqlHandler.getRecords("select GRANTEE, GRANTEETYPE, ALTERINAUTH, CREATEINAUTH, DROPINAUTH from SYSCAT.SCHEMAAUTH where SCHEMANAME = ? and GRANTEE <> ?", asList(schemaName, owner), getDataSource());
+
+        Connection connection = null;
+        CallableStatement callableStatement = null;
+        try {
+            connection = getDataSource().getConnection();
+            callableStatement = connection.prepareCall("call SYSPROC.ADMIN_DROP_SCHEMA(?, NULL, ?, ?)");
+            callableStatement.setString(1, schemaName);
+            callableStatement.setNull(2, Types.VARCHAR);
+            callableStatement.setNull(3, Types.VARCHAR);
+            callableStatement.registerOutParameter(2, Types.VARCHAR);
+            callableStatement.registerOutParameter(3, Types.VARCHAR);
+            callableStatement.execute();
+            if (callableStatement.getString(3) != null) {
+                throw new DatabaseException("Unable to drop schema " + schemaName + ". See error table " + callableStatement.getString(2) + "." + callableStatement.getString(3) + " for more information.");
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to drop schema " + schemaName, e);
+        } finally {
+            closeQuietly(connection, callableStatement, null);
+        }
+
+        sqlHandler.execute("create schema " + quoted(schemaName) + " authorization " + quoted(owner), getDataSource());
+        String[] privilegeNames = {"alterin", "createin", "dropin"};
+        for (String[] privilege : privileges) {
+            String grantee = "PUBLIC".equals(privilege[0]) ? "public" : ("G".equals(privilege[1]) ? "group " : "R".equals(privilege[1]) ? "role " : "user ") + quoted(privilege[0]);
+            for (int i = 0; i < privilegeNames.length; i++) {
+                String authorization = privilege[i + 2];
+                if ("Y".equals(authorization) || "G".equals(authorization)) {
+                    sqlHandler.execute("grant " + privilegeNames[i] + " on schema " + quoted(schemaName) + " to " + grantee + ("G".equals(authorization) ? " with grant option" : ""), getDataSource());
+                }
+            }
+        }
     }
 
     /**
@@ -66,7 +134,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -77,7 +145,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = '" + schemaName + "' and TYPE = 'V'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABNAME from SYSCAT.TABLES where TABSCHEMA = ? and TYPE = 'V'", asList(schemaName), getDataSource());
     }
 
     /**
@@ -87,7 +155,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getSequenceNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SEQNAME from SYSCAT.SEQUENCES where SEQTYPE = 'S' AND SEQSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQNAME from SYSCAT.SEQUENCES where SEQTYPE = 'S' AND SEQSCHEMA = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -97,7 +165,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TRIGNAME from SYSCAT.TRIGGERS where TRIGSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TRIGNAME from SYSCAT.TRIGGERS where TRIGSCHEMA = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -107,7 +175,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TYPENAME from SYSCAT.DATATYPES where TYPESCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TYPENAME from SYSCAT.DATATYPES where TYPESCHEMA = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -128,7 +196,7 @@ public class Db2Database extends Database {
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE = 'F' and TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
@@ -153,16 +221,16 @@ public class Db2Database extends Database {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select CONSTNAME from SYSCAT.TABCONST where TYPE in ('K', 'U') and TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
 
         // Retrieve the name of the primary key columns, since we cannot remove the not-null constraint on these columns
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
 
         // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where NULLS = 'N' and TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
         for (String notNullColumnName : notNullColumnNames) {
             if (primaryKeyColumnNames.contains(notNullColumnName)) {
                 // Do not remove PK constraints
@@ -207,7 +275,7 @@ public class Db2Database extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = '" + tableName + "' and TABSCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLNAME from SYSCAT.COLUMNS where KEYSEQ is not null and TABNAME = ? and TABSCHEMA = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -296,4 +364,15 @@ public class Db2Database extends Database {
     public boolean supportsSetDatabaseDefaultSchema() {
         return true;
     }
+
+    /**
+     * Clearing a schema at once is supported.
+     *
+     * @param schemaName The schema, not null
+     * @return True
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return true;
+    }
 }
\ No newline at end of file
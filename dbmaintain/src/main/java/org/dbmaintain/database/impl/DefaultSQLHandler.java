@@ -21,14 +21,9 @@ import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.SQLHandler;
 
 import javax.sql.DataSource;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
 
@@ -45,6 +40,9 @@ public class DefaultSQLHandler implements SQLHandler {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(DefaultSQLHandler.class);
 
+    /* The max nr of prepared statements that are kept open per connection */
+    private static final int MAX_CACHED_PREPARED_STATEMENTS = 50;
+
 
     /* 
      * Boolean that indicates whether database updates have to executed on the database or not. Setting this value
@@ -53,7 +51,14 @@ public class DefaultSQLHandler implements SQLHandler {
     private boolean doExecuteUpdates;
 
 
-    private Map<DataSource, Connection> cachedConnections = new HashMap<DataSource, Connection>();
+    /*
+     * The connections per data source. Connections are cached per thread, so that threads that execute statements
+     * concurrently each have their own connection.
+     */
+    private Map<Thread, Map<DataSource, ThreadConnection>> cachedConnections = new ConcurrentHashMap<Thread, Map<DataSource, ThreadConnection>>();
+
+    /* The initializers that are executed on every new connection of a data source */
+    private Map<DataSource, ConnectionInitializer> connectionInitializers = new ConcurrentHashMap<DataSource, ConnectionInitializer>();
 
     /**
      * Constructs a new instance that connects to the given DataSource
@@ -94,6 +99,62 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    /**
+     * Executes the given statements as a single JDBC batch.
+     * <p/>
+     * If a transaction is active, a savepoint is set before executing the batch. When the batch fails, the changes of
+     * the batch are rolled back to this savepoint and the statements are executed again one by one. This way the
+     * failing statement is reported exactly like it would have been without batching. If no savepoint could be set,
+     * the failing statement is derived from the update counts reported by the driver.
+     *
+     * @param sqlStatements The sql statements, not null
+     * @param dataSource    The dataSource, not null
+     */
+    public void executeBatch(List<String> sqlStatements, DataSource dataSource) {
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+        if (sqlStatements.size() == 1) {
+            execute(sqlStatements.get(0), dataSource);
+            return;
+        }
+        for (String sql : sqlStatements) {
+            logger.debug(sql);
+        }
+        if (!doExecuteUpdates) {
+            // skip update
+            return;
+        }
+
+        Connection connection = getConnection(dataSource);
+        Savepoint savepoint = setSavepoint(connection);
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            for (String sql : sqlStatements) {
+                statement.addBatch(sql);
+            }
+            statement.executeBatch();
+
+        } catch (Exception e) {
+            closeQuietly(statement);
+            statement = null;
+            if (savepoint == null) {
+                throw new DatabaseException("Could not perform database statement: " + getFailedBatchStatement(sqlStatements, e), e);
+            }
+            rollbackToSavepoint(connection, savepoint);
+            savepoint = null;
+            logger.debug("Batch failed, executing statements of the batch one by one to locate the failing statement.");
+            for (String sql : sqlStatements) {
+                execute(sql, dataSource);
+            }
+        } finally {
+            closeQuietly(statement);
+            releaseSavepoint(connection, savepoint);
+        }
+    }
+
+
     public int executeUpdateAndCommit(String sql, DataSource dataSource) {
         logger.debug(sql);
 
@@ -119,6 +180,41 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    public void executeBatchAndCommit(String sql, List<? extends List<?>> parameterValues, DataSource dataSource) {
+        logger.debug(sql + " (" + parameterValues.size() + " times)");
+
+        if (!doExecuteUpdates || parameterValues.isEmpty()) {
+            // skip update
+            return;
+        }
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = getConnection(dataSource);
+            preparedStatement = connection.prepareStatement(sql);
+            for (List<?> parameters : parameterValues) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    if (parameters.get(i) == null) {
+                        // some drivers cannot derive the type of a null value
+                        preparedStatement.setNull(i + 1, Types.VARCHAR);
+                    } else {
+                        preparedStatement.setObject(i + 1, parameters.get(i));
+                    }
+                }
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while performing database update:\n" + sql, e);
+        } finally {
+            closeQuietly(preparedStatement);
+        }
+    }
+
+
     public long getItemAsLong(String sql, DataSource dataSource) {
         logger.debug(sql);
 
@@ -201,6 +297,123 @@ public class DefaultSQLHandler implements SQLHandler {
     }
 
 
+    public long getItemAsLong(String sql, List<?> parameters, DataSource dataSource) {
+        logger.debug(sql + " " + parameters);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeQuery(sql, parameters, dataSource);
+            if (resultSet.next()) {
+                return resultSet.getLong(1);
+            }
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + ", parameters: " + parameters, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new DatabaseException("No item value found: " + sql + ", parameters: " + parameters);
+    }
+
+    public String getItemAsString(String sql, List<?> parameters, DataSource dataSource) {
+        logger.debug(sql + " " + parameters);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeQuery(sql, parameters, dataSource);
+            if (resultSet.next()) {
+                return resultSet.getString(1);
+            }
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + ", parameters: " + parameters, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+
+        // in case no value was found, throw an exception
+        throw new DatabaseException("No item value found: " + sql + ", parameters: " + parameters);
+    }
+
+    public Set<String> getItemsAsStringSet(String sql, List<?> parameters, DataSource dataSource) {
+        logger.debug(sql + " " + parameters);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeQuery(sql, parameters, dataSource);
+            Set<String> result = new HashSet<String>();
+            while (resultSet.next()) {
+                result.add(resultSet.getString(1));
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + ", parameters: " + parameters, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+    public boolean exists(String sql, List<?> parameters, DataSource dataSource) {
+        logger.debug(sql + " " + parameters);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeQuery(sql, parameters, dataSource);
+            return resultSet.next();
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + ", parameters: " + parameters, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+    public List<String[]> getRecords(String sql, List<?> parameters, DataSource dataSource) {
+        logger.debug(sql + " " + parameters);
+
+        ResultSet resultSet = null;
+        try {
+            resultSet = executeQuery(sql, parameters, dataSource);
+            int columnCount = resultSet.getMetaData().getColumnCount();
+            List<String[]> result = new ArrayList<String[]>();
+            while (resultSet.next()) {
+                String[] record = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    record[i] = resultSet.getString(i + 1);
+                }
+                result.add(record);
+            }
+            return result;
+
+        } catch (Exception e) {
+            throw new DatabaseException("Error while executing statement: " + sql + ", parameters: " + parameters, e);
+        } finally {
+            closeQuietly(resultSet);
+        }
+    }
+
+    /**
+     * Executes the given query using the cached prepared statement for the sql. A statement that failed is removed
+     * from the cache, so that a new one is prepared the next time.
+     */
+    protected ResultSet executeQuery(String sql, List<?> parameters, DataSource dataSource) throws SQLException {
+        ThreadConnection threadConnection = getThreadConnection(dataSource);
+        PreparedStatement preparedStatement = threadConnection.getPreparedStatement(sql);
+        try {
+            preparedStatement.clearParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                preparedStatement.setObject(i + 1, parameters.get(i));
+            }
+            return preparedStatement.executeQuery();
+
+        } catch (SQLException e) {
+            threadConnection.removePreparedStatement(sql);
+            throw e;
+        }
+    }
+
+
     /**
      * Starts a transaction by turning of auto commit.
      * Make sure to call endTransaction at the end of the transaction
@@ -259,6 +472,152 @@ public class DefaultSQLHandler implements SQLHandler {
         }
     }
 
+    /**
+     * Executes the given work in a transaction on the connection of the current thread. Nested transactions join
+     * the outermost transaction.
+     *
+     * @param dataSource The data source, not null
+     * @param work       The work to execute, not null
+     * @return The result of the work
+     */
+    public <T> T executeInTransaction(DataSource dataSource, TransactionalWork<T> work) {
+        ThreadConnection threadConnection = getThreadConnection(dataSource);
+        if (threadConnection.transactionDepth > 0) {
+            threadConnection.transactionDepth++;
+            try {
+                return work.execute();
+            } finally {
+                threadConnection.transactionDepth--;
+            }
+        }
+
+        startTransaction(dataSource);
+        threadConnection.transactionDepth = 1;
+        T result;
+        try {
+            result = work.execute();
+        } catch (RuntimeException | Error e) {
+            threadConnection.transactionDepth = 0;
+            try {
+                endTransactionAndRollback(dataSource);
+            } catch (DatabaseException t) {
+                e.addSuppressed(t);
+            }
+            throw e;
+        }
+        threadConnection.transactionDepth = 0;
+        endTransactionAndCommit(dataSource);
+        return result;
+    }
+
+
+    /**
+     * Leases a connection to the given data source to the current thread. If the thread already uses a connection
+     * for the data source, that connection is leased. Leases can be nested.
+     *
+     * @param dataSource The data source, not null
+     */
+    public void leaseConnection(DataSource dataSource) {
+        Map<DataSource, ThreadConnection> threadConnections = getThreadConnections();
+        ThreadConnection threadConnection = threadConnections.get(dataSource);
+        if (threadConnection == null) {
+            threadConnection = createThreadConnection(dataSource, threadConnections);
+            threadConnection.closeOnRelease = true;
+        }
+        threadConnection.nrOfLeases++;
+    }
+
+    /**
+     * Releases a lease of the current thread. When the last lease is released, the connection is closed, unless
+     * the thread was already using the connection before it was leased.
+     *
+     * @param dataSource The data source, not null
+     */
+    public void releaseConnection(DataSource dataSource) {
+        Map<DataSource, ThreadConnection> threadConnections = getThreadConnections();
+        ThreadConnection threadConnection = threadConnections.get(dataSource);
+        if (threadConnection == null || threadConnection.nrOfLeases == 0) {
+            throw new DatabaseException("Unable to release connection. The current thread " + Thread.currentThread().getName() + " has no leased connection for this data source.");
+        }
+        threadConnection.nrOfLeases--;
+        if (threadConnection.nrOfLeases > 0 || !threadConnection.closeOnRelease) {
+            return;
+        }
+        threadConnections.remove(dataSource);
+        threadConnection.closePreparedStatements();
+        Connection connection = threadConnection.connection;
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                logger.warn("Leased connection was released while a transaction was still active. The changes of this transaction are rolled back.");
+                connection.rollback();
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to roll back transaction of released connection.", e);
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+
+    /**
+     * @return A savepoint if a transaction is active and savepoints are supported, null otherwise
+     */
+    private Savepoint setSavepoint(Connection connection) {
+        try {
+            if (connection.getAutoCommit()) {
+                return null;
+            }
+            return connection.setSavepoint();
+        } catch (Exception e) {
+            logger.debug("Unable to set savepoint.", e);
+            return null;
+        }
+    }
+
+    private void rollbackToSavepoint(Connection connection, Savepoint savepoint) {
+        try {
+            connection.rollback(savepoint);
+        } catch (Exception e) {
+            throw new DatabaseException("Unable to roll back to savepoint after batch failure.", e);
+        }
+    }
+
+    private void releaseSavepoint(Connection connection, Savepoint savepoint) {
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (Exception e) {
+            // not all drivers support releasing savepoints, the savepoint is released when the transaction ends
+            logger.debug("Unable to release savepoint.", e);
+        }
+    }
+
+    /**
+     * Derives the failing statement of a batch from the update counts of the exception. Drivers either stop at the
+     * first failure, in which case the update counts only contain the successful statements, or continue and mark
+     * the failed statements.
+     *
+     * @return The failing statement, or a description of the batch if it could not be determined, not null
+     */
+    private String getFailedBatchStatement(List<String> sqlStatements, Exception exception) {
+        if (exception instanceof BatchUpdateException) {
+            int[] updateCounts = ((BatchUpdateException) exception).getUpdateCounts();
+            if (updateCounts != null) {
+                for (int i = 0; i < updateCounts.length; i++) {
+                    if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                        return sqlStatements.get(i);
+                    }
+                }
+                if (updateCounts.length < sqlStatements.size()) {
+                    return sqlStatements.get(updateCounts.length);
+                }
+            }
+        }
+        return "<one of the " + sqlStatements.size() + " statements of the batch starting with> " + sqlStatements.get(0);
+    }
+
     private void reenableAutoCommit(Connection connection) {
         try {
             connection.setAutoCommit(true);
@@ -270,11 +629,17 @@ public class DefaultSQLHandler implements SQLHandler {
 
     /**
      * Closes all connections that were created and cached by this SQLHandler. This method must always be invoked before
-     * disposing this object.
+     * disposing this object. Connections that are still leased by other threads are closed as well.
      */
     public void closeAllConnections() {
-        for (Connection connection : cachedConnections.values()) {
-            closeQuietly(connection);
+        for (Map.Entry<Thread, Map<DataSource, ThreadConnection>> entry : cachedConnections.entrySet()) {
+            for (ThreadConnection threadConnection : entry.getValue().values()) {
+                if (threadConnection.nrOfLeases > 0) {
+                    logger.debug("Closing connection that is still leased by thread " + entry.getKey().getName());
+                }
+                threadConnection.closePreparedStatements();
+                closeQuietly(threadConnection.connection);
+            }
         }
         cachedConnections.clear();
     }
@@ -282,22 +647,127 @@ public class DefaultSQLHandler implements SQLHandler {
 
     /**
      * Returns a Connection to the given DataSource. The first time a Connection is requested, a new one is created
-     * using the given DataSource. All subsequent calls with the same DataSource as parameter will return the same
-     * Connection instance.
+     * using the given DataSource. All subsequent calls of the same thread with the same DataSource as parameter will
+     * return the same Connection instance.
      *
      * @param dataSource provides access to the database
      * @return a Connection to the database for the given DataSource.
      */
     protected Connection getConnection(DataSource dataSource) {
-        Connection connection = cachedConnections.get(dataSource);
-        if (connection == null) {
+        return getThreadConnection(dataSource).connection;
+    }
+
+    protected ThreadConnection getThreadConnection(DataSource dataSource) {
+        Map<DataSource, ThreadConnection> threadConnections = getThreadConnections();
+        ThreadConnection threadConnection = threadConnections.get(dataSource);
+        if (threadConnection == null) {
+            threadConnection = createThreadConnection(dataSource, threadConnections);
+        }
+        return threadConnection;
+    }
+
+    /**
+     * Creates a connection for the current thread and executes the registered initializer on it, if any. The
+     * connection is already cached for the thread while it is initialized, so that the initializer can use it.
+     *
+     * @param dataSource        The data source, not null
+     * @param threadConnections The connections of the current thread, not null
+     * @return The initialized connection, not null
+     */
+    protected ThreadConnection createThreadConnection(DataSource dataSource, Map<DataSource, ThreadConnection> threadConnections) {
+        ThreadConnection threadConnection = new ThreadConnection(createConnection(dataSource));
+        threadConnections.put(dataSource, threadConnection);
+        ConnectionInitializer connectionInitializer = connectionInitializers.get(dataSource);
+        if (connectionInitializer != null) {
             try {
-                connection = dataSource.getConnection();
-            } catch (SQLException e) {
-                throw new DatabaseException("Error while creating connection", e);
+                connectionInitializer.initialize();
+            } catch (RuntimeException e) {
+                threadConnections.remove(dataSource);
+                threadConnection.closePreparedStatements();
+                closeQuietly(threadConnection.connection);
+                throw e;
+            }
+        }
+        return threadConnection;
+    }
+
+    public void registerConnectionInitializer(DataSource dataSource, ConnectionInitializer connectionInitializer) {
+        connectionInitializers.put(dataSource, connectionInitializer);
+        if (getThreadConnections().containsKey(dataSource)) {
+            connectionInitializer.initialize();
+        } else {
+            getThreadConnection(dataSource);
+        }
+    }
+
+    /**
+     * @return The connections per data source of the current thread, not null
+     */
+    protected Map<DataSource, ThreadConnection> getThreadConnections() {
+        Map<DataSource, ThreadConnection> threadConnections = cachedConnections.get(Thread.currentThread());
+        if (threadConnections == null) {
+            threadConnections = new ConcurrentHashMap<DataSource, ThreadConnection>();
+            cachedConnections.put(Thread.currentThread(), threadConnections);
+        }
+        return threadConnections;
+    }
+
+    protected Connection createConnection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new DatabaseException("Error while creating connection", e);
+        }
+    }
+
+
+    /**
+     * A connection that is used by a single thread, together with the leases and transactions of that thread and
+     * the prepared statements that were created for the connection.
+     */
+    protected static class ThreadConnection {
+
+        private Connection connection;
+        /* The nr of leases that were not yet released */
+        private int nrOfLeases;
+        /* True if the connection was opened by a lease and has to be closed when the last lease is released */
+        private boolean closeOnRelease;
+        /* The nr of nested transactions that are active, 0 if no transaction was started using executeInTransaction */
+        private int transactionDepth;
+        /* The prepared statements per sql, the least recently used statement is closed when the cache is full */
+        private Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= MAX_CACHED_PREPARED_STATEMENTS) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+
+        protected ThreadConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        protected PreparedStatement getPreparedStatement(String sql) throws SQLException {
+            PreparedStatement preparedStatement = preparedStatements.get(sql);
+            if (preparedStatement == null) {
+                preparedStatement = connection.prepareStatement(sql);
+                preparedStatements.put(sql, preparedStatement);
+            }
+            return preparedStatement;
+        }
+
+        protected void removePreparedStatement(String sql) {
+            closeQuietly(preparedStatements.remove(sql));
+        }
+
+        protected void closePreparedStatements() {
+            for (PreparedStatement preparedStatement : preparedStatements.values()) {
+                closeQuietly(preparedStatement);
             }
-            cachedConnections.put(dataSource, connection);
+            preparedStatements.clear();
         }
-        return connection;
     }
 }
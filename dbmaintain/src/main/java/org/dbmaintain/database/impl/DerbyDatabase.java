@@ -22,9 +22,11 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 
 /**
@@ -60,7 +62,22 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS  s where t.TABLETYPE = 'T' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS  s where t.TABLETYPE = 'T' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints (delete rule R and S) are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select pt.TABLENAME, ct.TABLENAME from SYS.SYSFOREIGNKEYS f " +
+                "join SYS.SYSCONSTRAINTS c on c.CONSTRAINTID = f.CONSTRAINTID join SYS.SYSTABLES ct on ct.TABLEID = c.TABLEID join SYS.SYSSCHEMAS cs on cs.SCHEMAID = ct.SCHEMAID " +
+                "join SYS.SYSCONSTRAINTS k on k.CONSTRAINTID = f.KEYCONSTRAINTID join SYS.SYSTABLES pt on pt.TABLEID = k.TABLEID join SYS.SYSSCHEMAS ps on ps.SCHEMAID = pt.SCHEMAID " +
+                "where f.DELETERULE in ('R', 'S') and cs.SCHEMANAME = ? and ps.SCHEMANAME = ?", asList(schemaName, schemaName));
     }
 
     /**
@@ -71,7 +88,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select c.COLUMNNAME from SYS.SYSCOLUMNS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.REFERENCEID = t.TABLEID and t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.COLUMNNAME from SYS.SYSCOLUMNS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.REFERENCEID = t.TABLEID and t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -81,7 +98,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'V' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'V' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -90,7 +107,7 @@ public class DerbyDatabase extends Database {
      * @return The names of all synonyms in the database
      */
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'A' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TABLENAME from SYS.SYSTABLES t, SYS.SYSSCHEMAS s where t.TABLETYPE = 'A' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -100,7 +117,7 @@ public class DerbyDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.TRIGGERNAME from SYS.SYSTRIGGERS t, SYS.SYSSCHEMAS s where t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.TRIGGERNAME from SYS.SYSTRIGGERS t, SYS.SYSSCHEMAS s where t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -147,7 +164,7 @@ public class DerbyDatabase extends Database {
 
     protected void disableReferentialConstraints(String schemaName, String tableName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE = 'F' AND c.TABLEID = t.TABLEID  AND t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(tableName, schemaName), getDataSource());
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
@@ -172,7 +189,7 @@ public class DerbyDatabase extends Database {
         SQLHandler sqlHandler = getSQLHandler();
 
         // disable all check and unique constraints
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID  AND t.TABLENAME = '" + tableName + "' AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = '" + schemaName + "'", getDataSource());
+        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select c.CONSTRAINTNAME from SYS.SYSCONSTRAINTS c, SYS.SYSTABLES t, SYS.SYSSCHEMAS s where c.TYPE in ('U', 'C') AND c.TABLEID = t.TABLEID  AND t.TABLENAME = ? AND t.SCHEMAID = s.SCHEMAID AND s.SCHEMANAME = ?", asList(tableName, schemaName), getDataSource());
         for (String constraintName : constraintNames) {
             sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
         }
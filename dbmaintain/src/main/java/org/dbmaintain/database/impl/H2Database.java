@@ -21,9 +21,11 @@ import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
 
 import java.sql.*;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for an H2 database.
@@ -42,44 +44,66 @@ public class H2Database extends Database {
     @Override
     public Set<String> getTableNames(final String schemaName) {
         return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where " +
-                "TABLE_TYPE = 'TABLE' AND TABLE_SCHEMA = '" +
-                schemaName + "'", getDataSource());
+                "TABLE_TYPE = 'TABLE' AND TABLE_SCHEMA = ?", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints (delete rule 3 and 1) are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select PKTABLE_NAME, FKTABLE_NAME from INFORMATION_SCHEMA.CROSS_REFERENCES " +
+                "where FKTABLE_SCHEMA = ? and PKTABLE_SCHEMA = ? and DELETE_RULE in (1, 3)", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Drops the schema with all its items and creates it again with the same owner. H2 has no privileges on schemas:
+     * privileges are granted on the items themselves and are dropped together with them, the same as when the items
+     * are dropped one by one.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        String owner = getSQLHandler().getItemAsString("select SCHEMA_OWNER from INFORMATION_SCHEMA.SCHEMATA where SCHEMA_NAME = ?", asList(schemaName), getDataSource());
+        getSQLHandler().execute("drop schema " + quoted(schemaName) + " cascade", getDataSource());
+        getSQLHandler().execute("create schema " + quoted(schemaName) + " authorization " + quoted(owner), getDataSource());
     }
  
     @Override
     public Set<String> getColumnNames(final String schemaName, final String tableName) {
         return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS " +
-                "where TABLE_NAME = '" + tableName +
-                "' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+                "where TABLE_NAME = ? AND TABLE_SCHEMA = ?", asList(tableName, schemaName), getDataSource());
     }
  
     @Override
     public Set<String> getViewNames(final String schemaName) {
         return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from " +
-                "INFORMATION_SCHEMA.VIEWS WHERE TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+                "INFORMATION_SCHEMA.VIEWS WHERE TABLE_SCHEMA = ?", asList(schemaName), getDataSource());
     }
  
     @Override
     public Set<String> getSequenceNames(final String schemaName) {
         return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from " +
-                "INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" +
-                schemaName + "'", getDataSource());
+                "INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ?", asList(schemaName), getDataSource());
     }
  
     @Override
     public Set<String> getIdentityColumnNames(final String schemaName, final String tableName) {
         return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from " +
                 "INFORMATION_SCHEMA.INDEXES where PRIMARY_KEY = 'TRUE' AND " +
-                "TABLE_NAME = '" + tableName + "' AND TABLE_SCHEMA = '" +
-                schemaName + "'", getDataSource());
+                "TABLE_NAME = ? AND TABLE_SCHEMA = ?", asList(tableName, schemaName), getDataSource());
     }
  
     @Override
     public Set<String> getTriggerNames(final String schemaName) {
         // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
         return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from " +
-                "INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = '" + schemaName +
-                "'", getDataSource());
+                "INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = ?", asList(schemaName), getDataSource());
     }
  
     @Override
@@ -168,8 +192,7 @@ public class H2Database extends Database {
     @Override
     public long getSequenceValue(final String schemaName, final String sequenceName) {
         return getSQLHandler().getItemAsLong("select CURRENT_VALUE from " + 
-                "INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName +
-                "' and SEQUENCE_NAME = '" + sequenceName + "'", getDataSource());
+                "INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ? and SEQUENCE_NAME = ?", asList(schemaName, sequenceName), getDataSource());
     }
  
     @Override
@@ -204,4 +227,16 @@ public class H2Database extends Database {
         return true;
     }
 
+    /**
+     * Clearing a schema at once is supported, except for the PUBLIC schema, which cannot be dropped, and the default
+     * schema, which is the current schema of the connections.
+     *
+     * @param schemaName The schema, not null
+     * @return True if the schema is not the PUBLIC or the default schema
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return !"PUBLIC".equals(schemaName) && !schemaName.equals(getDefaultSchemaName());
+    }
+
 }
\ No newline at end of file
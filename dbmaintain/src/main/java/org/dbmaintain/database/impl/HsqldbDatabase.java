@@ -19,11 +19,16 @@ import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.ItemDependency;
+import org.dbmaintain.structure.model.DbItemType;
 
 import java.sql.*;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a hsqldb database
@@ -59,9 +64,76 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getTableNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'TABLE' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'TABLE' AND TABLE_SCHEM = ?", asList(schemaName), getDataSource());
         }
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA = ?", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints (delete rule 3 and 1) are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select PKTABLE_NAME, FKTABLE_NAME from INFORMATION_SCHEMA.SYSTEM_CROSSREFERENCE " +
+                "where FKTABLE_SCHEM = ? and PKTABLE_SCHEM = ? and DELETE_RULE in (1, 3)", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Drops the schema with all its items and creates it again with the same owner. HSQLDB has no privileges on
+     * schemas: privileges are granted on the items themselves and are dropped together with them, the same as when
+     * the items are dropped one by one.
+     * <p/>
+     * Dropping the PUBLIC schema only drops its items, the schema itself is kept. Dropping the current schema of the
+     * connection changes the current schema to PUBLIC, so the default schema is set again afterwards.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        String owner = getSQLHandler().getItemAsString("select SCHEMA_OWNER from INFORMATION_SCHEMA.SCHEMATA where SCHEMA_NAME = ?", asList(schemaName), getDataSource());
+        getSQLHandler().execute("drop schema " + quoted(schemaName) + " cascade", getDataSource());
+        if (!getSQLHandler().exists("select 1 from INFORMATION_SCHEMA.SCHEMATA where SCHEMA_NAME = ?", asList(schemaName), getDataSource())) {
+            getSQLHandler().execute("create schema " + quoted(schemaName) + " authorization " + quoted(owner), getDataSource());
+        }
+        if (schemaName.equals(getDefaultSchemaName())) {
+            setDatabaseDefaultSchema();
+        }
+    }
+
+    /**
+     * Returns the dependencies of the views of the schema on tables and other views, using the VIEW_TABLE_USAGE view,
+     * and of the triggers on their tables or views, using the TRIGGERS view. Only available for HSQLDB 2 or higher.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<ItemDependency> getItemDependencies(String schemaName) {
+        return getItemDependencies("select u.VIEW_NAME, 'VIEW', u.TABLE_NAME, case t.TABLE_TYPE when 'VIEW' then 'VIEW' else 'TABLE' end from INFORMATION_SCHEMA.VIEW_TABLE_USAGE u " +
+                "join INFORMATION_SCHEMA.TABLES t on t.TABLE_SCHEMA = u.TABLE_SCHEMA and t.TABLE_NAME = u.TABLE_NAME " +
+                "where u.VIEW_SCHEMA = ? and u.TABLE_SCHEMA = ? " +
+                "union select g.TRIGGER_NAME, 'TRIGGER', g.EVENT_OBJECT_TABLE, case t.TABLE_TYPE when 'VIEW' then 'VIEW' else 'TABLE' end from INFORMATION_SCHEMA.TRIGGERS g " +
+                "join INFORMATION_SCHEMA.TABLES t on t.TABLE_SCHEMA = g.EVENT_OBJECT_SCHEMA and t.TABLE_NAME = g.EVENT_OBJECT_TABLE " +
+                "where g.TRIGGER_SCHEMA = ? and g.EVENT_OBJECT_SCHEMA = ?", asList(schemaName, schemaName, schemaName, schemaName));
+    }
+
+    /**
+     * Returns the names of the tables, views, sequences and triggers of the schema using a single query on the
+     * INFORMATION_SCHEMA views. Only available for HSQLDB 2 or higher.
+     *
+     * @param schemaName The schema, not null
+     * @return The names of the items per type, not null
+     */
+    @Override
+    public Map<DbItemType, Set<String>> getDbItemsPerType(String schemaName) {
+        return getDbItemsPerType("select case TABLE_TYPE when 'VIEW' then 'VIEW' else 'TABLE' end, TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE in ('BASE TABLE', 'VIEW') and TABLE_SCHEMA = ? " +
+                "union select 'SEQUENCE', SEQUENCE_NAME from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ? " +
+                "union select 'TRIGGER', TRIGGER_NAME from INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = ?", asList(schemaName, schemaName, schemaName),
+                DbItemType.TABLE, DbItemType.VIEW, DbItemType.SEQUENCE, DbItemType.TRIGGER);
     }
 
     /**
@@ -73,9 +145,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_COLUMNS where TABLE_NAME = ? AND TABLE_SCHEM = ?", asList(tableName, schemaName), getDataSource());
         }
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.COLUMNS where TABLE_NAME = ? AND TABLE_SCHEMA = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -86,9 +158,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getViewNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEM = ?", asList(schemaName), getDataSource());
         }
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from INFORMATION_SCHEMA.TABLES where TABLE_TYPE = 'VIEW' AND TABLE_SCHEMA = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -99,9 +171,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getSequenceNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = ?", asList(schemaName), getDataSource());
         }
-        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -112,9 +184,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public Set<String> getTriggerNames(String schemaName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.SYSTEM_TRIGGERS where TRIGGER_SCHEM = '" + schemaName + "'", getDataSource());
+            return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.SYSTEM_TRIGGERS where TRIGGER_SCHEM = ?", asList(schemaName), getDataSource());
         }
-        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from INFORMATION_SCHEMA.TRIGGERS where TRIGGER_SCHEMA = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -250,9 +322,9 @@ public class HsqldbDatabase extends Database {
     @Override
     public long getSequenceValue(String schemaName, String sequenceName) {
         if (getHsqldbMajorVersionNumber() < 2) {
-            return getSQLHandler().getItemAsLong("select START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "' and SEQUENCE_NAME = '" + sequenceName + "'", getDataSource());
+            return getSQLHandler().getItemAsLong("select START_WITH from INFORMATION_SCHEMA.SYSTEM_SEQUENCES where SEQUENCE_SCHEMA = ? and SEQUENCE_NAME = ?", asList(schemaName, sequenceName), getDataSource());
         }
-        return getSQLHandler().getItemAsLong("select NEXT_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = '" + schemaName + "' and SEQUENCE_NAME = '" + sequenceName + "'", getDataSource());
+        return getSQLHandler().getItemAsLong("select NEXT_VALUE from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_SCHEMA = ? and SEQUENCE_NAME = ?", asList(schemaName, sequenceName), getDataSource());
     }
 
     /**
@@ -276,7 +348,7 @@ public class HsqldbDatabase extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_NAME = '" + tableName + "' AND TABLE_SCHEM = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS where TABLE_NAME = ? AND TABLE_SCHEM = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -365,6 +437,37 @@ public class HsqldbDatabase extends Database {
         return true;
     }
 
+    /**
+     * Retrieving the dependencies of views is supported from HSQLDB 2 on.
+     *
+     * @return True if the HSQLDB version is 2 or higher
+     */
+    @Override
+    public boolean supportsItemDependencies() {
+        return getHsqldbMajorVersionNumber() >= 2;
+    }
+
+    /**
+     * Retrieving the items of all types at once is supported from HSQLDB 2 on.
+     *
+     * @return True if the HSQLDB version is 2 or higher
+     */
+    @Override
+    public boolean supportsDbItemsPerType() {
+        return getHsqldbMajorVersionNumber() >= 2;
+    }
+
+    /**
+     * Clearing a schema at once is only supported for HSQLDB 2 and higher, older versions have no information schema.
+     *
+     * @param schemaName The schema, not null
+     * @return True if the HSQLDB version is 2 or higher
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return getHsqldbMajorVersionNumber() >= 2;
+    }
+
 
     /**
      * @return The major version number of the Hsql database server that is used (e.g. for Hsql version 1.8.0, 1 is returned
@@ -27,6 +27,7 @@ import java.sql.Statement;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 
 /**
@@ -48,18 +49,17 @@ public class InformixDatabase extends Database {
 
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select tabname from systables where owner = '" + schemaName + "' and tabid > 99 and tabtype = 'T'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select tabname from systables where owner = ? and tabid > 99 and tabtype = 'T'", asList(schemaName), getDataSource());
     }
 
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select sc.colname from syscolumns sc join systables st on sc.tabid = st.tabid and st.tabname = '" +
-                tableName + "' and st.owner = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select sc.colname from syscolumns sc join systables st on sc.tabid = st.tabid and st.tabname = ? and st.owner = ?", asList(tableName, schemaName), getDataSource());
     }
 
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select tabname from systables where owner = '" + schemaName + "' and tabid > 99 and tabtype = 'V'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select tabname from systables where owner = ? and tabid > 99 and tabtype = 'V'", asList(schemaName), getDataSource());
     }
 
     @Override
@@ -18,15 +18,19 @@ package org.dbmaintain.database.impl;
 import org.dbmaintain.database.*;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a MsSQL database.
@@ -61,7 +65,41 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.tables t, sys.schemas s where t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.tables t, sys.schemas s where t.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action constraints are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select pt.name, ct.name from sys.foreign_keys f " +
+                "join sys.tables ct on ct.object_id = f.parent_object_id join sys.schemas cs on cs.schema_id = ct.schema_id " +
+                "join sys.tables pt on pt.object_id = f.referenced_object_id join sys.schemas ps on ps.schema_id = pt.schema_id " +
+                "where f.delete_referential_action = 0 and cs.name = ? and ps.name = ?", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Returns the dependencies between the items of the schema using sys.sql_expression_dependencies, i.e. the items
+     * that are referenced by name in the definition of views, triggers, stored procedures and functions, and of the
+     * triggers on their tables or views using sys.triggers.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<ItemDependency> getItemDependencies(String schemaName) {
+        String objectType = "case %s.type when 'U' then 'TABLE' when 'V' then 'VIEW' when 'SN' then 'SYNONYM' when 'SO' then 'SEQUENCE' when 'TR' then 'TRIGGER' " +
+                "when 'P' then 'STORED_PROC' when 'FN' then 'FUNCTION' when 'IF' then 'FUNCTION' when 'TF' then 'FUNCTION' end";
+        return getItemDependencies("select distinct o.name, " + String.format(objectType, "o") + ", r.name, " + String.format(objectType, "r") + " from sys.sql_expression_dependencies d " +
+                "join sys.objects o on o.object_id = d.referencing_id join sys.objects r on r.object_id = d.referenced_id " +
+                "where d.referencing_class = 1 and o.schema_id = schema_id(?) and r.schema_id = schema_id(?) " +
+                "union select t.name, 'TRIGGER', p.name, " + String.format(objectType, "p") + " from sys.triggers t join sys.objects p on p.object_id = t.parent_id " +
+                "where t.parent_class = 1 and p.schema_id = schema_id(?)", asList(schemaName, schemaName, schemaName));
     }
 
     /**
@@ -72,7 +110,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select c.name from sys.columns c, sys.tables t, sys.schemas s where c.object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.name from sys.columns c, sys.tables t, sys.schemas s where c.object_id = t.object_id and t.name = ? and t.schema_id = s.schema_id and s.name = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -82,7 +120,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select v.name from sys.views v, sys.schemas s where v.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select v.name from sys.views v, sys.schemas s where v.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -92,7 +130,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select o.name from sys.synonyms o, sys.schemas s where o.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select o.name from sys.synonyms o, sys.schemas s where o.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -102,7 +140,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.triggers t, sys.all_objects o, sys.schemas s where t.parent_id = o.object_id and o.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.triggers t, sys.all_objects o, sys.schemas s where t.parent_id = o.object_id and o.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -112,7 +150,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getStoredProcedureNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("SELECT sys.procedures.name FROM sys.procedures INNER JOIN sys.schemas ON sys.procedures.schema_id = sys.schemas.schema_id where sys.schemas.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("SELECT sys.procedures.name FROM sys.procedures INNER JOIN sys.schemas ON sys.procedures.schema_id = sys.schemas.schema_id where sys.schemas.name = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -123,7 +161,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select t.name from sys.types t, sys.schemas s where t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select t.name from sys.types t, sys.schemas s where t.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
     }
 
 	/**
@@ -133,7 +171,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getRuleNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("SELECT ao.name FROM sys.all_objects ao INNER JOIN sys.schemas s ON s.schema_id = ao.schema_id WHERE type = 'R' and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("SELECT ao.name FROM sys.all_objects ao INNER JOIN sys.schemas s ON s.schema_id = ao.schema_id WHERE type = 'R' and s.name = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -144,7 +182,7 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select i.name from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.name = '" + tableName + "' and t.schema_id = s.schema_id and s.name = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select i.name from sys.identity_columns i, sys.tables t, sys.schemas s where i.object_id = t.object_id and t.name = ? and t.schema_id = s.schema_id and s.name = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -200,9 +238,22 @@ public class MsSqlDatabase extends Database {
      */
     @Override
     public void disableValueConstraints(String schemaName) {
-        disableUniqueConstraints(schemaName);
-        disableCheckConstraints(schemaName);
-        disableNotNullConstraints(schemaName);
+        executeStatementsPerTable(getDisableValueConstraintsStatements(schemaName));
+    }
+
+    /**
+     * Returns the statements for dropping the unique, check and not-null constraints of the schema.
+     *
+     * @param schemaName The schema name, not null
+     * @return The statements per table name, not null
+     */
+    @Override
+    public Map<String, List<String>> getDisableValueConstraintsStatements(String schemaName) {
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        addDisableUniqueConstraintsStatements(schemaName, statementsPerTable);
+        addDisableCheckConstraintsStatements(schemaName, statementsPerTable);
+        addDisableNotNullConstraintsStatements(schemaName, statementsPerTable);
+        return statementsPerTable;
     }
 
     /**
@@ -211,28 +262,9 @@ public class MsSqlDatabase extends Database {
      * @param schemaName the schema name, not null
      */
     public void disableUniqueConstraints(String schemaName) {
-        Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
-        try {
-            connection = getDataSource().getConnection();
-            queryStatement = connection.createStatement();
-            alterStatement = connection.createStatement();
-
-            resultSet = queryStatement.executeQuery("select t.name as tablename, k.name as constraintname from sys.key_constraints k, sys.tables t, sys.schemas s " +
-                    "where k.type = 'UQ' and k.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + schemaName + "'");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("tablename");
-                String constraintName = resultSet.getString("constraintname");
-                alterStatement.executeUpdate("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName));
-            }
-        } catch (SQLException e) {
-            throw new DatabaseException("Unable to disable referential constraints for schema name: " + schemaName, e);
-        } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
-        }
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        addDisableUniqueConstraintsStatements(schemaName, statementsPerTable);
+        executeStatementsPerTable(statementsPerTable);
     }
 
     /**
@@ -241,28 +273,9 @@ public class MsSqlDatabase extends Database {
      * @param schemaName the schema name, not null
      */
     public void disableCheckConstraints(String schemaName) {
-        Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
-        try {
-            connection = getDataSource().getConnection();
-            queryStatement = connection.createStatement();
-            alterStatement = connection.createStatement();
-
-            resultSet = queryStatement.executeQuery("select t.name as tablename, c.name as constraintname from sys.check_constraints c, sys.tables t, sys.schemas s " +
-                    "where c.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = '" + schemaName + "' and is_disabled = 0");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("tablename");
-                String constraintName = resultSet.getString("constraintname");
-                alterStatement.executeUpdate("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName));
-            }
-        } catch (SQLException e) {
-            throw new DatabaseException("Unable to disable referential constraints for schema name: " + schemaName, e);
-        } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
-        }
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        addDisableCheckConstraintsStatements(schemaName, statementsPerTable);
+        executeStatementsPerTable(statementsPerTable);
     }
 
     /**
@@ -273,7 +286,48 @@ public class MsSqlDatabase extends Database {
      * @param schemaName the schema name, not null
      */
     public void disableNotNullConstraints(String schemaName) {
-        SQLHandler sqlHandler = getSQLHandler();
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        addDisableNotNullConstraintsStatements(schemaName, statementsPerTable);
+        executeStatementsPerTable(statementsPerTable);
+    }
+
+    /**
+     * Adds the statements for dropping all unique constraints from the given schema (not the primary key constraints)
+     *
+     * @param schemaName         the schema name, not null
+     * @param statementsPerTable the statements per table name to add to, not null
+     */
+    protected void addDisableUniqueConstraintsStatements(String schemaName, Map<String, List<String>> statementsPerTable) {
+        List<String[]> records = getSQLHandler().getRecords("select t.name as tablename, k.name as constraintname from sys.key_constraints k, sys.tables t, sys.schemas s " +
+                "where k.type = 'UQ' and k.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = ?", asList(schemaName), getDataSource());
+        for (String[] record : records) {
+            addPerTable(record[0], "alter table " + qualified(schemaName, record[0]) + " drop constraint " + quoted(record[1]), statementsPerTable);
+        }
+    }
+
+    /**
+     * Adds the statements for dropping all check constraints from the given schema
+     *
+     * @param schemaName         the schema name, not null
+     * @param statementsPerTable the statements per table name to add to, not null
+     */
+    protected void addDisableCheckConstraintsStatements(String schemaName, Map<String, List<String>> statementsPerTable) {
+        List<String[]> records = getSQLHandler().getRecords("select t.name as tablename, c.name as constraintname from sys.check_constraints c, sys.tables t, sys.schemas s " +
+                "where c.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = ? and is_disabled = 0", asList(schemaName), getDataSource());
+        for (String[] record : records) {
+            addPerTable(record[0], "alter table " + qualified(schemaName, record[0]) + " drop constraint " + quoted(record[1]), statementsPerTable);
+        }
+    }
+
+    /**
+     * Adds the statements for dropping the not-null constraints from the given schema.
+     * <p/>
+     * For primary keys, row-guid, identity and computed columns not-null constrains cannot be disabled in MS-Sql.
+     *
+     * @param schemaName         the schema name, not null
+     * @param statementsPerTable the statements per table name to add to, not null
+     */
+    protected void addDisableNotNullConstraintsStatements(String schemaName, Map<String, List<String>> statementsPerTable) {
         Map<String, Set<String>> tablePrimaryKeyColumnsMap = getTablePrimaryKeyColumnsMap(schemaName);
 
         Connection connection = null;
@@ -310,6 +364,9 @@ public class MsSqlDatabase extends Database {
                     /* Patch provided by Jan Ischebeck */
                     String scale = resultSet.getString("scale");
                     dataType += "(" + precision + ", " + scale + ")";
+                } else if ("DATETIME2".equals(dataType) || "TIME".equals(dataType) || "DATETIMEOFFSET".equals(dataType)) {
+                    // the scale holds the fractional seconds precision
+                    dataType += "(" + resultSet.getString("scale") + ")";
                 } else if (dataType.contains("CHAR") || dataType.contains("BINARY")) {
                     String maxLength = resultSet.getString("max_length");
                     /* Patch provided by Thomas Queste */
@@ -322,7 +379,7 @@ public class MsSqlDatabase extends Database {
                     dataType += "(" + ("-1".equals(maxLength) ? "MAX" : String.valueOf(maxLength)) + ")";
                 }
                 // remove the not-null constraint
-                sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " alter column " + quoted(columnName) + " " + dataType + " null", getDataSource());
+                addPerTable(tableName, "alter table " + qualified(schemaName, tableName) + " alter column " + quoted(columnName) + " " + dataType + " null", statementsPerTable);
             }
         } catch (Exception e) {
             throw new DatabaseException("Unable to disable not null constraints for schema name: " + schemaName, e);
@@ -331,6 +388,117 @@ public class MsSqlDatabase extends Database {
         }
     }
 
+    /**
+     * Drops all foreign keys on all table in the schema using a T-SQL batch. The constraints are looked up
+     * and dropped on the server in one round trip.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of dropped constraints
+     */
+    @Override
+    public int disableReferentialConstraintsServerSide(String schemaName) {
+        String statementsQuery = "select N'alter table ' + quotename(s.name) + N'.' + quotename(t.name) + N' drop constraint ' + quotename(f.name), 1 " +
+                "from sys.foreign_keys f, sys.tables t, sys.schemas s " +
+                "where f.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = @schema and f.is_disabled = 0";
+        return executeBatchReturningCount(getServerSideBatch(statementsQuery), schemaName);
+    }
+
+    /**
+     * Drops all unique, check and not-null constraints on all tables in the schema using a T-SQL batch. The
+     * constraints are looked up and dropped on the server in one round trip. The same constraints are dropped as
+     * by {@link #disableValueConstraints(String)}: primary keys, row-guid, identity, computed and timestamp columns
+     * are skipped for the not-null constraints.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of dropped constraints
+     */
+    @Override
+    public int disableValueConstraintsServerSide(String schemaName) {
+        String statementsQuery =
+                // unique constraints
+                "select N'alter table ' + quotename(s.name) + N'.' + quotename(t.name) + N' drop constraint ' + quotename(k.name), 1 " +
+                "from sys.key_constraints k, sys.tables t, sys.schemas s " +
+                "where k.type = 'UQ' and k.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = @schema " +
+                // check constraints
+                "union all select N'alter table ' + quotename(s.name) + N'.' + quotename(t.name) + N' drop constraint ' + quotename(c.name), 2 " +
+                "from sys.check_constraints c, sys.tables t, sys.schemas s " +
+                "where c.parent_object_id = t.object_id and t.schema_id = s.schema_id and s.name = @schema and c.is_disabled = 0 " +
+                // not-null constraints, the data type is repeated in the alter column statement
+                "union all select N'alter table ' + quotename(s.name) + N'.' + quotename(t.name) + N' alter column ' + quotename(c.name) + N' ' + upper(y.name) + " +
+                "case when upper(y.name) in ('NUMERIC', 'DECIMAL') then N'(' + cast(c.precision as nvarchar) + N', ' + cast(c.scale as nvarchar) + N')' " +
+                "when upper(y.name) in ('DATETIME2', 'TIME', 'DATETIMEOFFSET') then N'(' + cast(c.scale as nvarchar) + N')' " +
+                "when upper(y.name) like '%CHAR%' or upper(y.name) like '%BINARY%' then N'(' + case when c.max_length = -1 then N'MAX' when upper(y.name) in ('NCHAR', 'NVARCHAR') then cast(c.max_length / 2 as nvarchar) else cast(c.max_length as nvarchar) end + N')' " +
+                "else N'' end + N' null', 3 " +
+                "from sys.types y, sys.columns c, sys.tables t, sys.schemas s " +
+                "where c.is_nullable = 0 and c.is_rowguidcol = 0 and c.is_identity = 0 and c.is_computed = 0 and upper(y.name) <> 'TIMESTAMP' " +
+                "and y.user_type_id = c.user_type_id and c.object_id = t.object_id and t.schema_id = s.schema_id and s.name = @schema " +
+                "and not exists (select 1 from sys.indexes i, sys.index_columns ic where i.is_primary_key = 1 and ic.object_id = i.object_id and ic.index_id = i.index_id and ic.object_id = c.object_id and ic.column_id = c.column_id)";
+        return executeBatchReturningCount(getServerSideBatch(statementsQuery), schemaName);
+    }
+
+    /**
+     * Creates a T-SQL batch that executes the statements returned by the given query one by one and then selects the
+     * number of executed statements. A static cursor is used: concatenating the statements using a variable
+     * assignment in a select is not guaranteed to include every record, and STRING_AGG requires MS-Sql 2017.
+     *
+     * @param statementsQuery The query returning the statements as first column and a sort order as second column,
+     *                        it can use the @schema variable for the schema name, not null
+     * @return The batch, with the schema name as single parameter, not null
+     */
+    protected String getServerSideBatch(String statementsQuery) {
+        return "set nocount on; " +
+                "declare @schema sysname = ?; " +
+                "declare @sql nvarchar(max); " +
+                "declare @sortOrder int; " +
+                "declare @count int = 0; " +
+                "declare statements cursor local static read_only for " + statementsQuery + " order by 2; " +
+                "open statements; " +
+                "fetch next from statements into @sql, @sortOrder; " +
+                "while @@fetch_status = 0 begin " +
+                "exec sp_executesql @sql; " +
+                "set @count = @count + 1; " +
+                "fetch next from statements into @sql, @sortOrder; " +
+                "end; " +
+                "close statements; " +
+                "deallocate statements; " +
+                "select @count;";
+    }
+
+    /**
+     * Executes the given T-SQL batch with the schema name as parameter. The batch should end with a select of
+     * the number of affected items.
+     *
+     * @param batch      The batch, not null
+     * @param schemaName The schema, not null
+     * @return The count returned by the batch
+     */
+    protected int executeBatchReturningCount(String batch, String schemaName) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getDataSource().getConnection();
+            statement = connection.prepareStatement(batch);
+            statement.setString(1, schemaName);
+
+            // skip update counts until the result set containing the count is reached
+            boolean isResultSet = statement.execute();
+            while (!isResultSet && statement.getUpdateCount() != -1) {
+                isResultSet = statement.getMoreResults();
+            }
+            if (!isResultSet) {
+                throw new DatabaseException("No affected count returned by batch for schema name: " + schemaName);
+            }
+            resultSet = statement.getResultSet();
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to disable constraints server-side for schema name: " + schemaName, e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+    }
+
     /**
      * @param schemaName the schema name, not null
      * @return a map with the table names of the given schema as key and a set containing the primary key column names
@@ -444,4 +612,24 @@ public class MsSqlDatabase extends Database {
         return true;
     }
 
+    /**
+     * Disabling constraints using a T-SQL batch is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsServerSideConstraintDisabling() {
+        return true;
+    }
+
+    /**
+     * Retrieving item dependencies is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsItemDependencies() {
+        return true;
+    }
+
 }
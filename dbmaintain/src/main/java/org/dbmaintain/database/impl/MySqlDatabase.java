@@ -17,8 +17,13 @@ package org.dbmaintain.database.impl;
 
 import org.dbmaintain.database.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
+
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a MySql database.
  * <p/>
@@ -57,7 +62,39 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = '" + schemaName + "' and table_type = 'BASE TABLE'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = ? and table_type = 'BASE TABLE'", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select REFERENCED_TABLE_NAME, TABLE_NAME from information_schema.REFERENTIAL_CONSTRAINTS " +
+                "where CONSTRAINT_SCHEMA = ? and UNIQUE_CONSTRAINT_SCHEMA = ? and DELETE_RULE in ('NO ACTION', 'RESTRICT')", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Drops the database (which is what MySql calls a schema) and creates it again with the same default character set
+     * and collation. MySql does not remove the privileges on a database when it is dropped, so they apply again as soon
+     * as the database is created.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        SQLHandler sqlHandler = getSQLHandler();
+        String[] options = sqlHandler.getRecords("select DEFAULT_CHARACTER_SET_NAME, DEFAULT_COLLATION_NAME from information_schema.SCHEMATA where SCHEMA_NAME = ?", asList(schemaName), getDataSource()).get(0);
+        sqlHandler.execute("drop database " + quoted(schemaName), getDataSource());
+        sqlHandler.execute("create database " + quoted(schemaName) + " character set " + options[0] + " collate " + options[1], getDataSource());
+        if (schemaName.equals(getDefaultSchemaName())) {
+            // dropping the database also resets the current database of the connection
+            setDatabaseDefaultSchema();
+        }
     }
 
     /**
@@ -68,7 +105,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and table_schema = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -78,7 +115,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = '" + schemaName + "' and table_type = 'VIEW'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_schema = ? and table_type = 'VIEW'", asList(schemaName), getDataSource());
     }
 
     /**
@@ -88,7 +125,7 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public Set<String> getTriggerNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select trigger_name from information_schema.triggers where trigger_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select trigger_name from information_schema.triggers where trigger_schema = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -99,20 +136,15 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public void disableReferentialConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(schemaName, tableName);
-        }
-    }
-
-    // todo refactor (see oracle)
+        // all foreign keys of the schema are retrieved at once and are dropped using one statement per table
+        List<String[]> records = getSQLHandler().getRecords("select table_name, constraint_name from information_schema.table_constraints " +
+                "where constraint_type = 'FOREIGN KEY' and constraint_schema = ? order by table_name, constraint_name", asList(schemaName), getDataSource());
 
-    protected void disableReferentialConstraints(String schemaName, String tableName) {
-        SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type = 'FOREIGN KEY' AND table_name = '" + tableName + "' and constraint_schema = '" + schemaName + "'", getDataSource());
-        for (String constraintName : constraintNames) {
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop foreign key " + quoted(constraintName), getDataSource());
+        Map<String, List<String>> alterTableClausesPerTable = new LinkedHashMap<String, List<String>>();
+        for (String[] record : records) {
+            addPerTable(record[0], "drop foreign key " + quoted(record[1]), alterTableClausesPerTable);
         }
+        executeAlterTableClauses(schemaName, alterTableClausesPerTable);
     }
 
     /**
@@ -122,30 +154,35 @@ public class MySqlDatabase extends Database {
      */
     @Override
     public void disableValueConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableValueConstraints(schemaName, tableName);
-        }
+        executeStatementsPerTable(getDisableValueConstraintsStatements(schemaName));
     }
 
-    // todo refactor (see oracle)
-
-    protected void disableValueConstraints(String schemaName, String tableName) {
+    /**
+     * Returns the statements for dropping the value constraints of the schema: one alter table statement per table.
+     *
+     * @param schemaName The schema name, not null
+     * @return The statement per table name, not null
+     */
+    @Override
+    public Map<String, List<String>> getDisableValueConstraintsStatements(String schemaName) {
         SQLHandler sqlHandler = getSQLHandler();
+        Map<String, List<String>> alterTableClausesPerTable = new LinkedHashMap<String, List<String>>();
 
-        // disable all unique constraints (check constraints are not implemented)
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints where constraint_type in ('UNIQUE') AND table_name = '" + tableName + "' and constraint_schema = '" + schemaName + "'", getDataSource());
-        for (String constraintName : constraintNames) {
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop key " + quoted(constraintName), getDataSource());
+        // all unique constraints of the schema (check constraints are not implemented)
+        List<String[]> constraintRecords = sqlHandler.getRecords("select tc.table_name, tc.constraint_name from information_schema.table_constraints tc join information_schema.tables t on t.table_schema = tc.table_schema and t.table_name = tc.table_name " +
+                "where tc.constraint_type = 'UNIQUE' and t.table_type = 'BASE TABLE' and tc.constraint_schema = ? order by tc.table_name, tc.constraint_name", asList(schemaName), getDataSource());
+        for (String[] record : constraintRecords) {
+            addPerTable(record[0], "drop key " + quoted(record[1]), alterTableClausesPerTable);
         }
 
-        // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and column_key <> 'PRI' and table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
-        for (String notNullColumnName : notNullColumnNames) {
-            // todo test length etc
-            String columnType = sqlHandler.getItemAsString("select column_type from information_schema.columns where table_schema = '" + schemaName + "' and table_name = '" + tableName + "' and column_name = '" + notNullColumnName + "'", getDataSource());
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " change column " + quoted(notNullColumnName) + " " + quoted(notNullColumnName) + " " + columnType + " NULL ", getDataSource());
+        // all not null columns of the schema, together with their column type
+        // todo test length etc
+        List<String[]> notNullColumnRecords = sqlHandler.getRecords("select c.table_name, c.column_name, c.column_type from information_schema.columns c join information_schema.tables t on t.table_schema = c.table_schema and t.table_name = c.table_name " +
+                "where c.is_nullable = 'NO' and c.column_key <> 'PRI' and t.table_type = 'BASE TABLE' and c.table_schema = ? order by c.table_name, c.ordinal_position", asList(schemaName), getDataSource());
+        for (String[] record : notNullColumnRecords) {
+            addPerTable(record[0], "change column " + quoted(record[1]) + " " + quoted(record[1]) + " " + record[2] + " NULL", alterTableClausesPerTable);
         }
+        return createAlterTableStatements(schemaName, alterTableClausesPerTable);
     }
 
 
@@ -158,7 +195,7 @@ public class MySqlDatabase extends Database {
     @Override
     public Set<String> getIdentityColumnNames(String schemaName, String tableName) {
         //  todo check, at this moment the PK columns are returned
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and column_key = 'PRI' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and column_key = 'PRI' and table_schema = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -227,6 +264,35 @@ public class MySqlDatabase extends Database {
         // nothing to do, my-sql allows setting values for identity columns
     }
 
+    /**
+     * Truncates the given tables. MySql does not allow truncating a table that is referenced by a foreign key, so
+     * the foreign key checks are turned off while truncating. This is a session setting: all statements are
+     * executed using the same connection.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables to truncate, not null
+     */
+    @Override
+    public void truncateTables(String schemaName, List<String> tableNames) {
+        SQLHandler sqlHandler = getSQLHandler();
+        List<String[]> references = sqlHandler.getRecords("select REFERENCED_TABLE_NAME, CONSTRAINT_SCHEMA, TABLE_NAME from information_schema.REFERENTIAL_CONSTRAINTS where UNIQUE_CONSTRAINT_SCHEMA = ?", asList(schemaName), getDataSource());
+        assertNotReferencedByOtherTables(schemaName, tableNames, references);
+
+        sqlHandler.leaseConnection(getDataSource());
+        try {
+            sqlHandler.execute("set foreign_key_checks = 0", getDataSource());
+            try {
+                for (String tableName : tableNames) {
+                    sqlHandler.execute("truncate table " + qualified(schemaName, tableName), getDataSource());
+                }
+            } finally {
+                sqlHandler.execute("set foreign_key_checks = 1", getDataSource());
+            }
+        } finally {
+            sqlHandler.releaseConnection(getDataSource());
+        }
+    }
+
     /**
      * Triggers are supported.
      *
@@ -267,4 +333,25 @@ public class MySqlDatabase extends Database {
         return true;
     }
 
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Clearing a schema at once is supported.
+     *
+     * @param schemaName The schema, not null
+     * @return True
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return true;
+    }
+
 }
\ No newline at end of file
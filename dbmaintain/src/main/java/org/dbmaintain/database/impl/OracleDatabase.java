@@ -15,16 +15,21 @@
  */
 package org.dbmaintain.database.impl;
 
+import org.dbmaintain.database.ConstraintDefinition;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
 import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.ItemDependency;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.structure.model.DbItemType;
 
 import java.sql.*;
 import java.util.*;
 import org.dbmaintain.util.DbMaintainException;
 
 import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static java.util.Arrays.asList;
 
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for an Oracle database.
@@ -64,53 +69,91 @@ public class OracleDatabase extends Database {
     public Set<String> getTableNames(String schemaName) {
         // all_tables also contains the materialized views: don't return these
         // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from ALL_TABLES where OWNER = '" + schemaName + "' and TABLE_NAME not like 'BIN$%' minus select MVIEW_NAME from ALL_MVIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TABLE_NAME from ALL_TABLES where OWNER = ? and TABLE_NAME not like 'BIN$%' minus select MVIEW_NAME from ALL_MVIEWS where OWNER = ?", asList(schemaName, schemaName), getDataSource());
     }
     
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Cascade or "set null" constraints are ignored since they are handled correctly by the DBMS independent of the delete order.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
     @Override
-    public List<String> getTableNamesSortedAccordingToConstraints(String schemaName) {
-    	try {
-	    	List<String> tableNames =  new ArrayList<String>(getTableNames(schemaName));
-	    	Map<String, Set<String>> childParentRelations = getTableChildParentRelations(schemaName);
-	    	return sortAccordingToConstraints(tableNames, childParentRelations);
-    	} 
-    	catch (SQLException e) {
-    		throw new DatabaseException("Failed to resolve referential constraints", e);
-    	}
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select c.TABLE_NAME, p.TABLE_NAME from ALL_CONSTRAINTS p join ALL_CONSTRAINTS c on p.R_CONSTRAINT_NAME = c.CONSTRAINT_NAME and p.R_OWNER = c.OWNER " +
+                "where p.CONSTRAINT_TYPE = 'R' and c.OWNER = ? and p.DELETE_RULE = 'NO ACTION' and p.CONSTRAINT_NAME not like 'BIN$%' and p.STATUS <> 'DISABLED'", asList(schemaName));
     }
-       
-    private Map<String, Set<String>> getTableChildParentRelations(String schemaName) throws SQLException {
-    	Map<String, Set<String>> childParentRelations = new HashMap<String, Set<String>>();
+
+    /**
+     * Drops all items of the schema using a single PL/SQL anonymous block. The user that owns the schema is kept, so
+     * the privileges that were granted to it do not change. Items that were already dropped together with another item,
+     * e.g. the triggers of a table, are skipped.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        String plsqlBlock = "declare " +
+                "schema_name varchar2(128) := ?; " +
+                "begin " +
+                "for o in (select OBJECT_NAME, OBJECT_TYPE from ALL_OBJECTS where OWNER = schema_name and OBJECT_NAME not like 'BIN$%' " +
+                "and OBJECT_TYPE in ('MATERIALIZED VIEW', 'TRIGGER', 'VIEW', 'SYNONYM', 'TABLE', 'SEQUENCE', 'PROCEDURE', 'FUNCTION', 'PACKAGE', 'TYPE') " +
+                "order by decode(OBJECT_TYPE, 'MATERIALIZED VIEW', 0, 'TRIGGER', 1, 'VIEW', 2, 'SYNONYM', 3, 'TABLE', 4, 5)) loop " +
+                "begin " +
+                "execute immediate 'drop ' || o.OBJECT_TYPE || ' \"' || schema_name || '\".\"' || o.OBJECT_NAME || '\"' || " +
+                "case o.OBJECT_TYPE when 'TABLE' then ' cascade constraints" + (supportsPurge() ? " purge" : "") + "' when 'TYPE' then ' force' end; " +
+                "exception when others then " +
+                "if sqlcode not in (-942, -2289, -4043, -4080, -12083) then raise; end if; " +
+                "end; " +
+                "end loop; " +
+                "end;";
+
         Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
+        CallableStatement callableStatement = null;
         try {
-	        connection = getDataSource().getConnection();
-	        queryStatement = connection.createStatement();
-	        alterStatement = connection.createStatement();
-	
-	        // cascade or "set null" constraints can be ignored since they are handled correctly by the DBMS independent of the delete order
-	        resultSet = queryStatement.executeQuery("select p.table_name AS parent, c.table_name AS child from ALL_CONSTRAINTS p join ALL_CONSTRAINTS c on p.r_constraint_name = c.constraint_name and p.r_owner = c.owner where p.CONSTRAINT_TYPE = 'R' and c.OWNER = '" + schemaName + "' and p.DELETE_RULE = 'NO ACTION' and p.CONSTRAINT_NAME not like 'BIN$%' and p.STATUS <> 'DISABLED'");
-	        while (resultSet.next()) {
-	        	String child = resultSet.getString("CHILD");
-	            String parent = resultSet.getString("PARENT");
-	            if (childParentRelations.containsKey(child)) {
-	            	Set<String> parents = childParentRelations.get(child);
-	            	parents.add(parent);
-	            } else {
-	            	Set<String> parents = new HashSet<String>();
-	            	parents.add(parent);
-	            	childParentRelations.put(child, parents);
-	            }
-	        }
-	        return childParentRelations;
+            connection = getDataSource().getConnection();
+            callableStatement = connection.prepareCall(plsqlBlock);
+            callableStatement.setString(1, schemaName);
+            callableStatement.execute();
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to clear schema " + schemaName, e);
         } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
+            closeQuietly(connection, callableStatement, null);
         }
     }
 
+    /**
+     * Returns the dependencies between the items of the schema using the ALL_DEPENDENCIES view. Bodies of packages and
+     * types are reported as the package or type itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<ItemDependency> getItemDependencies(String schemaName) {
+        String types = "'TABLE', 'TABLE', 'VIEW', 'VIEW', 'MATERIALIZED VIEW', 'MATERIALIZED_VIEW', 'SYNONYM', 'SYNONYM', 'SEQUENCE', 'SEQUENCE', " +
+                "'TRIGGER', 'TRIGGER', 'TYPE', 'TYPE', 'TYPE BODY', 'TYPE', 'PROCEDURE', 'STORED_PROC', 'FUNCTION', 'FUNCTION', 'PACKAGE', 'PACKAGE', 'PACKAGE BODY', 'PACKAGE'";
+        return getItemDependencies("select NAME, decode(TYPE, " + types + "), REFERENCED_NAME, decode(REFERENCED_TYPE, " + types + ") from ALL_DEPENDENCIES " +
+                "where OWNER = ? and REFERENCED_OWNER = ? and NAME not like 'BIN$%' and REFERENCED_NAME not like 'BIN$%'", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Returns the names of the items of the schema using a single query on the ALL_OBJECTS view. Items in the recycle
+     * bin and the tables of materialized views are left out, the same as when the items are retrieved per type.
+     *
+     * @param schemaName The schema, not null
+     * @return The names of the items per type, not null
+     */
+    @Override
+    public Map<DbItemType, Set<String>> getDbItemsPerType(String schemaName) {
+        return getDbItemsPerType("select decode(OBJECT_TYPE, 'MATERIALIZED VIEW', 'MATERIALIZED_VIEW', 'DATABASE LINK', 'DATABASE_LINK', 'PROCEDURE', 'STORED_PROC', OBJECT_TYPE), OBJECT_NAME from ALL_OBJECTS " +
+                "where OWNER = ? and OBJECT_TYPE in ('TABLE', 'VIEW', 'MATERIALIZED VIEW', 'SYNONYM', 'DATABASE LINK', 'SEQUENCE', 'TRIGGER', 'TYPE', 'PROCEDURE', 'FUNCTION', 'PACKAGE') " +
+                "and OBJECT_NAME not like 'BIN$%' and not (OBJECT_TYPE = 'TABLE' and OBJECT_NAME in (select MVIEW_NAME from ALL_MVIEWS where OWNER = ?))", asList(schemaName, schemaName),
+                DbItemType.TABLE, DbItemType.VIEW, DbItemType.MATERIALIZED_VIEW, DbItemType.SYNONYM, DbItemType.DATABASE_LINK, DbItemType.SEQUENCE,
+                DbItemType.TRIGGER, DbItemType.TYPE, DbItemType.STORED_PROC, DbItemType.FUNCTION, DbItemType.PACKAGE);
+    }
+
     /**
      * Gets the names of all columns of the given table.
      *
@@ -119,7 +162,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from ALL_TAB_COLUMNS where TABLE_NAME = '" + tableName + "' and OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select COLUMN_NAME from ALL_TAB_COLUMNS where TABLE_NAME = ? and OWNER = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -129,7 +172,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select VIEW_NAME from ALL_VIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select VIEW_NAME from ALL_VIEWS where OWNER = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -139,7 +182,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getMaterializedViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select MVIEW_NAME from ALL_MVIEWS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select MVIEW_NAME from ALL_MVIEWS where OWNER = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -149,7 +192,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getSynonymNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SYNONYM_NAME from ALL_SYNONYMS where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SYNONYM_NAME from ALL_SYNONYMS where OWNER = ?", asList(schemaName), getDataSource());
     }
     
     /**
@@ -159,7 +202,7 @@ public class OracleDatabase extends Database {
     */
     @Override
     public Set<String> getDatabaseLinkNames(String schemaName) {
-    	return getSQLHandler().getItemsAsStringSet("select DB_LINK from ALL_DB_LINKS where OWNER = '" + schemaName + "'", getDataSource());
+    	return getSQLHandler().getItemsAsStringSet("select DB_LINK from ALL_DB_LINKS where OWNER = ?", asList(schemaName), getDataSource());
     }
     
     /**
@@ -169,7 +212,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getSequenceNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from ALL_SEQUENCES where SEQUENCE_OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select SEQUENCE_NAME from ALL_SEQUENCES where SEQUENCE_OWNER = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -180,7 +223,7 @@ public class OracleDatabase extends Database {
     @Override
     public Set<String> getTriggerNames(String schemaName) {
         // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from ALL_TRIGGERS where OWNER = '" + schemaName + "' and TRIGGER_NAME not like 'BIN$%'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TRIGGER_NAME from ALL_TRIGGERS where OWNER = ? and TRIGGER_NAME not like 'BIN$%'", asList(schemaName), getDataSource());
     }
 
     /**
@@ -190,7 +233,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select TYPE_NAME from ALL_TYPES where OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select TYPE_NAME from ALL_TYPES where OWNER = ?", asList(schemaName), getDataSource());
     }
     /**
     * Retrieves the names of all functions in the given schema.
@@ -200,7 +243,7 @@ public class OracleDatabase extends Database {
     */
     @Override
     public Set<String> getFunctionNames(String schemaName) {
-    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = '" + schemaName + "' and OBJECT_TYPE = 'FUNCTION'", getDataSource());
+    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = ? and OBJECT_TYPE = 'FUNCTION'", asList(schemaName), getDataSource());
     }
         
     /**
@@ -211,7 +254,7 @@ public class OracleDatabase extends Database {
     */
     @Override
     public Set<String> getPackageNames(String schemaName) {
-    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = '" + schemaName + "' and OBJECT_TYPE = 'PACKAGE'", getDataSource());
+    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = ? and OBJECT_TYPE = 'PACKAGE'", asList(schemaName), getDataSource());
     }
         
     /**
@@ -222,7 +265,7 @@ public class OracleDatabase extends Database {
     */
     @Override
     public Set<String> getStoredProcedureNames(String schemaName) {
-    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = '" + schemaName + "' and OBJECT_TYPE = 'PROCEDURE'", getDataSource());
+    	return getSQLHandler().getItemsAsStringSet("select distinct OBJECT_NAME from ALL_PROCEDURES where OWNER = ? and OBJECT_TYPE = 'PROCEDURE'", asList(schemaName), getDataSource());
 	}  
 
     /**
@@ -354,29 +397,208 @@ public class OracleDatabase extends Database {
      */
     @Override
     public void disableValueConstraints(String schemaName) {
+        executeStatementsPerTable(getDisableValueConstraintsStatements(schemaName));
+    }
+
+    /**
+     * Returns the statements for disabling the value constraints of the schema: one statement per constraint.
+     *
+     * @param schemaName The schema, not null
+     * @return The statements per table name, not null
+     */
+    @Override
+    public Map<String, List<String>> getDisableValueConstraintsStatements(String schemaName) {
+        // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
+        // The 'O' type of constraints are ignored. These constraints are generated when a view is created with
+        // the with read-only option and can't be disabled with an alter table
+        List<String[]> records = getSQLHandler().getRecords("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in ('U', 'C', 'V') and OWNER = ? and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'", asList(schemaName), getDataSource());
+
+        Map<String, List<String>> statementsPerTable = new LinkedHashMap<String, List<String>>();
+        for (String[] record : records) {
+            addPerTable(record[0], "alter table " + qualified(schemaName, record[0]) + " disable constraint " + quoted(record[1]), statementsPerTable);
+        }
+        return statementsPerTable;
+    }
+
+    /**
+     * Returns the referential constraints of the schema that are not disabled yet.
+     *
+     * @param schemaName The schema, not null
+     * @return The constraints, not null
+     */
+    @Override
+    public List<ConstraintDefinition> getReferentialConstraintDefinitions(String schemaName) {
+        return getConstraintDefinitions(schemaName, "'R'");
+    }
+
+    /**
+     * Returns the value constraints of the schema that are not disabled yet.
+     *
+     * @param schemaName The schema, not null
+     * @return The constraints, not null
+     */
+    @Override
+    public List<ConstraintDefinition> getValueConstraintDefinitions(String schemaName) {
+        return getConstraintDefinitions(schemaName, "'U', 'C', 'V'");
+    }
+
+    /**
+     * Returns the constraints of the given types that {@link #disableReferentialConstraints(String)} and
+     * {@link #disableValueConstraints(String)} would disable. Disabled constraints are kept by Oracle, so no
+     * definitions are needed to enable them again.
+     *
+     * @param schemaName      The schema, not null
+     * @param constraintTypes The constraint types as a comma separated list of literals, not null
+     * @return The constraints, not null
+     */
+    protected List<ConstraintDefinition> getConstraintDefinitions(String schemaName, String constraintTypes) {
+        List<String[]> records = getSQLHandler().getRecords("select TABLE_NAME, CONSTRAINT_NAME, CONSTRAINT_TYPE from ALL_CONSTRAINTS where CONSTRAINT_TYPE in (" + constraintTypes + ") and OWNER = ? and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'", asList(schemaName), getDataSource());
+
+        List<ConstraintDefinition> result = new ArrayList<ConstraintDefinition>();
+        for (String[] record : records) {
+            ConstraintDefinition.Type type;
+            if ("R".equals(record[2])) {
+                type = ConstraintDefinition.Type.FOREIGN_KEY;
+            } else if ("U".equals(record[2])) {
+                type = ConstraintDefinition.Type.UNIQUE;
+            } else {
+                type = ConstraintDefinition.Type.CHECK;
+            }
+            result.add(new ConstraintDefinition(schemaName, record[0], record[1], type, null));
+        }
+        return result;
+    }
+
+    /**
+     * Enables the constraint using enable novalidate: only new data is checked.
+     *
+     * @param constraint The constraint, not null
+     */
+    @Override
+    public void enableConstraintWithoutValidation(ConstraintDefinition constraint) {
+        getSQLHandler().execute("alter table " + qualified(constraint.getSchemaName(), constraint.getTableName()) + " enable novalidate constraint " + quoted(constraint.getConstraintName()), getDataSource());
+    }
+
+    /**
+     * Checks the existing data of the constraint using enable validate. For a constraint that is enabled, this
+     * does not lock the table for DML while the data is checked.
+     *
+     * @param constraint The constraint, not null
+     */
+    @Override
+    public void validateConstraint(ConstraintDefinition constraint) {
+        getSQLHandler().execute("alter table " + qualified(constraint.getSchemaName(), constraint.getTableName()) + " enable validate constraint " + quoted(constraint.getConstraintName()), getDataSource());
+    }
+
+    /**
+     * Checks whether the constraint is enabled, validated or not.
+     *
+     * @param constraint The constraint, not null
+     * @return True if the constraint is enabled
+     */
+    @Override
+    public boolean isConstraintEnabled(ConstraintDefinition constraint) {
+        return getSQLHandler().exists("select 1 from ALL_CONSTRAINTS where OWNER = ? and TABLE_NAME = ? and CONSTRAINT_NAME = ? and STATUS = 'ENABLED'",
+                asList(constraint.getSchemaName(), constraint.getTableName(), constraint.getConstraintName()), getDataSource());
+    }
+
+    /**
+     * Truncates the given tables. Oracle does not allow truncating a table that is referenced by an enabled foreign key,
+     * even if the referring table is empty. The foreign keys between the given tables are therefore disabled first and
+     * enabled again afterwards. Since all tables are empty by then, enabling them does not need to check any data.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables to truncate, not null
+     */
+    @Override
+    public void truncateTables(String schemaName, List<String> tableNames) {
+        SQLHandler sqlHandler = getSQLHandler();
+        List<String[]> references = sqlHandler.getRecords("select p.TABLE_NAME, c.OWNER, c.TABLE_NAME, c.CONSTRAINT_NAME from ALL_CONSTRAINTS c join ALL_CONSTRAINTS p on c.R_OWNER = p.OWNER and c.R_CONSTRAINT_NAME = p.CONSTRAINT_NAME " +
+                "where c.CONSTRAINT_TYPE = 'R' and c.STATUS = 'ENABLED' and p.OWNER = ? and c.CONSTRAINT_NAME not like 'BIN$%'", asList(schemaName), getDataSource());
+        assertNotReferencedByOtherTables(schemaName, tableNames, references);
+
+        Set<String> tableNameSet = new HashSet<String>(tableNames);
+        List<String[]> constraintsToDisable = new ArrayList<String[]>();
+        for (String[] reference : references) {
+            if (tableNameSet.contains(reference[0])) {
+                constraintsToDisable.add(reference);
+            }
+        }
+        for (String[] constraint : constraintsToDisable) {
+            sqlHandler.execute("alter table " + qualified(constraint[1], constraint[2]) + " disable constraint " + quoted(constraint[3]), getDataSource());
+        }
+        boolean truncated = false;
+        try {
+            for (String tableName : tableNames) {
+                sqlHandler.execute("truncate table " + qualified(schemaName, tableName), getDataSource());
+            }
+            truncated = true;
+        } finally {
+            // if not all tables could be truncated, there may be records left that refer to truncated tables
+            String enableClause = truncated ? " enable constraint " : " enable novalidate constraint ";
+            for (String[] constraint : constraintsToDisable) {
+                sqlHandler.execute("alter table " + qualified(constraint[1], constraint[2]) + enableClause + quoted(constraint[3]), getDataSource());
+            }
+        }
+    }
+
+    /**
+     * Disables all referential constraints (e.g. foreign keys) on all table in the schema using a PL/SQL anonymous
+     * block. The constraints are looked up and disabled on the server in one round trip.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of disabled constraints
+     */
+    @Override
+    public int disableReferentialConstraintsServerSide(String schemaName) {
+        return disableConstraintsServerSide(schemaName, "'R'");
+    }
+
+    /**
+     * Disables all value constraints (e.g. not null) on all tables in the schema using a PL/SQL anonymous
+     * block. The constraints are looked up and disabled on the server in one round trip.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of disabled constraints
+     */
+    @Override
+    public int disableValueConstraintsServerSide(String schemaName) {
+        return disableConstraintsServerSide(schemaName, "'U', 'C', 'V'");
+    }
+
+    /**
+     * Executes a PL/SQL anonymous block that disables all enabled constraints of the given types in the schema.
+     * Recycled items (BIN$) are skipped, the same as for the client-side versions.
+     *
+     * @param schemaName      The schema, not null
+     * @param constraintTypes The constraint types as a comma separated list of literals, not null
+     * @return The number of disabled constraints
+     */
+    protected int disableConstraintsServerSide(String schemaName, String constraintTypes) {
+        String plsqlBlock = "declare " +
+                "schema_name varchar2(128) := ?; " +
+                "affected_count integer := 0; " +
+                "begin " +
+                "for c in (select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in (" + constraintTypes + ") and OWNER = schema_name and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED') loop " +
+                "execute immediate 'alter table \"' || schema_name || '\".\"' || c.TABLE_NAME || '\" disable constraint \"' || c.CONSTRAINT_NAME || '\"'; " +
+                "affected_count := affected_count + 1; " +
+                "end loop; " +
+                "? := affected_count; " +
+                "end;";
+
         Connection connection = null;
-        Statement queryStatement = null;
-        Statement alterStatement = null;
-        ResultSet resultSet = null;
+        CallableStatement callableStatement = null;
         try {
             connection = getDataSource().getConnection();
-            queryStatement = connection.createStatement();
-            alterStatement = connection.createStatement();
-
-            // to be sure no recycled items are handled, all items with a name that starts with BIN$ will be filtered out.
-            // The 'O' type of constraints are ignored. These constraints are generated when a view is created with
-            // the with read-only option and can't be disabled with an alter table
-            resultSet = queryStatement.executeQuery("select TABLE_NAME, CONSTRAINT_NAME from ALL_CONSTRAINTS where CONSTRAINT_TYPE in ('U', 'C', 'V') and OWNER = '" + schemaName + "' and CONSTRAINT_NAME not like 'BIN$%' and STATUS <> 'DISABLED'");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("TABLE_NAME");
-                String constraintName = resultSet.getString("CONSTRAINT_NAME");
-                alterStatement.executeUpdate("alter table " + qualified(schemaName, tableName) + " disable constraint " + quoted(constraintName));
-            }
+            callableStatement = connection.prepareCall(plsqlBlock);
+            callableStatement.setString(1, schemaName);
+            callableStatement.registerOutParameter(2, Types.INTEGER);
+            callableStatement.execute();
+            return callableStatement.getInt(2);
         } catch (SQLException e) {
-            throw new DatabaseException("Unable to disable value constraints for schema name: " + schemaName, e);
+            throw new DatabaseException("Unable to disable constraints server-side for schema name: " + schemaName, e);
         } finally {
-            closeQuietly(queryStatement);
-            closeQuietly(connection, alterStatement, resultSet);
+            closeQuietly(connection, callableStatement, null);
         }
     }
 
@@ -391,7 +613,7 @@ public class OracleDatabase extends Database {
      */
     @Override
     public long getSequenceValue(String schemaName, String sequenceName) {
-        return getSQLHandler().getItemAsLong("select LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_NAME = '" + sequenceName + "' and SEQUENCE_OWNER = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemAsLong("select LAST_NUMBER from ALL_SEQUENCES where SEQUENCE_NAME = ? and SEQUENCE_OWNER = ?", asList(sequenceName, schemaName), getDataSource());
     }
 
     /**
@@ -569,6 +791,67 @@ public class OracleDatabase extends Database {
         return true;
     }
 
+    /**
+     * Disabling constraints using a PL/SQL anonymous block is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsServerSideConstraintDisabling() {
+        return true;
+    }
+
+    /**
+     * Disabled constraints can be enabled again.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsConstraintEnabling() {
+        return true;
+    }
+
+    /**
+     * Retrieving item dependencies is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsItemDependencies() {
+        return true;
+    }
+
+    /**
+     * Retrieving the items of all types at once is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsDbItemsPerType() {
+        return true;
+    }
+
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Clearing a schema at once is supported.
+     *
+     * @param schemaName The schema, not null
+     * @return True
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return true;
+    }
+
 
     /**
      * @return Whether or not this version of the Oracle database that is used supports the purge keyword. This is,
@@ -15,14 +15,33 @@
  */
 package org.dbmaintain.database.impl;
 
+import org.dbmaintain.database.ConstraintDefinition;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.ItemDependency;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.structure.model.DbItemType;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.apache.commons.dbutils.DbUtils.closeQuietly;
+import static org.dbmaintain.structure.model.DbItemType.SEQUENCE;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.structure.model.DbItemType.TRIGGER;
+import static org.dbmaintain.structure.model.DbItemType.VIEW;
+
 /**
  * Implementation of {@link org.dbmaintain.database.Database} for a PostgreSql database.
  *
@@ -32,6 +51,9 @@ import java.util.Set;
  */
 public class PostgreSqlDatabase extends Database {
 
+    /* The session setting in which DO blocks store the number of affected items */
+    protected static final String AFFECTED_COUNT_SETTING = "dbmaintain.affected_count";
+
 
     public PostgreSqlDatabase(DatabaseConnection databaseConnection, IdentifierProcessor identifierProcessor) {
         super(databaseConnection, identifierProcessor);
@@ -54,7 +76,112 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTableNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'BASE TABLE' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'BASE TABLE' and table_schema = ?", asList(schemaName), getDataSource());
+    }
+
+    /**
+     * Returns the tables that have to be handled before each table, i.e. the tables that refer to it, using a single query.
+     * Only no action and restrict constraints are taken into account, the DBMS handles the other delete rules itself.
+     *
+     * @param schemaName The schema, not null
+     * @return The referring table names per referenced table name, not null
+     */
+    @Override
+    protected Map<String, Set<String>> getTableChildParentRelations(String schemaName) {
+        return getTableChildParentRelations("select pt.relname, ct.relname from pg_constraint c " +
+                "join pg_class ct on ct.oid = c.conrelid join pg_namespace cn on cn.oid = ct.relnamespace " +
+                "join pg_class pt on pt.oid = c.confrelid join pg_namespace pn on pn.oid = pt.relnamespace " +
+                "where c.contype = 'f' and c.confdeltype in ('a', 'r') and cn.nspname = ? and pn.nspname = ?", asList(schemaName, schemaName));
+    }
+
+    /**
+     * Drops the schema with all its items and creates it again with the same owner, after which the privileges that
+     * were granted on the schema and the default privileges of the schema (alter default privileges ... in schema)
+     * are granted again. Drop owned by is not used: it drops the items of the owner in all schemas and also revokes
+     * its privileges elsewhere.
+     * <p/>
+     * Nothing is dropped if the user is not allowed to create the schema again with the same owner and default
+     * privileges, i.e. if the user cannot create schemas in the database or is not a member of these roles.
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void clearSchema(String schemaName) {
+        SQLHandler sqlHandler = getSQLHandler();
+        long allowed = sqlHandler.getItemAsLong("select case when has_database_privilege(current_database(), 'CREATE') and pg_has_role(n.nspowner, 'MEMBER') " +
+                "and not exists (select 1 from pg_default_acl d where d.defaclnamespace = n.oid and not pg_has_role(d.defaclrole, 'MEMBER')) then 1 else 0 end " +
+                "from pg_namespace n where n.nspname = ?", asList(schemaName), getDataSource());
+        if (allowed == 0) {
+            throw new DatabaseException("Unable to clear schema " + schemaName + " at once. The user is not allowed to create the schema again with the same owner and default privileges.");
+        }
+        String owner = sqlHandler.getItemAsString("select quote_ident(pg_get_userbyid(nspowner)) from pg_namespace where nspname = ?", asList(schemaName), getDataSource());
+        List<String[]> privileges = sqlHandler.getRecords("select case a.grantee when 0 then 'public' else quote_ident(pg_get_userbyid(a.grantee)) end, a.privilege_type, " +
+                "case when a.is_grantable then ' with grant option' else '' end from pg_namespace n, aclexplode(n.nspacl) a where n.nspname = ? and a.grantee <> n.nspowner", asList(schemaName), getDataSource());
+        List<String[]> defaultPrivileges = sqlHandler.getRecords("select quote_ident(pg_get_userbyid(d.defaclrole)), " +
+                "case d.defaclobjtype when 'r' then 'tables' when 'S' then 'sequences' when 'f' then 'functions' when 'T' then 'types' end, a.privilege_type, " +
+                "case a.grantee when 0 then 'public' else quote_ident(pg_get_userbyid(a.grantee)) end, case when a.is_grantable then ' with grant option' else '' end " +
+                "from pg_default_acl d join pg_namespace n on n.oid = d.defaclnamespace, aclexplode(d.defaclacl) a where n.nspname = ? and d.defaclobjtype in ('r', 'S', 'f', 'T')", asList(schemaName), getDataSource());
+
+        sqlHandler.execute("drop schema " + quoted(schemaName) + " cascade", getDataSource());
+        sqlHandler.execute("create schema " + quoted(schemaName) + " authorization " + owner, getDataSource());
+        for (String[] privilege : privileges) {
+            sqlHandler.execute("grant " + privilege[1] + " on schema " + quoted(schemaName) + " to " + privilege[0] + privilege[2], getDataSource());
+        }
+        for (String[] defaultPrivilege : defaultPrivileges) {
+            sqlHandler.execute("alter default privileges for role " + defaultPrivilege[0] + " in schema " + quoted(schemaName) +
+                    " grant " + defaultPrivilege[2] + " on " + defaultPrivilege[1] + " to " + defaultPrivilege[3] + defaultPrivilege[4], getDataSource());
+        }
+    }
+
+    /**
+     * Returns the dependencies between the items of the schema using pg_depend: the normal dependencies of views and
+     * materialized views on other relations, of column defaults on sequences and of columns on types. The triggers
+     * depend on their table, so that they are dropped before the table drops them automatically. A sequence that is
+     * owned by a column is dropped together with its table, after which it is skipped by the clearer.
+     *
+     * @param schemaName The schema, not null
+     * @return The dependencies, not null
+     */
+    @Override
+    public List<ItemDependency> getItemDependencies(String schemaName) {
+        String relationType = "case %s.relkind when 'r' then 'TABLE' when 'p' then 'TABLE' when 'v' then 'VIEW' when 'm' then 'MATERIALIZED_VIEW' when 'S' then 'SEQUENCE' end";
+        List<ItemDependency> itemDependencies = getItemDependencies("select distinct c.relname, " + String.format(relationType, "c") + ", r.relname, " + String.format(relationType, "r") + " from pg_depend d " +
+                "join pg_rewrite w on d.classid = 'pg_rewrite'::regclass and w.oid = d.objid join pg_class c on c.oid = w.ev_class " +
+                "join pg_class r on d.refclassid = 'pg_class'::regclass and r.oid = d.refobjid " +
+                "where d.deptype = 'n' and c.relnamespace = (select oid from pg_namespace where nspname = ?) and r.relnamespace = (select oid from pg_namespace where nspname = ?) " +
+                "union select distinct c.relname, " + String.format(relationType, "c") + ", r.relname, " + String.format(relationType, "r") + " from pg_depend d " +
+                "join pg_attrdef a on d.classid = 'pg_attrdef'::regclass and a.oid = d.objid join pg_class c on c.oid = a.adrelid " +
+                "join pg_class r on d.refclassid = 'pg_class'::regclass and r.oid = d.refobjid " +
+                "where d.deptype = 'n' and c.relnamespace = (select oid from pg_namespace where nspname = ?) and r.relnamespace = (select oid from pg_namespace where nspname = ?) " +
+                "union select distinct c.relname, " + String.format(relationType, "c") + ", t.typname, 'TYPE' from pg_depend d " +
+                "join pg_class c on d.classid = 'pg_class'::regclass and c.oid = d.objid " +
+                "join pg_type t on d.refclassid = 'pg_type'::regclass and t.oid = d.refobjid " +
+                "where d.deptype = 'n' and c.relnamespace = (select oid from pg_namespace where nspname = ?) and t.typnamespace = (select oid from pg_namespace where nspname = ?)",
+                asList(schemaName, schemaName, schemaName, schemaName, schemaName, schemaName));
+
+        // trigger names also contain the table name, see getTriggerNames
+        List<String[]> triggers = getSQLHandler().getRecords("select t.tgname, c.relname from pg_trigger t join pg_class c on c.oid = t.tgrelid " +
+                "where not t.tgisinternal and c.relkind in ('r', 'p') and c.relnamespace = (select oid from pg_namespace where nspname = ?)", asList(schemaName), getDataSource());
+        for (String[] trigger : triggers) {
+            itemDependencies.add(new ItemDependency(TRIGGER, quoted(trigger[0]) + " ON " + qualified(schemaName, trigger[1]), TABLE, trigger[1]));
+        }
+        return itemDependencies;
+    }
+
+    /**
+     * Returns the names of the tables, views and sequences of the schema using a single query on pg_class. The same
+     * as for information_schema.tables, only tables and views that the user owns or has a privilege on are returned.
+     * Triggers and types are retrieved per type.
+     *
+     * @param schemaName The schema, not null
+     * @return The names of the items per type, not null
+     */
+    @Override
+    public Map<DbItemType, Set<String>> getDbItemsPerType(String schemaName) {
+        return getDbItemsPerType("select case c.relkind when 'S' then 'SEQUENCE' when 'v' then 'VIEW' else 'TABLE' end, c.relname from pg_class c join pg_namespace n on n.oid = c.relnamespace " +
+                "where c.relkind in ('r', 'p', 'v', 'S') and n.nspname = ? " +
+                "and (c.relkind = 'S' or pg_has_role(c.relowner, 'USAGE') or has_table_privilege(c.oid, 'SELECT, INSERT, UPDATE, DELETE, TRUNCATE, REFERENCES, TRIGGER'))", asList(schemaName),
+                TABLE, VIEW, SEQUENCE);
     }
 
     /**
@@ -65,7 +192,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getColumnNames(String schemaName, String tableName) {
-        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select column_name from information_schema.columns where table_name = ? and table_schema = ?", asList(tableName, schemaName), getDataSource());
     }
 
     /**
@@ -75,7 +202,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getViewNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'VIEW' and table_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select table_name from information_schema.tables where table_type = 'VIEW' and table_schema = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -88,8 +215,8 @@ public class PostgreSqlDatabase extends Database {
         // Patch from Dan Carleton submitted in forum post
         // http://sourceforge.net/forum/forum.php?thread_id=1708520&forum_id=570578
         // Should be replaced by the original query on information_schema.sequences in future, since this is a more elegant solution
-        // This is the original query: getItemsAsStringSet("select sequence_name from information_schema.sequences where sequence_schema = '" + schemaName + "'", getDataSource());
-        return getSQLHandler().getItemsAsStringSet("select c.relname from pg_class c join pg_namespace n on (c.relnamespace = n.oid) where c.relkind = 'S' and n.nspname = '" + schemaName + "'", getDataSource());
+        // This is the original query: getItemsAsStringSet("select sequence_name from information_schema.sequences where sequence_schema = ?", asList(schemaName), getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select c.relname from pg_class c join pg_namespace n on (c.relnamespace = n.oid) where c.relkind = 'S' and n.nspname = ?", asList(schemaName), getDataSource());
     }
 
     /**
@@ -107,7 +234,7 @@ public class PostgreSqlDatabase extends Database {
     public Set<String> getTriggerNames(String schemaName) {
         Set<String> result = new HashSet<String>();
 
-        Set<String> triggerAndTableNames = getSQLHandler().getItemsAsStringSet("select trigger_name || ',' || event_object_table from information_schema.triggers where trigger_schema = '" + schemaName + "'", getDataSource());
+        Set<String> triggerAndTableNames = getSQLHandler().getItemsAsStringSet("select trigger_name || ',' || event_object_table from information_schema.triggers where trigger_schema = ?", asList(schemaName), getDataSource());
         for (String triggerAndTableName : triggerAndTableNames) {
             String[] parts = triggerAndTableName.split(",");
             String triggerName = quoted(parts[0]);
@@ -154,7 +281,7 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public Set<String> getTypeNames(String schemaName) {
-        return getSQLHandler().getItemsAsStringSet("select object_name from information_schema.data_type_privileges where object_type = 'USER-DEFINED TYPE' and object_schema = '" + schemaName + "'", getDataSource());
+        return getSQLHandler().getItemsAsStringSet("select object_name from information_schema.data_type_privileges where object_type = 'USER-DEFINED TYPE' and object_schema = ?", asList(schemaName), getDataSource());
     }
 
 
@@ -165,59 +292,260 @@ public class PostgreSqlDatabase extends Database {
      */
     @Override
     public void disableReferentialConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableReferentialConstraints(schemaName, tableName);
+        // all foreign keys of the schema are retrieved at once and are dropped using one statement per table
+        List<String[]> records = getSQLHandler().getRecords("select c.relname, con.conname from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where con.contype = 'f' and n.nspname = ? order by c.relname, con.conname", asList(schemaName), getDataSource());
+
+        Map<String, List<String>> alterTableClausesPerTable = new LinkedHashMap<String, List<String>>();
+        for (String[] record : records) {
+            addPerTable(record[0], "drop constraint " + quoted(record[1]), alterTableClausesPerTable);
         }
+        executeAlterTableClauses(schemaName, alterTableClausesPerTable);
     }
 
-    // todo refactor (see oracle)
+    /**
+     * Disables all value constraints (e.g. not null) on all tables in the schema
+     *
+     * @param schemaName The schema, not null
+     */
+    @Override
+    public void disableValueConstraints(String schemaName) {
+        executeStatementsPerTable(getDisableValueConstraintsStatements(schemaName));
+    }
 
-    protected void disableReferentialConstraints(String schemaName, String tableName) {
+    /**
+     * Returns the statements for dropping the value constraints of the schema: one alter table statement per table.
+     *
+     * @param schemaName The schema, not null
+     * @return The statement per table name, not null
+     */
+    @Override
+    public Map<String, List<String>> getDisableValueConstraintsStatements(String schemaName) {
         SQLHandler sqlHandler = getSQLHandler();
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con where con.table_name = '" + tableName + "' and constraint_type = 'FOREIGN KEY' and constraint_schema = '" + schemaName + "'", getDataSource());
-        for (String constraintName : constraintNames) {
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
+        Map<String, List<String>> alterTableClausesPerTable = new LinkedHashMap<String, List<String>>();
+
+        // all check and unique constraints of the tables of the schema
+        // not null constraints are not included: these are dropped using 'drop not null' below
+        List<String[]> constraintRecords = sqlHandler.getRecords("select c.relname, con.conname from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where con.contype in ('c', 'u') and c.relkind in ('r', 'p') and n.nspname = ? order by c.relname, con.conname", asList(schemaName), getDataSource());
+        for (String[] record : constraintRecords) {
+            addPerTable(record[0], "drop constraint " + quoted(record[1]), alterTableClausesPerTable);
         }
+
+        // all not null columns of the tables of the schema, except for primary key columns: their not-null constraint cannot be removed
+        List<String[]> notNullColumnRecords = sqlHandler.getRecords("select c.relname, a.attname from pg_attribute a join pg_class c on c.oid = a.attrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where a.attnum > 0 and not a.attisdropped and a.attnotnull and c.relkind in ('r', 'p') and n.nspname = ? " +
+                "and not exists (select 1 from pg_index i where i.indrelid = c.oid and i.indisprimary and a.attnum = any(i.indkey)) order by c.relname, a.attnum", asList(schemaName), getDataSource());
+        for (String[] record : notNullColumnRecords) {
+            addPerTable(record[0], "alter column " + quoted(record[1]) + " drop not null", alterTableClausesPerTable);
+        }
+        return createAlterTableStatements(schemaName, alterTableClausesPerTable);
     }
 
     /**
-     * Disables all value constraints (e.g. not null) on all tables in the schema
+     * Returns the foreign keys of the schema, together with their definition so that they can be re-created.
      *
      * @param schemaName The schema, not null
+     * @return The constraints, not null
      */
     @Override
-    public void disableValueConstraints(String schemaName) {
-        Set<String> tableNames = getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            disableValueConstraints(schemaName, tableName);
+    public List<ConstraintDefinition> getReferentialConstraintDefinitions(String schemaName) {
+        List<String[]> records = getSQLHandler().getRecords("select c.relname, con.conname, pg_get_constraintdef(con.oid) from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where con.contype = 'f' and n.nspname = ? order by c.relname, con.conname", asList(schemaName), getDataSource());
+
+        List<ConstraintDefinition> result = new ArrayList<ConstraintDefinition>();
+        for (String[] record : records) {
+            result.add(new ConstraintDefinition(schemaName, record[0], record[1], ConstraintDefinition.Type.FOREIGN_KEY, record[2]));
         }
+        return result;
     }
 
-    // todo refactor (see oracle)
-
-    protected void disableValueConstraints(String schemaName, String tableName) {
+    /**
+     * Returns the check and unique constraints and not null columns that {@link #disableValueConstraints(String)}
+     * drops, together with their definition so that they can be re-created.
+     *
+     * @param schemaName The schema, not null
+     * @return The constraints, not null
+     */
+    @Override
+    public List<ConstraintDefinition> getValueConstraintDefinitions(String schemaName) {
         SQLHandler sqlHandler = getSQLHandler();
+        List<ConstraintDefinition> result = new ArrayList<ConstraintDefinition>();
 
-        // disable all check and unique constraints
-        // The join wiht pg_constraints is used to filter out not null check-constraints that are implicitly created by Postgresql
-        Set<String> constraintNames = sqlHandler.getItemsAsStringSet("select constraint_name from information_schema.table_constraints con, pg_constraint pg_con where pg_con.conname = con.constraint_name and con.table_name = '" + tableName + "' and constraint_type in ('CHECK', 'UNIQUE') and constraint_schema = '" + schemaName + "'", getDataSource());
-        for (String constraintName : constraintNames) {
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " drop constraint " + quoted(constraintName), getDataSource());
+        List<String[]> constraintRecords = sqlHandler.getRecords("select c.relname, con.conname, pg_get_constraintdef(con.oid), con.contype from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where con.contype in ('c', 'u') and c.relkind in ('r', 'p') and n.nspname = ? order by c.relname, con.conname", asList(schemaName), getDataSource());
+        for (String[] record : constraintRecords) {
+            ConstraintDefinition.Type type = "u".equals(record[3]) ? ConstraintDefinition.Type.UNIQUE : ConstraintDefinition.Type.CHECK;
+            result.add(new ConstraintDefinition(schemaName, record[0], record[1], type, record[2]));
         }
 
-        // retrieve the name of the primary key, since we cannot remove the not-null constraint on this column
-        Set<String> primaryKeyColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.table_constraints con, information_schema.key_column_usage key where con.table_name = '" + tableName + "' and con.table_schema = '" + schemaName + "' and key.table_name = con.table_name and key.table_schema = con.table_schema and key.constraint_name = con.constraint_name and con.constraint_type = 'PRIMARY KEY'", getDataSource());
+        List<String[]> notNullColumnRecords = sqlHandler.getRecords("select c.relname, a.attname from pg_attribute a join pg_class c on c.oid = a.attrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where a.attnum > 0 and not a.attisdropped and a.attnotnull and c.relkind in ('r', 'p') and n.nspname = ? " +
+                "and not exists (select 1 from pg_index i where i.indrelid = c.oid and i.indisprimary and a.attnum = any(i.indkey)) order by c.relname, a.attnum", asList(schemaName), getDataSource());
+        for (String[] record : notNullColumnRecords) {
+            result.add(new ConstraintDefinition(schemaName, record[0], record[1], ConstraintDefinition.Type.NOT_NULL, null));
+        }
+        return result;
+    }
+
+    /**
+     * Re-creates the dropped constraint. Foreign keys and check constraints are added as not valid: only new data is
+     * checked. Unique and not null constraints do not support this and are checked immediately.
+     *
+     * @param constraint The constraint, not null
+     */
+    @Override
+    public void enableConstraintWithoutValidation(ConstraintDefinition constraint) {
+        String qualifiedTableName = qualified(constraint.getSchemaName(), constraint.getTableName());
+        switch (constraint.getType()) {
+            case NOT_NULL:
+                getSQLHandler().execute("alter table " + qualifiedTableName + " alter column " + quoted(constraint.getConstraintName()) + " set not null", getDataSource());
+                break;
+            case UNIQUE:
+                getSQLHandler().execute("alter table " + qualifiedTableName + " add constraint " + quoted(constraint.getConstraintName()) + " " + constraint.getDefinition(), getDataSource());
+                break;
+            default:
+                getSQLHandler().execute("alter table " + qualifiedTableName + " add constraint " + quoted(constraint.getConstraintName()) + " " + constraint.getDefinition() + " not valid", getDataSource());
+        }
+    }
+
+    /**
+     * Checks the existing data of a foreign key or check constraint that was added as not valid. Validating only
+     * takes a lock that allows reads and writes on the table while the data is checked.
+     *
+     * @param constraint The constraint, not null
+     */
+    @Override
+    public void validateConstraint(ConstraintDefinition constraint) {
+        if (constraint.getType() == ConstraintDefinition.Type.FOREIGN_KEY || constraint.getType() == ConstraintDefinition.Type.CHECK) {
+            getSQLHandler().execute("alter table " + qualified(constraint.getSchemaName(), constraint.getTableName()) + " validate constraint " + quoted(constraint.getConstraintName()), getDataSource());
+        }
+    }
 
-        // disable all not null constraints
-        Set<String> notNullColumnNames = sqlHandler.getItemsAsStringSet("select column_name from information_schema.columns where is_nullable = 'NO' and table_name = '" + tableName + "' and table_schema = '" + schemaName + "'", getDataSource());
-        for (String notNullColumnName : notNullColumnNames) {
-            if (primaryKeyColumnNames.contains(notNullColumnName)) {
-                // Do not remove PK constraints
-                continue;
+    /**
+     * Checks whether the constraint was re-created, or for a not null constraint, whether the column is not null.
+     * The constraint can be enabled but not validated yet.
+     *
+     * @param constraint The constraint, not null
+     * @return True if the constraint exists
+     */
+    @Override
+    public boolean isConstraintEnabled(ConstraintDefinition constraint) {
+        if (constraint.getType() == ConstraintDefinition.Type.NOT_NULL) {
+            return getSQLHandler().exists("select 1 from pg_attribute a join pg_class c on c.oid = a.attrelid join pg_namespace n on n.oid = c.relnamespace " +
+                    "where a.attnum > 0 and not a.attisdropped and a.attnotnull and n.nspname = ? and c.relname = ? and a.attname = ?",
+                    asList(constraint.getSchemaName(), constraint.getTableName(), constraint.getConstraintName()), getDataSource());
+        }
+        return getSQLHandler().exists("select 1 from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace n on n.oid = c.relnamespace " +
+                "where n.nspname = ? and c.relname = ? and con.conname = ?", asList(constraint.getSchemaName(), constraint.getTableName(), constraint.getConstraintName()), getDataSource());
+    }
+
+    /**
+     * Truncates the given tables using a single truncate statement. Foreign keys between the tables in the statement
+     * are allowed, PostgreSql raises an error when one of the tables is referenced by another table. Cascade is not
+     * used, since it would also truncate the referring tables, e.g. tables of which the data should be preserved.
+     *
+     * @param schemaName The schema, not null
+     * @param tableNames The tables to truncate, not null
+     */
+    @Override
+    public void truncateTables(String schemaName, List<String> tableNames) {
+        StringBuilder sql = new StringBuilder("truncate table ");
+        for (int i = 0; i < tableNames.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
             }
-            sqlHandler.execute("alter table " + qualified(schemaName, tableName) + " alter column " + notNullColumnName + " drop not null", getDataSource());
+            sql.append(qualified(schemaName, tableNames.get(i)));
         }
+        getSQLHandler().execute(sql.toString(), getDataSource());
+    }
+
+    /**
+     * Drops all foreign keys on all table in the schema using a DO block. The constraints are looked up
+     * and dropped on the server in one round trip.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of dropped constraints
+     */
+    @Override
+    public int disableReferentialConstraintsServerSide(String schemaName) {
+        String doBlock = "do $$ " +
+                "declare r record; affected_count integer := 0; " +
+                "begin " +
+                "for r in select c.relname, con.conname from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace ns on ns.oid = c.relnamespace " +
+                "where con.contype = 'f' and ns.nspname = " + toLiteral(schemaName) + " loop " +
+                "execute format('alter table %I.%I drop constraint %I', " + toLiteral(schemaName) + ", r.relname, r.conname); " +
+                "affected_count := affected_count + 1; " +
+                "end loop; " +
+                "perform set_config('" + AFFECTED_COUNT_SETTING + "', affected_count::text, false); " +
+                "end $$";
+        return executeDoBlock(doBlock, schemaName);
+    }
+
+    /**
+     * Drops all check and unique constraints and not null constraints (except on primary key columns) on all tables
+     * in the schema using a DO block. The constraints are looked up and dropped on the server in one round trip.
+     *
+     * @param schemaName The schema, not null
+     * @return The number of dropped constraints
+     */
+    @Override
+    public int disableValueConstraintsServerSide(String schemaName) {
+        String doBlock = "do $$ " +
+                "declare r record; affected_count integer := 0; " +
+                "begin " +
+                "for r in select c.relname, con.conname from pg_constraint con join pg_class c on c.oid = con.conrelid join pg_namespace ns on ns.oid = c.relnamespace " +
+                "where con.contype in ('c', 'u') and c.relkind in ('r', 'p') and ns.nspname = " + toLiteral(schemaName) + " loop " +
+                "execute format('alter table %I.%I drop constraint %I', " + toLiteral(schemaName) + ", r.relname, r.conname); " +
+                "affected_count := affected_count + 1; " +
+                "end loop; " +
+                "for r in select c.relname, a.attname from pg_attribute a join pg_class c on c.oid = a.attrelid join pg_namespace ns on ns.oid = c.relnamespace " +
+                "where a.attnum > 0 and not a.attisdropped and a.attnotnull and c.relkind in ('r', 'p') and ns.nspname = " + toLiteral(schemaName) + " " +
+                "and not exists (select 1 from pg_index i where i.indrelid = c.oid and i.indisprimary and a.attnum = any(i.indkey)) loop " +
+                "execute format('alter table %I.%I alter column %I drop not null', " + toLiteral(schemaName) + ", r.relname, r.attname); " +
+                "affected_count := affected_count + 1; " +
+                "end loop; " +
+                "perform set_config('" + AFFECTED_COUNT_SETTING + "', affected_count::text, false); " +
+                "end $$";
+        return executeDoBlock(doBlock, schemaName);
+    }
+
+    /**
+     * Executes the given DO block. A DO block cannot return a value, so the block should store the number of affected
+     * items in the session setting {@link #AFFECTED_COUNT_SETTING} using set_config. The setting is read afterwards on
+     * the same connection. Unlike a notice, this does not depend on the client_min_messages setting of the session.
+     *
+     * @param doBlock    The DO block, not null
+     * @param schemaName The schema, for logging, not null
+     * @return The affected count reported by the block
+     */
+    protected int executeDoBlock(String doBlock, String schemaName) {
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getDataSource().getConnection();
+            statement = connection.createStatement();
+            statement.execute(doBlock);
+
+            resultSet = statement.executeQuery("select current_setting('" + AFFECTED_COUNT_SETTING + "')");
+            if (!resultSet.next() || resultSet.getString(1) == null) {
+                throw new DatabaseException("Unable to disable constraints server-side for schema name: " + schemaName + ". The DO block did not report the number of affected items.");
+            }
+            return Integer.parseInt(resultSet.getString(1));
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to disable constraints server-side for schema name: " + schemaName, e);
+        } finally {
+            closeQuietly(connection, statement, resultSet);
+        }
+    }
+
+    /**
+     * @param value The value, not null
+     * @return The value as an sql string literal, with single quotes escaped
+     */
+    protected String toLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
     }
 
 
@@ -304,4 +632,65 @@ public class PostgreSqlDatabase extends Database {
     public boolean supportsSetDatabaseDefaultSchema() {
         return true;
     }
+
+    /**
+     * Disabling constraints using a DO block is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsServerSideConstraintDisabling() {
+        return true;
+    }
+
+    /**
+     * Dropped constraints can be re-created from their definition.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsConstraintEnabling() {
+        return true;
+    }
+
+    /**
+     * Retrieving item dependencies is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsItemDependencies() {
+        return true;
+    }
+
+    /**
+     * Retrieving the tables, views and sequences at once is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsDbItemsPerType() {
+        return true;
+    }
+
+    /**
+     * Truncating tables is supported.
+     *
+     * @return True
+     */
+    @Override
+    public boolean supportsTruncate() {
+        return true;
+    }
+
+    /**
+     * Clearing a schema at once is supported.
+     *
+     * @param schemaName The schema, not null
+     * @return True
+     */
+    @Override
+    public boolean supportsClearSchema(String schemaName) {
+        return true;
+    }
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.DatabaseInfo;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A lightweight data source that keeps a bounded pool of connections to the database. The driver class is only
+ * loaded once and connections that are closed are handed out again instead of opening a new physical connection
+ * each time. A connection that is taken from the pool is first validated: connections that are no longer valid are
+ * discarded and replaced by a new one.
+ * <p/>
+ * When a connection is returned to the pool, uncommitted changes are rolled back and auto-commit is enabled again.
+ * Only the parameterless getConnection() method is supported. Call {@link #close} to close the pooled connections.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PoolingDataSource implements DataSource {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(PoolingDataSource.class);
+
+    private String driverClassName;
+    private String url;
+    private String userName;
+    private String password;
+    /* The nr of seconds to wait for the validation of a pooled connection, 0 means no timeout */
+    private int validationTimeoutSeconds;
+    /* The nr of milliseconds to wait for a free connection when all connections are in use */
+    private long maxWaitMillis;
+
+    /* Limits the nr of connections that are in use at the same time */
+    private Semaphore availableConnections;
+    /* The connections that are not in use */
+    private Deque<Connection> idleConnections = new ArrayDeque<>();
+    /* True if the driver class was already loaded */
+    private volatile boolean driverLoaded;
+    /* True if the pool was closed */
+    private volatile boolean closed;
+
+
+    /**
+     * @param databaseInfo             The database connection parameters, not null
+     * @param maxPoolSize              The max nr of connections that can be in use at the same time, > 0
+     * @param validationTimeoutSeconds The nr of seconds to wait for the validation of a pooled connection, 0 means no timeout
+     * @param maxWaitMillis            The nr of milliseconds to wait for a free connection when all connections are in use
+     */
+    public PoolingDataSource(DatabaseInfo databaseInfo, int maxPoolSize, int validationTimeoutSeconds, long maxWaitMillis) {
+        if (maxPoolSize <= 0) {
+            throw new DatabaseException("Unable to create pooling data source. The max pool size should be larger than 0, but was " + maxPoolSize);
+        }
+        this.driverClassName = databaseInfo.getDriverClassName();
+        this.url = databaseInfo.getUrl();
+        this.userName = databaseInfo.getUserName();
+        this.password = databaseInfo.getPassword();
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.maxWaitMillis = maxWaitMillis;
+        this.availableConnections = new Semaphore(maxPoolSize, true);
+        logger.info("Creating pooling data source. Driver: " + driverClassName + ", url: " + url + ", user: " + userName + ", password: <not shown>, max pool size: " + maxPoolSize);
+    }
+
+
+    /**
+     * Gets a connection from the pool. A new connection is created if there is no valid idle connection. If all
+     * connections are in use, this waits until one is returned to the pool.
+     * Closing the returned connection returns it to the pool.
+     *
+     * @return The connection, not null
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new DatabaseException("Unable to get connection. The pooling data source for database url " + url + " was already closed.");
+        }
+        acquireConnectionPermit();
+        try {
+            Connection connection = getValidIdleConnection();
+            if (connection == null) {
+                connection = createConnection();
+            }
+            return createPooledConnectionProxy(connection);
+
+        } catch (SQLException | RuntimeException | Error e) {
+            availableConnections.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections of the pool. Connections that are still in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = pollIdleConnection()) != null) {
+            closePhysicalConnection(connection);
+        }
+    }
+
+
+    /**
+     * @return A new physical connection to the database, not null
+     */
+    protected Connection createConnection() throws SQLException {
+        loadDriver();
+        try {
+            return DriverManager.getConnection(url, userName, password);
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to connect to database. Could not create connection for database url: " + url + ", user name: " + userName + ", password: <not shown>", e);
+        }
+    }
+
+    /**
+     * @param connection The pooled connection, not null
+     * @return True if the connection can still be used
+     */
+    protected boolean isValid(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            try {
+                return connection.isValid(validationTimeoutSeconds);
+            } catch (AbstractMethodError e) {
+                // old jdbc driver that does not support validation, the isClosed check will have to do
+                return true;
+            }
+        } catch (SQLException e) {
+            logger.debug("Validation of pooled connection failed. Connection will be discarded.", e);
+            return false;
+        }
+    }
+
+
+    protected void acquireConnectionPermit() {
+        try {
+            if (!availableConnections.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new DatabaseException("Unable to get connection. All connections of the pool for database url " + url + " are in use and no connection was returned within " + maxWaitMillis + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Unable to get connection. Interrupted while waiting for a connection of the pool for database url " + url, e);
+        }
+    }
+
+    protected Connection getValidIdleConnection() {
+        Connection connection;
+        while ((connection = pollIdleConnection()) != null) {
+            if (isValid(connection)) {
+                return connection;
+            }
+            closePhysicalConnection(connection);
+        }
+        return null;
+    }
+
+    protected void returnConnection(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            synchronized (idleConnections) {
+                if (!closed) {
+                    idleConnections.push(connection);
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Unable to reset pooled connection. Connection will be discarded.", e);
+        } finally {
+            availableConnections.release();
+        }
+        closePhysicalConnection(connection);
+    }
+
+    protected Connection pollIdleConnection() {
+        synchronized (idleConnections) {
+            return idleConnections.poll();
+        }
+    }
+
+    protected void closePhysicalConnection(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Unable to close pooled connection.", e);
+        }
+    }
+
+    protected void loadDriver() {
+        if (driverLoaded) {
+            return;
+        }
+        try {
+            Class.forName(driverClassName);
+            driverLoaded = true;
+        } catch (ClassNotFoundException e) {
+            throw new DatabaseException("Unable to connect to database. Driver class not found: " + driverClassName, e);
+        }
+    }
+
+    protected Connection createPooledConnectionProxy(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(PoolingDataSource.class.getClassLoader(), new Class<?>[]{Connection.class}, new PooledConnectionInvocationHandler(connection));
+    }
+
+
+    public Connection getConnection(String userName, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Only the parameterless getConnection() method is supported by the pooling data source.");
+    }
+
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    public void setLoginTimeout(int seconds) {
+    }
+
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Pooling data source does not wrap an instance of " + iface.getName());
+    }
+
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+
+    /**
+     * Invocation handler for the connections that are handed out by the pool. Closing the connection returns the
+     * wrapped connection to the pool instead of closing it. All other calls are delegated to the wrapped connection.
+     */
+    protected class PooledConnectionInvocationHandler implements InvocationHandler {
+
+        private Connection connection;
+        private boolean returned;
+
+
+        protected PooledConnectionInvocationHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        public synchronized Object invoke(Object connectionProxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            int nrOfParameters = method.getParameterTypes().length;
+            if ("equals".equals(methodName) && nrOfParameters == 1) {
+                return connectionProxy == args[0];
+            } else if ("hashCode".equals(methodName) && nrOfParameters == 0) {
+                return hashCode();
+            } else if ("close".equals(methodName) && nrOfParameters == 0) {
+                if (!returned) {
+                    returned = true;
+                    returnConnection(connection);
+                }
+                return null;
+            } else if ("isClosed".equals(methodName) && nrOfParameters == 0) {
+                return returned || connection.isClosed();
+            }
+            if (returned) {
+                throw new SQLException("Connection was already closed and returned to the pool.");
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource.impl;
+
+import org.dbmaintain.database.DatabaseInfo;
+import org.dbmaintain.datasource.DataSourceFactory;
+import org.dbmaintain.datasource.PoolingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory for data sources that pool their connections. The created data sources are kept so that they can be
+ * closed at the end of the task.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PoolingDataSourceFactory implements DataSourceFactory {
+
+    /* The max nr of connections per data source that the worker threads can use at the same time */
+    private int maxPoolSize;
+    /* The nr of seconds to wait for the validation of a pooled connection */
+    private int validationTimeoutSeconds;
+    /* The nr of milliseconds to wait for a free connection when all connections are in use */
+    private long maxWaitMillis;
+
+    /* The data sources created by this factory */
+    private List<PoolingDataSource> dataSources = new ArrayList<>();
+
+
+    public PoolingDataSourceFactory(int maxPoolSize, int validationTimeoutSeconds, long maxWaitMillis) {
+        this.maxPoolSize = maxPoolSize;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+
+    /**
+     * Creates a pooling data source with one connection more than the max pool size. The thread that runs the task
+     * keeps its connection cached while the worker threads execute, so this connection is reserved for it. Otherwise
+     * a pool with as many connections as there are worker threads would make one of the workers wait until it times out.
+     *
+     * @param databaseInfo The database to connect to, not null
+     * @return The data source, not null
+     */
+    public synchronized DataSource createDataSource(DatabaseInfo databaseInfo) {
+        databaseInfo.validateFull();
+        PoolingDataSource dataSource = new PoolingDataSource(databaseInfo, maxPoolSize + 1, validationTimeoutSeconds, maxWaitMillis);
+        dataSources.add(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * Closes the connections of all data sources that were created by this factory.
+     */
+    public synchronized void closeDataSources() {
+        for (PoolingDataSource dataSource : dataSources) {
+            dataSource.close();
+        }
+        dataSources.clear();
+    }
+}
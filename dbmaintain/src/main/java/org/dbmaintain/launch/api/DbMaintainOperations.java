@@ -17,6 +17,8 @@ package org.dbmaintain.launch.api;
 
 import org.dbmaintain.DbMaintainer;
 import org.dbmaintain.MainFactory;
+import org.dbmaintain.MultiTenantDbMaintainer;
+import org.dbmaintain.MultiTenantUpdateReport;
 import org.dbmaintain.config.DbMaintainConfigurationLoader;
 import org.dbmaintain.script.archive.ScriptArchiveCreator;
 import org.dbmaintain.structure.clean.DBCleaner;
@@ -57,6 +59,16 @@ public class DbMaintainOperations {
         dbMaintainer.updateDatabase(false);
     }
 
+    /**
+     * Updates the databases of all configured tenants to the latest version.
+     *
+     * @return The outcome of the update of each tenant, not null
+     */
+    public static MultiTenantUpdateReport updateTenantDatabases() {
+        MultiTenantDbMaintainer multiTenantDbMaintainer = new MultiTenantDbMaintainer(getConfiguration());
+        return multiTenantDbMaintainer.updateDatabases(false);
+    }
+
     /**
      * Marks the database as up-to-date, without executing any script. You can use this operation to prepare
      * an existing database to be managed by DbMaintain, or after having manually fixed a problem.
@@ -90,6 +102,14 @@ public class DbMaintainOperations {
         constraintsDisabler.disableConstraints();
     }
 
+    /**
+     * Enables the constraints again that were recorded when they were disabled.
+     */
+    public static void enableConstraints() {
+        ConstraintsDisabler constraintsDisabler = getMainFactory().createConstraintsDisabler();
+        constraintsDisabler.enableConstraints();
+    }
+
     /**
      * Updates all sequences and identity columns to a minimum value.
      */
@@ -100,11 +120,14 @@ public class DbMaintainOperations {
 
 
     private static MainFactory getMainFactory() {
+        return new MainFactory(getConfiguration());
+    }
+
+    private static Properties getConfiguration() {
         URL propertiesFromClassPath = ClassLoader.getSystemResource(DBMAINTAIN_PROPERTIES);
         if (propertiesFromClassPath == null) {
             throw new DbMaintainException("Could not find properties file " + DBMAINTAIN_PROPERTIES + " in classpath");
         }
-        Properties configuration = new DbMaintainConfigurationLoader().loadConfiguration(propertiesFromClassPath);
-        return new MainFactory(configuration);
+        return new DbMaintainConfigurationLoader().loadConfiguration(propertiesFromClassPath);
     }
 }
@@ -18,6 +18,8 @@ package org.dbmaintain.launch.commandline;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.MainFactory;
+import org.dbmaintain.MultiTenantDbMaintainer;
+import org.dbmaintain.MultiTenantUpdateReport;
 import org.dbmaintain.config.DbMaintainConfigurationLoader;
 import org.dbmaintain.config.DbMaintainProperties;
 import org.dbmaintain.util.DbMaintainException;
@@ -48,12 +50,14 @@ public class CommandLine {
         CREATE_SCRIPT_ARCHIVE("createScriptArchive"),
         CHECK_SCRIPT_UPDATES("checkScriptUpdates"),
         UPDATE_DATABASE("updateDatabase"),
+        UPDATE_TENANT_DATABASES("updateTenantDatabases"),
         MARK_ERROR_SCRIPT_PERFORMED("markErrorScriptPerformed"),
         MARK_ERROR_SCRIPT_REVERTED("markErrorScriptReverted"),
         MARK_DATABASE_AS_UPTODATE("markDatabaseAsUpToDate"),
         CLEAR_DATABASE("clearDatabase"),
         CLEAN_DATABASE("cleanDatabase"),
         DISABLE_CONSTRAINTS("disableConstraints"),
+        ENABLE_CONSTRAINTS("enableConstraints"),
         UPDATE_SEQUENCES("updateSequences");
 
         private String operationName;
@@ -191,6 +195,15 @@ public class CommandLine {
                 }
                 getMainFactory(configuration).createDbMaintainer().updateDatabase(false);
                 break;
+            case UPDATE_TENANT_DATABASES:
+                if (commandLineArguments.getFirstExtraArgument() != null) {
+                    configuration.put(DbMaintainProperties.PROPERTY_SCRIPT_LOCATIONS, commandLineArguments.getFirstExtraArgument());
+                }
+                MultiTenantUpdateReport report = new MultiTenantDbMaintainer(configuration).updateDatabases(false);
+                if (report.hasFailures()) {
+                    throw new DbMaintainException("Unable to update the databases of all tenants.\n" + report);
+                }
+                break;
             case MARK_DATABASE_AS_UPTODATE:
                 if (commandLineArguments.getFirstExtraArgument() != null) {
                     configuration.put(DbMaintainProperties.PROPERTY_SCRIPT_LOCATIONS, commandLineArguments.getFirstExtraArgument());
@@ -212,6 +225,9 @@ public class CommandLine {
             case DISABLE_CONSTRAINTS:
                 getMainFactory(configuration).createConstraintsDisabler().disableConstraints();
                 break;
+            case ENABLE_CONSTRAINTS:
+                getMainFactory(configuration).createConstraintsDisabler().enableConstraints();
+                break;
             case UPDATE_SEQUENCES:
                 getMainFactory(configuration).createSequenceUpdater().updateSequences();
                 break;
@@ -262,6 +278,12 @@ public class CommandLine {
         System.out.println("     Optionally, an extra argument may be added indicating the scripts archive file or root folder.");
         System.out.println("     This argument overrides the value of the property " + DbMaintainProperties.PROPERTY_SCRIPT_LOCATIONS + ".");
         System.out.println();
+        System.out.println("- " + DbMaintainOperation.UPDATE_TENANT_DATABASES.getOperationName());
+        System.out.println("     Updates the databases of all tenants configured by the property " + DbMaintainProperties.PROPERTY_TENANT_NAMES + " to the latest version.");
+        System.out.println("     Fails after all tenants were handled if the database of one of the tenants could not be updated.");
+        System.out.println("     Optionally, an extra argument may be added indicating the scripts archive file or root folder.");
+        System.out.println("     This argument overrides the value of the property " + DbMaintainProperties.PROPERTY_SCRIPT_LOCATIONS + ".");
+        System.out.println();
         System.out.println("- " + DbMaintainOperation.MARK_ERROR_SCRIPT_PERFORMED.getOperationName());
         System.out.println("     Task that indicates that the failed script was manually performed.");
         System.out.println("     The script will NOT be run again in the next update.");
@@ -291,6 +313,9 @@ public class CommandLine {
         System.out.println("- " + DbMaintainOperation.DISABLE_CONSTRAINTS.getOperationName());
         System.out.println("     Disables or drops all foreign key and not null constraints.");
         System.out.println();
+        System.out.println("- " + DbMaintainOperation.ENABLE_CONSTRAINTS.getOperationName());
+        System.out.println("     Enables the constraints again that were recorded when they were disabled.");
+        System.out.println();
         System.out.println("- " + DbMaintainOperation.UPDATE_SEQUENCES.getOperationName());
         System.out.println("     Updates all sequences and identity columns to a minimal value.");
     }
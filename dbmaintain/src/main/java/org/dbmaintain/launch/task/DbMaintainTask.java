@@ -60,7 +60,11 @@ public abstract class DbMaintainTask {
         TaskConfiguration taskConfiguration = getTaskConfiguration(configFile);
         taskConfiguration.addAllConfiguration(environmentProperties);
         MainFactory mainFactory = createMainFactory(taskConfiguration);
-        return doExecute(mainFactory);
+        try {
+            return doExecute(mainFactory);
+        } finally {
+            mainFactory.close();
+        }
     }
 
 
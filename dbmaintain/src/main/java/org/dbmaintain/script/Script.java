@@ -48,6 +48,8 @@ public class Script implements Comparable<Script> {
     private boolean ignored;
     /* Set of qualifiers for this script */
     private Set<Qualifier> qualifiers;
+    /* True if this script can be executed concurrently with the other parallel scripts of its folder */
+    private boolean parallelScript;
 
 
     /**
@@ -70,6 +72,26 @@ public class Script implements Comparable<Script> {
      * @param qualifiers           The qualifiers of this script, not null
      */
     public Script(String fileName, ScriptIndexes scriptIndexes, String targetDatabaseName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle, boolean postProcessingScript, boolean patchScript, boolean ignored, Set<Qualifier> qualifiers) {
+        this(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers, false);
+    }
+
+
+    /**
+     * Creates a script with the given fileName and content or checksum.
+     *
+     * @param fileName             The name of the script file, not null
+     * @param scriptIndexes        The indexes of the script, not null
+     * @param targetDatabaseName   The target database, null if there is no target database
+     * @param fileLastModifiedAt   The time when the file was last modified (in ms), not null
+     * @param checkSum             Checksum calculated for the contents of the file, leave null if a script content handle is provided
+     * @param scriptContentHandle  Handle providing access to the contents of the script, null if the content is unknown (a checksum is then required)
+     * @param postProcessingScript True if this script is a post processing script
+     * @param patchScript          True if this script is a patch script (has a patch qualifier)
+     * @param ignored              True if this script should be ignored (because the revision is lower than the baseline revision)
+     * @param qualifiers           The qualifiers of this script, not null
+     * @param parallelScript       True if this script can be executed concurrently with the other parallel scripts of its folder
+     */
+    public Script(String fileName, ScriptIndexes scriptIndexes, String targetDatabaseName, Long fileLastModifiedAt, String checkSum, ScriptContentHandle scriptContentHandle, boolean postProcessingScript, boolean patchScript, boolean ignored, Set<Qualifier> qualifiers, boolean parallelScript) {
         this.fileName = fileName;
         this.scriptIndexes = scriptIndexes;
         this.targetDatabaseName = targetDatabaseName;
@@ -80,6 +102,7 @@ public class Script implements Comparable<Script> {
         this.patchScript = patchScript;
         this.ignored = ignored;
         this.qualifiers = qualifiers;
+        this.parallelScript = parallelScript;
     }
 
 
@@ -207,6 +230,13 @@ public class Script implements Comparable<Script> {
         return patchScript;
     }
 
+    /**
+     * @return True if this script can be executed concurrently with the other parallel scripts of its folder
+     */
+    public boolean isParallelScript() {
+        return parallelScript;
+    }
+
     /**
      * @return The qualifiers of this script, not null
      */
@@ -19,8 +19,17 @@ import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.ReaderInputStream;
 
 import java.io.*;
+import java.lang.ref.SoftReference;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -102,6 +111,29 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * Adds the given bytes to the digest, leaving out carriage returns if they should be ignored.
+     *
+     * @param digest The digest, not null
+     * @param bytes  The bytes, not null
+     * @param length The nr of bytes to add
+     */
+    protected void updateDigest(MessageDigest digest, byte[] bytes, int length) {
+        if (!ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            digest.update(bytes, 0, length);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\r') {
+                digest.update(bytes, start, i - start);
+                start = i + 1;
+            }
+        }
+        digest.update(bytes, start, length - start);
+    }
+
+
     public String getScriptContentsAsString(long maxNrChars) {
         try {
             InputStream inputStream = this.getScriptInputStream();
@@ -180,6 +212,394 @@ public abstract class ScriptContentHandle {
     }
 
 
+    /**
+     * A handle for getting the content of a script on the local file system. The file is memory mapped instead of
+     * being read through streams, so that the check sum calculation, the parsing and the logging of the script all
+     * share the same mapped bytes and no copies of the content end up on the heap.
+     * <p/>
+     * Files are mapped in regions of at most maxMappedRegionSize bytes. The first region is kept and shared by all
+     * readers, the others are mapped when they are needed. This way even very large scripts can be read with a
+     * constant amount of memory.
+     */
+    public static class MappedFileScriptContentHandle extends ScriptContentHandle {
+
+        /* The default maximum nr of bytes that is mapped at once */
+        public static final long DEFAULT_MAX_MAPPED_REGION_SIZE = 128L * 1024 * 1024;
+
+        /* The script file */
+        private File file;
+        /* The maximum nr of bytes that is mapped at once */
+        private long maxMappedRegionSize;
+        /* The size of the file, -1 if the file was not mapped yet */
+        private long fileSize = -1;
+        /* The first mapped region of the file, null if the file was not mapped yet */
+        private ByteBuffer firstRegion;
+        /* Decoder that is reused by the readers, null if it is currently in use */
+        private CharsetDecoder charsetDecoder;
+
+        /**
+         * Creates a content handle.
+         *
+         * @param file     The script file, not null
+         * @param encoding The encoding of the script, not null
+         * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+         *                 If true, carriage return chars will be ignored when calculating check sums
+         */
+        public MappedFileScriptContentHandle(File file, String encoding, boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            this(file, encoding, ignoreCarriageReturnsWhenCalculatingCheckSum, DEFAULT_MAX_MAPPED_REGION_SIZE);
+        }
+
+        /**
+         * Creates a content handle.
+         *
+         * @param file                The script file, not null
+         * @param encoding            The encoding of the script, not null
+         * @param ignoreCarriageReturnsWhenCalculatingCheckSum
+         *                            If true, carriage return chars will be ignored when calculating check sums
+         * @param maxMappedRegionSize The maximum nr of bytes that is mapped at once
+         */
+        public MappedFileScriptContentHandle(File file, String encoding, boolean ignoreCarriageReturnsWhenCalculatingCheckSum, long maxMappedRegionSize) {
+            super(encoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+            this.file = file;
+            this.maxMappedRegionSize = maxMappedRegionSize;
+        }
+
+
+        /**
+         * Opens a reader that decodes the mapped bytes of the script.
+         * <p/>
+         * NOTE: do not forget to close the reader after usage.
+         *
+         * @return The content reader, not null
+         */
+        @Override
+        public Reader openScriptContentReader() {
+            scriptReader = new MappedFileReader();
+            return scriptReader;
+        }
+
+        @Override
+        protected MessageDigest getScriptDigest() throws IOException {
+            if (scriptDigest != null) {
+                return scriptDigest;
+            }
+            try {
+                MessageDigest digest = MessageDigest.getInstance("MD5");
+                byte[] chunk = new byte[8192];
+                long regionOffset = 0;
+                do {
+                    ByteBuffer region = mapRegion(regionOffset);
+                    regionOffset += region.limit();
+                    if (!ignoreCarriageReturnsWhenCalculatingCheckSum) {
+                        digest.update(region);
+                        continue;
+                    }
+                    while (region.hasRemaining()) {
+                        int length = Math.min(chunk.length, region.remaining());
+                        region.get(chunk, 0, length);
+                        updateDigest(digest, chunk, length);
+                    }
+                } while (regionOffset < fileSize);
+
+                scriptDigest = digest;
+                return scriptDigest;
+            } catch (Exception e) {
+                throw new DbMaintainException("Unable to calculate digest for script.", e);
+            }
+        }
+
+        @Override
+        protected InputStream getScriptInputStream() {
+            return new MappedFileInputStream();
+        }
+
+
+        /**
+         * Maps the region of the file starting at the given offset.
+         *
+         * @param regionOffset The offset of the region in the file
+         * @return The region, positioned at the start of the region, not null
+         */
+        protected synchronized ByteBuffer mapRegion(long regionOffset) {
+            if (regionOffset == 0 && firstRegion != null) {
+                return firstRegion.duplicate();
+            }
+            RandomAccessFile randomAccessFile = null;
+            try {
+                randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel fileChannel = randomAccessFile.getChannel();
+                if (fileSize == -1) {
+                    fileSize = fileChannel.size();
+                }
+                long regionSize = Math.min(maxMappedRegionSize, fileSize - regionOffset);
+                // the mapping stays valid after the channel is closed
+                ByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY, regionOffset, regionSize);
+                if (regionOffset == 0) {
+                    firstRegion = region;
+                }
+                return region.duplicate();
+            } catch (IOException e) {
+                throw new DbMaintainException("Error while trying to map file " + file, e);
+            } finally {
+                closeQuietly(randomAccessFile);
+            }
+        }
+
+        protected synchronized CharsetDecoder acquireCharsetDecoder() {
+            CharsetDecoder decoder = charsetDecoder;
+            charsetDecoder = null;
+            if (decoder == null) {
+                try {
+                    decoder = Charset.forName(encoding).newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                } catch (IllegalArgumentException e) {
+                    throw new DbMaintainException("Unsupported encoding " + encoding, e);
+                }
+            }
+            return decoder.reset();
+        }
+
+        protected synchronized void releaseCharsetDecoder(CharsetDecoder decoder) {
+            charsetDecoder = decoder;
+        }
+
+
+        /**
+         * Reader that decodes the mapped regions of the file one after the other.
+         */
+        protected class MappedFileReader extends Reader {
+
+            private CharsetDecoder decoder = acquireCharsetDecoder();
+            private ByteBuffer region = mapRegion(0);
+            private long regionOffset = 0;
+            private boolean endOfInput = false;
+            private boolean flushed = false;
+
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                if (decoder == null) {
+                    throw new IOException("Reader is closed");
+                }
+                if (length == 0) {
+                    return 0;
+                }
+                CharBuffer charBuffer = CharBuffer.wrap(chars, offset, length);
+                while (charBuffer.position() == offset) {
+                    if (flushed) {
+                        return -1;
+                    }
+                    if (!endOfInput) {
+                        boolean lastRegion = regionOffset + region.limit() >= fileSize;
+                        CoderResult coderResult = decoder.decode(region, charBuffer, lastRegion);
+                        if (coderResult.isError()) {
+                            coderResult.throwException();
+                        }
+                        if (coderResult.isOverflow()) {
+                            break;
+                        }
+                        if (!lastRegion) {
+                            // continue with the next region, including the bytes of an incomplete character, if any
+                            regionOffset += region.position();
+                            region = mapRegion(regionOffset);
+                            continue;
+                        }
+                        endOfInput = true;
+                    }
+                    if (decoder.flush(charBuffer).isOverflow()) {
+                        break;
+                    }
+                    flushed = true;
+                }
+                int nrOfCharsRead = charBuffer.position() - offset;
+                return nrOfCharsRead == 0 ? -1 : nrOfCharsRead;
+            }
+
+            @Override
+            public void close() {
+                if (decoder != null) {
+                    releaseCharsetDecoder(decoder);
+                    decoder = null;
+                    region = null;
+                }
+            }
+        }
+
+
+        /**
+         * Stream that returns the mapped regions of the file one after the other.
+         */
+        protected class MappedFileInputStream extends InputStream {
+
+            private ByteBuffer region = mapRegion(0);
+            private long regionOffset = 0;
+
+            @Override
+            public int read() {
+                if (!hasRemaining()) {
+                    return -1;
+                }
+                return region.get() & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!hasRemaining()) {
+                    return -1;
+                }
+                int nrOfBytesRead = Math.min(length, region.remaining());
+                region.get(bytes, offset, nrOfBytesRead);
+                return nrOfBytesRead;
+            }
+
+            private boolean hasRemaining() {
+                while (!region.hasRemaining()) {
+                    long nextRegionOffset = regionOffset + region.limit();
+                    if (nextRegionOffset >= fileSize) {
+                        return false;
+                    }
+                    regionOffset = nextRegionOffset;
+                    region = mapRegion(regionOffset);
+                }
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     * A handle that reads the content of another handle only once. While the content is read, the check sum is
+     * calculated and the content is spooled into a buffer. The check sum calculation, the parsing and the logging of
+     * the script are all served from this buffer. This is mainly useful for content that is expensive to read, like
+     * archive entries that need to be inflated again for every read.
+     * <p/>
+     * Content that is not larger than maxInMemorySize bytes is kept in memory. This memory can be reclaimed by the
+     * garbage collector, in which case the content is read again the next time it is needed. Larger content is spooled
+     * to a temporary file.
+     */
+    public static class SpooledScriptContentHandle extends ScriptContentHandle {
+
+        /* The default maximum nr of bytes that is spooled in memory */
+        public static final int DEFAULT_MAX_IN_MEMORY_SIZE = 256 * 1024;
+
+        /* The handle that provides the actual content */
+        private ScriptContentHandle scriptContentHandle;
+        /* The maximum nr of bytes that is spooled in memory */
+        private int maxInMemorySize;
+        /* The content spooled in memory, null if the content was not spooled in memory */
+        private SoftReference<byte[]> spooledContent;
+        /* The file the content was spooled to, null if the content was not spooled to a file */
+        private File spoolFile;
+
+        /**
+         * Creates a content handle.
+         *
+         * @param scriptContentHandle The handle that provides the actual content, not null
+         */
+        public SpooledScriptContentHandle(ScriptContentHandle scriptContentHandle) {
+            this(scriptContentHandle, DEFAULT_MAX_IN_MEMORY_SIZE);
+        }
+
+        /**
+         * Creates a content handle.
+         *
+         * @param scriptContentHandle The handle that provides the actual content, not null
+         * @param maxInMemorySize     The maximum nr of bytes that is spooled in memory
+         */
+        public SpooledScriptContentHandle(ScriptContentHandle scriptContentHandle, int maxInMemorySize) {
+            super(scriptContentHandle.encoding, scriptContentHandle.ignoreCarriageReturnsWhenCalculatingCheckSum);
+            this.scriptContentHandle = scriptContentHandle;
+            this.maxInMemorySize = maxInMemorySize;
+        }
+
+
+        @Override
+        protected MessageDigest getScriptDigest() throws IOException {
+            if (scriptDigest == null) {
+                spool();
+            }
+            return scriptDigest;
+        }
+
+        @Override
+        protected InputStream getScriptInputStream() {
+            try {
+                byte[] content = spool();
+                if (content != null) {
+                    return new ByteArrayInputStream(content);
+                }
+                return new FileInputStream(spoolFile);
+            } catch (IOException e) {
+                throw new DbMaintainException("Error while trying to read spooled script content", e);
+            }
+        }
+
+
+        /**
+         * Reads the content of the wrapped handle if this was not done yet and calculates the digest while doing so.
+         *
+         * @return The content if it is spooled in memory, null if it is spooled to a file
+         */
+        protected synchronized byte[] spool() throws IOException {
+            if (spoolFile != null) {
+                return null;
+            }
+            byte[] content = spooledContent == null ? null : spooledContent.get();
+            if (content != null) {
+                return content;
+            }
+
+            InputStream inputStream = null;
+            OutputStream outputStream = null;
+            File file = null;
+            try {
+                inputStream = scriptContentHandle.getScriptInputStream();
+                MessageDigest digest = MessageDigest.getInstance("MD5");
+                ByteArrayOutputStream memoryOutputStream = new ByteArrayOutputStream();
+                outputStream = memoryOutputStream;
+
+                byte[] buffer = new byte[8192];
+                int nrOfBytes;
+                while ((nrOfBytes = inputStream.read(buffer)) != -1) {
+                    updateDigest(digest, buffer, nrOfBytes);
+                    if (file == null && memoryOutputStream.size() + nrOfBytes > maxInMemorySize) {
+                        file = File.createTempFile("dbmaintain", ".spool");
+                        file.deleteOnExit();
+                        outputStream = new BufferedOutputStream(new FileOutputStream(file));
+                        memoryOutputStream.writeTo(outputStream);
+                    }
+                    outputStream.write(buffer, 0, nrOfBytes);
+                }
+                outputStream.close();
+
+                if (scriptDigest == null) {
+                    scriptDigest = digest;
+                }
+                if (file != null) {
+                    spoolFile = file;
+                    file = null;
+                    return null;
+                }
+                content = memoryOutputStream.toByteArray();
+                spooledContent = new SoftReference<byte[]>(content);
+                return content;
+
+            } catch (NoSuchAlgorithmException e) {
+                throw new DbMaintainException("Unable to calculate digest for script.", e);
+            } finally {
+                closeQuietly(inputStream);
+                closeQuietly(outputStream);
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+
     /**
      * A handle for getting the script content as a stream.
      */
@@ -41,6 +41,12 @@ public class ScriptFactory {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(ScriptFactory.class);
 
+    /**
+     * The qualifier that marks a script that can be executed concurrently with the other parallel scripts of its folder,
+     * e.g. 05_backfill/01_#parallel_orders.sql. This qualifier does not have to be registered.
+     */
+    public static final Qualifier PARALLEL_QUALIFIER = new Qualifier("parallel");
+
     private Pattern scriptIndexPattern;
     private Pattern targetDatabasePattern;
     private Pattern qualifierPattern;
@@ -82,11 +88,17 @@ public class ScriptFactory {
             ScriptIndexes scriptIndexes = getScriptIndexes(pathParts);
             String targetDatabaseName = getTargetDatabaseName(pathParts);
             Set<Qualifier> qualifiers = getQualifiers(pathParts);
+            boolean parallelScript = isParallelScript(qualifiers);
+            if (parallelScript && !registeredQualifiers.contains(PARALLEL_QUALIFIER)) {
+                // the parallel qualifier only changes the way the script is executed,
+                // it does not take part in the inclusion or exclusion of scripts
+                qualifiers.remove(PARALLEL_QUALIFIER);
+            }
             boolean patchScript = isPatchScript(qualifiers);
             boolean postProcessingScript = isPostProcessingScript(fileName);
             boolean ignored = isIgnored(scriptIndexes);
 
-            return new Script(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers);
+            return new Script(fileName, scriptIndexes, targetDatabaseName, fileLastModifiedAt, checkSum, scriptContentHandle, postProcessingScript, patchScript, ignored, qualifiers, parallelScript);
 
         } catch (DbMaintainException e) {
             throw new DbMaintainException("Error in script " + fileName + ": " + e.getMessage(), e);
@@ -139,7 +151,7 @@ public class ScriptFactory {
 
         for (String qualifierName : qualifierNames) {
             Qualifier qualifier = new Qualifier(qualifierName);
-            if (!registeredQualifiers.contains(qualifier) && !patchQualifiers.contains(qualifier)) {
+            if (!registeredQualifiers.contains(qualifier) && !patchQualifiers.contains(qualifier) && !PARALLEL_QUALIFIER.equals(qualifier)) {
                 throw new DbMaintainException("Qualifier \"" + qualifier.getQualifierName() + "\" has not been registered.");
             }
             qualifiers.add(qualifier);
@@ -208,6 +220,14 @@ public class ScriptFactory {
         return baseLineRevision != null && baseLineRevision.compareTo(scriptIndexes) > 0;
     }
 
+    /**
+     * @param qualifiers a set of script qualifiers, not null
+     * @return True if there is a parallel qualifier
+     */
+    public boolean isParallelScript(Set<Qualifier> qualifiers) {
+        return qualifiers.contains(PARALLEL_QUALIFIER);
+    }
+
     /**
      * @param qualifiers a set of script qualifiers, not null
      * @return True if there is a patch qualifier
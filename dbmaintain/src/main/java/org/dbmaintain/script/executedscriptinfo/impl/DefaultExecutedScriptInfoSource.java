@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.database.SchemaCatalog;
 import org.dbmaintain.script.ExecutedScript;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptFactory;
@@ -37,6 +38,8 @@ import static org.apache.commons.dbutils.DbUtils.closeQuietly;
 
 /**
  * Implementation of <code>VersionSource</code> that stores the version in the database.
+ * <p/>
+ * The operations are synchronized, so that scripts can be registered by threads that execute scripts concurrently.
  *
  * @author Filip Neven
  * @author Tim Ducheyne
@@ -99,7 +102,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /**
      * @return All scripts that were registered as executed on the database
      */
-    public SortedSet<ExecutedScript> getExecutedScripts() {
+    public synchronized SortedSet<ExecutedScript> getExecutedScripts() {
         if (cachedExecutedScripts != null) {
             return cachedExecutedScripts;
         }
@@ -162,7 +165,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      *
      * @param executedScript The script that was executed on the database
      */
-    public void registerExecutedScript(ExecutedScript executedScript) {
+    public synchronized void registerExecutedScript(ExecutedScript executedScript) {
         checkExecutedScriptsTable();
 
         if (getExecutedScripts().contains(executedScript)) {
@@ -197,7 +200,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      *
      * @param executedScript The script that needs to be updated, not null
      */
-    public void updateExecutedScript(ExecutedScript executedScript) {
+    public synchronized void updateExecutedScript(ExecutedScript executedScript) {
         checkExecutedScriptsTable();
 
         getExecutedScripts().add(executedScript);
@@ -218,7 +221,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      *
      * @param executedScript The executed script, which is no longer part of the executed scripts
      */
-    public void deleteExecutedScript(ExecutedScript executedScript) {
+    public synchronized void deleteExecutedScript(ExecutedScript executedScript) {
         checkExecutedScriptsTable();
 
         getExecutedScripts().remove(executedScript);
@@ -235,7 +238,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * @param executedScript  the original executed script that still refers to the original script
      * @param renamedToScript the script to which the original script has been renamed
      */
-    public void renameExecutedScript(ExecutedScript executedScript, Script renamedToScript) {
+    public synchronized void renameExecutedScript(ExecutedScript executedScript, Script renamedToScript) {
         checkExecutedScriptsTable();
 
         String renameSql = "update " + getQualifiedExecutedScriptsTableName() +
@@ -248,7 +251,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     }
 
 
-    public void deleteAllExecutedPostprocessingScripts() {
+    public synchronized void deleteAllExecutedPostprocessingScripts() {
         checkExecutedScriptsTable();
 
         for (Iterator<ExecutedScript> executedScriptsIterator = getExecutedScripts().iterator(); executedScriptsIterator.hasNext();) {
@@ -266,7 +269,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * Clears all script executions that have been registered. After having invoked this method,
      * {@link #getExecutedScripts()} will return an empty set.
      */
-    public void clearAllExecutedScripts() {
+    public synchronized void clearAllExecutedScripts() {
         checkExecutedScriptsTable();
 
         String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName();
@@ -279,7 +282,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /**
      * Marks the failed scripts in the executed scripts table as successful.
      */
-    public void markErrorScriptsAsSuccessful() {
+    public synchronized void markErrorScriptsAsSuccessful() {
         checkExecutedScriptsTable();
 
         String deleteSql = "update " + getQualifiedExecutedScriptsTableName() + " set " + succeededColumnName + "=1 where " + succeededColumnName + "=0";
@@ -291,7 +294,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
     /**
      * Removes the failed scripts in the executed scripts table.
      */
-    public void removeErrorScripts() {
+    public synchronized void removeErrorScripts() {
         checkExecutedScriptsTable();
 
         String deleteSql = "delete from " + getQualifiedExecutedScriptsTableName() + " where " + succeededColumnName + "=0";
@@ -341,10 +344,10 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      */
     protected boolean isExecutedScriptsTableValid() {
         // Check existence of version table
-        Set<String> tableNames = defaultDatabase.getTableNames(defaultDatabase.getDefaultSchemaName());
-        if (tableNames.contains(executedScriptsTableName)) {
+        SchemaCatalog schemaCatalog = defaultDatabase.getSchemaCatalog(defaultDatabase.getDefaultSchemaName());
+        if (schemaCatalog.getTableNames().contains(executedScriptsTableName)) {
             // Check columns of version table
-            Set<String> columnNames = defaultDatabase.getColumnNames(defaultDatabase.getDefaultSchemaName(), executedScriptsTableName);
+            Set<String> columnNames = schemaCatalog.getColumnNames(executedScriptsTableName);
             if (columnNames.contains(fileNameColumnName) && columnNames.contains(fileLastModifiedAtColumnName)
                     && columnNames.contains(checksumColumnName) && columnNames.contains(executedAtColumnName)
                     && columnNames.contains(succeededColumnName)) {
@@ -368,6 +371,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
 
         // Create db version table
         sqlHandler.executeUpdateAndCommit(getCreateExecutedScriptTableStatement(), defaultDatabase.getDataSource());
+        defaultDatabase.invalidateMetadataCache();
     }
 
     /**
@@ -391,7 +395,7 @@ public class DefaultExecutedScriptInfoSource implements ExecutedScriptInfoSource
      * Resets the cached state, for example when the scripts table was modified by another process.
      * The scripts will be reloaded the next time.
      */
-    public void resetCachedState() {
+    public synchronized void resetCachedState() {
         cachedExecutedScripts = null;
     }
 }
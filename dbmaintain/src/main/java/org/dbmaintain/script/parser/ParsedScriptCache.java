@@ -0,0 +1,47 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.parser;
+
+import java.util.List;
+
+/**
+ * Cache for the statements that result from parsing a script. Entries are identified by the check sum of the
+ * script content and the dialect of the parser. Implementations are responsible for making sure that entries
+ * created with different parser settings (e.g. script parameters) are never mixed up.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public interface ParsedScriptCache {
+
+    /**
+     * @param checkSum        The check sum of the script content, not null
+     * @param databaseDialect The dialect of the parser, not null
+     * @return The parsed statements, null if the script is not cached
+     */
+    List<String> getStatements(String checkSum, String databaseDialect);
+
+    /**
+     * Stores the parsed statements of a script. Failures to store the statements are not considered to be errors:
+     * the script will simply be parsed again next time.
+     *
+     * @param checkSum        The check sum of the script content, not null
+     * @param databaseDialect The dialect of the parser, not null
+     * @param statements      The parsed statements, not null
+     */
+    void putStatements(String checkSum, String databaseDialect, List<String> statements);
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.parser.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.script.parser.ParsedScriptCache;
+import org.dbmaintain.util.DbMaintainException;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Parsed script cache that stores the statements of every parsed script in a separate file in a cache directory.
+ * This way, a script that was parsed during a previous run (e.g. when the database is rebuilt from scratch) does
+ * not have to be parsed again.
+ * <p/>
+ * The name of a cache file is made up of the check sum of the script, the dialect and a hash of the parser
+ * settings (back slash escaping and script parameters). Changing one of these settings will therefore never
+ * result in statements of a previous configuration to be used.
+ * <p/>
+ * Note: if carriage returns are ignored when calculating check sums, scripts that only differ in carriage returns
+ * share the same cache entry. This is not a problem for CR LF line endings since the parser turns these into
+ * new lines anyway.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class FileSystemParsedScriptCache implements ParsedScriptCache {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(FileSystemParsedScriptCache.class);
+
+    /* Version of the file format, increment when the layout of the cache files changes */
+    private static final int FORMAT_VERSION = 1;
+
+    /* The directory in which the cache files are stored */
+    protected File cacheDirectory;
+    /* Hash of the settings that influence the outcome of parsing a script */
+    protected String parserSettingsHash;
+
+
+    /**
+     * @param cacheDirectory           The directory in which the cache files are stored, not null
+     * @param backSlashEscapingEnabled True if back slash escaping is enabled for the parsers
+     * @param scriptParameters         The script parameters used by the parsers, null if there are none
+     */
+    public FileSystemParsedScriptCache(File cacheDirectory, boolean backSlashEscapingEnabled, Properties scriptParameters) {
+        this.cacheDirectory = cacheDirectory;
+        this.parserSettingsHash = getParserSettingsHash(backSlashEscapingEnabled, scriptParameters);
+    }
+
+
+    public List<String> getStatements(String checkSum, String databaseDialect) {
+        File cacheFile = getCacheFile(checkSum, databaseDialect);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int nrOfStatements = in.readInt();
+            List<String> statements = new ArrayList<String>(nrOfStatements);
+            for (int i = 0; i < nrOfStatements; i++) {
+                statements.add(readString(in));
+            }
+            return statements;
+
+        } catch (IOException e) {
+            logger.debug("Unable to read parsed script cache file " + cacheFile + ". Script will be parsed again.", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+
+    public void putStatements(String checkSum, String databaseDialect, List<String> statements) {
+        File cacheFile = getCacheFile(checkSum, databaseDialect);
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            cacheDirectory.mkdirs();
+            // write to a temp file first so that other processes never see a partially written file
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDirectory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(statements.size());
+            for (String statement : statements) {
+                writeString(statement, out);
+            }
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if (!tempFile.renameTo(cacheFile)) {
+                    logger.debug("Unable to store parsed script cache file " + cacheFile);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to store parsed script cache file " + cacheFile, e);
+        } finally {
+            closeQuietly(out);
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+
+    protected File getCacheFile(String checkSum, String databaseDialect) {
+        return new File(cacheDirectory, checkSum + "-" + databaseDialect + "-" + parserSettingsHash + ".statements");
+    }
+
+    /**
+     * Statements can be larger than the 64K limit of DataOutput.writeUTF, so the length is written explicitly.
+     */
+    protected void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+
+    protected String getParserSettingsHash(boolean backSlashEscapingEnabled, Properties scriptParameters) {
+        StringBuilder settings = new StringBuilder();
+        settings.append("backSlashEscapingEnabled=").append(backSlashEscapingEnabled).append('\n');
+        if (scriptParameters != null) {
+            // sort the parameters to get the same hash regardless of the order in the properties
+            TreeMap<String, String> sortedScriptParameters = new TreeMap<String, String>();
+            for (String name : scriptParameters.stringPropertyNames()) {
+                sortedScriptParameters.put(name, scriptParameters.getProperty(name));
+            }
+            for (String name : sortedScriptParameters.keySet()) {
+                settings.append(name.length()).append(':').append(name).append('=');
+                String value = sortedScriptParameters.get(name);
+                settings.append(value.length()).append(':').append(value).append('\n');
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(settings.toString().getBytes("UTF-8"));
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest) {
+                result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+            }
+            return result.toString();
+        } catch (Exception e) {
+            throw new DbMaintainException("Unable to calculate hash of the script parser settings.", e);
+        }
+    }
+}
@@ -18,8 +18,6 @@ package org.dbmaintain.script.parser.impl;
 import org.dbmaintain.script.parser.parsingstate.ParsingState;
 
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.dbmaintain.util.CharacterUtils.isNewLineCharacter;
 
@@ -35,8 +33,6 @@ public class StatementBuilder {
 
     private static final Character CARRIAGE_RETURN = '\r', NEWLINE = '\n';
 
-    private static final Pattern PARAMETER_PATTERN = Pattern.compile("\\$\\{(\\w+)\\}");
-
     /* Content of the statement being built */
     private StringBuilder statement = new StringBuilder();
 
@@ -165,24 +161,49 @@ public class StatementBuilder {
     }
 
     /**
+     * Replaces all parameters of the form ${name}, where name consists of word characters (letters, digits and
+     * underscores), by their value. Parameters without a value are left untouched. Parameter values are inserted
+     * literally, i.e. $ and \ characters in the value have no special meaning.
+     * <p/>
+     * The statement is scanned for the ${ start sequence only, so statements without parameters are returned as is.
+     *
      * @param statement statement that might contain parameters
      * @return the statement with the parameters replaced by their corresponding parameter values
      */
     private StringBuilder replaceScriptParameters(StringBuilder statement) {
-        Matcher parameterMatcher = PARAMETER_PATTERN.matcher(statement);
-        boolean parameterFound = parameterMatcher.find();
-        if (!parameterFound) return statement;
-        StringBuffer result = new StringBuffer();
-        while (parameterFound) {
-            String parameterName = parameterMatcher.group(1);
-            String parameterValue = scriptParameters.getProperty(parameterName);
-            if (parameterValue != null) {
-                parameterMatcher.appendReplacement(result, parameterValue);
+        int parameterStart = statement.indexOf("${");
+        if (parameterStart == -1) return statement;
+
+        StringBuilder result = null;
+        int copiedUpTo = 0;
+        while (parameterStart != -1) {
+            int nameStart = parameterStart + 2;
+            int nameEnd = nameStart;
+            while (nameEnd < statement.length() && isParameterNameCharacter(statement.charAt(nameEnd))) {
+                nameEnd++;
             }
-            parameterFound = parameterMatcher.find();
+            if (nameEnd > nameStart && nameEnd < statement.length() && statement.charAt(nameEnd) == '}') {
+                String parameterValue = scriptParameters.getProperty(statement.substring(nameStart, nameEnd));
+                if (parameterValue != null) {
+                    if (result == null) result = new StringBuilder(statement.length() + parameterValue.length());
+                    result.append(statement, copiedUpTo, parameterStart).append(parameterValue);
+                    copiedUpTo = nameEnd + 1;
+                    parameterStart = statement.indexOf("${", copiedUpTo);
+                    continue;
+                }
+            }
+            parameterStart = statement.indexOf("${", parameterStart + 1);
         }
-        parameterMatcher.appendTail(result);
-        return new StringBuilder(result);
+        if (result == null) return statement;
+        result.append(statement, copiedUpTo, statement.length());
+        return result;
+    }
+
+    /**
+     * @return true if the given character can be part of a parameter name, i.e. is a regexp word character
+     */
+    private boolean isParameterNameCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 
     /**
@@ -134,7 +134,7 @@ public class ArchiveScriptLocation extends ScriptLocation {
                 }
                 relativeScriptName = relativeScriptName.substring(subPath.length());
             }
-            ScriptContentHandle scriptContentHandle = new ScriptContentHandle(scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            ScriptContentHandle jarEntryContentHandle = new ScriptContentHandle(scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum) {
                 @Override
                 protected InputStream getScriptInputStream() {
                     try {
@@ -144,6 +144,8 @@ public class ArchiveScriptLocation extends ScriptLocation {
                     }
                 }
             };
+            // spool the content so that the entry is only inflated once
+            ScriptContentHandle scriptContentHandle = new ScriptContentHandle.SpooledScriptContentHandle(jarEntryContentHandle);
             Long fileLastModifiedAt = jarEntry.getTime();
             Script script = scriptFactory.createScriptWithContent(relativeScriptName, fileLastModifiedAt, scriptContentHandle);
             scripts.add(script);
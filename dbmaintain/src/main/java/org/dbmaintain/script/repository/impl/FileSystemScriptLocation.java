@@ -45,6 +45,10 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
  */
 public class FileSystemScriptLocation extends ScriptLocation {
 
+    /**
+     * Scripts that are at least this large (in bytes) are memory mapped instead of read through streams
+     */
+    public static final long MEMORY_MAPPING_THRESHOLD = 1024 * 1024;
 
     /**
      * Constructor for FileSystemScriptLocation.
@@ -146,7 +150,12 @@ public class FileSystemScriptLocation extends ScriptLocation {
      */
     protected Script createScript(File scriptFile, String relativeScriptFileName) {
         Long fileLastModifiedAt = scriptFile.lastModified();
-        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(FileUtils.getUrl(scriptFile), scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+        ScriptContentHandle scriptContentHandle;
+        if (scriptFile.length() >= MEMORY_MAPPING_THRESHOLD) {
+            scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+        } else {
+            scriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(FileUtils.getUrl(scriptFile), scriptEncoding, ignoreCarriageReturnsWhenCalculatingCheckSum);
+        }
         return scriptFactory.createScriptWithContent(relativeScriptFileName, fileLastModifiedAt, scriptContentHandle);
     }
 
@@ -17,6 +17,7 @@
 
 package org.dbmaintain.script.runner;
 
+import org.dbmaintain.script.parser.ParsedScriptCache;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import java.util.Map;
 import org.dbmaintain.config.FactoryWithDatabase;
@@ -25,6 +26,7 @@ import org.dbmaintain.script.runner.impl.FileExtensionDispatcher;
 import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_PLUS_COMMAND;
 import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SQL_LOADER_COMMAND;
 import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_CHMOD_COMMAND;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_JDBC_BATCH_SIZE;
 
 /**
  *
@@ -37,6 +39,8 @@ public class FileExtensionDispatcherFactory extends FactoryWithDatabase<ScriptRu
         String sqlPlusCommand = PropertyUtils.getString(PROPERTY_SQL_PLUS_COMMAND, getConfiguration());
         String chmodCommand = PropertyUtils.getString(PROPERTY_CHMOD_COMMAND, getConfiguration());
         Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap = factoryWithDatabaseContext.getDatabaseDialectScriptParserFactoryMap();
-        return new FileExtensionDispatcher(getDatabases(), getSqlHandler(), sqlLoaderCommand, sqlPlusCommand, chmodCommand, databaseDialectScriptParserFactoryMap);
+        ParsedScriptCache parsedScriptCache = factoryWithDatabaseContext.createParsedScriptCache();
+        int batchSize = PropertyUtils.getInt(PROPERTY_JDBC_BATCH_SIZE, 0, getConfiguration());
+        return new FileExtensionDispatcher(getDatabases(), getSqlHandler(), sqlLoaderCommand, sqlPlusCommand, chmodCommand, databaseDialectScriptParserFactoryMap, parsedScriptCache, batchSize);
     }
 }
\ No newline at end of file
@@ -16,11 +16,15 @@
 package org.dbmaintain.script.runner;
 
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
+import org.dbmaintain.script.parser.ParsedScriptCache;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.impl.JdbcScriptRunner;
 
 import java.util.Map;
 
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_JDBC_BATCH_SIZE;
+
 /**
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -30,7 +34,9 @@ public class JdbcScriptRunnerFactory extends FactoryWithDatabase<ScriptRunner> {
 
     public ScriptRunner createInstance() {
         Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap = factoryWithDatabaseContext.getDatabaseDialectScriptParserFactoryMap();
-        return new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, getDatabases(), getSqlHandler());
+        ParsedScriptCache parsedScriptCache = factoryWithDatabaseContext.createParsedScriptCache();
+        int batchSize = PropertyUtils.getInt(PROPERTY_JDBC_BATCH_SIZE, 0, getConfiguration());
+        return new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, getDatabases(), getSqlHandler(), parsedScriptCache, batchSize);
     }
 
 }
@@ -72,7 +72,12 @@ public abstract class BaseNativeScriptRunner implements ScriptRunner {
             }
 
             File scriptFile = createTemporaryScriptFile(script);
-            executeScript(scriptFile, targetDatabase);
+            try {
+                executeScript(scriptFile, targetDatabase);
+            } finally {
+                // the script could have changed the structure of the database
+                targetDatabase.invalidateMetadataCache();
+            }
 
         } catch (Exception e) {
             throw new DbMaintainException("Error executing script " + script.getFileName(), e);
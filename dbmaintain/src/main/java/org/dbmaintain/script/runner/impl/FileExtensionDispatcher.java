@@ -21,6 +21,7 @@ import java.util.Map;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.parser.ParsedScriptCache;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.ScriptRunner;
 
@@ -37,6 +38,8 @@ public class FileExtensionDispatcher implements ScriptRunner {
     protected String sqlPlusCommand;
     protected String chmodCommand;
     protected Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap;
+    protected ParsedScriptCache parsedScriptCache;
+    protected int batchSize;
     
     public FileExtensionDispatcher(Databases databases, 
             SQLHandler sqlHandler,
@@ -44,12 +47,25 @@ public class FileExtensionDispatcher implements ScriptRunner {
             String sqlPlusCommand,
             String chmodCommand,
             Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap) {
+        this(databases, sqlHandler, sqlLoaderCommand, sqlPlusCommand, chmodCommand, databaseDialectScriptParserFactoryMap, null, 0);
+    }
+
+    public FileExtensionDispatcher(Databases databases, 
+            SQLHandler sqlHandler,
+            String sqlLoaderCommand,
+            String sqlPlusCommand,
+            String chmodCommand,
+            Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap,
+            ParsedScriptCache parsedScriptCache,
+            int batchSize) {
         this.databases = databases;
         this.sqlHandler = sqlHandler;
         this.sqlLoaderCommand = sqlLoaderCommand;
         this.sqlPlusCommand = sqlPlusCommand;
         this.chmodCommand = chmodCommand;
         this.databaseDialectScriptParserFactoryMap = databaseDialectScriptParserFactoryMap;
+        this.parsedScriptCache = parsedScriptCache;
+        this.batchSize = batchSize;
     }
 
     public void execute(Script script) {
@@ -58,7 +74,7 @@ public class FileExtensionDispatcher implements ScriptRunner {
             runner.execute(script);
         }
         else if (script.getFileName().matches("^.*\\.sql$")) {
-            ScriptRunner runner = new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, databases, sqlHandler);
+            ScriptRunner runner = new JdbcScriptRunner(databaseDialectScriptParserFactoryMap, databases, sqlHandler, parsedScriptCache, batchSize);
             runner.execute(script);
         }
         else {
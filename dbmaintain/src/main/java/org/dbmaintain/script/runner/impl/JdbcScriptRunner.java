@@ -21,6 +21,7 @@ import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.script.Script;
+import org.dbmaintain.script.parser.ParsedScriptCache;
 import org.dbmaintain.script.parser.ScriptParser;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.runner.ScriptRunner;
@@ -28,8 +29,13 @@ import org.dbmaintain.util.DbMaintainException;
 
 import javax.sql.DataSource;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
 /**
@@ -43,15 +49,32 @@ public class JdbcScriptRunner implements ScriptRunner {
     /* The logger instance for this class */
     private static Log logger = LogFactory.getLog(JdbcScriptRunner.class);
 
+    /* The first words of the statements after which the cached metadata of the database is invalidated */
+    private static final Set<String> METADATA_CHANGING_STATEMENTS = new HashSet<String>(asList("CREATE", "ALTER", "DROP", "RENAME", "COMMENT", "BEGIN", "DECLARE", "CALL", "EXEC", "EXECUTE", "DO"));
+
     protected Databases databases;
     protected SQLHandler sqlHandler;
     protected Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap;
+    /* Cache for the statements of already parsed scripts, null if parsed scripts are not cached */
+    protected ParsedScriptCache parsedScriptCache;
+    /* The max nr of DML statements that are sent to the database in one JDBC batch, 0 or 1 to disable batching */
+    protected int batchSize;
 
 
     public JdbcScriptRunner(Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap, Databases databases, SQLHandler sqlHandler) {
+        this(databaseDialectScriptParserFactoryMap, databases, sqlHandler, null);
+    }
+
+    public JdbcScriptRunner(Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap, Databases databases, SQLHandler sqlHandler, ParsedScriptCache parsedScriptCache) {
+        this(databaseDialectScriptParserFactoryMap, databases, sqlHandler, parsedScriptCache, 0);
+    }
+
+    public JdbcScriptRunner(Map<String, ScriptParserFactory> databaseDialectScriptParserFactoryMap, Databases databases, SQLHandler sqlHandler, ParsedScriptCache parsedScriptCache, int batchSize) {
         this.databaseDialectScriptParserFactoryMap = databaseDialectScriptParserFactoryMap;
         this.databases = databases;
         this.sqlHandler = sqlHandler;
+        this.parsedScriptCache = parsedScriptCache;
+        this.batchSize = batchSize;
     }
 
 
@@ -73,33 +96,151 @@ public class JdbcScriptRunner implements ScriptRunner {
                 return;
             }
 
+            String databaseDialect = targetDatabase.getSupportedDatabaseDialect();
+            if (parsedScriptCache != null) {
+                List<String> cachedStatements = parsedScriptCache.getStatements(script.getCheckSum(), databaseDialect);
+                if (cachedStatements != null) {
+                    logger.debug("Using cached statements for script " + script.getFileName());
+                    executeStatements(targetDatabase, cachedStatements);
+                    return;
+                }
+            }
+
             // get content stream
             scriptContentReader = script.getScriptContentHandle().openScriptContentReader();
             // create a script parser for the target database in question 
-            ScriptParser scriptParser = databaseDialectScriptParserFactoryMap.get(targetDatabase.getSupportedDatabaseDialect()).createScriptParser(scriptContentReader);
+            ScriptParser scriptParser = databaseDialectScriptParserFactoryMap.get(databaseDialect).createScriptParser(scriptContentReader);
             // parse and execute the statements
-            parseAndExecuteScript(targetDatabase, scriptParser);
+            List<String> parsedStatements = parseAndExecuteScript(targetDatabase, scriptParser);
+            if (parsedScriptCache != null) {
+                parsedScriptCache.putStatements(script.getCheckSum(), databaseDialect, parsedStatements);
+            }
 
         } finally {
             closeQuietly(scriptContentReader);
         }
     }
 
-    private void parseAndExecuteScript(Database targetDatabase, ScriptParser scriptParser) {
-        DataSource dataSource = targetDatabase.getDataSource();
-        try {
-            sqlHandler.startTransaction(dataSource);
+    /**
+     * @return The statements that were executed, null if the statements are not cached
+     */
+    private List<String> parseAndExecuteScript(final Database targetDatabase, final ScriptParser scriptParser) {
+        final DataSource dataSource = targetDatabase.getDataSource();
+        return sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<List<String>>() {
+            public List<String> execute() {
+                List<String> parsedStatements = parsedScriptCache == null ? null : new ArrayList<String>();
+                List<String> batch = new ArrayList<String>();
+                String statement;
+                while ((statement = scriptParser.getNextStatement()) != null) {
+                    executeStatement(statement, batch, dataSource);
+                    invalidateMetadataCacheIfNeeded(statement, targetDatabase);
+                    if (parsedStatements != null) {
+                        parsedStatements.add(statement);
+                    }
+                }
+                executeBatch(batch, dataSource);
+                return parsedStatements;
+            }
+        });
+    }
+
+    private void executeStatements(final Database targetDatabase, final List<String> statements) {
+        final DataSource dataSource = targetDatabase.getDataSource();
+        sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<Void>() {
+            public Void execute() {
+                List<String> batch = new ArrayList<String>();
+                for (String statement : statements) {
+                    executeStatement(statement, batch, dataSource);
+                    invalidateMetadataCacheIfNeeded(statement, targetDatabase);
+                }
+                executeBatch(batch, dataSource);
+                return null;
+            }
+        });
+    }
 
-            String statement;
-            while ((statement = scriptParser.getNextStatement()) != null) {
-                sqlHandler.execute(statement, dataSource);
+    /**
+     * Executes the given statement. If batching is enabled and the statement can be batched, the statement is added
+     * to the given batch instead. The batch is executed when it is full or when a statement is encountered that
+     * cannot be batched, so the statements are always executed in script order.
+     *
+     * @param statement  The statement, not null
+     * @param batch      The statements that are waiting to be executed as a batch, not null
+     * @param dataSource The data source, not null
+     */
+    protected void executeStatement(String statement, List<String> batch, DataSource dataSource) {
+        if (batchSize > 1 && isBatchable(statement)) {
+            batch.add(statement);
+            if (batch.size() >= batchSize) {
+                executeBatch(batch, dataSource);
             }
-            sqlHandler.endTransactionAndCommit(dataSource);
+            return;
+        }
+        executeBatch(batch, dataSource);
+        sqlHandler.execute(statement, dataSource);
+    }
+
+    protected void executeBatch(List<String> batch, DataSource dataSource) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        sqlHandler.executeBatch(batch, dataSource);
+        batch.clear();
+    }
+
+    /**
+     * Only plain DML statements are batched. DDL, stored procedure blocks, queries and statements like commit or
+     * rollback are always executed on their own.
+     *
+     * @param statement The statement, not null
+     * @return True if the statement can be added to a batch
+     */
+    protected boolean isBatchable(String statement) {
+        String firstWord = getFirstWord(statement);
+        return "INSERT".equalsIgnoreCase(firstWord) || "UPDATE".equalsIgnoreCase(firstWord)
+                || "DELETE".equalsIgnoreCase(firstWord) || "MERGE".equalsIgnoreCase(firstWord);
+    }
 
-        } catch (DbMaintainException e) {
-            sqlHandler.endTransactionAndRollback(dataSource);
-            throw e;
+    /**
+     * Invalidates the cached metadata of the database if the given statement can change the structure of the
+     * database. Besides DDL statements, this also includes blocks and procedure calls, since these could execute DDL.
+     *
+     * @param statement      The statement that was executed, not null
+     * @param targetDatabase The database, not null
+     */
+    protected void invalidateMetadataCacheIfNeeded(String statement, Database targetDatabase) {
+        String firstWord = getFirstWord(statement).toUpperCase();
+        if (METADATA_CHANGING_STATEMENTS.contains(firstWord)) {
+            targetDatabase.invalidateMetadataCache();
+        }
+    }
+
+    /**
+     * @param statement The statement, not null
+     * @return The first word of the statement, skipping leading whitespace and comments, not null
+     */
+    protected String getFirstWord(String statement) {
+        int length = statement.length();
+        int index = 0;
+        while (index < length) {
+            char c = statement.charAt(index);
+            if (Character.isWhitespace(c)) {
+                index++;
+            } else if (statement.startsWith("--", index)) {
+                int endOfLine = statement.indexOf('\n', index);
+                index = endOfLine == -1 ? length : endOfLine + 1;
+            } else if (statement.startsWith("/*", index)) {
+                int endOfComment = statement.indexOf("*/", index + 2);
+                index = endOfComment == -1 ? length : endOfComment + 2;
+            } else {
+                break;
+            }
+        }
+        int start = index;
+        while (index < length && Character.isLetter(statement.charAt(index))) {
+            index++;
         }
+        return statement.substring(start, index);
     }
 
     public void initialize() {
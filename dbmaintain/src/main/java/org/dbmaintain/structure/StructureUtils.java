@@ -9,6 +9,7 @@ import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SchemaCatalog;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 import org.dbmaintain.structure.model.DbItemType;
 import org.dbmaintain.util.DbMaintainException;
@@ -47,11 +48,12 @@ public class StructureUtils {
 		Set<DbItemIdentifier> filtered = new HashSet<DbItemIdentifier>();
 		filtered.addAll(unknownItems);
 		for (String schemaName : database.getSchemaNames()) {
+			SchemaCatalog schemaCatalog = database.getSchemaCatalog(schemaName);
 			for (DbItemType type : extractTypes(filtered)) {
 				if (type == SCHEMA)
 					filtered = filterSchema(filtered, database, schemaName);
 				else
-					filtered = removeDbItemOfGivenTypeInSchema(type, filtered, database, schemaName);
+					filtered = removeDbItemOfGivenTypeInSchema(type, filtered, schemaCatalog);
 			}
 		}
 		return filtered;
@@ -85,13 +87,10 @@ public class StructureUtils {
 	}
 
 	private static Set<DbItemIdentifier> removeDbItemOfGivenTypeInSchema(DbItemType type, Set<DbItemIdentifier> items,
-			Database database, String schemaName) {
+			SchemaCatalog schemaCatalog) {
 		Set<DbItemIdentifier> filtered = new HashSet<DbItemIdentifier>();
 		filtered.addAll(items);
-		if (!database.supports(type)) {
-			return filtered;
-		}
-		Set<DbItemIdentifier> itemNames = toDbItemIdentifiers(type, database, schemaName, database.getDbItemsOfType(type, schemaName));
+		Set<DbItemIdentifier> itemNames = toDbItemIdentifiers(type, schemaCatalog.getDatabase(), schemaCatalog.getSchemaName(), schemaCatalog.getItemNames(type));
 		filtered.removeAll(itemNames);
 		return filtered;
 	}
@@ -16,6 +16,7 @@
 package org.dbmaintain.structure.clean;
 
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.structure.clean.impl.DefaultDBCleaner;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 
@@ -34,7 +35,9 @@ public class DBCleanerFactory extends FactoryWithDatabase<DBCleaner> {
 
     public DBCleaner createInstance() {
         Set<DbItemIdentifier> itemsToPreserve = getItemsToPreserve();
-        return new DefaultDBCleaner(getDatabases(), itemsToPreserve, getSqlHandler());
+        boolean truncate = PropertyUtils.getBoolean(PROPERTY_TRUNCATE_TABLES_WHEN_CLEANING, false, getConfiguration());
+        int threadCount = PropertyUtils.getInt(PROPERTY_DB_CLEANER_THREAD_COUNT, 1, getConfiguration());
+        return new DefaultDBCleaner(getDatabases(), itemsToPreserve, getSqlHandler(), truncate, threadCount);
     }
 
 
@@ -43,6 +46,7 @@ public class DBCleanerFactory extends FactoryWithDatabase<DBCleaner> {
 
         Set<DbItemIdentifier> itemsToPreserve = new HashSet<DbItemIdentifier>();
         itemsToPreserve.add(executedScriptsTable);
+        itemsToPreserve.addAll(factoryWithDatabaseContext.getDisabledConstraintsTables());
 
         itemsToPreserve.addAll(factoryWithDatabaseContext.getSchemasToPreserve(PROPERTY_PRESERVE_SCHEMAS));
         itemsToPreserve.addAll(factoryWithDatabaseContext.getSchemasToPreserve(PROPERTY_PRESERVE_DATA_SCHEMAS));
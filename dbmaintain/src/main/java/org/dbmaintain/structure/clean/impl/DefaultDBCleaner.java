@@ -19,17 +19,25 @@ import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
 import static org.dbmaintain.structure.model.DbItemIdentifier.getSchemaIdentifier;
 import static org.dbmaintain.structure.model.DbItemType.TABLE;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.Databases;
 import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.database.SchemaCatalog;
+import org.dbmaintain.database.TableDependencyGraph;
 import org.dbmaintain.structure.StructureUtils;
 import org.dbmaintain.structure.clean.DBCleaner;
 import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.util.ParallelTaskExecutor;
 
 /**
  * Implementation of {@link org.dbmaintain.structure.clean.DBCleaner}. This implementation will delete all data from a database, except for the tables
@@ -49,6 +57,10 @@ public class DefaultDBCleaner implements DBCleaner {
     protected Databases databases;
     /* The sql handler that will execute the statements */
     protected SQLHandler sqlHandler;
+    /* True if the tables should be truncated instead of deleting all records, if supported by the database */
+    protected boolean truncate;
+    /* The max nr of threads that delete the records of tables concurrently, 1 to delete them on the calling thread */
+    protected int threadCount;
 
 
     /**
@@ -59,9 +71,36 @@ public class DefaultDBCleaner implements DBCleaner {
      * @param sqlHandler      The sql handler that will execute the statements, not null
      */
     public DefaultDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler) {
+        this(databases, itemsToPreserve, sqlHandler, false, 1);
+    }
+
+    /**
+     * Constructor for DefaultDBCleaner.
+     *
+     * @param databases       The db support instances, not null
+     * @param itemsToPreserve The schema's and tables that should not be cleaned, not null
+     * @param sqlHandler      The sql handler that will execute the statements, not null
+     * @param truncate        True if the tables should be truncated instead of deleting all records, if supported by the database
+     */
+    public DefaultDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler, boolean truncate) {
+        this(databases, itemsToPreserve, sqlHandler, truncate, 1);
+    }
+
+    /**
+     * Constructor for DefaultDBCleaner.
+     *
+     * @param databases       The db support instances, not null
+     * @param itemsToPreserve The schema's and tables that should not be cleaned, not null
+     * @param sqlHandler      The sql handler that will execute the statements, not null
+     * @param truncate        True if the tables should be truncated instead of deleting all records, if supported by the database
+     * @param threadCount     The max nr of threads that delete the records of tables concurrently, 1 to delete them on the calling thread
+     */
+    public DefaultDBCleaner(Databases databases, Set<DbItemIdentifier> itemsToPreserve, SQLHandler sqlHandler, boolean truncate, int threadCount) {
         this.databases = databases;
         this.sqlHandler = sqlHandler;
         this.itemsToPreserve = itemsToPreserve;
+        this.truncate = truncate;
+        this.threadCount = threadCount;
     }
 
 
@@ -80,19 +119,108 @@ public class DefaultDBCleaner implements DBCleaner {
                 }
                 logger.info("Cleaning database schema. Deleting all records from tables in schema " + schemaName);
 
-                List<String> tableNames = database.getTableNamesSortedAccordingToConstraints(schemaName);
-                for (String tableName : tableNames) {
+                SchemaCatalog schemaCatalog = database.getSchemaCatalog(schemaName);
+                List<String> tableNames = new ArrayList<String>();
+                for (String tableName : schemaCatalog.getTableNamesSortedAccordingToConstraints()) {
                     // check whether table needs to be preserved
                     if (itemsToPreserve.contains(getItemIdentifier(TABLE, schemaName, tableName, database))) {
                         continue;
                     }
-                    cleanTable(database, schemaName, tableName);
+                    tableNames.add(tableName);
                 }
+                cleanTables(database, schemaName, tableNames);
             }
         }
     }
 
 
+    /**
+     * Deletes the data in the given tables of a schema. If truncating is enabled and supported by the database, the
+     * tables are truncated all at once. If that fails, e.g. because one of the tables is referenced by a table
+     * that is preserved, the records of each table are deleted instead. If more than 1 thread is configured, the
+     * records are deleted concurrently, see {@link #deleteTablesConcurrently}.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @param tableNames The tables to clean, sorted according to the foreign key constraints, not null
+     */
+    protected void cleanTables(Database database, String schemaName, List<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        if (truncate && database.supportsTruncate()) {
+            try {
+                logger.debug("Truncating tables " + tableNames + " in database schema " + schemaName);
+                database.truncateTables(schemaName, tableNames);
+                return;
+            } catch (DatabaseException e) {
+                logger.warn("Unable to truncate the tables in database schema " + schemaName + ". Deleting all records instead. Reason: " + e.getMessage());
+            }
+        }
+        if (threadCount > 1) {
+            deleteTablesConcurrently(database, schemaName, tableNames);
+            return;
+        }
+        for (String tableName : tableNames) {
+            cleanTable(database, schemaName, tableName);
+        }
+    }
+
+
+    /**
+     * Deletes the data in the given tables concurrently, level by level of the foreign key graph of the schema. The
+     * tables of a level do not refer to each other, so they can be cleaned at the same time, each worker using its own
+     * connection. The next level is only started when all tables of the previous level are cleaned. Tables that are
+     * part of the same cycle are cleaned one after the other by the same worker.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The schema name, not null
+     * @param tableNames The tables to clean, not null
+     */
+    protected void deleteTablesConcurrently(final Database database, final String schemaName, List<String> tableNames) {
+        TableDependencyGraph tableDependencyGraph = database.getSchemaCatalog(schemaName).getTableDependencyGraph();
+        Map<String, List<String>> cyclePerTable = new HashMap<String, List<String>>();
+        for (List<String> cycle : tableDependencyGraph.getCycles()) {
+            for (String tableName : cycle) {
+                cyclePerTable.put(tableName, cycle);
+            }
+        }
+
+        Set<String> tableNamesToClean = new HashSet<String>(tableNames);
+        for (List<String> level : tableDependencyGraph.getLevels()) {
+            List<List<String>> tableGroups = new ArrayList<List<String>>();
+            Set<List<String>> addedCycles = new HashSet<List<String>>();
+            for (String tableName : level) {
+                if (!tableNamesToClean.contains(tableName)) {
+                    continue;
+                }
+                List<String> cycle = cyclePerTable.get(tableName);
+                if (cycle == null) {
+                    List<String> tableGroup = new ArrayList<String>();
+                    tableGroup.add(tableName);
+                    tableGroups.add(tableGroup);
+                } else if (addedCycles.add(cycle)) {
+                    List<String> tableGroup = new ArrayList<String>(cycle);
+                    tableGroup.retainAll(tableNamesToClean);
+                    tableGroups.add(tableGroup);
+                }
+            }
+            createParallelTaskExecutor().execute(tableGroups, null, new ParallelTaskExecutor.Task<List<String>>() {
+                public void execute(List<String> tableGroup) {
+                    sqlHandler.leaseConnection(database.getDataSource());
+                    try {
+                        for (String tableName : tableGroup) {
+                            cleanTable(database, schemaName, tableName);
+                        }
+                    } finally {
+                        sqlHandler.releaseConnection(database.getDataSource());
+                    }
+                }
+            });
+        }
+    }
+
+
     /**
      * Deletes the data in the table with the given name.
      * Note: the table name is surrounded with quotes, to make sure that
@@ -106,4 +234,14 @@ public class DefaultDBCleaner implements DBCleaner {
         logger.debug("Deleting all records from table " + tableName + " in database schema " + schemaName);
         sqlHandler.execute("delete from " + database.qualified(schemaName, tableName), database.getDataSource());
     }
+
+
+    /**
+     * Creates the executor that deletes the records of the tables of a level of the foreign key graph concurrently.
+     *
+     * @return The executor using at most the configured nr of threads, not null
+     */
+    protected ParallelTaskExecutor createParallelTaskExecutor() {
+        return new ParallelTaskExecutor(threadCount, "dbmaintain-cleaner");
+    }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ package org.dbmaintain.structure.clear;
 
 import org.dbmaintain.MainFactory;
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.clear.impl.DefaultDBClearer;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
@@ -42,8 +43,9 @@ public class DBClearerFactory extends FactoryWithDatabase<DBClearer> {
         MainFactory mainFactory = factoryWithDatabaseContext.getMainFactory();
         ConstraintsDisabler constraintsDisabler = mainFactory.createConstraintsDisabler();
         ExecutedScriptInfoSource executedScriptInfoSource = mainFactory.createExecutedScriptInfoSource();
+        boolean clearSchemasAtOnce = PropertyUtils.getBoolean(PROPERTY_CLEAR_SCHEMAS_AT_ONCE, false, getConfiguration());
 
-        return new DefaultDBClearer(getDatabases(), itemsToPreserve, itemsToPurge, constraintsDisabler, executedScriptInfoSource);
+        return new DefaultDBClearer(getDatabases(), itemsToPreserve, itemsToPurge, constraintsDisabler, executedScriptInfoSource, clearSchemasAtOnce);
     }
 
 
@@ -53,6 +55,7 @@ public class DBClearerFactory extends FactoryWithDatabase<DBClearer> {
 
         Set<DbItemIdentifier> itemsToPreserve = new HashSet<>();
         itemsToPreserve.add(executedScriptsTable);
+        itemsToPreserve.addAll(factoryWithDatabaseContext.getDisabledConstraintsTables());
         itemsToPreserve.addAll(schemasToPreserve);
         factoryWithDatabaseContext.addSpecialHandlingItems(TABLE, PROPERTY_PRESERVE_TABLES, itemsToPreserve);
         factoryWithDatabaseContext.addSpecialHandlingItems(DATABASE_LINK, PROPERTY_PRESERVE_DATABASE_LINKS, itemsToPreserve);
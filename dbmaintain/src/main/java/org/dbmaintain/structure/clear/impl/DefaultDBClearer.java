@@ -18,7 +18,11 @@ package org.dbmaintain.structure.clear.impl;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseException;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.ItemDependency;
+import org.dbmaintain.database.SchemaCatalog;
+import org.dbmaintain.database.TableDependencyGraph;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.StructureUtils;
 import org.dbmaintain.structure.clear.DBClearer;
@@ -63,6 +67,9 @@ public class DefaultDBClearer implements DBClearer {
     /* The db support instances, not null */
     protected Databases databases;
 
+    /* True if a schema without items to preserve should be cleared at once, if supported by the database */
+    protected boolean clearSchemasAtOnce;
+
     private MultiPassErrorHandler multiPassErrorHandler;
 
     /**
@@ -77,11 +84,30 @@ public class DefaultDBClearer implements DBClearer {
     		Set<DbItemIdentifier> itemsToPurge, 
     		ConstraintsDisabler constraintsDisabler, 
     		ExecutedScriptInfoSource executedScriptInfoSource) {
+        this(databases, itemsToPreserve, itemsToPurge, constraintsDisabler, executedScriptInfoSource, false);
+    }
+
+    /**
+     * @param databases                The db support instances, not null
+     * @param itemsToPreserve          The schema's, tables, triggers etc that should not be dropped, not null
+     * @param itemsToPurge             The tables, triggers, types etc that should be dropped in addition to the schema objects, not null
+     * @param constraintsDisabler      Disables of constraints before clearing the database, not null
+     * @param executedScriptInfoSource Clears the executed scripts table, not null
+     * @param clearSchemasAtOnce       True if a schema without items to preserve should be cleared at once, e.g. by
+     *                                 dropping and recreating it, instead of dropping its items one by one
+     */
+    public DefaultDBClearer(Databases databases,
+            Set<DbItemIdentifier> itemsToPreserve,
+            Set<DbItemIdentifier> itemsToPurge,
+            ConstraintsDisabler constraintsDisabler,
+            ExecutedScriptInfoSource executedScriptInfoSource,
+            boolean clearSchemasAtOnce) {
         this.databases = databases;
         this.itemsToPreserve = itemsToPreserve;
         this.itemsToPurge = itemsToPurge;
         this.constraintsDisabler = constraintsDisabler;
         this.executedScriptInfoSource = executedScriptInfoSource;
+        this.clearSchemasAtOnce = clearSchemasAtOnce;
     }
 
 
@@ -105,6 +131,8 @@ public class DefaultDBClearer implements DBClearer {
             }
             clearDatabase(database);
         }
+        // the recorded constraints were dropped, the table itself is preserved
+        constraintsDisabler.clearRecordedConstraints();
     }
 
     protected void clearDatabase(Database database) {
@@ -120,12 +148,22 @@ public class DefaultDBClearer implements DBClearer {
                 continue;
             }
             logger.info("Clearing database schema " + schemaName);
-            do {
+            if (clearSchemasAtOnce && database.supportsClearSchema(schemaName) && !containsItemsToPreserve(database, schemaName) && clearSchema(database, schemaName)) {
+                continue;
+            }
+            boolean continueExecution = true;
+            if (database.supportsItemDependencies() && dropDbItemsInDependencyOrder(typesToClear, database.getSchemaCatalog(schemaName))) {
+                continueExecution = multiPassErrorHandler.continueExecutionAfterPass();
+            }
+            // retry the failed items in new passes, e.g. for dependencies that are not known by the catalog
+            while (continueExecution) {
+                // every pass starts from a new snapshot, the items that were dropped in the previous pass are gone
+                SchemaCatalog schemaCatalog = database.getSchemaCatalog(schemaName);
             	for(DbItemType type : typesToClear) {
-            		dropDbItemsOfType(type, database, schemaName);
+            		dropDbItemsOfType(type, schemaCatalog);
             	}
+                continueExecution = multiPassErrorHandler.continueExecutionAfterPass();
             }
-            while (multiPassErrorHandler.continueExecutionAfterPass());
         }
         multiPassErrorHandler = new MultiPassErrorHandler();
         do {
@@ -133,15 +171,54 @@ public class DefaultDBClearer implements DBClearer {
         } while (multiPassErrorHandler.continueExecutionAfterPass());        
     }
     
+    /**
+     * Drops all items of the schema at once, including items of types that are not handled by DbMaintain. This can
+     * fail while dropping the items one by one would work, e.g. when the user owns the items but not the schema.
+     *
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema to clear, not null
+     * @return False if the schema could not be cleared at once, its items should then be dropped one by one
+     */
+    protected boolean clearSchema(Database database, String schemaName) {
+        logger.debug("Clearing database schema " + schemaName + " at once");
+        try {
+            database.clearSchema(schemaName);
+            return true;
+        } catch (DatabaseException e) {
+            logger.warn("Unable to clear database schema " + schemaName + " at once. Dropping its items one by one instead. Reason: " + e.getMessage());
+            return false;
+        } finally {
+            // the cached item names of the schema are no longer valid
+            database.invalidateMetadataCache();
+        }
+    }
+
+    /**
+     * @param database   The database support, not null
+     * @param schemaName The name of the schema, not null
+     * @return True if one of the items to preserve is located in the given schema
+     */
+    protected boolean containsItemsToPreserve(Database database, String schemaName) {
+        DbItemIdentifier schemaIdentifier = getSchemaIdentifier(schemaName, database);
+        for (DbItemIdentifier itemToPreserve : itemsToPreserve) {
+            if (schemaIdentifier.equals(itemToPreserve.getSchema())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected void dropPurgeItems(Database database) {
+        Map<String, SchemaCatalog> schemaCatalogs = new HashMap<>();
         for (DbItemIdentifier item : itemsToPurge) {
             if (!database.supports(item.getType()))
                 continue;
-            if (!database
-                    .getDbItemsOfType(item.getType(), item.getSchemaName())
-                    .contains(
-                            database.removeIdentifierQuotes(
-                                    item.getItemName()))) {
+            SchemaCatalog schemaCatalog = schemaCatalogs.get(item.getSchemaName());
+            if (schemaCatalog == null) {
+                schemaCatalog = database.getSchemaCatalog(item.getSchemaName());
+                schemaCatalogs.put(item.getSchemaName(), schemaCatalog);
+            }
+            if (!schemaCatalog.containsItem(item.getType(), database.removeIdentifierQuotes(item.getItemName()))) {
                 logger.info(item + " could not be found and will therefore not be dropped");
                 continue;
             }
@@ -154,15 +231,102 @@ public class DefaultDBClearer implements DBClearer {
     protected void dropDbItemsOfType(DbItemType type,
     		Database database,
     		String schemaName) {
-    	if (!database.supports(type)) {
-    		return;
-    	}
-    	Set<String> itemNames = database.getDbItemsOfType(type, schemaName);
-    	for (String itemName: itemNames) {
-    		dropDbItemOfType(type, database, schemaName, itemName);
-	    }
+    	dropDbItemsOfType(type, database.getSchemaCatalog(schemaName));
 	}
 
+    /**
+     * Drops all items of the given types that are in the given snapshot of the schema in a single pass. Items that
+     * depend on other items (e.g. a view that selects from a table) are dropped before the items they depend on, using
+     * the dependencies that are known by the catalog of the database. Otherwise, the items are dropped in the order
+     * of the given types. Items that were already dropped together with another item, e.g. the sequence of a serial
+     * column of a table, are skipped, see {@link #dropDbItemOfTypeIfItStillExists}.
+     *
+     * @param types         The types of the items, not null
+     * @param schemaCatalog The snapshot of the schema, not null
+     * @return False if the dependencies could not be retrieved, nothing is dropped in that case
+     */
+    protected boolean dropDbItemsInDependencyOrder(DbItemType[] types, SchemaCatalog schemaCatalog) {
+        Database database = schemaCatalog.getDatabase();
+        String schemaName = schemaCatalog.getSchemaName();
+        List<ItemDependency> itemDependencies;
+        try {
+            itemDependencies = database.getItemDependencies(schemaName);
+        } catch (DatabaseException e) {
+            logger.warn("Unable to retrieve the dependencies between the items of database schema " + schemaName + ". Dropping the items in multiple passes instead. Reason: " + e.getMessage());
+            return false;
+        }
+
+        List<String> itemKeys = new ArrayList<>();
+        Map<String, DbItemType> typePerItemKey = new HashMap<>();
+        Map<String, String> namePerItemKey = new HashMap<>();
+        for (DbItemType type : types) {
+            for (String itemName : schemaCatalog.getItemNames(type)) {
+                String itemKey = getItemKey(type, itemName);
+                itemKeys.add(itemKey);
+                typePerItemKey.put(itemKey, type);
+                namePerItemKey.put(itemKey, itemName);
+            }
+        }
+        // an item has to be dropped after all items that depend on it
+        Map<String, Set<String>> dependentItemKeys = new HashMap<>();
+        for (ItemDependency itemDependency : itemDependencies) {
+            String referencedItemKey = getItemKey(itemDependency.getReferencedType(), itemDependency.getReferencedItemName());
+            Set<String> itemKeysToDropFirst = dependentItemKeys.get(referencedItemKey);
+            if (itemKeysToDropFirst == null) {
+                itemKeysToDropFirst = new HashSet<>();
+                dependentItemKeys.put(referencedItemKey, itemKeysToDropFirst);
+            }
+            itemKeysToDropFirst.add(getItemKey(itemDependency.getType(), itemDependency.getItemName()));
+        }
+
+        for (String itemKey : new TableDependencyGraph(itemKeys, dependentItemKeys).getSortedTableNames()) {
+            dropDbItemOfTypeIfItStillExists(typePerItemKey.get(itemKey), database, schemaName, namePerItemKey.get(itemKey));
+        }
+        return true;
+    }
+
+    /**
+     * Drops the given item. If this fails because the item no longer exists, the error is ignored: the item was
+     * dropped automatically together with an item that was dropped before, e.g. its table.
+     *
+     * @param type       The type of the item, not null
+     * @param database   The database support, not null
+     * @param schemaName The schema of the item, not null
+     * @param itemName   The name of the item, not null
+     */
+    protected void dropDbItemOfTypeIfItStillExists(DbItemType type, Database database, String schemaName, String itemName) {
+        if (itemsToPreserve.contains(getItemIdentifier(type, schemaName, itemName, database))) {
+            return;
+        }
+        logger.debug("Dropping " + type + " " + itemName + " in database schema " + schemaName);
+        try {
+            database.drop(type, schemaName, itemName);
+        } catch (RuntimeException e) {
+            if (database.getDbItemsOfType(type, schemaName).contains(itemName)) {
+                multiPassErrorHandler.addError(e);
+            } else {
+                logger.debug(type + " " + itemName + " in database schema " + schemaName + " was already dropped together with another item");
+            }
+        }
+    }
+
+    private String getItemKey(DbItemType type, String itemName) {
+        return type + ":" + itemName;
+    }
+
+    /**
+     * Drops all items of the given type that are in the given snapshot of the schema.
+     *
+     * @param type          The type of the items, not null
+     * @param schemaCatalog The snapshot of the schema, not null
+     */
+    protected void dropDbItemsOfType(DbItemType type, SchemaCatalog schemaCatalog) {
+        Database database = schemaCatalog.getDatabase();
+        for (String itemName : schemaCatalog.getItemNames(type)) {
+            dropDbItemOfType(type, database, schemaCatalog.getSchemaName(), itemName);
+        }
+    }
+
 	protected void dropDbItemOfType(DbItemType type, Database database,
 			String schemaName, String itemName) {
 		// check whether item needs to be preserved
@@ -36,4 +36,14 @@ public interface ConstraintsDisabler {
 
     void disableValueConstraints();
 
+    /**
+     * Enables the constraints again that were recorded when they were disabled.
+     */
+    void enableConstraints();
+
+    /**
+     * Removes the records of the disabled constraints, e.g. because the constraints were dropped.
+     */
+    void clearRecordedConstraints();
+
 }
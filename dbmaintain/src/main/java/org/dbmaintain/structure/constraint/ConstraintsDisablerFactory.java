@@ -16,8 +16,14 @@
 package org.dbmaintain.structure.constraint;
 
 import org.dbmaintain.config.FactoryWithDatabase;
+import org.dbmaintain.config.PropertyUtils;
 import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
 
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_CONSTRAINTS_DISABLER_THREAD_COUNT;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_DISABLED_CONSTRAINTS_TABLE_NAME;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_RECORD_DISABLED_CONSTRAINTS;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_SERVER_SIDE_CONSTRAINT_DISABLING;
+
 /**
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -26,6 +32,12 @@ public class ConstraintsDisablerFactory extends FactoryWithDatabase<ConstraintsD
 
 
     public ConstraintsDisabler createInstance() {
-        return new DefaultConstraintsDisabler(getDatabases());
+        boolean serverSide = PropertyUtils.getBoolean(PROPERTY_SERVER_SIDE_CONSTRAINT_DISABLING, false, getConfiguration());
+        int threadCount = PropertyUtils.getInt(PROPERTY_CONSTRAINTS_DISABLER_THREAD_COUNT, 1, getConfiguration());
+        String disabledConstraintsTableName = null;
+        if (PropertyUtils.getBoolean(PROPERTY_RECORD_DISABLED_CONSTRAINTS, false, getConfiguration())) {
+            disabledConstraintsTableName = PropertyUtils.getString(PROPERTY_DISABLED_CONSTRAINTS_TABLE_NAME, getConfiguration());
+        }
+        return new DefaultConstraintsDisabler(getDatabases(), serverSide, threadCount, disabledConstraintsTableName);
     }
 }
@@ -17,14 +17,39 @@ package org.dbmaintain.structure.constraint.impl;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.dbmaintain.database.ConstraintDefinition;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SQLHandler;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
+import org.dbmaintain.util.DbMaintainException;
+import org.dbmaintain.util.ParallelTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.config.DbMaintainProperties.PROPERTY_RECORD_DISABLED_CONSTRAINTS;
 
 /**
  * Default implementation of {@link ConstraintsDisabler}.
  * This will disable all foreign key, check and not-null constraints on the configured database schemas.
  * Primary key constraints will not be disabled.
+ * <p/>
+ * If a thread count larger than 1 is configured, the constraints are disabled concurrently, each worker thread using its
+ * own connection. Dropping a foreign key also locks the referenced table, so to avoid deadlocks between workers, the
+ * referential constraints are only disabled concurrently for different databases. Value constraints only lock their
+ * own table: these are disabled concurrently per table, the statements of a table are always executed by the same worker.
+ * The value constraints are only disabled after all referential constraints were disabled.
+ * <p/>
+ * If a disabled constraints table name is configured, the constraints are recorded in this table, in the default schema
+ * of each database, before they are disabled. They can then be enabled again using {@link #enableConstraints()}. The
+ * constraints are first enabled without checking the existing data. Afterwards the existing data is checked (validated)
+ * concurrently per table. This is a lot faster than loading data with all constraints enabled.
  *
  * @author Tim Ducheyne
  * @author Filip Neven
@@ -38,13 +63,63 @@ public class DefaultConstraintsDisabler implements ConstraintsDisabler {
     /* The database supports to disable the constraints for */
     protected Databases databases;
 
+    /* True if the constraints should be disabled server-side, for the databases that support it */
+    protected boolean serverSide;
+
+    /* The max nr of threads that disable constraints concurrently, 1 to disable them on the calling thread */
+    protected int threadCount;
+
+    /* The name of the table in which the disabled constraints are recorded, null if they are not recorded */
+    protected String disabledConstraintsTableName;
+
     /**
      * Creates the constraints disabler.
      *
      * @param databases The database supports to disable the constraints for, not null
      */
     public DefaultConstraintsDisabler(Databases databases) {
+        this(databases, false);
+    }
+
+    /**
+     * Creates the constraints disabler.
+     *
+     * @param databases  The database supports to disable the constraints for, not null
+     * @param serverSide True to disable the constraints using a single block of code that is executed on the database
+     *                   server, for the databases that support it
+     */
+    public DefaultConstraintsDisabler(Databases databases, boolean serverSide) {
+        this(databases, serverSide, 1);
+    }
+
+    /**
+     * Creates the constraints disabler.
+     *
+     * @param databases   The database supports to disable the constraints for, not null
+     * @param serverSide  True to disable the constraints using a single block of code that is executed on the database
+     *                    server, for the databases that support it
+     * @param threadCount The max nr of threads that disable constraints concurrently, 1 to disable them on the calling thread
+     */
+    public DefaultConstraintsDisabler(Databases databases, boolean serverSide, int threadCount) {
+        this(databases, serverSide, threadCount, null);
+    }
+
+    /**
+     * Creates the constraints disabler.
+     *
+     * @param databases                    The database supports to disable the constraints for, not null
+     * @param serverSide                   True to disable the constraints using a single block of code that is executed
+     *                                     on the database server, for the databases that support it
+     * @param threadCount                  The max nr of threads that disable or validate constraints concurrently,
+     *                                     1 to do this on the calling thread
+     * @param disabledConstraintsTableName The name of the table in which the disabled constraints are recorded so that
+     *                                     they can be enabled again, null to not record them
+     */
+    public DefaultConstraintsDisabler(Databases databases, boolean serverSide, int threadCount, String disabledConstraintsTableName) {
         this.databases = databases;
+        this.serverSide = serverSide;
+        this.threadCount = threadCount;
+        this.disabledConstraintsTableName = disabledConstraintsTableName;
     }
 
 
@@ -59,21 +134,318 @@ public class DefaultConstraintsDisabler implements ConstraintsDisabler {
     }
 
     public void disableReferentialConstraints() {
-         for (Database database : databases.getDatabases()) {
-            for (String schemaName : database.getSchemaNames()) {
-                logger.info("Disabling referential constraints in database schema " + schemaName);
-                database.disableReferentialConstraints(schemaName);
+        if (threadCount <= 1) {
+            for (Database database : databases.getDatabases()) {
+                disableReferentialConstraints(database);
             }
+            return;
         }
+        createParallelTaskExecutor().execute(databases.getDatabases(), null, new ParallelTaskExecutor.Task<Database>() {
+            public void execute(Database database) {
+                SQLHandler sqlHandler = database.getSQLHandler();
+                sqlHandler.leaseConnection(database.getDataSource());
+                try {
+                    disableReferentialConstraints(database);
+                } finally {
+                    sqlHandler.releaseConnection(database.getDataSource());
+                }
+            }
+        });
     }
 
     public void disableValueConstraints() {
+        if (threadCount <= 1) {
+            for (Database database : databases.getDatabases()) {
+                for (String schemaName : database.getSchemaNames()) {
+                    recordValueConstraints(database, schemaName);
+                    disableValueConstraints(database, schemaName);
+                }
+            }
+            return;
+        }
+        createParallelTaskExecutor().execute(getValueConstraintsWork(), null, new ParallelTaskExecutor.Task<ValueConstraintsWork>() {
+            public void execute(ValueConstraintsWork work) {
+                SQLHandler sqlHandler = work.database.getSQLHandler();
+                sqlHandler.leaseConnection(work.database.getDataSource());
+                try {
+                    if (work.statements == null) {
+                        disableValueConstraints(work.database, work.schemaName);
+                    } else {
+                        for (String statement : work.statements) {
+                            sqlHandler.execute(statement, work.database.getDataSource());
+                        }
+                    }
+                } finally {
+                    sqlHandler.releaseConnection(work.database.getDataSource());
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Enables all constraints that were recorded when they were disabled. The constraints are first enabled without
+     * checking the existing data, unique constraints before the foreign keys that refer to them. Then the existing data
+     * is checked concurrently per table. The records are removed once all constraints were enabled and validated.
+     * <p/>
+     * If this failed halfway, it can simply be invoked again: constraints that were already enabled are then only
+     * validated.
+     */
+    public void enableConstraints() {
+        if (disabledConstraintsTableName == null) {
+            throw new DbMaintainException("Unable to enable constraints: the disabled constraints were not recorded. Set the property " + PROPERTY_RECORD_DISABLED_CONSTRAINTS + " to true before disabling the constraints.");
+        }
+        List<Database> enabledDatabases = new ArrayList<Database>();
+        List<ConstraintValidationWork> validationWork = new ArrayList<ConstraintValidationWork>();
+        for (Database database : databases.getDatabases()) {
+            if (!database.supportsConstraintEnabling()) {
+                logger.warn("Enabling constraints is not supported for database " + database.getDatabaseName() + ". Constraints of this database will not be enabled.");
+                continue;
+            }
+            List<ConstraintDefinition> constraints = getRecordedConstraints(database);
+            logger.info("Enabling " + constraints.size() + " constraints without validation in database " + database.getDatabaseName());
+            Map<String, ConstraintValidationWork> validationWorkPerTable = new LinkedHashMap<String, ConstraintValidationWork>();
+            for (ConstraintDefinition constraint : constraints) {
+                if (database.isConstraintEnabled(constraint)) {
+                    logger.debug("Constraint " + constraint + " is already enabled, it will only be validated");
+                } else {
+                    database.enableConstraintWithoutValidation(constraint);
+                }
+
+                String qualifiedTableName = constraint.getSchemaName() + "." + constraint.getTableName();
+                ConstraintValidationWork work = validationWorkPerTable.get(qualifiedTableName);
+                if (work == null) {
+                    work = new ConstraintValidationWork(database, qualifiedTableName);
+                    validationWorkPerTable.put(qualifiedTableName, work);
+                }
+                work.constraints.add(constraint);
+            }
+            validationWork.addAll(validationWorkPerTable.values());
+            enabledDatabases.add(database);
+        }
+
+        logger.info("Validating the enabled constraints of " + validationWork.size() + " tables");
+        createParallelTaskExecutor().execute(validationWork, null, new ParallelTaskExecutor.Task<ConstraintValidationWork>() {
+            public void execute(ConstraintValidationWork work) {
+                SQLHandler sqlHandler = work.database.getSQLHandler();
+                sqlHandler.leaseConnection(work.database.getDataSource());
+                try {
+                    for (ConstraintDefinition constraint : work.constraints) {
+                        work.database.validateConstraint(constraint);
+                    }
+                } finally {
+                    sqlHandler.releaseConnection(work.database.getDataSource());
+                }
+            }
+        });
+
+        for (Database database : enabledDatabases) {
+            deleteRecordedConstraints(database);
+        }
+    }
+
+
+    public void clearRecordedConstraints() {
+        if (disabledConstraintsTableName == null) {
+            return;
+        }
+        for (Database database : databases.getDatabases()) {
+            deleteRecordedConstraints(database);
+        }
+    }
+
+
+    protected void disableReferentialConstraints(Database database) {
+        for (String schemaName : database.getSchemaNames()) {
+            if (isRecordingConstraints(database)) {
+                recordConstraints(database, database.getReferentialConstraintDefinitions(schemaName));
+            }
+            logger.info("Disabling referential constraints in database schema " + schemaName);
+            if (isServerSide(database)) {
+                int count = database.disableReferentialConstraintsServerSide(schemaName);
+                logger.info("Disabled " + count + " referential constraints in database schema " + schemaName);
+            } else {
+                database.disableReferentialConstraints(schemaName);
+            }
+        }
+    }
+
+    protected void disableValueConstraints(Database database, String schemaName) {
+        logger.info("Disabling value constraints in database schema " + schemaName);
+        if (isServerSide(database)) {
+            int count = database.disableValueConstraintsServerSide(schemaName);
+            logger.info("Disabled " + count + " value constraints in database schema " + schemaName);
+        } else {
+            database.disableValueConstraints(schemaName);
+        }
+    }
+
+    /**
+     * Splits the disabling of the value constraints in work that can be executed concurrently: one item per table
+     * if the database can determine the statements per table up front, one item per schema otherwise. Server-side
+     * disabling is already done in a single round trip, so this is also done per schema.
+     *
+     * @return The work items, not null
+     */
+    protected List<ValueConstraintsWork> getValueConstraintsWork() {
+        List<ValueConstraintsWork> result = new ArrayList<ValueConstraintsWork>();
         for (Database database : databases.getDatabases()) {
             for (String schemaName : database.getSchemaNames()) {
-                logger.info("Disabling value constraints in database schema " + schemaName);
-                database.disableValueConstraints(schemaName);
+                recordValueConstraints(database, schemaName);
+                Map<String, List<String>> statementsPerTable = isServerSide(database) ? null : database.getDisableValueConstraintsStatements(schemaName);
+                if (statementsPerTable == null) {
+                    result.add(new ValueConstraintsWork(database, schemaName, null, null));
+                    continue;
+                }
+                logger.info("Disabling value constraints in database schema " + schemaName + " (" + statementsPerTable.size() + " tables)");
+                for (Map.Entry<String, List<String>> entry : statementsPerTable.entrySet()) {
+                    result.add(new ValueConstraintsWork(database, schemaName, entry.getKey(), entry.getValue()));
+                }
             }
         }
+        return result;
+    }
+
+    protected void recordValueConstraints(Database database, String schemaName) {
+        if (isRecordingConstraints(database)) {
+            recordConstraints(database, database.getValueConstraintDefinitions(schemaName));
+        }
+    }
+
+    /**
+     * @param database The database, not null
+     * @return True if the constraints of the given database should be recorded before they are disabled
+     */
+    protected boolean isRecordingConstraints(Database database) {
+        return disabledConstraintsTableName != null && database.supportsConstraintEnabling();
+    }
+
+    /**
+     * Adds the given constraints to the disabled constraints table of the database. The table is created if it does
+     * not exist yet.
+     *
+     * @param database    The database, not null
+     * @param constraints The constraints that are going to be disabled, not null
+     */
+    protected void recordConstraints(Database database, List<ConstraintDefinition> constraints) {
+        String qualifiedTableName = getQualifiedDisabledConstraintsTableName(database);
+        synchronized (database) {
+            String tableName = database.toCorrectCaseIdentifier(disabledConstraintsTableName);
+            if (!database.getSchemaCatalog(database.getDefaultSchemaName()).getTableNames().contains(tableName)) {
+                logger.info("Creating table " + qualifiedTableName + " for recording the disabled constraints");
+                database.getSQLHandler().executeUpdateAndCommit("create table " + qualifiedTableName + " (schema_name " + database.getTextDataType(255) + ", table_name " + database.getTextDataType(255) +
+                        ", constraint_name " + database.getTextDataType(255) + ", constraint_type " + database.getTextDataType(20) + ", definition " + database.getTextDataType(4000) + ")", database.getDataSource());
+                database.invalidateMetadataCache();
+            }
+        }
+        List<List<String>> records = new ArrayList<List<String>>();
+        for (ConstraintDefinition constraint : constraints) {
+            records.add(asList(constraint.getSchemaName(), constraint.getTableName(), constraint.getConstraintName(), constraint.getType().name(), constraint.getDefinition()));
+        }
+        database.getSQLHandler().executeBatchAndCommit("insert into " + qualifiedTableName + " (schema_name, table_name, constraint_name, constraint_type, definition) values (?, ?, ?, ?, ?)", records, database.getDataSource());
+    }
+
+    /**
+     * Returns the recorded constraints of the database in the order in which they should be enabled: unique
+     * constraints before the foreign keys that refer to them. A constraint that was recorded more than once is only
+     * returned once.
+     *
+     * @param database The database, not null
+     * @return The constraints, empty if none were recorded, not null
+     */
+    protected List<ConstraintDefinition> getRecordedConstraints(Database database) {
+        String tableName = database.toCorrectCaseIdentifier(disabledConstraintsTableName);
+        if (!database.getSchemaCatalog(database.getDefaultSchemaName()).getTableNames().contains(tableName)) {
+            return new ArrayList<ConstraintDefinition>();
+        }
+        List<String[]> records = database.getSQLHandler().getRecords("select schema_name, table_name, constraint_name, constraint_type, definition from " + getQualifiedDisabledConstraintsTableName(database), new ArrayList<Object>(), database.getDataSource());
+
+        Map<String, ConstraintDefinition> constraints = new LinkedHashMap<String, ConstraintDefinition>();
+        for (String[] record : records) {
+            ConstraintDefinition constraint = new ConstraintDefinition(record[0], record[1], record[2], ConstraintDefinition.Type.valueOf(record[3]), record[4]);
+            constraints.put(constraint + " " + constraint.getType(), constraint);
+        }
+        List<ConstraintDefinition> result = new ArrayList<ConstraintDefinition>(constraints.values());
+        Collections.sort(result, new Comparator<ConstraintDefinition>() {
+            public int compare(ConstraintDefinition constraint1, ConstraintDefinition constraint2) {
+                return constraint1.getType().compareTo(constraint2.getType());
+            }
+        });
+        return result;
+    }
+
+    protected void deleteRecordedConstraints(Database database) {
+        String tableName = database.toCorrectCaseIdentifier(disabledConstraintsTableName);
+        if (database.getSchemaCatalog(database.getDefaultSchemaName()).getTableNames().contains(tableName)) {
+            database.getSQLHandler().executeUpdateAndCommit("delete from " + getQualifiedDisabledConstraintsTableName(database), database.getDataSource());
+        }
+    }
+
+    protected String getQualifiedDisabledConstraintsTableName(Database database) {
+        return database.qualified(database.getDefaultSchemaName(), database.toCorrectCaseIdentifier(disabledConstraintsTableName));
+    }
+
+    /**
+     * Creates the executor that disables or validates the constraints of the tables concurrently.
+     *
+     * @return The executor using at most the configured nr of threads, not null
+     */
+    protected ParallelTaskExecutor createParallelTaskExecutor() {
+        return new ParallelTaskExecutor(threadCount, "dbmaintain-constraints");
+    }
+
+    /**
+     * @param database The database, not null
+     * @return True if the constraints of the given database should be disabled server-side
+     */
+    protected boolean isServerSide(Database database) {
+        return serverSide && database.supportsServerSideConstraintDisabling();
+    }
+
+
+    /**
+     * The disabling of the value constraints of a table, or of a complete schema if the table name is null.
+     */
+    protected static class ValueConstraintsWork {
+
+        private Database database;
+        private String schemaName;
+        private String tableName;
+        /* The statements to execute, null to disable the constraints of the complete schema */
+        private List<String> statements;
+
+        public ValueConstraintsWork(Database database, String schemaName, String tableName, List<String> statements) {
+            this.database = database;
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+            this.statements = statements;
+        }
+
+        @Override
+        public String toString() {
+            return tableName == null ? schemaName : schemaName + "." + tableName;
+        }
+    }
+
+
+    /**
+     * The validation of the enabled constraints of a table.
+     */
+    protected static class ConstraintValidationWork {
+
+        private Database database;
+        private String qualifiedTableName;
+        private List<ConstraintDefinition> constraints = new ArrayList<ConstraintDefinition>();
+
+        public ConstraintValidationWork(Database database, String qualifiedTableName) {
+            this.database = database;
+            this.qualifiedTableName = qualifiedTableName;
+        }
+
+        @Override
+        public String toString() {
+            return qualifiedTableName;
+        }
     }
 
 
@@ -19,10 +19,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SchemaCatalog;
 import org.dbmaintain.structure.sequence.SequenceUpdater;
 import org.dbmaintain.util.DbMaintainException;
 
-import java.util.Set;
+import static org.dbmaintain.structure.model.DbItemType.SEQUENCE;
 
 /**
  * Implementation of {@link SequenceUpdater}. All sequences and identity columns that have a value lower than the given value.
@@ -55,8 +56,9 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
             for (String schemaName : database.getSchemaNames()) {
                 logger.info("Updating sequences and identity columns in database " + (database.getDatabaseName() != null ? database.getDatabaseName() +
                         ", and schema " : "schema ") + schemaName);
-                incrementSequencesWithLowValue(database, schemaName);
-                incrementIdentityColumnsWithLowValue(database, schemaName);
+                SchemaCatalog schemaCatalog = database.getSchemaCatalog(schemaName);
+                incrementSequencesWithLowValue(database, schemaCatalog);
+                incrementIdentityColumnsWithLowValue(database, schemaCatalog);
             }
         }
     }
@@ -65,15 +67,12 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
     /**
      * Increments all sequences in the given schema whose value is too low.
      *
-     * @param database   The database support, not null
-     * @param schemaName The schema, not null
+     * @param database      The database support, not null
+     * @param schemaCatalog The snapshot of the schema, not null
      */
-    private void incrementSequencesWithLowValue(Database database, String schemaName) {
-        if (!database.supportsSequences()) {
-            return;
-        }
-        Set<String> sequenceNames = database.getSequenceNames(schemaName);
-        for (String sequenceName : sequenceNames) {
+    private void incrementSequencesWithLowValue(Database database, SchemaCatalog schemaCatalog) {
+        String schemaName = schemaCatalog.getSchemaName();
+        for (String sequenceName : schemaCatalog.getItemNames(SEQUENCE)) {
             if (database.getSequenceValue(schemaName, sequenceName) < lowestAcceptableSequenceValue) {
                 logger.debug("Incrementing value for sequence " + sequenceName + " in database schema " + schemaName);
                 database.incrementSequenceToValue(schemaName, sequenceName, lowestAcceptableSequenceValue);
@@ -85,17 +84,16 @@ public class DefaultSequenceUpdater implements SequenceUpdater {
     /**
      * Increments the next value for identity columns in the given schema whose next value is too low
      *
-     * @param database   The database support, not null
-     * @param schemaName The schema, not null
+     * @param database      The database support, not null
+     * @param schemaCatalog The snapshot of the schema, not null
      */
-    private void incrementIdentityColumnsWithLowValue(Database database, String schemaName) {
+    private void incrementIdentityColumnsWithLowValue(Database database, SchemaCatalog schemaCatalog) {
         if (!database.supportsIdentityColumns()) {
             return;
         }
-        Set<String> tableNames = database.getTableNames(schemaName);
-        for (String tableName : tableNames) {
-            Set<String> identityColumnNames = database.getIdentityColumnNames(schemaName, tableName);
-            for (String identityColumnName : identityColumnNames) {
+        String schemaName = schemaCatalog.getSchemaName();
+        for (String tableName : schemaCatalog.getTableNames()) {
+            for (String identityColumnName : schemaCatalog.getIdentityColumnNames(tableName)) {
                 try {
                     database.incrementIdentityColumnToValue(schemaName, tableName, identityColumnName, lowestAcceptableSequenceValue);
                     logger.debug("Incrementing value for identity column " + identityColumnName + " in database schema " + schemaName);
@@ -0,0 +1,319 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes a task for each of a list of items, taking into account the dependencies between these items. An item is
+ * only executed once all the items it depends on were executed successfully. Items that do not depend on each other
+ * are executed concurrently on a pool of worker threads. If multiple items are ready to be executed, they are started
+ * in the order of the given list.
+ * <p/>
+ * The items can also be divided in groups, e.g. per database, to limit the nr of items of a group that are executed
+ * concurrently. This way one group cannot take all threads.
+ * <p/>
+ * The execution is fail-fast: once the task fails for an item, no new items are started. Items that are already
+ * executing are allowed to finish, after which the first failure is rethrown.
+ * <p/>
+ * If the executor is configured with only 1 thread, all items are executed on the calling thread.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ParallelTaskExecutor {
+
+    /* The logger instance for this class */
+    private static Log logger = LogFactory.getLog(ParallelTaskExecutor.class);
+
+    /* The max nr of items that are executed concurrently */
+    protected int nrOfThreads;
+    /* The max nr of items of the same group that are executed concurrently */
+    protected int nrOfThreadsPerGroup;
+    /* The prefix for the names of the worker threads */
+    protected String threadNamePrefix;
+
+
+    /**
+     * The task that is executed for each of the items.
+     */
+    public interface Task<T> {
+
+        /**
+         * @param item The item to execute, not null
+         */
+        void execute(T item);
+    }
+
+
+    /**
+     * @param nrOfThreads      The max nr of items that are executed concurrently, 1 to execute all items on the calling thread
+     * @param threadNamePrefix The prefix for the names of the worker threads, not null
+     */
+    public ParallelTaskExecutor(int nrOfThreads, String threadNamePrefix) {
+        this(nrOfThreads, nrOfThreads, threadNamePrefix);
+    }
+
+    /**
+     * @param nrOfThreads         The max nr of items that are executed concurrently, 1 to execute all items on the calling thread
+     * @param nrOfThreadsPerGroup The max nr of items of the same group that are executed concurrently
+     * @param threadNamePrefix    The prefix for the names of the worker threads, not null
+     */
+    public ParallelTaskExecutor(int nrOfThreads, int nrOfThreadsPerGroup, String threadNamePrefix) {
+        this.nrOfThreads = nrOfThreads;
+        this.nrOfThreadsPerGroup = nrOfThreadsPerGroup;
+        this.threadNamePrefix = threadNamePrefix;
+    }
+
+
+    /**
+     * Executes the task for all given items. Dependencies on items that are not part of the given list are ignored.
+     *
+     * @param items        The items in their preferred order of execution, not null
+     * @param dependencies The items each item depends on, null if there are no dependencies
+     * @param task         The task to execute for each item, not null
+     * @throws DbMaintainException if the dependencies contain a cycle
+     */
+    public <T> void execute(List<T> items, Map<T, ? extends Collection<T>> dependencies, Task<T> task) {
+        execute(items, dependencies, null, task);
+    }
+
+    /**
+     * Executes the task for all given items, executing at most the configured nr of threads per group concurrently.
+     * Dependencies on items that are not part of the given list are ignored.
+     *
+     * @param items        The items in their preferred order of execution, not null
+     * @param dependencies The items each item depends on, null if there are no dependencies
+     * @param groups       The group of each item, null if the items are not grouped
+     * @param task         The task to execute for each item, not null
+     * @throws DbMaintainException if the dependencies contain a cycle
+     */
+    public <T> void execute(List<T> items, Map<T, ? extends Collection<T>> dependencies, Map<T, ?> groups, Task<T> task) {
+        ExecutionState<T> executionState = new ExecutionState<T>(items, dependencies, groups, nrOfThreadsPerGroup);
+        if (nrOfThreads <= 1 || items.size() <= 1) {
+            executeOnCallingThread(executionState, task);
+        } else {
+            executeOnWorkerThreads(executionState, task);
+        }
+        executionState.assertAllItemsExecuted();
+    }
+
+
+    protected <T> void executeOnCallingThread(ExecutionState<T> executionState, Task<T> task) {
+        T item;
+        while ((item = executionState.nextReadyItem()) != null) {
+            task.execute(item);
+            executionState.executed(item);
+        }
+    }
+
+    protected <T> void executeOnWorkerThreads(ExecutionState<T> executionState, Task<T> task) {
+        ExecutorService executorService = Executors.newFixedThreadPool(nrOfThreads, new WorkerThreadFactory());
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(executorService);
+        Throwable failure = null;
+        int nrOfRunningItems = 0;
+        try {
+            while (true) {
+                T item;
+                while (failure == null && nrOfRunningItems < nrOfThreads && (item = executionState.nextReadyItem()) != null) {
+                    completionService.submit(new TaskCallable<T>(task, item));
+                    nrOfRunningItems++;
+                }
+                if (nrOfRunningItems == 0) {
+                    break;
+                }
+                Future<T> future = completionService.take();
+                nrOfRunningItems--;
+                try {
+                    executionState.executed(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        logger.error("Additional failure during parallel execution.", e.getCause());
+                        failure.addSuppressed(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new DbMaintainException("Interrupted while waiting for the parallel execution to finish.", e);
+        } finally {
+            executorService.shutdown();
+        }
+        if (failure != null) {
+            rethrow(failure);
+        }
+    }
+
+    protected void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new DbMaintainException(failure);
+    }
+
+
+    /**
+     * Keeps track of which items are ready to be executed.
+     */
+    protected static class ExecutionState<T> {
+
+        /* The items in their preferred order of execution */
+        private List<T> items;
+        /* The index of each item in the list of items */
+        private Map<T, Integer> itemIndexes = new HashMap<T, Integer>();
+        /* The nr of dependencies of each item that were not executed yet */
+        private int[] nrOfPendingDependencies;
+        /* The indexes of the items that depend on each item */
+        private List<List<Integer>> dependentItemIndexes;
+        /* The indexes of the items that are ready to be executed, lowest index first */
+        private SortedSet<Integer> readyItemIndexes = new TreeSet<Integer>();
+        /* The nr of items that were executed successfully */
+        private int nrOfExecutedItems;
+        /* The group of each item, null if the items are not grouped */
+        private Map<T, ?> groups;
+        /* The max nr of items of the same group that are executed concurrently */
+        private int maxNrOfExecutingItemsPerGroup;
+        /* The nr of items of each group that are executing */
+        private Map<Object, Integer> nrOfExecutingItemsPerGroup = new HashMap<Object, Integer>();
+
+        public ExecutionState(List<T> items, Map<T, ? extends Collection<T>> dependencies) {
+            this(items, dependencies, null, Integer.MAX_VALUE);
+        }
+
+        public ExecutionState(List<T> items, Map<T, ? extends Collection<T>> dependencies, Map<T, ?> groups, int maxNrOfExecutingItemsPerGroup) {
+            this.items = items;
+            this.groups = groups;
+            this.maxNrOfExecutingItemsPerGroup = maxNrOfExecutingItemsPerGroup;
+            this.nrOfPendingDependencies = new int[items.size()];
+            this.dependentItemIndexes = new ArrayList<List<Integer>>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                itemIndexes.put(items.get(i), i);
+                dependentItemIndexes.add(new ArrayList<Integer>());
+            }
+            for (int i = 0; i < items.size(); i++) {
+                Collection<T> itemDependencies = dependencies == null ? null : dependencies.get(items.get(i));
+                if (itemDependencies != null) {
+                    for (T dependency : new HashSet<T>(itemDependencies)) {
+                        Integer dependencyIndex = itemIndexes.get(dependency);
+                        if (dependencyIndex != null && dependencyIndex != i) {
+                            dependentItemIndexes.get(dependencyIndex).add(i);
+                            nrOfPendingDependencies[i]++;
+                        }
+                    }
+                }
+                if (nrOfPendingDependencies[i] == 0) {
+                    readyItemIndexes.add(i);
+                }
+            }
+        }
+
+        /**
+         * @return The next item that can be executed, null if there is none or if their groups are already executing
+         *         the max nr of items
+         */
+        public T nextReadyItem() {
+            for (Integer index : readyItemIndexes) {
+                T item = items.get(index);
+                if (groups == null) {
+                    readyItemIndexes.remove(index);
+                    return item;
+                }
+                Object group = groups.get(item);
+                Integer nrOfExecutingItems = nrOfExecutingItemsPerGroup.get(group);
+                if (nrOfExecutingItems == null) {
+                    nrOfExecutingItems = 0;
+                }
+                if (nrOfExecutingItems < maxNrOfExecutingItemsPerGroup) {
+                    nrOfExecutingItemsPerGroup.put(group, nrOfExecutingItems + 1);
+                    readyItemIndexes.remove(index);
+                    return item;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Marks the given item as executed, making the items that depend on it ready if they have no other pending dependencies.
+         *
+         * @param item The item that was executed successfully, not null
+         */
+        public void executed(T item) {
+            nrOfExecutedItems++;
+            if (groups != null) {
+                Object group = groups.get(item);
+                nrOfExecutingItemsPerGroup.put(group, nrOfExecutingItemsPerGroup.get(group) - 1);
+            }
+            for (Integer dependentItemIndex : dependentItemIndexes.get(itemIndexes.get(item))) {
+                if (--nrOfPendingDependencies[dependentItemIndex] == 0) {
+                    readyItemIndexes.add(dependentItemIndex);
+                }
+            }
+        }
+
+        public void assertAllItemsExecuted() {
+            if (nrOfExecutedItems == items.size()) {
+                return;
+            }
+            List<T> blockedItems = new ArrayList<T>();
+            for (int i = 0; i < items.size(); i++) {
+                if (nrOfPendingDependencies[i] > 0) {
+                    blockedItems.add(items.get(i));
+                }
+            }
+            throw new DbMaintainException("Unable to execute all items: there is a cyclic dependency involving following items: " + blockedItems);
+        }
+    }
+
+
+    protected static class TaskCallable<T> implements Callable<T> {
+
+        private Task<T> task;
+        private T item;
+
+        public TaskCallable(Task<T> task, T item) {
+            this.task = task;
+            this.item = item;
+        }
+
+        public T call() {
+            task.execute(item);
+            return item;
+        }
+    }
+
+
+    protected class WorkerThreadFactory implements ThreadFactory {
+
+        private AtomicInteger threadNr = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, threadNamePrefix + "-" + threadNr.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
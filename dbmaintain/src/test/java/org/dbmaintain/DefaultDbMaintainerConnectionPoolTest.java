@@ -0,0 +1,137 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.config.DbMaintainConfigurationLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the parallel execution of scripts using a pooling data source that has exactly as many connections as
+ * there are script threads.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerConnectionPoolTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:connectionPoolTest";
+
+    private File scriptsLocation;
+    private MainFactory mainFactory;
+
+
+    @Before
+    public void initialize() throws IOException {
+        scriptsLocation = File.createTempFile("poolScripts", "");
+        scriptsLocation.delete();
+        writeStringToFile(new File(scriptsLocation, "01_incremental/01_create.sql"), "create table pool_table (id int);", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "repeatable/views/pool_view_a.sql"), "create view pool_view_a as select id from pool_table;", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "repeatable/procedures/pool_view_b.sql"), "create view pool_view_b as select id from pool_table;", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "postprocessing/01_insert.sql"), "insert into pool_table values (1);", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "postprocessing/02_insert.sql"), "insert into pool_table values (2);", "ISO-8859-1");
+
+        Properties configuration = new DbMaintainConfigurationLoader().loadDefaultConfiguration();
+        configuration.put("database.dialect", "hsqldb");
+        configuration.put("database.driverClassName", "org.hsqldb.jdbcDriver");
+        configuration.put("database.url", URL);
+        configuration.put("database.userName", "sa");
+        configuration.put("database.password", "");
+        configuration.put("database.schemaNames", "PUBLIC");
+        configuration.put(PROPERTY_AUTO_CREATE_DBMAINTAIN_SCRIPTS_TABLE, "true");
+        configuration.put(PROPERTY_SCRIPT_LOCATIONS, scriptsLocation.getAbsolutePath());
+        configuration.put(PROPERTY_PARALLEL_REPEATABLE_SCRIPTS_THREAD_COUNT, "2");
+        configuration.put(PROPERTY_DATASOURCE_POOL_ENABLED, "true");
+        configuration.put(PROPERTY_DATASOURCE_POOL_MAX_SIZE, "2");
+        configuration.put(PROPERTY_DATASOURCE_POOL_MAX_WAIT, "1000");
+        mainFactory = new MainFactory(configuration);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        mainFactory.close();
+        deleteDirectory(scriptsLocation);
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute("drop view pool_view_a if exists");
+            connection.createStatement().execute("drop view pool_view_b if exists");
+            connection.createStatement().execute("drop table pool_table if exists");
+            connection.createStatement().execute("drop table dbmaintain_scripts if exists");
+            connection.createStatement().execute("drop procedure pool_sleep if exists");
+        } finally {
+            connection.close();
+        }
+    }
+
+
+    /**
+     * The scripts and the postprocessing scripts are executed by two different sets of worker threads. The workers
+     * of the first phase should return their connections to the pool, otherwise the second phase cannot get one.
+     */
+    @Test
+    public void connectionsOfWorkersAreReturnedToThePool() throws Exception {
+        mainFactory.createDbMaintainer().updateDatabase(false);
+
+        assertEquals(2, getCount("select count(*) from pool_table"));
+        assertEquals(5, getCount("select count(*) from dbmaintain_scripts where succeeded = 1"));
+    }
+
+
+    /**
+     * The main thread keeps its connection while the workers execute. Both workers should nevertheless get a
+     * connection, also when their scripts take longer than the max wait time of the pool.
+     */
+    @Test
+    public void slowScriptsOfWorkersDoNotWaitForAConnection() throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute("create procedure pool_sleep(in millis bigint) language java external name 'CLASSPATH:java.lang.Thread.sleep'");
+        } finally {
+            connection.close();
+        }
+        writeStringToFile(new File(scriptsLocation, "repeatable/views/pool_view_a.sql"), "call pool_sleep(1500);\ncreate view pool_view_a as select id from pool_table;", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "repeatable/procedures/pool_view_b.sql"), "call pool_sleep(1500);\ncreate view pool_view_b as select id from pool_table;", "ISO-8859-1");
+
+        mainFactory.createDbMaintainer().updateDatabase(false);
+
+        assertEquals(5, getCount("select count(*) from dbmaintain_scripts where succeeded = 1"));
+    }
+
+
+    private long getCount(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getLong(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
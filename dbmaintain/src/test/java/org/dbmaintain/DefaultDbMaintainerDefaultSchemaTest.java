@@ -0,0 +1,113 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.config.DbMaintainConfigurationLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the parallel execution of scripts on a database whose schema is not the default schema of a new connection.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerDefaultSchemaTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:defaultSchemaTest";
+
+    private File scriptsLocation;
+    private MainFactory mainFactory;
+
+
+    @Before
+    public void initialize() throws Exception {
+        executeUpdate("create schema OTHER authorization DBA");
+
+        scriptsLocation = File.createTempFile("defaultSchemaScripts", "");
+        scriptsLocation.delete();
+        writeStringToFile(new File(scriptsLocation, "repeatable/tables/t_a.sql"), "create table T_A (id int);", "ISO-8859-1");
+        writeStringToFile(new File(scriptsLocation, "repeatable/other/t_b.sql"), "create table T_B (id int);", "ISO-8859-1");
+
+        Properties configuration = new DbMaintainConfigurationLoader().loadDefaultConfiguration();
+        configuration.put("database.dialect", "hsqldb");
+        configuration.put("database.driverClassName", "org.hsqldb.jdbcDriver");
+        configuration.put("database.url", URL);
+        configuration.put("database.userName", "sa");
+        configuration.put("database.password", "");
+        configuration.put("database.schemaNames", "OTHER");
+        configuration.put(PROPERTY_AUTO_CREATE_DBMAINTAIN_SCRIPTS_TABLE, "true");
+        configuration.put(PROPERTY_SCRIPT_LOCATIONS, scriptsLocation.getAbsolutePath());
+        configuration.put(PROPERTY_PARALLEL_REPEATABLE_SCRIPTS_THREAD_COUNT, "2");
+        mainFactory = new MainFactory(configuration);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        mainFactory.close();
+        deleteDirectory(scriptsLocation);
+        executeUpdate("drop schema OTHER cascade");
+        executeUpdate("drop table T_A if exists");
+        executeUpdate("drop table T_B if exists");
+    }
+
+
+    /**
+     * The worker threads execute the scripts on their own connections. The default schema should also be set on
+     * these connections, otherwise the unqualified tables would be created in the PUBLIC schema.
+     */
+    @Test
+    public void scriptsOfWorkersAreExecutedInTheDefaultSchema() throws Exception {
+        mainFactory.createDbMaintainer().updateDatabase(false);
+
+        assertEquals(2, getCount("select count(*) from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_SCHEM = 'OTHER' and TABLE_NAME in ('T_A', 'T_B')"));
+        assertEquals(0, getCount("select count(*) from INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_SCHEM = 'PUBLIC' and TABLE_NAME in ('T_A', 'T_B')"));
+    }
+
+
+    private void executeUpdate(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private long getCount(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getLong(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.script.Script;
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.TestUtils.createScriptWithContent;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the dependencies between the scripts that are used when scripts are executed in parallel.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultDbMaintainerScriptDependenciesTest {
+
+    private Script incrementalScript1 = createScriptWithContent("01_script1.sql", "content");
+    private Script incrementalScript2 = createScriptWithContent("02_script2.sql", "content");
+    private Script repeatableScriptA = createScriptWithContent("views/a.sql", "content");
+    private Script repeatableScriptB = createScriptWithContent("views/b.sql", "content");
+    private Script repeatableScriptC = createScriptWithContent("procedures/c.sql", "content");
+    private Script parallelScript1 = createScriptWithContent("03_backfill/01_#parallel_orders.sql", "content");
+    private Script parallelScript2 = createScriptWithContent("03_backfill/02_#parallel_customers.sql", "content");
+    private Script parallelScript3 = createScriptWithContent("04_backfill/01_#parallel_invoices.sql", "content");
+
+
+    @Test
+    public void repeatableScriptsOfSameFolderAreExecutedOneByOne() {
+        Map<Script, Set<Script>> dependencies = getDependencies(4, incrementalScript1, repeatableScriptA, repeatableScriptB, repeatableScriptC);
+
+        assertEquals(asSet(), dependencies.get(incrementalScript1));
+        assertEquals(asSet(incrementalScript1), dependencies.get(repeatableScriptA));
+        assertEquals(asSet(incrementalScript1, repeatableScriptA), dependencies.get(repeatableScriptB));
+        assertEquals(asSet(incrementalScript1), dependencies.get(repeatableScriptC));
+    }
+
+    @Test
+    public void declaredDependencies() {
+        Script repeatableScriptA = createScriptWithContent("views/a.sql", "-- my view\n-- dependsOn: procedures/c.sql\n\ncreate view a");
+        Script repeatableScriptB = createScriptWithContent("views/b.sql", "-- dependsOn: a.sql, \n-- DEPENDSON: unknown.sql\ncreate view b");
+        Map<Script, Set<Script>> dependencies = getDependencies(4, incrementalScript1, repeatableScriptA, repeatableScriptB, repeatableScriptC);
+
+        assertEquals(asSet(incrementalScript1, repeatableScriptC), dependencies.get(repeatableScriptA));
+        assertEquals(asSet(incrementalScript1, repeatableScriptA), dependencies.get(repeatableScriptB));
+        assertEquals(asSet(incrementalScript1), dependencies.get(repeatableScriptC));
+    }
+
+    @Test
+    public void emptyDependsOnDeclaresIndependentScript() {
+        Script repeatableScriptB = createScriptWithContent("views/b.sql", "-- dependsOn:\ncreate view b");
+        Map<Script, Set<Script>> dependencies = getDependencies(4, repeatableScriptA, repeatableScriptB);
+
+        assertEquals(asSet(), dependencies.get(repeatableScriptA));
+        assertEquals(asSet(), dependencies.get(repeatableScriptB));
+    }
+
+    @Test
+    public void dependsOnIsOnlyReadFromHeader() {
+        Script repeatableScriptB = createScriptWithContent("views/b.sql", "create view b;\n-- dependsOn:\n");
+        Map<Script, Set<Script>> dependencies = getDependencies(4, repeatableScriptA, repeatableScriptB);
+
+        assertEquals(asSet(repeatableScriptA), dependencies.get(repeatableScriptB));
+    }
+
+    @Test
+    public void incrementalScriptDependsOnAllPrecedingRepeatableScripts() {
+        Map<Script, Set<Script>> dependencies = getDependencies(4, incrementalScript1, repeatableScriptA, repeatableScriptC, incrementalScript2);
+
+        assertEquals(asSet(repeatableScriptA, repeatableScriptC), dependencies.get(incrementalScript2));
+    }
+
+    @Test
+    public void allScriptsAreExecutedInOrderWhenParallelExecutionIsDisabled() {
+        Script repeatableScriptB = createScriptWithContent("views/b.sql", "-- dependsOn:\ncreate view b");
+        Map<Script, Set<Script>> dependencies = getDependencies(1, 1, incrementalScript1, parallelScript1, parallelScript2, repeatableScriptA, repeatableScriptB);
+
+        assertEquals(asSet(incrementalScript1), dependencies.get(parallelScript1));
+        assertEquals(asSet(parallelScript1), dependencies.get(parallelScript2));
+        assertEquals(asSet(parallelScript2), dependencies.get(repeatableScriptA));
+        assertEquals(asSet(repeatableScriptA), dependencies.get(repeatableScriptB));
+    }
+
+    @Test
+    public void parallelIncrementalScriptsOfSameFolder() {
+        Map<Script, Set<Script>> dependencies = getDependencies(1, 4, incrementalScript1, parallelScript1, parallelScript2, parallelScript3, incrementalScript2);
+
+        assertEquals(asSet(incrementalScript1), dependencies.get(parallelScript1));
+        assertEquals(asSet(incrementalScript1), dependencies.get(parallelScript2));
+        assertEquals(asSet(parallelScript1, parallelScript2), dependencies.get(parallelScript3));
+        assertEquals(asSet(parallelScript3), dependencies.get(incrementalScript2));
+    }
+
+    @Test
+    public void parallelQualifierIsIgnoredForRepeatableScripts() {
+        Script repeatableScript = createScriptWithContent("views/#parallel_d.sql", "content");
+        Map<Script, Set<Script>> dependencies = getDependencies(1, 4, incrementalScript1, repeatableScriptA, repeatableScript);
+
+        assertEquals(asSet(repeatableScriptA), dependencies.get(repeatableScript));
+    }
+
+
+    private Map<Script, Set<Script>> getDependencies(int repeatableScriptsThreadCount, Script... scripts) {
+        return getDependencies(repeatableScriptsThreadCount, 1, scripts);
+    }
+
+    private Map<Script, Set<Script>> getDependencies(int repeatableScriptsThreadCount, int incrementalScriptsThreadCount, Script... scripts) {
+        DefaultDbMaintainer defaultDbMaintainer = new DefaultDbMaintainer(null, null, null, false, false, false, false, false, false, null, null, null, null, null, null, 0, null, false,
+                null, false, repeatableScriptsThreadCount, incrementalScriptsThreadCount);
+        Map<String, Script> scriptsByFileName = new HashMap<String, Script>();
+        for (Script script : scripts) {
+            scriptsByFileName.put(script.getFileName(), script);
+        }
+        Map<Script, Set<Script>> dependencies = new HashMap<Script, Set<Script>>();
+        defaultDbMaintainer.addTargetDatabaseDependencies(asList(scripts), scriptsByFileName, dependencies);
+        return dependencies;
+    }
+
+    private Set<Script> asSet(Script... scripts) {
+        return new HashSet<Script>(asList(scripts));
+    }
+}
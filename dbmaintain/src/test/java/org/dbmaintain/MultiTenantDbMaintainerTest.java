@@ -0,0 +1,150 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain;
+
+import org.dbmaintain.config.DbMaintainConfigurationLoader;
+import org.dbmaintain.launch.commandline.CommandLine;
+import org.dbmaintain.launch.commandline.CommandLineArguments;
+import org.dbmaintain.util.DbMaintainException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.dbmaintain.launch.commandline.CommandLine.DbMaintainOperation.UPDATE_TENANT_DATABASES;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MultiTenantDbMaintainerTest {
+
+    private File scriptsLocation;
+    private Properties configuration;
+
+
+    @Before
+    public void initialize() throws IOException {
+        scriptsLocation = File.createTempFile("tenantScripts", "");
+        scriptsLocation.delete();
+        writeStringToFile(new File(scriptsLocation, "01_create.sql"), "create table tenant_table (id int);", "ISO-8859-1");
+
+        configuration = new DbMaintainConfigurationLoader().loadDefaultConfiguration();
+        configuration.put("database.dialect", "hsqldb");
+        configuration.put("database.driverClassName", "org.hsqldb.jdbcDriver");
+        configuration.put("database.userName", "sa");
+        configuration.put("database.password", "");
+        configuration.put("database.schemaNames", "PUBLIC");
+        configuration.put(PROPERTY_AUTO_CREATE_DBMAINTAIN_SCRIPTS_TABLE, "true");
+        configuration.put(PROPERTY_SCRIPT_LOCATIONS, scriptsLocation.getAbsolutePath());
+        configuration.put(PROPERTY_TENANT_NAMES, "tenantA, tenantB, tenantC");
+        configuration.put("dbMaintainer.tenant.tenantA.database.url", "jdbc:hsqldb:mem:tenantA");
+        configuration.put("dbMaintainer.tenant.tenantB.database.url", "jdbc:hsqldb:mem:tenantB");
+        configuration.put("dbMaintainer.tenant.tenantC.database.url", "jdbc:hsqldb:mem:tenantC");
+        configuration.put("dbMaintainer.tenant.tenantC.database.driverClassName", "org.unknown.Driver");
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        deleteDirectory(scriptsLocation);
+        dropTenantTable("tenantA");
+        dropTenantTable("tenantB");
+    }
+
+
+    @Test
+    public void tenantConfigurations() {
+        Map<String, Properties> tenantConfigurations = MultiTenantDbMaintainer.getTenantConfigurations(configuration);
+
+        assertEquals(asList("tenantA", "tenantB", "tenantC"), asList(tenantConfigurations.keySet().toArray()));
+        Properties tenantConfiguration = tenantConfigurations.get("tenantC");
+        assertEquals("jdbc:hsqldb:mem:tenantC", tenantConfiguration.getProperty("database.url"));
+        assertEquals("org.unknown.Driver", tenantConfiguration.getProperty("database.driverClassName"));
+        assertEquals("sa", tenantConfiguration.getProperty("database.userName"));
+    }
+
+    @Test
+    public void updateDatabases() throws Exception {
+        MultiTenantDbMaintainer multiTenantDbMaintainer = new MultiTenantDbMaintainer(configuration);
+
+        MultiTenantUpdateReport report = multiTenantDbMaintainer.updateDatabases(false);
+
+        assertTrue(tenantTableExists("tenantA"));
+        assertTrue(tenantTableExists("tenantB"));
+        assertEquals(3, report.getTenantResults().size());
+        assertTrue(report.getTenantResults().get(0).isUpdated());
+        assertTrue(report.getTenantResults().get(1).isUpdated());
+        assertTrue(report.hasFailures());
+        assertEquals(1, report.getFailedTenantResults().size());
+        assertEquals("tenantC", report.getFailedTenantResults().get(0).getTenantName());
+    }
+
+    @Test
+    public void commandLineOperationFailsWhenATenantFails() throws Exception {
+        try {
+            CommandLine.executeOperation(UPDATE_TENANT_DATABASES, configuration, new CommandLineArguments(new String[]{"updateTenantDatabases"}));
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("tenantC"));
+        }
+        assertTrue(tenantTableExists("tenantA"));
+        assertTrue(tenantTableExists("tenantB"));
+    }
+
+    @Test
+    public void tenantsThatAreUpToDate() {
+        configuration.put(PROPERTY_TENANT_NAMES, "tenantA");
+        MultiTenantDbMaintainer multiTenantDbMaintainer = new MultiTenantDbMaintainer(configuration);
+        multiTenantDbMaintainer.updateDatabases(false);
+
+        MultiTenantUpdateReport report = multiTenantDbMaintainer.updateDatabases(false);
+        assertFalse(report.hasFailures());
+        assertFalse(report.getTenantResults().get(0).isUpdated());
+    }
+
+
+    private boolean tenantTableExists(String tenantName) throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:" + tenantName, "sa", "");
+        try {
+            ResultSet resultSet = connection.getMetaData().getTables(null, "PUBLIC", "TENANT_TABLE", null);
+            return resultSet.next();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void dropTenantTable(String tenantName) throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:" + tenantName, "sa", "");
+        try {
+            connection.createStatement().execute("drop table tenant_table if exists");
+            connection.createStatement().execute("drop table dbmaintain_scripts if exists");
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -4,7 +4,10 @@ import java.util.*;
 
 import org.junit.Test;
 
+import static org.dbmaintain.util.TestUtils.getDatabases;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DatabaseTest {
 	
@@ -26,4 +29,37 @@ public class DatabaseTest {
 		assertEquals( Arrays.asList("B", "A", "C"), sorted );
 	}
 
+	@Test
+	public void referencesBetweenTruncatedTablesAreAllowed() {
+		Database database = getDatabases().getDefaultDatabase();
+		List<String[]> references = Arrays.asList(new String[]{"A", "PUBLIC", "B"}, new String[]{"B", "PUBLIC", "A"}, new String[]{"A", "PUBLIC", "A"});
+		database.assertNotReferencedByOtherTables("PUBLIC", Arrays.asList("A", "B"), references);
+	}
+
+	@Test
+	public void referencesToOtherTablesAreIgnored() {
+		Database database = getDatabases().getDefaultDatabase();
+		List<String[]> references = Arrays.asList(new String[]{"C", "PUBLIC", "D"}, new String[]{"C", "OTHER", "A"});
+		database.assertNotReferencedByOtherTables("PUBLIC", Arrays.asList("A", "B"), references);
+	}
+
+	@Test
+	public void referenceByOtherTableIsRefused() {
+		Database database = getDatabases().getDefaultDatabase();
+		List<String[]> references = Arrays.asList(new String[]{"A", "PUBLIC", "B"}, new String[]{"B", "PUBLIC", "C"});
+		try {
+			database.assertNotReferencedByOtherTables("PUBLIC", Arrays.asList("A", "B"), references);
+			fail("DatabaseException expected");
+		} catch (DatabaseException e) {
+			assertTrue(e.getMessage().contains("\"C\""));
+		}
+	}
+
+	@Test(expected = DatabaseException.class)
+	public void referenceByTableWithSameNameInOtherSchemaIsRefused() {
+		Database database = getDatabases().getDefaultDatabase();
+		List<String[]> references = Arrays.<String[]>asList(new String[]{"A", "OTHER", "B"});
+		database.assertNotReferencedByOtherTables("PUBLIC", Arrays.asList("A", "B"), references);
+	}
+
 }
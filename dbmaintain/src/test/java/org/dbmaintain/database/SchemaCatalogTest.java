@@ -0,0 +1,155 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.dbmaintain.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.structure.model.DbItemType.*;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SchemaCatalogTest {
+
+    private Database database;
+    private DataSource dataSource;
+
+    /* Tested object */
+    private SchemaCatalog schemaCatalog;
+
+
+    @Before
+    public void initialize() {
+        database = TestUtils.getDatabases().getDefaultDatabase();
+        dataSource = database.getDataSource();
+        cleanupTestDatabase();
+        executeUpdate("create table TEST_PARENT (id int primary key)", dataSource);
+        executeUpdate("create table TEST_CHILD (id int generated by default as identity primary key, parent_id int references TEST_PARENT(id))", dataSource);
+        executeUpdate("create view TEST_VIEW as select id from TEST_PARENT", dataSource);
+        executeUpdate("create sequence TEST_SEQUENCE", dataSource);
+
+        schemaCatalog = database.getSchemaCatalog("PUBLIC");
+    }
+
+    @After
+    public void cleanUp() {
+        cleanupTestDatabase();
+    }
+
+
+    @Test
+    public void itemNames() {
+        assertEquals("PUBLIC", schemaCatalog.getSchemaName());
+        assertEquals(asSet("TEST_PARENT", "TEST_CHILD"), schemaCatalog.getTableNames());
+        assertEquals(asSet("TEST_VIEW"), schemaCatalog.getItemNames(VIEW));
+        assertEquals(asSet("TEST_SEQUENCE"), schemaCatalog.getItemNames(SEQUENCE));
+        assertTrue(schemaCatalog.containsItem(TABLE, "TEST_CHILD"));
+        assertFalse(schemaCatalog.containsItem(TABLE, "TEST_VIEW"));
+    }
+
+    @Test
+    public void unsupportedItemTypeIsEmpty() {
+        assertTrue(schemaCatalog.getItemNames(SYNONYM).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void schemaIsNotAnItemType() {
+        schemaCatalog.getItemNames(SCHEMA);
+    }
+
+    @Test
+    public void itemsAreOnlyQueriedOnce() {
+        assertEquals(asSet("TEST_PARENT", "TEST_CHILD"), schemaCatalog.getTableNames());
+        executeUpdate("create table TEST_OTHER (id int)", dataSource);
+
+        assertEquals(asSet("TEST_PARENT", "TEST_CHILD"), schemaCatalog.getTableNames());
+        database.invalidateMetadataCache();
+        assertEquals(asSet("TEST_PARENT", "TEST_CHILD", "TEST_OTHER"), database.getSchemaCatalog("PUBLIC").getTableNames());
+    }
+
+    @Test
+    public void itemsOfAllTypesAreQueriedAtOnce() {
+        assertEquals(asSet("TEST_PARENT", "TEST_CHILD"), schemaCatalog.getTableNames());
+        executeUpdate("create view TEST_OTHER_VIEW as select id from TEST_PARENT", dataSource);
+        executeUpdate("create sequence TEST_OTHER_SEQUENCE", dataSource);
+
+        assertEquals(asSet("TEST_VIEW"), schemaCatalog.getItemNames(VIEW));
+        assertEquals(asSet("TEST_SEQUENCE"), schemaCatalog.getItemNames(SEQUENCE));
+        assertTrue(schemaCatalog.getItemNames(TRIGGER).isEmpty());
+    }
+
+    @Test
+    public void catalogIsCachedByDatabase() {
+        assertSame(schemaCatalog, database.getSchemaCatalog("PUBLIC"));
+    }
+
+    @Test
+    public void cacheIsInvalidatedWhenItemIsDropped() {
+        database.drop(VIEW, "PUBLIC", "TEST_VIEW");
+
+        SchemaCatalog newSchemaCatalog = database.getSchemaCatalog("PUBLIC");
+        assertNotSame(schemaCatalog, newSchemaCatalog);
+        assertTrue(newSchemaCatalog.getItemNames(VIEW).isEmpty());
+    }
+
+    @Test
+    public void columnNames() {
+        assertEquals(asSet("ID", "PARENT_ID"), schemaCatalog.getColumnNames("TEST_CHILD"));
+        executeUpdate("alter table TEST_CHILD add column OTHER_ID int", dataSource);
+
+        assertEquals(asSet("ID", "PARENT_ID"), schemaCatalog.getColumnNames("TEST_CHILD"));
+        assertTrue(schemaCatalog.getColumnNames("XXX").isEmpty());
+    }
+
+    @Test
+    public void identityColumnNames() {
+        assertEquals(asSet("ID"), schemaCatalog.getIdentityColumnNames("TEST_CHILD"));
+    }
+
+    @Test
+    public void tableNamesSortedAccordingToConstraints() {
+        assertEquals(asList("TEST_CHILD", "TEST_PARENT"), schemaCatalog.getTableNamesSortedAccordingToConstraints());
+    }
+
+    @Test
+    public void cascadeConstraintsAreIgnoredInTableDependencyGraph() {
+        executeUpdate("create table TEST_OTHER (id int, parent_id int references TEST_PARENT(id) on delete cascade)", dataSource);
+        database.invalidateMetadataCache();
+
+        TableDependencyGraph graph = database.getSchemaCatalog("PUBLIC").getTableDependencyGraph();
+        assertEquals(2, graph.getLevels().size());
+        assertTrue(graph.getLevels().get(0).contains("TEST_OTHER"));
+        assertEquals(asList("TEST_PARENT"), graph.getLevels().get(1));
+        assertFalse(graph.hasCycles());
+    }
+
+
+    private void cleanupTestDatabase() {
+        dropTestViews(database, "TEST_VIEW", "TEST_OTHER_VIEW");
+        dropTestTables(database, "TEST_CHILD", "TEST_PARENT", "TEST_OTHER");
+        dropTestSequences(database, "TEST_SEQUENCE", "TEST_OTHER_SEQUENCE");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class TableDependencyGraphTest {
+
+    private Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+
+
+    @Test
+    public void transitiveDependencies() {
+        addDependency("A", "B");
+        addDependency("B", "C");
+        addDependency("C", "D");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B", "C", "D"), dependencies);
+        assertEquals(asList("D", "C", "B", "A"), graph.getSortedTableNames());
+        assertFalse(graph.hasCycles());
+    }
+
+    @Test
+    public void givenOrderIsKeptForIndependentTables() {
+        addDependency("A", "C");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B", "C", "D"), dependencies);
+        assertEquals(asList("B", "C", "D", "A"), graph.getSortedTableNames());
+    }
+
+    @Test
+    public void levels() {
+        addDependency("A", "B");
+        addDependency("A", "C");
+        addDependency("B", "D");
+        addDependency("C", "D");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B", "C", "D", "E"), dependencies);
+        assertEquals(asList(asList("D", "E"), asList("B", "C"), asList("A")), graph.getLevels());
+    }
+
+    @Test
+    public void cyclesAreKeptTogether() {
+        addDependency("A", "B");
+        addDependency("B", "C");
+        addDependency("C", "B");
+        addDependency("C", "D");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B", "C", "D"), dependencies);
+        assertEquals(asList("D", "B", "C", "A"), graph.getSortedTableNames());
+        assertEquals(asList(asList("D"), asList("B", "C"), asList("A")), graph.getLevels());
+        assertEquals(asList(asList("B", "C")), graph.getCycles());
+    }
+
+    @Test
+    public void selfReference() {
+        addDependency("A", "A");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B"), dependencies);
+        assertEquals(asList("A", "B"), graph.getSortedTableNames());
+        assertEquals(asList(asList("A")), graph.getCycles());
+    }
+
+    @Test
+    public void unknownTablesAreIgnored() {
+        addDependency("A", "X");
+        addDependency("Y", "A");
+
+        TableDependencyGraph graph = new TableDependencyGraph(asList("A", "B"), dependencies);
+        assertEquals(asList("A", "B"), graph.getSortedTableNames());
+    }
+
+    @Test
+    public void longChain() {
+        List<String> tableNames = new ArrayList<String>();
+        for (int i = 0; i < 100000; i++) {
+            tableNames.add("T" + i);
+            if (i > 0) {
+                addDependency("T" + (i - 1), "T" + i);
+            }
+        }
+        TableDependencyGraph graph = new TableDependencyGraph(tableNames, dependencies);
+        assertEquals("T99999", graph.getSortedTableNames().get(0));
+        assertEquals(100000, graph.getLevels().size());
+    }
+
+
+    private void addDependency(String tableName, String dependency) {
+        Set<String> tableDependencies = dependencies.get(tableName);
+        if (tableDependencies == null) {
+            tableDependencies = new HashSet<String>();
+            dependencies.put(tableName, tableDependencies);
+        }
+        tableDependencies.add(dependency);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.database.impl;
+
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.SQLHandler;
+import org.dbmaintain.datasource.PoolingDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Arrays.asList;
+import static org.dbmaintain.util.CollectionUtils.asSet;
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DefaultSQLHandlerTest {
+
+    /* Tested object */
+    private DefaultSQLHandler sqlHandler;
+
+    /* A pool of a single connection: getting a second connection fails as long as the first one is in use */
+    private PoolingDataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        sqlHandler = new DefaultSQLHandler();
+        dataSource = new PoolingDataSource(getHsqlDatabaseInfo(), 1, 5, 100);
+        sqlHandler.execute("create table test_table (id int)", dataSource);
+    }
+
+    @After
+    public void cleanUp() {
+        sqlHandler.closeAllConnections();
+        sqlHandler.execute("drop table test_table", dataSource);
+        sqlHandler.closeAllConnections();
+        dataSource.close();
+    }
+
+
+    @Test
+    public void leasedConnectionIsClosedWhenReleased() throws Exception {
+        sqlHandler.closeAllConnections();
+        sqlHandler.leaseConnection(dataSource);
+        sqlHandler.execute("insert into test_table values (1)", dataSource);
+        sqlHandler.releaseConnection(dataSource);
+
+        assertEquals(1, getCountFromOtherThread());
+    }
+
+    @Test
+    public void connectionIsOnlyClosedWhenLastLeaseIsReleased() throws Exception {
+        sqlHandler.closeAllConnections();
+        sqlHandler.leaseConnection(dataSource);
+        sqlHandler.leaseConnection(dataSource);
+        sqlHandler.releaseConnection(dataSource);
+        try {
+            getCountFromOtherThread();
+            fail("DatabaseException expected");
+        } catch (DatabaseException e) {
+            // expected, connection is still leased
+        }
+        sqlHandler.releaseConnection(dataSource);
+        assertEquals(0, getCountFromOtherThread());
+    }
+
+    @Test
+    public void releaseDoesNotCloseConnectionThatWasAlreadyInUse() {
+        sqlHandler.leaseConnection(dataSource);
+        sqlHandler.releaseConnection(dataSource);
+
+        assertEquals(0, sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void releaseWithoutLease() {
+        sqlHandler.releaseConnection(dataSource);
+    }
+
+    @Test
+    public void releasingConnectionRollsBackActiveTransaction() throws Exception {
+        sqlHandler.closeAllConnections();
+        sqlHandler.leaseConnection(dataSource);
+        sqlHandler.startTransaction(dataSource);
+        sqlHandler.execute("insert into test_table values (1)", dataSource);
+        sqlHandler.releaseConnection(dataSource);
+
+        assertEquals(0, getCountFromOtherThread());
+    }
+
+    @Test
+    public void transactionIsCommitted() {
+        Integer result = sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<Integer>() {
+            public Integer execute() {
+                sqlHandler.execute("insert into test_table values (1)", dataSource);
+                return 5;
+            }
+        });
+
+        assertEquals(5, result.intValue());
+        assertEquals(1, sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test
+    public void transactionIsRolledBackWhenWorkFails() {
+        try {
+            sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<Void>() {
+                public Void execute() {
+                    sqlHandler.execute("insert into test_table values (1)", dataSource);
+                    sqlHandler.execute("xxx", dataSource);
+                    return null;
+                }
+            });
+            fail("DatabaseException expected");
+        } catch (DatabaseException e) {
+            assertTrue(e.getMessage().contains("xxx"));
+        }
+        assertEquals(0, sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test
+    public void nestedTransactionJoinsOuterTransaction() {
+        try {
+            sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<Void>() {
+                public Void execute() {
+                    sqlHandler.executeInTransaction(dataSource, new SQLHandler.TransactionalWork<Void>() {
+                        public Void execute() {
+                            sqlHandler.execute("insert into test_table values (1)", dataSource);
+                            return null;
+                        }
+                    });
+                    throw new IllegalStateException("failure after nested transaction");
+                }
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+    @Test
+    public void closeAllConnectionsClosesLeasesOfOtherThreads() throws Exception {
+        sqlHandler.closeAllConnections();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                sqlHandler.leaseConnection(dataSource);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        sqlHandler.closeAllConnections();
+        assertEquals(0, sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+    }
+
+
+    @Test
+    public void parameterizedQueries() {
+        sqlHandler.execute("insert into test_table values (1)", dataSource);
+        sqlHandler.execute("insert into test_table values (2)", dataSource);
+
+        assertEquals(asSet("1", "2"), sqlHandler.getItemsAsStringSet("select id from test_table where id >= ?", asList(1), dataSource));
+        assertEquals(asSet("2"), sqlHandler.getItemsAsStringSet("select id from test_table where id >= ?", asList(2), dataSource));
+        assertEquals("2", sqlHandler.getItemAsString("select id from test_table where id = ?", asList(2), dataSource));
+        assertEquals(1, sqlHandler.getItemAsLong("select count(*) from test_table where id > ?", asList(1), dataSource));
+        assertTrue(sqlHandler.exists("select id from test_table where id = ?", asList(1), dataSource));
+        assertFalse(sqlHandler.exists("select id from test_table where id = ?", asList(3), dataSource));
+    }
+
+    @Test
+    public void parameterizedQueryWithoutResult() {
+        try {
+            sqlHandler.getItemAsLong("select id from test_table where id = ?", asList(1), dataSource);
+            fail("DatabaseException expected");
+        } catch (DatabaseException e) {
+            assertEquals("No item value found: select id from test_table where id = ?, parameters: [1]", e.getMessage());
+        }
+    }
+
+    @Test
+    public void failedParameterizedQueryIsPreparedAgain() {
+        try {
+            sqlHandler.getItemAsLong("select id from test_table where id = ?", asList("xxx"), dataSource);
+            fail("DatabaseException expected");
+        } catch (DatabaseException e) {
+            // expected
+        }
+        sqlHandler.execute("insert into test_table values (1)", dataSource);
+        assertEquals(1, sqlHandler.getItemAsLong("select id from test_table where id = ?", asList(1), dataSource));
+    }
+
+    @Test
+    public void records() {
+        sqlHandler.execute("insert into test_table values (1)", dataSource);
+        sqlHandler.execute("insert into test_table values (2)", dataSource);
+
+        List<String[]> records = sqlHandler.getRecords("select id, 'x' from test_table where id >= ? order by id", asList(1), dataSource);
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"1", "x"}, records.get(0));
+        assertArrayEquals(new String[]{"2", "x"}, records.get(1));
+        assertTrue(sqlHandler.getRecords("select id, 'x' from test_table where id > ?", asList(2), dataSource).isEmpty());
+    }
+
+    @Test
+    public void batchIsExecutedAndCommitted() throws Exception {
+        sqlHandler.startTransaction(dataSource);
+        sqlHandler.executeBatchAndCommit("insert into test_table values (?)", asList(asList(1), asList(2), Collections.<Integer>singletonList(null)), dataSource);
+        sqlHandler.endTransactionAndRollback(dataSource);
+        sqlHandler.closeAllConnections();
+
+        assertEquals(3, getCountFromOtherThread());
+        assertEquals(1, sqlHandler.getItemAsLong("select count(*) from test_table where id is null", dataSource));
+    }
+
+
+    /**
+     * Counts the records using a connection of another thread. Fails when no connection is available in the pool.
+     */
+    private long getCountFromOtherThread() throws Exception {
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sqlHandler.leaseConnection(dataSource);
+                    result.set(sqlHandler.getItemAsLong("select count(*) from test_table", dataSource));
+                    sqlHandler.releaseConnection(dataSource);
+                } catch (RuntimeException e) {
+                    result.set(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        if (result.get() instanceof RuntimeException) {
+            throw (RuntimeException) result.get();
+        }
+        return (Long) result.get();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.datasource;
+
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.DatabaseInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class PoolingDataSourceTest {
+
+    private DatabaseInfo databaseInfo;
+    private TestPoolingDataSource dataSource;
+
+
+    @Before
+    public void initialize() {
+        databaseInfo = getHsqlDatabaseInfo();
+        dataSource = new TestPoolingDataSource(2);
+    }
+
+    @After
+    public void cleanUp() {
+        dataSource.close();
+    }
+
+
+    @Test
+    public void connectionIsReusedAfterClose() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        connection1.close();
+        Connection connection2 = dataSource.getConnection();
+        connection2.close();
+
+        assertEquals(1, dataSource.createdConnections.size());
+        assertTrue(connection1.isClosed());
+    }
+
+    @Test
+    public void newConnectionIsCreatedWhenAllConnectionsAreInUse() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+
+        assertEquals(2, dataSource.createdConnections.size());
+        connection1.close();
+        connection2.close();
+    }
+
+    @Test
+    public void waitForConnectionTimesOut() throws Exception {
+        dataSource.getConnection();
+        dataSource.getConnection();
+        try {
+            dataSource.getConnection();
+            fail("DatabaseException expected");
+        } catch (DatabaseException e) {
+            assertTrue(e.getMessage().contains("are in use"));
+        }
+    }
+
+    @Test
+    public void invalidConnectionIsReplaced() throws Exception {
+        dataSource.getConnection().close();
+        dataSource.createdConnections.get(0).close();
+
+        Connection connection = dataSource.getConnection();
+        assertFalse(connection.isClosed());
+        assertEquals(2, dataSource.createdConnections.size());
+        connection.close();
+    }
+
+    @Test
+    public void uncommittedChangesAreRolledBackWhenConnectionIsReturned() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        Connection reusedConnection = dataSource.getConnection();
+        assertTrue(reusedConnection.getAutoCommit());
+        reusedConnection.close();
+    }
+
+    @Test
+    public void closedConnectionCannotBeUsed() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        try {
+            connection.createStatement();
+            fail("SQLException expected");
+        } catch (SQLException e) {
+            assertEquals("Connection was already closed and returned to the pool.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void connectionsAreClosedWhenDataSourceIsClosed() throws Exception {
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        connection1.close();
+
+        dataSource.close();
+        assertTrue(dataSource.createdConnections.get(0).isClosed());
+        assertFalse(dataSource.createdConnections.get(1).isClosed());
+
+        connection2.close();
+        assertTrue(dataSource.createdConnections.get(1).isClosed());
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void getConnectionAfterClose() throws Exception {
+        dataSource.close();
+        dataSource.getConnection();
+    }
+
+
+    private class TestPoolingDataSource extends PoolingDataSource {
+
+        private List<Connection> createdConnections = new ArrayList<>();
+
+        private TestPoolingDataSource(int maxPoolSize) {
+            super(databaseInfo, maxPoolSize, 5, 100);
+        }
+
+        @Override
+        protected Connection createConnection() throws SQLException {
+            Connection connection = super.createConnection();
+            createdConnections.add(connection);
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.dbmaintain.util.FileUtils.getUrl;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class MappedFileScriptContentHandleTest {
+
+    private static final String CONTENT = "create table caf\u00e9 (col1 varchar(10));\r\ninsert into caf\u00e9 values ('\u20ac\u20ac\u20ac');\r\n";
+
+    private File scriptFile;
+
+
+    @Before
+    public void initialize() throws IOException {
+        scriptFile = File.createTempFile("mapped", ".sql");
+        writeStringToFile(scriptFile, CONTENT, "UTF-8");
+    }
+
+    @After
+    public void cleanUp() {
+        scriptFile.delete();
+    }
+
+
+    @Test
+    public void content() throws IOException {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", false);
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+    }
+
+    @Test
+    public void contentSplitOverRegions() throws IOException {
+        // region boundaries fall in the middle of multi-byte characters
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", false, 7);
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+    }
+
+    @Test
+    public void checkSumEqualToUrlHandle() {
+        ScriptContentHandle urlScriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(getUrl(scriptFile), "UTF-8", false);
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", false, 7);
+        assertEquals(urlScriptContentHandle.getCheckSum(), scriptContentHandle.getCheckSum());
+    }
+
+    @Test
+    public void checkSumIgnoringCarriageReturnsEqualToUrlHandle() {
+        ScriptContentHandle urlScriptContentHandle = new ScriptContentHandle.UrlScriptContentHandle(getUrl(scriptFile), "UTF-8", true);
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", true, 7);
+        assertEquals(urlScriptContentHandle.getCheckSum(), scriptContentHandle.getCheckSum());
+    }
+
+    @Test
+    public void scriptContentsAsString() {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", false, 7);
+        assertEquals("create table caf\u00e9... <remainder of script is omitted>", scriptContentHandle.getScriptContentsAsString(17));
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        writeStringToFile(scriptFile, "", "UTF-8");
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.MappedFileScriptContentHandle(scriptFile, "UTF-8", false);
+        assertEquals("", readContent(scriptContentHandle));
+    }
+
+
+    private String readContent(ScriptContentHandle scriptContentHandle) throws IOException {
+        Reader reader = scriptContentHandle.openScriptContentReader();
+        try {
+            return IOUtils.toString(reader);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Set;
 import static java.util.Arrays.asList;
 import static org.dbmaintain.config.DbMaintainProperties.*;
 import static org.dbmaintain.util.TestUtils.qualifiers;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -130,6 +131,32 @@ public class ScriptFactoryQualifierTest {
         assertTrue(script.isPatchScript());
     }
 
+    @Test
+    public void parallelQualifierDoesNotHaveToBeRegistered() {
+        ScriptFactory scriptFactory = createScriptFactoryWithRegisteredQualifiers("qualifier");
+
+        Script script = scriptFactory.createScriptWithoutContent("05_backfill/01_#PARALLEL_#qualifier_my_script.sql", null, null);
+        assertQualifierNames(script, "qualifier");
+        assertTrue(script.isParallelScript());
+    }
+
+    @Test
+    public void registeredParallelQualifier() {
+        ScriptFactory scriptFactory = createScriptFactoryWithRegisteredQualifiers("parallel");
+
+        Script script = scriptFactory.createScriptWithoutContent("05_backfill/01_#parallel_my_script.sql", null, null);
+        assertQualifierNames(script, "parallel");
+        assertTrue(script.isParallelScript());
+    }
+
+    @Test
+    public void noParallelQualifier() {
+        ScriptFactory scriptFactory = createScriptFactoryWithRegisteredQualifiers("qualifier");
+
+        Script script = scriptFactory.createScriptWithoutContent("05_backfill/01_#qualifier_my_script.sql", null, null);
+        assertFalse(script.isParallelScript());
+    }
+
 
     private void assertQualifierNames(Script script, String... qualifierNames) {
         Set<Qualifier> qualifiers = script.getQualifiers();
@@ -0,0 +1,104 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class SpooledScriptContentHandleTest {
+
+    private static final String CONTENT = "create table table1 (col1 varchar(10));\r\ninsert into table1 values ('value');\r\n";
+
+    private CountingScriptContentHandle countingScriptContentHandle;
+
+
+    @Before
+    public void initialize() {
+        countingScriptContentHandle = new CountingScriptContentHandle(CONTENT, false);
+    }
+
+
+    @Test
+    public void contentIsOnlyReadOnce() throws IOException {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.SpooledScriptContentHandle(countingScriptContentHandle);
+
+        String checkSum = scriptContentHandle.getCheckSum();
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+        scriptContentHandle.getScriptContentsAsString(10);
+
+        assertEquals(new CountingScriptContentHandle(CONTENT, false).getCheckSum(), checkSum);
+        assertEquals(1, countingScriptContentHandle.nrOfReads);
+    }
+
+    @Test
+    public void contentSpooledToFile() throws IOException {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.SpooledScriptContentHandle(countingScriptContentHandle, 10);
+
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+        assertEquals(CONTENT, readContent(scriptContentHandle));
+        String checkSum = scriptContentHandle.getCheckSum();
+
+        assertEquals(new CountingScriptContentHandle(CONTENT, false).getCheckSum(), checkSum);
+        assertEquals(1, countingScriptContentHandle.nrOfReads);
+    }
+
+    @Test
+    public void ignoreCarriageReturnsWhenCalculatingCheckSum() {
+        ScriptContentHandle scriptContentHandle = new ScriptContentHandle.SpooledScriptContentHandle(new CountingScriptContentHandle(CONTENT, true));
+        String checkSum = scriptContentHandle.getCheckSum();
+
+        assertEquals(new CountingScriptContentHandle(CONTENT.replace("\r", ""), false).getCheckSum(), checkSum);
+    }
+
+
+    private String readContent(ScriptContentHandle scriptContentHandle) throws IOException {
+        Reader reader = scriptContentHandle.openScriptContentReader();
+        try {
+            return IOUtils.toString(reader);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+
+    private static class CountingScriptContentHandle extends ScriptContentHandle.StringScriptContentHandle {
+
+        private int nrOfReads = 0;
+
+        public CountingScriptContentHandle(String scriptContent, boolean ignoreCarriageReturnsWhenCalculatingCheckSum) {
+            super(scriptContent, "ISO-8859-1", ignoreCarriageReturnsWhenCalculatingCheckSum);
+        }
+
+        @Override
+        protected InputStream getScriptInputStream() {
+            nrOfReads++;
+            return super.getScriptInputStream();
+        }
+    }
+}
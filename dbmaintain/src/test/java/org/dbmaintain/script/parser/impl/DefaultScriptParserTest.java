@@ -129,4 +129,20 @@ public class DefaultScriptParserTest extends ScriptParserTestBase {
                 "parameter ${param0} must not be replaced, parameter ${param1} must be replaced;"), scriptParameters);
         assertEquals("parameter ${param0} must not be replaced, parameter param1Value must be replaced", parser.getNextStatement());
     }
+
+    @Test
+    public void replaceParametersWithDollarAndBackslashInValue() {
+        Properties scriptParameters = new Properties();
+        scriptParameters.put("param1", "$1 c:\\dir");
+        ScriptParser parser = createScriptParser(new StringReader("value ${param1}, ${param1}${param1};"), scriptParameters);
+        assertEquals("value $1 c:\\dir, $1 c:\\dir$1 c:\\dir", parser.getNextStatement());
+    }
+
+    @Test
+    public void replaceParametersIgnoresIncompleteParameters() {
+        Properties scriptParameters = new Properties();
+        scriptParameters.put("param1", "value1");
+        ScriptParser parser = createScriptParser(new StringReader("${ ${} ${param1 ${${param1}} ${param1};"), scriptParameters);
+        assertEquals("${ ${} ${param1 ${value1} value1", parser.getNextStatement());
+    }
 }
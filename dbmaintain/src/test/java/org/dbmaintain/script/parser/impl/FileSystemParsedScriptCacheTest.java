@@ -0,0 +1,96 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.script.parser.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class FileSystemParsedScriptCacheTest {
+
+    private File cacheDirectory;
+
+
+    @Before
+    public void initialize() throws IOException {
+        cacheDirectory = File.createTempFile("parsedScriptCache", "");
+        cacheDirectory.delete();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        deleteDirectory(cacheDirectory);
+    }
+
+
+    @Test
+    public void storeAndRetrieveStatements() {
+        FileSystemParsedScriptCache cache = new FileSystemParsedScriptCache(cacheDirectory, false, null);
+        cache.putStatements("checksum", "oracle", asList("create table a (x int)", "insert into a values ('\u00e9')"));
+
+        List<String> result = cache.getStatements("checksum", "oracle");
+        assertEquals(asList("create table a (x int)", "insert into a values ('\u00e9')"), result);
+    }
+
+    @Test
+    public void notCached() {
+        FileSystemParsedScriptCache cache = new FileSystemParsedScriptCache(cacheDirectory, false, null);
+        assertNull(cache.getStatements("checksum", "oracle"));
+    }
+
+    @Test
+    public void otherDialect() {
+        FileSystemParsedScriptCache cache = new FileSystemParsedScriptCache(cacheDirectory, false, null);
+        cache.putStatements("checksum", "oracle", asList("statement"));
+
+        assertNull(cache.getStatements("checksum", "postgresql"));
+    }
+
+    @Test
+    public void otherScriptParameters() {
+        Properties scriptParameters = new Properties();
+        scriptParameters.setProperty("param", "value1");
+        FileSystemParsedScriptCache cache = new FileSystemParsedScriptCache(cacheDirectory, false, scriptParameters);
+        cache.putStatements("checksum", "oracle", asList("statement"));
+
+        scriptParameters.setProperty("param", "value2");
+        FileSystemParsedScriptCache otherCache = new FileSystemParsedScriptCache(cacheDirectory, false, scriptParameters);
+        assertNull(otherCache.getStatements("checksum", "oracle"));
+    }
+
+    @Test
+    public void otherBackSlashEscaping() {
+        FileSystemParsedScriptCache cache = new FileSystemParsedScriptCache(cacheDirectory, false, null);
+        cache.putStatements("checksum", "oracle", asList("statement"));
+
+        FileSystemParsedScriptCache otherCache = new FileSystemParsedScriptCache(cacheDirectory, true, null);
+        assertNull(otherCache.getStatements("checksum", "oracle"));
+    }
+}
@@ -0,0 +1,4 @@
+
+insert into table1 (col1) values (1);
+insert into table1 (col1) values (100000);
+insert into table1 (col1) values (3);
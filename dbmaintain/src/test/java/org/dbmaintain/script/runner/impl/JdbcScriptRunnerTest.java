@@ -15,13 +15,17 @@
  */
 package org.dbmaintain.script.runner.impl;
 
+import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.SchemaCatalog;
 import org.dbmaintain.database.impl.DefaultSQLHandler;
 import org.dbmaintain.script.Script;
 import org.dbmaintain.script.ScriptContentHandle;
 import org.dbmaintain.script.ScriptFactory;
+import org.dbmaintain.script.parser.ScriptParser;
 import org.dbmaintain.script.parser.ScriptParserFactory;
 import org.dbmaintain.script.parser.impl.DefaultScriptParserFactory;
+import org.dbmaintain.script.parser.impl.FileSystemParsedScriptCache;
 import org.dbmaintain.util.DbMaintainException;
 import org.dbmaintain.util.TestUtils;
 import org.junit.After;
@@ -29,13 +33,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.io.File;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertTrue;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.dbmaintain.util.CollectionUtils.asSet;
 import static org.dbmaintain.util.SQLTestUtils.*;
 import static org.dbmaintain.util.TestUtils.createScriptFactory;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * Test class for the DefaultScriptRunner.
@@ -56,6 +67,8 @@ public class JdbcScriptRunnerTest {
     private Script script2;
     /* A test script performing inserts that will fail in the middle */
     private Script insertsWithError;
+    /* A test script performing inserts of which the second one fails */
+    private Script insertsWithFailingInsert;
     /* A test script performing inserts */
     private Script insertsWithoutError;
     /* A test script performing inserts with a commit in the script */
@@ -67,10 +80,12 @@ public class JdbcScriptRunnerTest {
     /* An empty test script */
     private Script emptyScript;
 
+    private Databases databases;
+
 
     @Before
     public void initialize() throws Exception {
-        Databases databases = TestUtils.getDatabases();
+        databases = TestUtils.getDatabases();
         dataSource = databases.getDefaultDatabase().getDataSource();
 
         Map<String, ScriptParserFactory> databaseDialectScriptParserClassMap = new HashMap<String, ScriptParserFactory>();
@@ -80,6 +95,7 @@ public class JdbcScriptRunnerTest {
         script1 = createScript("script1.sql");
         script2 = createScript("script2.sql");
         insertsWithError = createScript("inserts-with-error.sql");
+        insertsWithFailingInsert = createScript("inserts-with-failing-insert.sql");
         insertsWithoutError = createScript("inserts-without-error.sql");
         insertsWithCommit = createScript("inserts-with-commit.sql");
         insertsWithRollback = createScript("inserts-with-rollback.sql");
@@ -106,6 +122,26 @@ public class JdbcScriptRunnerTest {
         assertTrue(isEmpty("table3", dataSource));
     }
 
+    @Test
+    public void metadataCacheIsInvalidatedWhenScriptContainsDdl() throws Exception {
+        Database database = databases.getDefaultDatabase();
+        SchemaCatalog schemaCatalog = database.getSchemaCatalog("PUBLIC");
+        defaultScriptRunner.execute(script1);
+
+        assertNotSame(schemaCatalog, database.getSchemaCatalog("PUBLIC"));
+        assertTrue(database.getSchemaCatalog("PUBLIC").getTableNames().containsAll(asSet("TABLE1", "TABLE2")));
+    }
+
+    @Test
+    public void metadataCacheIsKeptWhenScriptOnlyContainsDml() throws Exception {
+        Database database = databases.getDefaultDatabase();
+        defaultScriptRunner.execute(script1);
+        SchemaCatalog schemaCatalog = database.getSchemaCatalog("PUBLIC");
+        defaultScriptRunner.execute(insertsWithoutError);
+
+        assertSame(schemaCatalog, database.getSchemaCatalog("PUBLIC"));
+    }
+
     @Test
     public void rollbackScriptWhenErrorOccurs() throws Exception {
         defaultScriptRunner.execute(script1);
@@ -151,6 +187,69 @@ public class JdbcScriptRunnerTest {
         defaultScriptRunner.execute(emptyScript);
     }
 
+    @Test
+    public void batchedStatements() throws Exception {
+        JdbcScriptRunner batchingScriptRunner = createBatchingScriptRunner(2);
+        batchingScriptRunner.execute(script1);
+        batchingScriptRunner.execute(insertsWithoutError);
+
+        assertEquals(3, getItemAsLong("select count(1) from table1", dataSource));
+    }
+
+    @Test
+    public void batchedStatementsWithCommit() throws Exception {
+        JdbcScriptRunner batchingScriptRunner = createBatchingScriptRunner(10);
+        batchingScriptRunner.execute(script1);
+        batchingScriptRunner.execute(insertsWithCommit);
+
+        assertEquals(3, getItemAsLong("select count(1) from table1", dataSource));
+    }
+
+    @Test
+    public void failingStatementOfBatchIsReported() throws Exception {
+        JdbcScriptRunner batchingScriptRunner = createBatchingScriptRunner(10);
+        batchingScriptRunner.execute(script1);
+        try {
+            batchingScriptRunner.execute(insertsWithFailingInsert);
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("insert into table1 (col1) values (100000)"));
+        }
+        assertTrue("All inserts should have been rolled back", isEmpty("table1", dataSource));
+    }
+
+    @Test
+    public void cachedScriptIsNotParsedAgain() throws Exception {
+        File cacheDirectory = File.createTempFile("parsedScriptCache", "");
+        cacheDirectory.delete();
+        try {
+            FileSystemParsedScriptCache parsedScriptCache = new FileSystemParsedScriptCache(cacheDirectory, false, null);
+            Map<String, ScriptParserFactory> parserFactoryMap = new HashMap<String, ScriptParserFactory>();
+            parserFactoryMap.put("hsqldb", new DefaultScriptParserFactory(false, null));
+            new JdbcScriptRunner(parserFactoryMap, databases, new DefaultSQLHandler(), parsedScriptCache).execute(script1);
+            cleanupTestDatabase();
+
+            Map<String, ScriptParserFactory> failingParserFactoryMap = new HashMap<String, ScriptParserFactory>();
+            failingParserFactoryMap.put("hsqldb", new ScriptParserFactory() {
+                public ScriptParser createScriptParser(Reader scriptReader) {
+                    throw new DbMaintainException("Script should not be parsed");
+                }
+            });
+            new JdbcScriptRunner(failingParserFactoryMap, databases, new DefaultSQLHandler(), parsedScriptCache).execute(script1);
+
+            assertTrue(isEmpty("table1", dataSource));
+            assertTrue(isEmpty("table2", dataSource));
+        } finally {
+            deleteDirectory(cacheDirectory);
+        }
+    }
+
+
+    private JdbcScriptRunner createBatchingScriptRunner(int batchSize) {
+        Map<String, ScriptParserFactory> parserFactoryMap = new HashMap<String, ScriptParserFactory>();
+        parserFactoryMap.put("hsqldb", new DefaultScriptParserFactory(false, null));
+        return new JdbcScriptRunner(parserFactoryMap, databases, new DefaultSQLHandler(), null, batchSize);
+    }
 
     private void cleanupTestDatabase() {
         executeUpdateQuietly("drop table table1", dataSource);
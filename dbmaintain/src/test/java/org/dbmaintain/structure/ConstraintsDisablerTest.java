@@ -15,7 +15,14 @@
  */
 package org.dbmaintain.structure;
 
+import org.dbmaintain.database.ConstraintDefinition;
+import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.DatabaseInfo;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.database.impl.HsqldbDatabase;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
 import org.dbmaintain.util.DbMaintainException;
@@ -26,7 +33,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
 
+import static java.util.Arrays.asList;
+import static org.dbmaintain.database.StoredIdentifierCase.UPPER_CASE;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 /**
@@ -121,6 +133,89 @@ public class ConstraintsDisablerTest {
     }
 
 
+    /**
+     * Tests that the default behavior is used when server-side disabling is enabled but not supported by the database
+     */
+    @Test
+    public void testDisableConstraints_serverSideNotSupported() throws Exception {
+        constraintsDisabler = new DefaultConstraintsDisabler(databases, true);
+        constraintsDisabler.disableConstraints();
+        // Should not throw exception anymore
+        SQLTestUtils.executeUpdate("insert into table2 (col1) values ('test')", dataSource);
+        SQLTestUtils.executeUpdate("insert into table1 (col1, col2) values ('test', null)", dataSource);
+    }
+
+
+    /**
+     * Tests disabling the constraints using multiple worker threads
+     */
+    @Test
+    public void testDisableConstraints_parallel() throws Exception {
+        constraintsDisabler = new DefaultConstraintsDisabler(databases, false, 4);
+        constraintsDisabler.disableConstraints();
+        // Should not throw exception anymore
+        SQLTestUtils.executeUpdate("insert into table2 (col1) values ('test')", dataSource);
+        SQLTestUtils.executeUpdate("insert into table3 (col1) values ('test')", dataSource);
+        SQLTestUtils.executeUpdate("insert into table1 (col1, col2) values ('test', null)", dataSource);
+    }
+
+
+    /**
+     * Tests recording the constraints when they are disabled and enabling them again afterwards
+     */
+    @Test
+    public void testEnableConstraints() throws Exception {
+        EnablingHsqldbDatabase database = createEnablingHsqldbDatabase();
+        constraintsDisabler = new DefaultConstraintsDisabler(new Databases(database, asList((Database) database), new ArrayList<String>()), false, 2, "disabled_constraints");
+        constraintsDisabler.disableConstraints();
+        assertEquals(1, SQLTestUtils.getItemAsLong("select count(*) from disabled_constraints", dataSource));
+
+        constraintsDisabler.enableConstraints();
+        try {
+            SQLTestUtils.executeUpdate("insert into table2 (col1) values ('test')", dataSource);
+            fail("DbMaintainException should have been thrown");
+        } catch (DbMaintainException e) {
+            // Expected foreign key violation
+        }
+        assertEquals(asList("PUBLIC.TABLE2.FK_TABLE2"), database.validatedConstraints);
+        assertEquals(0, SQLTestUtils.getItemAsLong("select count(*) from disabled_constraints", dataSource));
+    }
+
+
+    /**
+     * Tests enabling the constraints again after the validation of the enabled constraints failed
+     */
+    @Test
+    public void testEnableConstraints_rerunAfterPartialFailure() throws Exception {
+        EnablingHsqldbDatabase database = createEnablingHsqldbDatabase();
+        constraintsDisabler = new DefaultConstraintsDisabler(new Databases(database, asList((Database) database), new ArrayList<String>()), false, 2, "disabled_constraints");
+        constraintsDisabler.disableConstraints();
+
+        database.failValidation = true;
+        try {
+            constraintsDisabler.enableConstraints();
+            fail("DbMaintainException should have been thrown");
+        } catch (DbMaintainException e) {
+            // expected
+        }
+        assertEquals(1, SQLTestUtils.getItemAsLong("select count(*) from disabled_constraints", dataSource));
+
+        database.failValidation = false;
+        constraintsDisabler.enableConstraints();
+        assertEquals(asList("PUBLIC.TABLE2.FK_TABLE2"), database.validatedConstraints);
+        assertEquals(0, SQLTestUtils.getItemAsLong("select count(*) from disabled_constraints", dataSource));
+    }
+
+
+    /**
+     * Tests that constraints cannot be enabled when they were not recorded
+     */
+    @Test(expected = DbMaintainException.class)
+    public void testEnableConstraints_notRecorded() throws Exception {
+        constraintsDisabler.enableConstraints();
+    }
+
+
     /**
      * Creates the test tables
      */
@@ -138,6 +233,63 @@ public class ConstraintsDisablerTest {
         SQLTestUtils.executeUpdateQuietly("drop table table3", dataSource);
         SQLTestUtils.executeUpdateQuietly("drop table table2", dataSource);
         SQLTestUtils.executeUpdateQuietly("drop table table1", dataSource);
+        SQLTestUtils.executeUpdateQuietly("drop table disabled_constraints", dataSource);
+    }
+
+
+    protected EnablingHsqldbDatabase createEnablingHsqldbDatabase() {
+        DatabaseInfo databaseInfo = TestUtils.getHsqlDatabaseInfo();
+        DatabaseConnection databaseConnection = new DatabaseConnection(databaseInfo, new DefaultSQLHandler(), dataSource);
+        return new EnablingHsqldbDatabase(databaseConnection, new IdentifierProcessor(UPPER_CASE, "\"", databaseInfo.getDefaultSchemaName()));
+    }
+
+
+    /**
+     * Hsqldb database that can re-create the foreign key of table2
+     */
+    protected static class EnablingHsqldbDatabase extends HsqldbDatabase {
+
+        private List<String> validatedConstraints = new ArrayList<String>();
+
+        private boolean failValidation;
+
+        public EnablingHsqldbDatabase(DatabaseConnection databaseConnection, IdentifierProcessor identifierProcessor) {
+            super(databaseConnection, identifierProcessor);
+        }
+
+        @Override
+        public List<ConstraintDefinition> getReferentialConstraintDefinitions(String schemaName) {
+            return asList(new ConstraintDefinition(schemaName, "TABLE2", "FK_TABLE2", ConstraintDefinition.Type.FOREIGN_KEY, "foreign key (col1) references table1(col1)"));
+        }
+
+        @Override
+        public List<ConstraintDefinition> getValueConstraintDefinitions(String schemaName) {
+            return new ArrayList<ConstraintDefinition>();
+        }
+
+        @Override
+        public void enableConstraintWithoutValidation(ConstraintDefinition constraint) {
+            getSQLHandler().execute("alter table " + qualified(constraint.getSchemaName(), constraint.getTableName()) + " add constraint " + constraint.getConstraintName() + " " + constraint.getDefinition(), getDataSource());
+        }
+
+        @Override
+        public synchronized void validateConstraint(ConstraintDefinition constraint) {
+            if (failValidation) {
+                throw new DbMaintainException("Validation of " + constraint + " failed");
+            }
+            validatedConstraints.add(constraint.toString());
+        }
+
+        @Override
+        public boolean isConstraintEnabled(ConstraintDefinition constraint) {
+            return getSQLHandler().exists("select 1 from INFORMATION_SCHEMA.TABLE_CONSTRAINTS where CONSTRAINT_SCHEMA = ? and TABLE_NAME = ? and CONSTRAINT_NAME = ?",
+                    asList(constraint.getSchemaName(), constraint.getTableName(), constraint.getConstraintName()), getDataSource());
+        }
+
+        @Override
+        public boolean supportsConstraintEnabling() {
+            return true;
+        }
     }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.structure.clean;
+
+import org.dbmaintain.MainFactory;
+import org.dbmaintain.config.DbMaintainConfigurationLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import static org.dbmaintain.config.DbMaintainProperties.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the configuration of the DBCleaner.
+ *
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class DBCleanerFactoryTest {
+
+    private static final String URL = "jdbc:hsqldb:mem:dbCleanerFactoryTest";
+
+    private MainFactory mainFactory;
+
+
+    @Before
+    public void initialize() throws Exception {
+        executeUpdate("create table TEST_TABLE (id int)");
+        executeUpdate("insert into TEST_TABLE values (1)");
+        executeUpdate("create table DBMAINTAIN_DISABLED_CONSTRAINTS (schema_name varchar(255), table_name varchar(255), constraint_name varchar(255), constraint_type varchar(20), definition varchar(4000))");
+        executeUpdate("insert into DBMAINTAIN_DISABLED_CONSTRAINTS values ('PUBLIC', 'TEST_TABLE', 'FK_TEST', 'FOREIGN_KEY', 'foreign key (id) references OTHER_TABLE(id)')");
+
+        Properties configuration = new DbMaintainConfigurationLoader().loadDefaultConfiguration();
+        configuration.put("database.dialect", "hsqldb");
+        configuration.put("database.driverClassName", "org.hsqldb.jdbcDriver");
+        configuration.put("database.url", URL);
+        configuration.put("database.userName", "sa");
+        configuration.put("database.password", "");
+        configuration.put("database.schemaNames", "PUBLIC");
+        configuration.put(PROPERTY_RECORD_DISABLED_CONSTRAINTS, "true");
+        mainFactory = new MainFactory(configuration);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        mainFactory.close();
+        executeUpdate("drop table TEST_TABLE if exists");
+        executeUpdate("drop table DBMAINTAIN_DISABLED_CONSTRAINTS if exists");
+    }
+
+
+    /**
+     * The constraints are disabled before the database is cleaned. The records of the disabled constraints should
+     * be preserved, otherwise the constraints can no longer be enabled afterwards.
+     */
+    @Test
+    public void disabledConstraintsTableIsPreserved() throws Exception {
+        mainFactory.createDBCleaner().cleanDatabase();
+
+        assertEquals(0, getCount("select count(*) from TEST_TABLE"));
+        assertEquals(1, getCount("select count(*) from DBMAINTAIN_DISABLED_CONSTRAINTS"));
+    }
+
+
+    private void executeUpdate(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            connection.createStatement().execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private long getCount(String sql) throws Exception {
+        Connection connection = DriverManager.getConnection(URL, "sa", "");
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getLong(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -16,8 +16,13 @@
 package org.dbmaintain.structure.clean.impl;
 
 import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.DatabaseInfo;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.IdentifierProcessor;
 import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.database.impl.HsqldbDatabase;
 import org.dbmaintain.structure.model.DbItemIdentifier;
 import org.dbmaintain.util.TestUtils;
 import org.junit.After;
@@ -25,12 +30,17 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.dbmaintain.database.StoredIdentifierCase.UPPER_CASE;
 import static org.dbmaintain.structure.model.DbItemIdentifier.parseItemIdentifier;
 import static org.dbmaintain.structure.model.DbItemType.TABLE;
 import static org.dbmaintain.util.CollectionUtils.asSet;
 import static org.dbmaintain.util.SQLTestUtils.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -48,6 +58,8 @@ public class DefaultDBCleanerTest {
     /* Tested object */
     private DefaultDBCleaner defaultDBCleaner;
 
+    private Set<DbItemIdentifier> itemsToPreserve;
+
     private Database defaultDatabase;
     private Databases databases;
 
@@ -71,7 +83,7 @@ public class DefaultDBCleanerTest {
         DbItemIdentifier tableTest_table_Preserve = parseItemIdentifier(TABLE, "Test_table_Preserve", databases);
         DbItemIdentifier tableTest_CASE_Table_Preserve = parseItemIdentifier(TABLE, "Test_CASE_Table_Preserve", databases);
 
-        Set<DbItemIdentifier> itemsToPreserve = asSet(tableTest_table_Preserve, tableTest_CASE_Table_Preserve);
+        itemsToPreserve = asSet(tableTest_table_Preserve, tableTest_CASE_Table_Preserve);
         defaultDBCleaner = new DefaultDBCleaner(databases, itemsToPreserve, new DefaultSQLHandler());
     }
 
@@ -111,6 +123,63 @@ public class DefaultDBCleanerTest {
     }
 
 
+    /**
+     * Tests cleaning the tables concurrently: a table that is referenced should only be cleaned after the referring table
+     */
+    @Test
+    public void testCleanDatabase_parallel() throws Exception {
+        executeUpdate("create table TEST_PARENT (id int primary key)", dataSource);
+        executeUpdate("create table TEST_CHILD (id int, parent_id int references TEST_PARENT(id))", dataSource);
+        executeUpdate("create table TEST_OTHER_CHILD (id int, parent_id int references TEST_PARENT(id))", dataSource);
+        executeUpdate("insert into TEST_PARENT values (1)", dataSource);
+        executeUpdate("insert into TEST_CHILD values (1, 1)", dataSource);
+        executeUpdate("insert into TEST_OTHER_CHILD values (1, 1)", dataSource);
+        defaultDatabase.invalidateMetadataCache();
+
+        defaultDBCleaner = new DefaultDBCleaner(databases, itemsToPreserve, new DefaultSQLHandler(), false, 3);
+        defaultDBCleaner.cleanDatabase();
+
+        assertTrue(isEmpty("TEST_PARENT", dataSource));
+        assertTrue(isEmpty("TEST_CHILD", dataSource));
+        assertTrue(isEmpty("TEST_OTHER_CHILD", dataSource));
+        assertTrue(isEmpty("TEST_TABLE", dataSource));
+        assertFalse(isEmpty("TEST_TABLE_PRESERVE", dataSource));
+    }
+
+
+    /**
+     * Tests cleaning the tables using truncate statements
+     */
+    @Test
+    public void testCleanDatabase_truncate() throws Exception {
+        TruncatingHsqldbDatabase database = createTruncatingHsqldbDatabase(false);
+        defaultDBCleaner = new DefaultDBCleaner(new Databases(database, asList((Database) database), new ArrayList<String>()), itemsToPreserve, new DefaultSQLHandler(), true);
+        defaultDBCleaner.cleanDatabase();
+
+        assertEquals(asSet("TEST_TABLE", "Test_CASE_Table"), asSet(database.truncatedTableNames.toArray()));
+        assertTrue(isEmpty("TEST_TABLE", dataSource));
+        assertTrue(isEmpty(defaultDatabase.quoted("Test_CASE_Table"), dataSource));
+        assertFalse(isEmpty("TEST_TABLE_PRESERVE", dataSource));
+        assertFalse(isEmpty(defaultDatabase.quoted("Test_CASE_Table_Preserve"), dataSource));
+    }
+
+
+    /**
+     * Tests that the records are deleted when the tables cannot be truncated
+     */
+    @Test
+    public void testCleanDatabase_truncateFailed() throws Exception {
+        TruncatingHsqldbDatabase database = createTruncatingHsqldbDatabase(true);
+        defaultDBCleaner = new DefaultDBCleaner(new Databases(database, asList((Database) database), new ArrayList<String>()), itemsToPreserve, new DefaultSQLHandler(), true);
+        defaultDBCleaner.cleanDatabase();
+
+        assertTrue(database.truncatedTableNames.isEmpty());
+        assertTrue(isEmpty("TEST_TABLE", dataSource));
+        assertTrue(isEmpty(defaultDatabase.quoted("Test_CASE_Table"), dataSource));
+        assertFalse(isEmpty("TEST_TABLE_PRESERVE", dataSource));
+    }
+
+
     /**
      * Creates the test tables
      */
@@ -129,6 +198,7 @@ public class DefaultDBCleanerTest {
      */
     private void cleanupTestDatabase() {
         dropTestViews(defaultDatabase, "TEST_VIEW");
+        dropTestTables(defaultDatabase, "TEST_CHILD", "TEST_OTHER_CHILD", "TEST_PARENT");
         dropTestTables(defaultDatabase, "TEST_TABLE", "TEST_TABLE_PRESERVE", defaultDatabase.quoted("Test_CASE_Table"), defaultDatabase.quoted("Test_CASE_Table_Preserve"));
     }
 
@@ -143,4 +213,42 @@ public class DefaultDBCleanerTest {
         executeUpdate("insert into " + defaultDatabase.quoted("Test_CASE_Table_Preserve") + " values('test')", dataSource);
     }
 
+
+    private TruncatingHsqldbDatabase createTruncatingHsqldbDatabase(boolean failing) {
+        DatabaseInfo databaseInfo = TestUtils.getHsqlDatabaseInfo();
+        DatabaseConnection databaseConnection = new DatabaseConnection(databaseInfo, new DefaultSQLHandler(), dataSource);
+        return new TruncatingHsqldbDatabase(databaseConnection, new IdentifierProcessor(UPPER_CASE, "\"", databaseInfo.getDefaultSchemaName()), failing);
+    }
+
+
+    /**
+     * Hsqldb database that truncates the tables one by one, or that fails to truncate them
+     */
+    protected static class TruncatingHsqldbDatabase extends HsqldbDatabase {
+
+        private List<String> truncatedTableNames = new ArrayList<String>();
+        private boolean failing;
+
+        public TruncatingHsqldbDatabase(DatabaseConnection databaseConnection, IdentifierProcessor identifierProcessor, boolean failing) {
+            super(databaseConnection, identifierProcessor);
+            this.failing = failing;
+        }
+
+        @Override
+        public void truncateTables(String schemaName, List<String> tableNames) {
+            if (failing) {
+                throw new DatabaseException("Unable to truncate tables " + tableNames);
+            }
+            for (String tableName : tableNames) {
+                getSQLHandler().execute("truncate table " + qualified(schemaName, tableName), getDataSource());
+                truncatedTableNames.add(tableName);
+            }
+        }
+
+        @Override
+        public boolean supportsTruncate() {
+            return true;
+        }
+    }
+
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ package org.dbmaintain.structure.clear.impl;
 
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.ItemDependency;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.model.DbItemIdentifier;
@@ -30,6 +31,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static java.util.Arrays.asList;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.structure.model.DbItemType.VIEW;
 import static org.dbmaintain.util.CollectionUtils.asSet;
 
 /**
@@ -81,4 +84,29 @@ public class DefaultDBClearerMultiPassTest extends UnitilsJUnit4 {
         defaultDBClearer.clearDatabase();
     }
 
+    /**
+     * When the dependencies are known, the items that depend on other items are dropped first.
+     */
+    @Test
+    public void testClearDatabase_DropInDependencyOrder() throws Exception {
+        database.returns(true).supportsItemDependencies();
+        database.returns(asSet("VIEW1")).getViewNames(SCHEMA);
+        database.returns(asList(new ItemDependency(VIEW, "VIEW1", TABLE, "TABLE2"))).getItemDependencies(SCHEMA);
+        defaultDBClearer.clearDatabase();
+
+        database.assertInvokedInSequence().dropView(SCHEMA, "VIEW1");
+        database.assertInvokedInSequence().dropTable(SCHEMA, "TABLE2");
+    }
+
+    /**
+     * When an item cannot be dropped in the dependency ordered pass, it is retried in a next pass.
+     */
+    @Test
+    public void testClearDatabase_IgnoreFirstErrorInDependencyOrder() throws Exception {
+        database.returns(true).supportsItemDependencies();
+        database.returns(new ArrayList<ItemDependency>()).getItemDependencies(SCHEMA);
+        database.onceRaises(RuntimeException.class).dropTable(SCHEMA, "TABLE2");
+        defaultDBClearer.clearDatabase();
+    }
+
 }
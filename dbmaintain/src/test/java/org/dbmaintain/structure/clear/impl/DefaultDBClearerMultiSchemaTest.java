@@ -16,7 +16,13 @@
 package org.dbmaintain.structure.clear.impl;
 
 import org.dbmaintain.database.Database;
+import org.dbmaintain.database.DatabaseConnection;
+import org.dbmaintain.database.DatabaseException;
+import org.dbmaintain.database.DatabaseInfo;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.IdentifierProcessor;
+import org.dbmaintain.database.impl.DefaultSQLHandler;
+import org.dbmaintain.database.impl.HsqldbDatabase;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
@@ -26,12 +32,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.dbmaintain.database.StoredIdentifierCase.UPPER_CASE;
+import static org.dbmaintain.structure.model.DbItemIdentifier.getItemIdentifier;
+import static org.dbmaintain.structure.model.DbItemType.TABLE;
+import static org.dbmaintain.util.CollectionUtils.asSet;
 import static org.dbmaintain.util.SQLTestUtils.executeUpdate;
 import static org.dbmaintain.util.SQLTestUtils.executeUpdateQuietly;
 import static org.dbmaintain.util.TestUtils.getDatabases;
 import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
+import static org.dbmaintain.util.TestUtils.getHsqlDatabaseInfo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -106,6 +120,54 @@ public class DefaultDBClearerMultiSchemaTest {
         assertTrue(defaultDatabase.getSequenceNames("SCHEMA_B").isEmpty());
     }
 
+    @Test
+    public void clearSchemasAtOnce() throws Exception {
+        HashSet<DbItemIdentifier> itemsToPreserve = new HashSet<>();
+        itemsToPreserve.add(getItemIdentifier(TABLE, "PUBLIC", "TEST_TABLE", defaultDatabase));
+        itemsToPreserve.add(getItemIdentifier(TABLE, "SCHEMA_B", "TEST_TABLE", defaultDatabase));
+        defaultDBClearer = new DefaultDBClearer(databases, itemsToPreserve, new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true), true);
+
+        defaultDBClearer.clearDatabase();
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getViewNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getSequenceNames("SCHEMA_A").isEmpty());
+        assertEquals("DBA", defaultDatabase.getSQLHandler().getItemAsString("select SCHEMA_OWNER from INFORMATION_SCHEMA.SCHEMATA where SCHEMA_NAME = ?", asList("SCHEMA_A"), dataSource));
+        // schemas with items to preserve are cleared item by item
+        assertEquals(1, defaultDatabase.getTableNames("SCHEMA_B").size());
+        assertTrue(defaultDatabase.getViewNames("SCHEMA_B").isEmpty());
+        assertEquals(asSet("TEST_TABLE"), defaultDatabase.getTableNames("PUBLIC"));
+    }
+
+    @Test
+    public void clearDefaultSchemaAtOnce() throws Exception {
+        defaultDBClearer = new DefaultDBClearer(databases, new HashSet<DbItemIdentifier>(), new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true), true);
+
+        defaultDBClearer.clearDatabase();
+        // dropping the PUBLIC schema only drops its items
+        assertTrue(defaultDatabase.getTableNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getViewNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getSequenceNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_B").isEmpty());
+        assertEquals("PUBLIC", defaultDatabase.getSQLHandler().getItemAsString("values current_schema", dataSource));
+    }
+
+    @Test
+    public void itemsAreDroppedOneByOneWhenSchemaCannotBeClearedAtOnce() throws Exception {
+        DatabaseInfo databaseInfo = getHsqlDatabaseInfo("PUBLIC", "SCHEMA_A", "SCHEMA_B");
+        DatabaseConnection databaseConnection = new DatabaseConnection(databaseInfo, new DefaultSQLHandler(), dataSource);
+        FailingClearSchemaHsqldbDatabase database = new FailingClearSchemaHsqldbDatabase(databaseConnection, new IdentifierProcessor(UPPER_CASE, "\"", databaseInfo.getDefaultSchemaName()));
+        Databases failingDatabases = new Databases(database, asList((Database) database), new ArrayList<String>());
+        defaultDBClearer = new DefaultDBClearer(failingDatabases, new HashSet<DbItemIdentifier>(), new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(failingDatabases), getDefaultExecutedScriptInfoSource(database, true), true);
+
+        defaultDBClearer.clearDatabase();
+        assertEquals(asSet("PUBLIC", "SCHEMA_A", "SCHEMA_B"), database.schemaNamesToClear);
+        assertTrue(defaultDatabase.getTableNames("PUBLIC").isEmpty());
+        assertTrue(defaultDatabase.getTableNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getViewNames("SCHEMA_A").isEmpty());
+        assertTrue(defaultDatabase.getSequenceNames("SCHEMA_B").isEmpty());
+    }
+
 
     /**
      * Creates all test database structures (view, tables...)
@@ -150,4 +212,23 @@ public class DefaultDBClearerMultiSchemaTest {
         executeUpdateQuietly("drop schema SCHEMA_A", dataSource);
         executeUpdateQuietly("drop schema SCHEMA_B", dataSource);
     }
+
+
+    /**
+     * HSQLDB database for which clearing a schema at once always fails, e.g. because the user does not own the schema.
+     */
+    protected static class FailingClearSchemaHsqldbDatabase extends HsqldbDatabase {
+
+        private Set<String> schemaNamesToClear = new HashSet<String>();
+
+        public FailingClearSchemaHsqldbDatabase(DatabaseConnection databaseConnection, IdentifierProcessor identifierProcessor) {
+            super(databaseConnection, identifierProcessor);
+        }
+
+        @Override
+        public void clearSchema(String schemaName) {
+            schemaNamesToClear.add(schemaName);
+            throw new DatabaseException("Unable to clear schema " + schemaName);
+        }
+    }
 }
@@ -19,10 +19,13 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbmaintain.database.Database;
 import org.dbmaintain.database.Databases;
+import org.dbmaintain.database.ItemDependency;
+import org.dbmaintain.database.SchemaCatalog;
 import org.dbmaintain.script.executedscriptinfo.ExecutedScriptInfoSource;
 import org.dbmaintain.structure.constraint.ConstraintsDisabler;
 import org.dbmaintain.structure.constraint.impl.DefaultConstraintsDisabler;
 import org.dbmaintain.structure.model.DbItemIdentifier;
+import org.dbmaintain.structure.model.DbItemType;
 import org.dbmaintain.util.SQLTestUtils;
 import org.dbmaintain.util.TestUtils;
 import org.hsqldb.Trigger;
@@ -32,6 +35,8 @@ import org.junit.Test;
 
 import javax.sql.DataSource;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.dbmaintain.util.SQLTestUtils.*;
 import static org.dbmaintain.util.TestUtils.getDefaultExecutedScriptInfoSource;
@@ -125,6 +130,47 @@ public class DefaultDBClearerTest {
     }
 
 
+    @Test
+    public void itemDependencies() throws Exception {
+        if (!defaultDatabase.supportsItemDependencies()) {
+            logger.warn("Current dialect does not support item dependencies. Skipping test.");
+            return;
+        }
+        Set<String> itemDependencies = new HashSet<String>();
+        for (ItemDependency itemDependency : defaultDatabase.getItemDependencies(defaultDatabase.getDefaultSchemaName())) {
+            itemDependencies.add(itemDependency.toString());
+        }
+        assertTrue(itemDependencies.contains("VIEW " + defaultDatabase.toCorrectCaseIdentifier("test_view") + " -> TABLE " + defaultDatabase.toCorrectCaseIdentifier("test_table")));
+        assertTrue(itemDependencies.contains("VIEW Test_CASE_View -> TABLE Test_CASE_Table"));
+    }
+
+    /**
+     * Without views, nothing depends on the table with the triggers. The triggers should still be dropped before the
+     * table, otherwise dropping them fails and the remaining items are dropped in additional passes.
+     */
+    @Test
+    public void tableWithTriggersIsClearedInOnePass() throws Exception {
+        if (!defaultDatabase.supportsItemDependencies()) {
+            logger.warn("Current dialect does not support item dependencies. Skipping test.");
+            return;
+        }
+        dropTestViews(defaultDatabase, "test_view", "\"Test_CASE_View\"");
+        final AtomicInteger nrOfAdditionalPasses = new AtomicInteger();
+        defaultDBClearer = new DefaultDBClearer(databases, new HashSet<DbItemIdentifier>(), new HashSet<DbItemIdentifier>(), new DefaultConstraintsDisabler(databases), getDefaultExecutedScriptInfoSource(defaultDatabase, true)) {
+            @Override
+            protected void dropDbItemsOfType(DbItemType type, SchemaCatalog schemaCatalog) {
+                nrOfAdditionalPasses.incrementAndGet();
+                super.dropDbItemsOfType(type, schemaCatalog);
+            }
+        };
+
+        defaultDBClearer.clearDatabase();
+        assertEquals(0, nrOfAdditionalPasses.get());
+        assertTrue(defaultDatabase.getTableNames().isEmpty());
+        assertTrue(defaultDatabase.getTriggerNames().isEmpty());
+    }
+
+
     private void createTestDatabase() throws Exception {
         String dialect = defaultDatabase.getSupportedDatabaseDialect();
         if ("hsqldb".equals(dialect)) {
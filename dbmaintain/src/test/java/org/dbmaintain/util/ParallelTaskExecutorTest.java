@@ -0,0 +1,173 @@
+/*
+ * Copyright DbMaintain.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dbmaintain.util;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+/**
+ * @author Tim Ducheyne
+ * @author Filip Neven
+ */
+public class ParallelTaskExecutorTest {
+
+    private List<String> executedItems = Collections.synchronizedList(new ArrayList<String>());
+
+
+    @Test
+    public void dependenciesAreExecutedFirst() {
+        Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+        dependencies.put("b", asList("a"));
+        dependencies.put("c", asList("b"));
+        dependencies.put("e", asList("d", "c"));
+
+        new ParallelTaskExecutor(3, "test").execute(asList("a", "b", "c", "d", "e"), dependencies, new RecordingTask());
+
+        assertEquals(5, executedItems.size());
+        assertTrue(executedItems.indexOf("a") < executedItems.indexOf("b"));
+        assertTrue(executedItems.indexOf("b") < executedItems.indexOf("c"));
+        assertTrue(executedItems.indexOf("c") < executedItems.indexOf("e"));
+        assertTrue(executedItems.indexOf("d") < executedItems.indexOf("e"));
+    }
+
+    @Test
+    public void independentItemsAreExecutedConcurrently() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        new ParallelTaskExecutor(2, "test").execute(asList("a", "b"), null, new ParallelTaskExecutor.Task<String>() {
+            public void execute(String item) {
+                latch.countDown();
+                try {
+                    if (!latch.await(10, SECONDS)) {
+                        throw new DbMaintainException("Items were not executed concurrently");
+                    }
+                } catch (InterruptedException e) {
+                    throw new DbMaintainException(e);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void itemsOfAGroupDoNotTakeAllThreads() {
+        Map<String, String> groups = new HashMap<String, String>();
+        groups.put("a1", "a");
+        groups.put("a2", "a");
+        groups.put("a3", "a");
+        groups.put("b1", "b");
+        final AtomicInteger nrOfExecutingItemsOfA = new AtomicInteger();
+        final AtomicInteger maxNrOfExecutingItemsOfA = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        new ParallelTaskExecutor(4, 1, "test").execute(asList("a1", "a2", "a3", "b1"), null, groups, new RecordingTask() {
+            @Override
+            public void execute(String item) {
+                super.execute(item);
+                if ("b1".equals(item)) {
+                    latch.countDown();
+                    return;
+                }
+                int nrOfExecutingItems = nrOfExecutingItemsOfA.incrementAndGet();
+                if (nrOfExecutingItems > maxNrOfExecutingItemsOfA.get()) {
+                    maxNrOfExecutingItemsOfA.set(nrOfExecutingItems);
+                }
+                try {
+                    // b1 should not have to wait for the items of a
+                    if ("a1".equals(item)) {
+                        latch.countDown();
+                        if (!latch.await(10, SECONDS)) {
+                            throw new DbMaintainException("Item b1 was not executed concurrently");
+                        }
+                    }
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new DbMaintainException(e);
+                } finally {
+                    nrOfExecutingItemsOfA.decrementAndGet();
+                }
+            }
+        });
+        assertEquals(4, executedItems.size());
+        assertEquals(1, maxNrOfExecutingItemsOfA.get());
+    }
+
+    @Test
+    public void singleThreadExecutesItemsInOrderOnCallingThread() {
+        final Thread callingThread = Thread.currentThread();
+        Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+        dependencies.put("a", asList("c"));
+
+        new ParallelTaskExecutor(1, "test").execute(asList("a", "b", "c"), dependencies, new RecordingTask() {
+            @Override
+            public void execute(String item) {
+                assertSame(callingThread, Thread.currentThread());
+                super.execute(item);
+            }
+        });
+        assertEquals(asList("b", "c", "a"), executedItems);
+    }
+
+    @Test
+    public void noNewItemsAreStartedAfterFailure() {
+        Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+        dependencies.put("c", asList("b"));
+        dependencies.put("d", asList("b"));
+        try {
+            new ParallelTaskExecutor(2, "test").execute(asList("a", "b", "c", "d"), dependencies, new RecordingTask() {
+                @Override
+                public void execute(String item) {
+                    super.execute(item);
+                    if ("b".equals(item)) {
+                        throw new DbMaintainException("failure of b");
+                    }
+                }
+            });
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertEquals("failure of b", e.getMessage());
+        }
+        assertFalse(executedItems.contains("c"));
+        assertFalse(executedItems.contains("d"));
+    }
+
+    @Test
+    public void cyclicDependency() {
+        Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+        dependencies.put("b", asList("c"));
+        dependencies.put("c", asList("b"));
+        try {
+            new ParallelTaskExecutor(2, "test").execute(asList("a", "b", "c"), dependencies, new RecordingTask());
+            fail("DbMaintainException expected");
+        } catch (DbMaintainException e) {
+            assertTrue(e.getMessage().contains("[b, c]"));
+        }
+        assertEquals(asList("a"), executedItems);
+    }
+
+
+    private class RecordingTask implements ParallelTaskExecutor.Task<String> {
+
+        public void execute(String item) {
+            executedItems.add(item);
+        }
+    }
+}